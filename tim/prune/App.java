@@ -23,6 +23,7 @@ import tim.prune.data.Track;
 import tim.prune.data.TrackInfo;
 import tim.prune.data.SourceInfo.FILE_TYPE;
 import tim.prune.data.Unit;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.function.AsyncMediaLoader;
 import tim.prune.function.SaveConfig;
 import tim.prune.function.SelectTracksFunction;
@@ -34,6 +35,7 @@ import tim.prune.gui.UndoManager;
 import tim.prune.gui.Viewport;
 import tim.prune.gui.colour.ColourerCaretaker;
 import tim.prune.gui.colour.PointColourer;
+import tim.prune.jpeg.ExifIndex;
 import tim.prune.load.FileLoader;
 import tim.prune.load.JpegLoader;
 import tim.prune.load.MediaLinkInfo;
@@ -263,6 +265,7 @@ public class App
 			if (Config.getConfigBoolean(Config.KEY_AUTOSAVE_SETTINGS)) {
 				new SaveConfig(this).silentSave();
 			}
+			ExifIndex.saveIfChanged();
 			System.exit(0);
 		}
 	}
@@ -646,8 +649,10 @@ public class App
 		SourceInfo inSourceInfo, TrackNameList inTrackNameList, MediaLinkInfo inLinkInfo)
 	{
 		// Check whether loaded array can be properly parsed into a Track
+		final long startTime = Diagnostics.startTimer();
 		Track loadedTrack = new Track();
 		loadedTrack.load(inFieldArray, inDataArray, inOptions);
+		Diagnostics.stopTimer(Diagnostics.TIMER_LOAD_PREFIX + "createpoints", startTime);
 		if (loadedTrack.getNumPoints() <= 0)
 		{
 			showErrorMessage("error.load.dialogtitle", "error.load.nopoints");
@@ -811,6 +816,16 @@ public class App
 	 * @param inPhotoSet Set of Photo objects
 	 */
 	public void informPhotosLoaded(Set<Photo> inPhotoSet)
+	{
+		informPhotosLoaded(inPhotoSet, false);
+	}
+
+	/**
+	 * Accept a batch of photos from a load which is delivered in several parts
+	 * @param inPhotoSet Set of Photo objects
+	 * @param inContinuation true if this batch continues the previous load
+	 */
+	public void informPhotosLoaded(Set<Photo> inPhotoSet, boolean inContinuation)
 	{
 		if (inPhotoSet != null && !inPhotoSet.isEmpty())
 		{
@@ -819,8 +834,14 @@ public class App
 			int numPointsAdded = numsAdded[1];
 			if (numPhotosAdded > 0)
 			{
-				// Save numbers so load can be undone
-				_undoStack.add(new UndoLoadPhotos(numPhotosAdded, numPointsAdded));
+				// Save numbers so load can be undone, all batches together
+				UndoOperation lastUndo = (_undoStack.isEmpty() ? null : _undoStack.getOperationAt(_undoStack.size()-1));
+				if (inContinuation && lastUndo instanceof UndoLoadPhotos) {
+					((UndoLoadPhotos) lastUndo).addPhotos(numPhotosAdded, numPointsAdded);
+				}
+				else {
+					_undoStack.add(new UndoLoadPhotos(numPhotosAdded, numPointsAdded));
+				}
 			}
 			if (numPhotosAdded == 1) {
 				UpdateMessageBroker.informSubscribers("" + numPhotosAdded + " " + I18nManager.getText("confirm.jpegload.single"));
@@ -10,12 +10,14 @@ import tim.prune.function.compress.DeleteMarkedPointsFunction;
 import tim.prune.function.compress.MarkLiftsFunction;
 import tim.prune.function.compress.MarkPointsInRectangleFunction;
 import tim.prune.function.deletebydate.DeleteByDateFunction;
+import tim.prune.function.diagnostics.DiagnosticsFunction;
 import tim.prune.function.distance.DistanceFunction;
 import tim.prune.function.edit.PointNameEditor;
 import tim.prune.function.estimate.EstimateTime;
 import tim.prune.function.estimate.LearnParameters;
 import tim.prune.function.gpsies.GetGpsiesFunction;
 import tim.prune.function.gpsies.UploadGpsiesFunction;
+import tim.prune.function.merge.MergeByTimeFunction;
 import tim.prune.function.sew.SewTrackSegmentsFunction;
 import tim.prune.function.sew.SplitSegmentsFunction;
 import tim.prune.function.srtm.DownloadSrtmFunction;
@@ -50,6 +52,7 @@ public abstract class FunctionLibrary
 	public static GenericFunction FUNCTION_SELECT_SEGMENT = null;
 	public static GenericFunction FUNCTION_SPLIT_SEGMENTS = null;
 	public static GenericFunction FUNCTION_SEW_SEGMENTS = null;
+	public static GenericFunction FUNCTION_MERGE_BY_TIME = null;
 	public static GenericFunction FUNCTION_REARRANGE_PHOTOS = null;
 	public static GenericFunction FUNCTION_COMPRESS = null;
 	public static GenericFunction FUNCTION_MARK_LIFTS = null;
@@ -108,6 +111,7 @@ public abstract class FunctionLibrary
 	public static GenericFunction FUNCTION_SHOW_KEYS = null;
 	public static GenericFunction FUNCTION_ABOUT  = null;
 	public static GenericFunction FUNCTION_CHECK_VERSION  = null;
+	public static GenericFunction FUNCTION_DIAGNOSTICS = null;
 
 
 	/**
@@ -132,6 +136,7 @@ public abstract class FunctionLibrary
 		FUNCTION_SELECT_SEGMENT = new SelectSegmentFunction(inApp);
 		FUNCTION_SPLIT_SEGMENTS = new SplitSegmentsFunction(inApp);
 		FUNCTION_SEW_SEGMENTS = new SewTrackSegmentsFunction(inApp);
+		FUNCTION_MERGE_BY_TIME = new MergeByTimeFunction(inApp);
 		FUNCTION_REARRANGE_PHOTOS = new RearrangePhotosFunction(inApp);
 		FUNCTION_COMPRESS = new CompressTrackFunction(inApp);
 		FUNCTION_MARK_LIFTS = new MarkLiftsFunction(inApp);
@@ -188,5 +193,6 @@ public abstract class FunctionLibrary
 		FUNCTION_SHOW_KEYS = new ShowKeysScreen(inApp);
 		FUNCTION_ABOUT  = new AboutScreen(inApp);
 		FUNCTION_CHECK_VERSION= new CheckVersionScreen(inApp);
+		FUNCTION_DIAGNOSTICS = new DiagnosticsFunction(inApp);
 	}
 }
@@ -16,6 +16,7 @@ import javax.swing.WindowConstants;
 
 import tim.prune.config.Config;
 import tim.prune.config.ConfigException;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.gui.DetailsDisplay;
 import tim.prune.gui.SidebarController;
 import tim.prune.gui.IconManager;
@@ -81,6 +82,9 @@ public class GpsPrune
 			{
 				configFilename = arg.substring(13);
 			}
+			else if (arg.equals("--diagnostics")) {
+				Diagnostics.setEnabled(true);
+			}
 			else if (arg.startsWith("--help")) {
 				showUsage = true;
 			}
@@ -103,6 +107,7 @@ public class GpsPrune
 		{
 			System.out.println("GpsPrune - a tool for editing GPS data.\nPossible parameters:"
 				+ "\n   --configfile=<file> used to specify a configuration file"
+				+ "\n   --diagnostics       used to start collecting performance diagnostics"
 				+ "\n   --lang=<code>       used to specify language code such as DE"
 				+ "\n   --langfile=<file>   used to specify an alternative language file\n");
 		}
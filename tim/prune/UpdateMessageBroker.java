@@ -1,5 +1,7 @@
 package tim.prune;
 
+import tim.prune.data.DerivedSeries;
+
 /**
  * Class responsible for distributing update information
  * to all registered listeners
@@ -75,6 +77,8 @@ public abstract class UpdateMessageBroker
 	 */
 	public static void informSubscribers(byte inChange)
 	{
+		// Cached values must be thrown away before any subscriber asks for them
+		DerivedSeries.dataChanged(inChange);
 		// TODO: Launch separate thread so that whatever caused the inform can finish
 		if (!_enabled) return;
 		for (int i=0; i<_subscribers.length; i++)
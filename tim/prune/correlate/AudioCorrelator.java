@@ -273,7 +273,7 @@ public class AudioCorrelator extends Correlator
 			 + (numAudios==1?I18nManager.getText("confirm.correlateaudios.single"):I18nManager.getText("confirm.correlateaudios.multi"))));
 		// observers already informed by track update if new points created
 		if (numPointsToCreate == 0) {
-			UpdateMessageBroker.informSubscribers(DataSubscriber.SELECTION_CHANGED);
+			UpdateMessageBroker.informSubscribers((byte) (DataSubscriber.SELECTION_CHANGED | DataSubscriber.DATA_EDITED));
 		}
 	}
 }
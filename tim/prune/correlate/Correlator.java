@@ -23,6 +23,7 @@ import javax.swing.JRadioButton;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 import tim.prune.App;
 import tim.prune.GenericFunction;
@@ -58,6 +59,12 @@ public abstract class Correlator extends GenericFunction
 	private JComboBox<String> _distUnitsDropdown = null;
 	private JButton _nextButton = null, _backButton = null;
 	protected JButton _okButton = null;
+	/** Time index of the track, made when first needed */
+	private TrackTimeIndex _timeIndex = null;
+	/** Button to find the offset automatically */
+	private JButton _findOffsetButton = null;
+	/** Number of the latest automatic offset search, so that older results are ignored */
+	private int _offsetSearchNum = 0;
 
 	/**
 	 * Constructor
@@ -102,6 +109,12 @@ public abstract class Correlator extends GenericFunction
 				return;
 			}
 		}
+		// Points may have been changed or connected to media since last time
+		_timeIndex = null;
+		_offsetSearchNum++;
+		if (_findOffsetButton != null) {
+			_findOffsetButton.setEnabled(true);
+		}
 		// Create dialog if necessary
 		if (_dialog == null)
 		{
@@ -364,6 +377,14 @@ public abstract class Correlator extends GenericFunction
 		_offsetSecBox.addKeyListener(optionsChangedListener);
 		offsetPanelTop.add(_offsetSecBox);
 		offsetPanelTop.add(new JLabel(I18nManager.getText("dialog.correlate.options.offset.seconds")));
+		// button to find the offset from the items which already have positions
+		_findOffsetButton = new JButton(I18nManager.getText("button.findoffset"));
+		_findOffsetButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				startAutomaticOffset(null, true);
+			}
+		});
+		offsetPanelTop.add(_findOffsetButton);
 		offsetPanel.add(offsetPanelTop);
 
 		// radio buttons for photo / point later
@@ -524,6 +545,10 @@ public abstract class Correlator extends GenericFunction
 				timeDiff = selectedRow.getTimeDiff();
 			}
 			setupPreviewCard(timeDiff, getMediaList().getMedia(0));
+			if (!isCardEnabled(1)) {
+				// No items connected to points with timestamps, so try to use positions
+				startAutomaticOffset(getMediaList().getMedia(0), false);
+			}
 		}
 		// enable ok button if any photos have been selected
 		_okButton.setEnabled(inCardNum == 2 && ((MediaPreviewTableModel) _previewTable.getModel()).hasAnySelected());
@@ -651,6 +676,79 @@ public abstract class Correlator extends GenericFunction
 		return inMedia.getTimestamp();
 	}
 
+	/**
+	 * Find the time offset automatically in a separate thread,
+	 * and set up the preview with it when it's been found
+	 * @param inFirstMedia first media item, for the time zone if no offset is found
+	 * @param inShowFailure true to show a message if no offset is found
+	 */
+	private void startAutomaticOffset(final MediaObject inFirstMedia, final boolean inShowFailure)
+	{
+		final OffsetSolver solver = makeOffsetSolver();
+		final int searchNum = ++_offsetSearchNum;
+		_findOffsetButton.setEnabled(false);
+		new Thread(new Runnable() {
+			public void run()
+			{
+				final TimeDifference offset = solver.findOffset();
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						automaticOffsetFound(searchNum, offset, inFirstMedia, inShowFailure);
+					}
+				});
+			}
+		}, "OffsetSolver").start();
+	}
+
+	/**
+	 * Use the offset found by the automatic search, if the preview is still showing
+	 * @param inSearchNum number of the search
+	 * @param inOffset offset found, or null if none
+	 * @param inFirstMedia first media item, for the time zone if no offset is found
+	 * @param inShowFailure true to show a message if no offset was found
+	 */
+	private void automaticOffsetFound(int inSearchNum, TimeDifference inOffset, MediaObject inFirstMedia,
+		boolean inShowFailure)
+	{
+		if (inSearchNum != _offsetSearchNum) {return;} // superseded
+		_findOffsetButton.setEnabled(true);
+		if (!_dialog.isVisible() || _cards.getCurrentCardIndex() != 2) {return;}
+		if (inOffset != null) {
+			setupPreviewCard(inOffset, inFirstMedia);
+		}
+		else if (inShowFailure)
+		{
+			JOptionPane.showMessageDialog(_dialog, I18nManager.getText("dialog.correlate.options.nooffsetfound"),
+				I18nManager.getText(getNameKey()), JOptionPane.INFORMATION_MESSAGE);
+		}
+	}
+
+	/**
+	 * Make the solver to find the time offset automatically by matching the media which already have
+	 * positions, either from their own coordinates or by being connected to points
+	 * @return offset solver with the anchors added
+	 */
+	private OffsetSolver makeOffsetSolver()
+	{
+		Track track = _app.getTrackInfo().getTrack();
+		if (_timeIndex == null || !_timeIndex.isValidFor(track)) {
+			_timeIndex = new TrackTimeIndex(track);
+		}
+		OffsetSolver solver = new OffsetSolver(_timeIndex);
+		MediaList mediaList = getMediaList();
+		for (int i=0; i<mediaList.getNumMedia(); i++)
+		{
+			MediaObject media = mediaList.getMedia(i);
+			DataPoint point = media.getDataPoint();
+			if (point != null && point.isValid() && media.hasTimestamp())
+			{
+				solver.addAnchor(getMediaTimestamp(media), point.getLatitude().getDouble(),
+					point.getLongitude().getDouble());
+			}
+		}
+		return solver;
+	}
+
 	/**
 	 * Get the point pair surrounding the given media item
 	 * @param inTrack track object
@@ -665,20 +763,11 @@ public abstract class Correlator extends GenericFunction
 		{
 			// Add/subtract offset to media timestamp
 			Timestamp mediaStamp = getMediaTimestamp(inMedia).createMinusOffset(inOffset);
-			int numPoints = inTrack.getNumPoints();
-			for (int i=0; i<numPoints; i++)
-			{
-				DataPoint point = inTrack.getPoint(i);
-				if (point.getPhoto() == null && point.getAudio() == null)
-				{
-					Timestamp pointStamp = point.getTimestamp();
-					if (pointStamp != null && pointStamp.isValid())
-					{
-						long numSeconds = pointStamp.getSecondsSince(mediaStamp);
-						pair.addPoint(point, numSeconds);
-					}
-				}
+			// Use the time index to find the points either side
+			if (_timeIndex == null || !_timeIndex.isValidFor(inTrack)) {
+				_timeIndex = new TrackTimeIndex(inTrack);
 			}
+			_timeIndex.addClosestPoints(pair, mediaStamp);
 		}
 		return pair;
 	}
@@ -0,0 +1,284 @@
+package tim.prune.correlate;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import tim.prune.data.TimeDifference;
+import tim.prune.data.Timestamp;
+
+/**
+ * Class to find the time offset between media and track automatically,
+ * using media items which already have positions as anchors.
+ * Candidate offsets are swept first coarsely, with a step short enough for the speed of the track,
+ * and then more finely around the best few,
+ * and the offset giving the smallest total distance between the anchors and the
+ * track positions at their corrected times is chosen.
+ */
+public class OffsetSolver
+{
+	/** Time index of the track */
+	private final TrackTimeIndex _index;
+	/** Times of the anchors in milliseconds since the index reference */
+	private long[] _anchorMillis = new long[16];
+	/** Latitudes and longitudes of the anchors in radians */
+	private double[] _anchorLats = new double[16], _anchorLons = new double[16];
+	/** Number of anchors */
+	private int _numAnchors = 0;
+
+	/** Largest error counted for each anchor, about 6km, so that a few bad anchors don't dominate */
+	private static final double MAX_ERROR_RADIANS = 0.001;
+	/** Maximum number of candidate offsets in each sweep */
+	private static final int MAX_CANDIDATES = 4000;
+	/** Maximum number of candidate offsets in the coarse sweep if the track is fast */
+	private static final int MAX_COARSE_CANDIDATES = 100000;
+	/** Number of coarse minima to refine */
+	private static final int NUM_REFINED = 5;
+	/** Maximum number of anchors used for the coarse sweeps */
+	private static final int MAX_COARSE_ANCHORS = 500;
+	/** Number of candidates for each task */
+	private static final int CANDIDATES_PER_TASK = 50;
+
+
+	/**
+	 * Constructor
+	 * @param inIndex time index of the track
+	 */
+	public OffsetSolver(TrackTimeIndex inIndex)
+	{
+		_index = inIndex;
+	}
+
+	/**
+	 * Add an anchor
+	 * @param inMediaStamp timestamp of media item
+	 * @param inLatitude latitude of media item in degrees
+	 * @param inLongitude longitude of media item in degrees
+	 */
+	public void addAnchor(Timestamp inMediaStamp, double inLatitude, double inLongitude)
+	{
+		if (_numAnchors == _anchorMillis.length)
+		{
+			_anchorMillis = Arrays.copyOf(_anchorMillis, _numAnchors * 2);
+			_anchorLats = Arrays.copyOf(_anchorLats, _numAnchors * 2);
+			_anchorLons = Arrays.copyOf(_anchorLons, _numAnchors * 2);
+		}
+		_anchorMillis[_numAnchors] = _index.getMillisSinceReference(inMediaStamp);
+		_anchorLats[_numAnchors] = Math.toRadians(inLatitude);
+		_anchorLons[_numAnchors] = Math.toRadians(inLongitude);
+		_numAnchors++;
+	}
+
+	/**
+	 * @return number of anchors
+	 */
+	public int getNumAnchors()
+	{
+		return _numAnchors;
+	}
+
+	/**
+	 * Find the best offset
+	 * @return time difference to subtract from the media times, or null if none found
+	 */
+	public TimeDifference findOffset()
+	{
+		if (_numAnchors == 0 || _index.getNumPoints() < 2) {return null;}
+		// Only consider offsets which bring at least one anchor into the time range of the track
+		long minAnchorMillis = _anchorMillis[0], maxAnchorMillis = _anchorMillis[0];
+		for (int i=1; i<_numAnchors; i++)
+		{
+			minAnchorMillis = Math.min(minAnchorMillis, _anchorMillis[i]);
+			maxAnchorMillis = Math.max(maxAnchorMillis, _anchorMillis[i]);
+		}
+		final long lowSeconds = Math.floorDiv(minAnchorMillis - _index.getLastMillis(), 1000L);
+		final long highSeconds = -Math.floorDiv(_index.getFirstMillis() - maxAnchorMillis, 1000L);
+		final long span = highSeconds - lowSeconds;
+		long step = Math.max(1L, span / MAX_CANDIDATES);
+		// The step mustn't be longer than the time the track takes to cross the error limit,
+		// otherwise the true minimum could fall between two candidates
+		final double speed = _index.getFastSpeed();
+		if (speed > 0.0)
+		{
+			final long basinSeconds = Math.max(1L, (long) (MAX_ERROR_RADIANS / speed));
+			step = Math.max(1L, Math.min(step, Math.max(basinSeconds, span / MAX_COARSE_CANDIDATES)));
+		}
+		final int anchorStep = (step > 1L ? Math.max(1, _numAnchors / MAX_COARSE_ANCHORS) : 1);
+		final int numCandidates = (int) (span / step) + 1;
+		final double[] scores = sweep(lowSeconds, numCandidates, step, anchorStep);
+		// Refine the best few coarse minima, in case the best one is a false minimum
+		long bestOffset = 0L;
+		double bestScore = Double.MAX_VALUE;
+		for (int index : getBestCandidates(scores, NUM_REFINED))
+		{
+			final long offset = refine(lowSeconds + index * step, step);
+			final double score = getScore(offset, 1);
+			if (score < bestScore || (score == bestScore && Math.abs(offset) < Math.abs(bestOffset)))
+			{
+				bestOffset = offset;
+				bestScore = score;
+			}
+		}
+		// If no anchors were close to the track then there's no answer
+		if (bestScore >= _numAnchors * MAX_ERROR_RADIANS) {
+			return null;
+		}
+		return new TimeDifference(bestOffset);
+	}
+
+	/**
+	 * Calculate the scores of evenly spaced candidate offsets in parallel
+	 * @param inLowSeconds first offset in seconds
+	 * @param inNumCandidates number of candidates
+	 * @param inStep step between candidates in seconds
+	 * @param inAnchorStep step between anchors, 1 to use all of them
+	 * @return array of scores
+	 */
+	private double[] sweep(long inLowSeconds, int inNumCandidates, long inStep, int inAnchorStep)
+	{
+		double[] scores = new double[inNumCandidates];
+		ForkJoinPool.commonPool().invoke(new ScoreTask(scores, 0, inNumCandidates, inLowSeconds, inStep, inAnchorStep));
+		return scores;
+	}
+
+	/**
+	 * Find the lowest scores which aren't next to each other
+	 * @param inScores scores of candidates
+	 * @param inMaxCandidates maximum number of candidates to return
+	 * @return indexes of the best candidates
+	 */
+	private static int[] getBestCandidates(double[] inScores, int inMaxCandidates)
+	{
+		int[] best = new int[inMaxCandidates];
+		int numBest = 0;
+		for (int n=0; n<inMaxCandidates; n++)
+		{
+			int bestIndex = -1;
+			for (int i=0; i<inScores.length; i++)
+			{
+				if ((bestIndex < 0 || inScores[i] < inScores[bestIndex]) && !isNearAny(i, best, numBest)) {
+					bestIndex = i;
+				}
+			}
+			if (bestIndex < 0) {break;}
+			best[numBest++] = bestIndex;
+		}
+		return Arrays.copyOf(best, numBest);
+	}
+
+	/**
+	 * @return true if the given index is next to or equal to any of the given indexes
+	 */
+	private static boolean isNearAny(int inIndex, int[] inIndexes, int inNumIndexes)
+	{
+		for (int i=0; i<inNumIndexes; i++)
+		{
+			if (Math.abs(inIndexes[i] - inIndex) <= 1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sweep again around the given offset with smaller steps until the step is one second
+	 * @param inOffset offset found by the coarse sweep
+	 * @param inStep step of the coarse sweep
+	 * @return refined offset in seconds
+	 */
+	private long refine(long inOffset, long inStep)
+	{
+		long offset = inOffset;
+		long step = inStep;
+		while (step > 1L)
+		{
+			final long lowSeconds = offset - step;
+			final long highSeconds = offset + step;
+			step = Math.max(1L, step / (MAX_CANDIDATES / 2));
+			final int anchorStep = (step > 1L ? Math.max(1, _numAnchors / MAX_COARSE_ANCHORS) : 1);
+			final int numCandidates = (int) ((highSeconds - lowSeconds) / step) + 1;
+			final double[] scores = sweep(lowSeconds, numCandidates, step, anchorStep);
+			// Find lowest score, preferring smaller offsets if they're equal
+			int bestIndex = 0;
+			for (int i=1; i<numCandidates; i++)
+			{
+				if (scores[i] < scores[bestIndex] || (scores[i] == scores[bestIndex]
+					&& Math.abs(lowSeconds + i * step) < Math.abs(lowSeconds + bestIndex * step)))
+				{
+					bestIndex = i;
+				}
+			}
+			offset = lowSeconds + bestIndex * step;
+		}
+		return offset;
+	}
+
+	/**
+	 * Calculate the score for the given offset
+	 * @param inOffsetSeconds offset in seconds to subtract from the anchor times
+	 * @param inAnchorStep step between anchors, 1 to use all of them
+	 * @return total of the errors, lower is better
+	 */
+	private double getScore(long inOffsetSeconds, int inAnchorStep)
+	{
+		double total = 0.0;
+		final long offsetMillis = inOffsetSeconds * 1000L;
+		for (int i=0; i<_numAnchors; i+=inAnchorStep)
+		{
+			double error = _index.getRadiansFromTrack(_anchorMillis[i] - offsetMillis, _anchorLats[i], _anchorLons[i]);
+			if (error < 0.0 || error > MAX_ERROR_RADIANS) {
+				error = MAX_ERROR_RADIANS;
+			}
+			total += error;
+		}
+		return total;
+	}
+
+
+	/**
+	 * Task to calculate the scores for a range of candidate offsets
+	 */
+	private class ScoreTask extends RecursiveAction
+	{
+		private final double[] _scores;
+		private final int _from, _to;
+		private final long _lowSeconds, _step;
+		private final int _anchorStep;
+
+		/**
+		 * Constructor
+		 * @param inScores array of scores to fill
+		 * @param inFrom index of first candidate
+		 * @param inTo index after last candidate
+		 * @param inLowSeconds offset of first candidate in the whole array
+		 * @param inStep step between candidates in seconds
+		 * @param inAnchorStep step between anchors
+		 */
+		ScoreTask(double[] inScores, int inFrom, int inTo, long inLowSeconds, long inStep, int inAnchorStep)
+		{
+			_scores = inScores;
+			_from = inFrom;
+			_to = inTo;
+			_lowSeconds = inLowSeconds;
+			_step = inStep;
+			_anchorStep = inAnchorStep;
+		}
+
+		/** Do the work */
+		protected void compute()
+		{
+			if (_to - _from > CANDIDATES_PER_TASK)
+			{
+				final int middle = (_from + _to) / 2;
+				invokeAll(new ScoreTask(_scores, _from, middle, _lowSeconds, _step, _anchorStep),
+					new ScoreTask(_scores, middle, _to, _lowSeconds, _step, _anchorStep));
+			}
+			else
+			{
+				for (int i=_from; i<_to; i++) {
+					_scores[i] = getScore(_lowSeconds + i * _step, _anchorStep);
+				}
+			}
+		}
+	}
+}
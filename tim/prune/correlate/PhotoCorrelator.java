@@ -199,7 +199,7 @@ public class PhotoCorrelator extends Correlator
 			 + (numPhotos==1?I18nManager.getText("confirm.correlatephotos.single"):I18nManager.getText("confirm.correlatephotos.multi"))));
 		// observers already informed by track update if new points created
 		if (numPointsToCreate == 0) {
-			UpdateMessageBroker.informSubscribers(DataSubscriber.SELECTION_CHANGED);
+			UpdateMessageBroker.informSubscribers((byte) (DataSubscriber.SELECTION_CHANGED | DataSubscriber.PHOTOS_MODIFIED));
 		}
 	}
 }
@@ -0,0 +1,247 @@
+package tim.prune.correlate;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import tim.prune.data.DataPoint;
+import tim.prune.data.Timestamp;
+import tim.prune.data.Track;
+
+/**
+ * Index of the timestamped points of a track which don't yet have any media,
+ * sorted by time so that the points either side of a media item can be found
+ * by binary search instead of looping over the whole track.
+ * If the track's timestamps are not in order, for example because segments
+ * were loaded out of order, then a sorted copy is made.
+ * The index also gives the track position at any time, for matching
+ * the positions of items which are already connected.
+ */
+public class TrackTimeIndex
+{
+	/** Track from which the index was made */
+	private final Track _track;
+	/** Number of points in the track when the index was made */
+	private final int _numTrackPoints;
+	/** Indexed points, sorted by time */
+	private final DataPoint[] _points;
+	/** Times of the indexed points in milliseconds since the reference */
+	private final long[] _millis;
+	/** Number of indexed points */
+	private final int _numPoints;
+	/** Latitudes and longitudes of the indexed points in radians */
+	private final double[] _latRadians, _lonRadians;
+	/** Reference timestamp, or null if no points were indexed */
+	private Timestamp _reference = null;
+
+
+	/**
+	 * Constructor
+	 * @param inTrack track to index
+	 */
+	public TrackTimeIndex(Track inTrack)
+	{
+		_track = inTrack;
+		_numTrackPoints = inTrack.getNumPoints();
+		DataPoint[] points = new DataPoint[_numTrackPoints];
+		long[] millis = new long[_numTrackPoints];
+		int numPoints = 0;
+		boolean inOrder = true;
+		for (int i=0; i<_numTrackPoints; i++)
+		{
+			DataPoint point = inTrack.getPoint(i);
+			// Points which already have media can't be used for correlation
+			if (point.getPhoto() == null && point.getAudio() == null)
+			{
+				Timestamp pointStamp = point.getTimestamp();
+				if (pointStamp != null && pointStamp.isValid())
+				{
+					if (_reference == null) {_reference = pointStamp;}
+					millis[numPoints] = pointStamp.getMillisecondsSince(_reference);
+					if (numPoints > 0 && millis[numPoints] < millis[numPoints-1]) {
+						inOrder = false;
+					}
+					points[numPoints] = point;
+					numPoints++;
+				}
+			}
+		}
+		_numPoints = numPoints;
+		if (inOrder)
+		{
+			_points = points;
+			_millis = millis;
+		}
+		else
+		{
+			// Sort the positions by time, the sort is stable so equal times stay in track order
+			final long[] unsortedMillis = millis;
+			Integer[] order = new Integer[numPoints];
+			for (int i=0; i<numPoints; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer inFirst, Integer inSecond) {
+					return Long.compare(unsortedMillis[inFirst], unsortedMillis[inSecond]);
+				}
+			});
+			_points = new DataPoint[numPoints];
+			_millis = new long[numPoints];
+			for (int i=0; i<numPoints; i++)
+			{
+				_points[i] = points[order[i]];
+				_millis[i] = unsortedMillis[order[i]];
+			}
+		}
+		_latRadians = new double[numPoints];
+		_lonRadians = new double[numPoints];
+		for (int i=0; i<numPoints; i++)
+		{
+			_latRadians[i] = Math.toRadians(_points[i].getLatitude().getDouble());
+			_lonRadians[i] = Math.toRadians(_points[i].getLongitude().getDouble());
+		}
+	}
+
+	/**
+	 * @param inTrack track object
+	 * @return true if this index was made from the given track and the number of points hasn't changed
+	 */
+	public boolean isValidFor(Track inTrack)
+	{
+		return inTrack == _track && inTrack.getNumPoints() == _numTrackPoints;
+	}
+
+	/**
+	 * Find the closest points before and after the given time and add them to the pair.
+	 * As with Timestamp.getSecondsSince, points less than a second away count as zero seconds,
+	 * so they are both before and after the media.
+	 * Of several points with the same whole number of seconds, the earliest one is taken.
+	 * @param inPair point-media pair to fill
+	 * @param inMediaStamp timestamp of media, including any offset
+	 */
+	public void addClosestPoints(PointMediaPair inPair, Timestamp inMediaStamp)
+	{
+		if (_numPoints == 0) {return;}
+		final long mediaMillis = inMediaStamp.getMillisecondsSince(_reference);
+		// Last point up to a second after the media gives the number of seconds before
+		final int lastBeforePos = getFirstPositionFrom(mediaMillis + 1000L) - 1;
+		if (lastBeforePos >= 0)
+		{
+			final long secondsBefore = (_millis[lastBeforePos] - mediaMillis) / 1000L;
+			// First point which rounds to the same number of seconds
+			final int beforePos = getFirstPositionFrom(mediaMillis + secondsBefore * 1000L - 999L);
+			DataPoint point = _points[beforePos];
+			inPair.addPoint(point, point.getTimestamp().getSecondsSince(inMediaStamp));
+		}
+		// First point from a second before the media
+		final int afterPos = getFirstPositionFrom(mediaMillis - 999L);
+		if (afterPos < _numPoints)
+		{
+			DataPoint point = _points[afterPos];
+			inPair.addPoint(point, point.getTimestamp().getSecondsSince(inMediaStamp));
+		}
+	}
+
+	/**
+	 * @return number of indexed points
+	 */
+	public int getNumPoints()
+	{
+		return _numPoints;
+	}
+
+	/**
+	 * @return time of the first indexed point in milliseconds since the reference
+	 */
+	public long getFirstMillis()
+	{
+		return _numPoints == 0 ? 0L : _millis[0];
+	}
+
+	/**
+	 * @return time of the last indexed point in milliseconds since the reference
+	 */
+	public long getLastMillis()
+	{
+		return _numPoints == 0 ? 0L : _millis[_numPoints-1];
+	}
+
+	/**
+	 * @param inStamp timestamp
+	 * @return number of milliseconds since the reference time of this index
+	 */
+	public long getMillisSinceReference(Timestamp inStamp)
+	{
+		return _reference == null ? 0L : inStamp.getMillisecondsSince(_reference);
+	}
+
+	/**
+	 * Get a typical high speed of the track, ignoring the fastest few percent of the steps
+	 * between points so that a single jump in position doesn't count
+	 * @return speed in radians per second, or 0 if there are no moving steps
+	 */
+	public double getFastSpeed()
+	{
+		double[] speeds = new double[Math.max(0, _numPoints - 1)];
+		int numSpeeds = 0;
+		for (int i=1; i<_numPoints; i++)
+		{
+			final long millis = _millis[i] - _millis[i-1];
+			if (millis <= 0L) {continue;}
+			final double latDiff = _latRadians[i] - _latRadians[i-1];
+			final double lonDiff = (_lonRadians[i] - _lonRadians[i-1]) * Math.cos(_latRadians[i]);
+			speeds[numSpeeds++] = Math.sqrt(latDiff * latDiff + lonDiff * lonDiff) * 1000.0 / millis;
+		}
+		if (numSpeeds == 0) {return 0.0;}
+		Arrays.sort(speeds, 0, numSpeeds);
+		return speeds[(int) (numSpeeds * 0.95)];
+	}
+
+	/**
+	 * Get the distance from the given position to the track position at the given time,
+	 * interpolating between the points either side
+	 * @param inMillis time in milliseconds since the reference
+	 * @param inLatRadians latitude in radians
+	 * @param inLonRadians longitude in radians
+	 * @return approximate angular distance in radians, or -1 if the time is outside the track
+	 */
+	public double getRadiansFromTrack(long inMillis, double inLatRadians, double inLonRadians)
+	{
+		final int afterPos = getFirstPositionFrom(inMillis);
+		if (afterPos >= _numPoints || (afterPos == 0 && _millis[0] != inMillis)) {
+			return -1.0;
+		}
+		final int beforePos = (_millis[afterPos] == inMillis ? afterPos : afterPos - 1);
+		double latitude = _latRadians[beforePos], longitude = _lonRadians[beforePos];
+		if (afterPos != beforePos)
+		{
+			final double fraction = (inMillis - _millis[beforePos]) * 1.0 / (_millis[afterPos] - _millis[beforePos]);
+			latitude += fraction * (_latRadians[afterPos] - latitude);
+			longitude += fraction * (_lonRadians[afterPos] - longitude);
+		}
+		// Flat approximation is good enough for comparing nearby positions
+		final double latDiff = latitude - inLatRadians;
+		final double lonDiff = (longitude - inLonRadians) * Math.cos(inLatRadians);
+		return Math.sqrt(latDiff * latDiff + lonDiff * lonDiff);
+	}
+
+	/**
+	 * Binary search for the first point at or after the given time
+	 * @param inMillis time in milliseconds since the reference
+	 * @return position of first point with this time or later, or the number of points if none
+	 */
+	private int getFirstPositionFrom(long inMillis)
+	{
+		int low = 0, high = _numPoints;
+		while (low < high)
+		{
+			final int mid = (low + high) >>> 1;
+			if (_millis[mid] < inMillis) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -516,14 +516,8 @@ public class DataPoint
 		double lat2 = inPoint2.getLatitude().getDouble() * TO_RADIANS;
 		double lon1 = inPoint1.getLongitude().getDouble() * TO_RADIANS;
 		double lon2 = inPoint2.getLongitude().getDouble() * TO_RADIANS;
-		// Formula given by Wikipedia:Great-circle_distance as follows:
-		// angle = 2 arcsin( sqrt( (sin ((lat2-lat1)/2))^^2 + cos(lat1)cos(lat2)(sin((lon2-lon1)/2))^^2))
-		double firstSine = Math.sin((lat2-lat1) / 2.0);
-		double secondSine = Math.sin((lon2-lon1) / 2.0);
-		double term2 = Math.cos(lat1) * Math.cos(lat2) * secondSine * secondSine;
-		double answer = 2 * Math.asin(Math.sqrt(firstSine*firstSine + term2));
-		// phew
-		return answer;
+		// For many points, a DistanceCalculator avoids repeating these conversions
+		return DistanceCalculator.calculateRadians(lat1, lon1, Math.cos(lat1), lat2, lon2, Math.cos(lat2));
 	}
 
 
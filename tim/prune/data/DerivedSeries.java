@@ -0,0 +1,338 @@
+package tim.prune.data;
+
+import java.util.BitSet;
+
+import tim.prune.DataSubscriber;
+
+/**
+ * Class to hold the values derived from a track which are needed by
+ * the profiles, the colourers, the charts and the details display:
+ * horizontal speed, vertical speed, gradient and cumulative distance.
+ * All the series are calculated together in one pass over the track,
+ * and then kept until the next data change is broadcast.
+ * Speeds are held in metres per second, and converted on request.
+ * Each calculation is published as a single immutable set of values,
+ * so that the getters can be called from other threads such as the map renderer.
+ */
+public class DerivedSeries
+{
+	/** Track object */
+	private final Track _track;
+	/** Latest calculated values, or null if not calculated yet */
+	private volatile Values _values = null;
+
+	/**
+	 * Immutable set of values from one calculation
+	 */
+	private static final class Values
+	{
+		/** Number of points when the values were calculated */
+		private final int _numPoints;
+		/** Data version when the values were calculated */
+		private final int _version;
+		/** Horizontal speeds in metres per second */
+		private final double[] _speeds;
+		/** Vertical speeds in metres per second */
+		private final double[] _vertSpeeds;
+		/** Gradients */
+		private final double[] _gradients;
+		/** Cumulative distances in radians along the track points, ignoring gaps between segments */
+		private final double[] _distances;
+		/** Flags for which points have valid values */
+		private final BitSet _hasSpeed, _hasVertSpeed, _hasGradient;
+
+		/** Constructor */
+		private Values(int inNumPoints, int inVersion, double[] inSpeeds, double[] inVertSpeeds,
+			double[] inGradients, double[] inDistances, BitSet inHasSpeed, BitSet inHasVertSpeed,
+			BitSet inHasGradient)
+		{
+			_numPoints = inNumPoints;
+			_version = inVersion;
+			_speeds = inSpeeds;
+			_vertSpeeds = inVertSpeeds;
+			_gradients = inGradients;
+			_distances = inDistances;
+			_hasSpeed = inHasSpeed;
+			_hasVertSpeed = inHasVertSpeed;
+			_hasGradient = inHasGradient;
+		}
+
+		/** @return true if the given index is within the calculated points */
+		private boolean isInRange(int inIndex) {
+			return inIndex >= 0 && inIndex < _numPoints;
+		}
+	}
+
+	/** Data version, incremented whenever a change to the data is broadcast */
+	private static volatile int _dataVersion = 0;
+	/** Changes which make the values invalid */
+	private static final byte RELEVANT_CHANGES = DataSubscriber.DATA_ADDED_OR_REMOVED
+		| DataSubscriber.DATA_EDITED | DataSubscriber.WAYPOINTS_MODIFIED;
+	/** Minimum time range for calculating speeds */
+	private static final long MIN_TIME_DIFFERENCE_MS = 1000L;
+	/** Reference time for getting milliseconds from timestamps */
+	private static final Timestamp EPOCH = new Timestamp(0L);
+
+
+	/**
+	 * Constructor
+	 * @param inTrack track object
+	 */
+	DerivedSeries(Track inTrack)
+	{
+		_track = inTrack;
+	}
+
+	/**
+	 * Inform all series that the data has changed, called before the subscribers are informed
+	 * @param inChange type of change
+	 */
+	public static void dataChanged(byte inChange)
+	{
+		if ((inChange & RELEVANT_CHANGES) != 0) {
+			_dataVersion++;
+		}
+	}
+
+	/**
+	 * Recalculate all the values if the data has changed since the last calculation
+	 */
+	synchronized void update()
+	{
+		final int version = _dataVersion;
+		final int numPoints = _track.getNumPoints();
+		final Values values = _values;
+		if (values != null && version == values._version && numPoints == values._numPoints) {
+			return;
+		}
+		_values = calculate(numPoints, version);
+	}
+
+	/**
+	 * Calculate all the series
+	 * @param inNumPoints number of points in track
+	 * @param inVersion data version
+	 * @return calculated values
+	 */
+	private Values calculate(int inNumPoints, int inVersion)
+	{
+		// Copy the values needed out of the point objects first
+		DataPoint[] points = new DataPoint[inNumPoints];
+		boolean[] isTrackPoint = new boolean[inNumPoints];
+		boolean[] isSegmentStart = new boolean[inNumPoints];
+		BitSet hasTime = new BitSet(inNumPoints);
+		long[] times = new long[inNumPoints];
+		double[] altitudes = new double[inNumPoints];
+		double[] distances = new double[inNumPoints];
+		DistanceCalculator distCalc = new DistanceCalculator(_track);
+		int prevTrackIndex = -1;
+		for (int i=0; i<inNumPoints; i++)
+		{
+			DataPoint point = _track.getPoint(i);
+			points[i] = point;
+			isTrackPoint[i] = !point.isWaypoint();
+			isSegmentStart[i] = point.getSegmentStart();
+			if (point.hasTimestamp())
+			{
+				hasTime.set(i);
+				times[i] = point.getTimestamp().getMillisecondsSince(EPOCH);
+			}
+			altitudes[i] = point.hasAltitude() ? point.getAltitude().getMetricValue() : Double.NaN;
+			// Distances only go along the track points, and don't jump between segments
+			double distance = prevTrackIndex < 0 ? 0.0 : distances[prevTrackIndex];
+			if (point.isValid() && isTrackPoint[i])
+			{
+				if (prevTrackIndex >= 0 && !isSegmentStart[i]) {
+					distance += distCalc.getRadiansBetween(prevTrackIndex, i);
+				}
+				prevTrackIndex = i;
+			}
+			distances[i] = distance;
+		}
+
+		double[] speeds = new double[inNumPoints];
+		double[] vertSpeeds = new double[inNumPoints];
+		double[] gradients = new double[inNumPoints];
+		BitSet hasSpeed = new BitSet(inNumPoints);
+		BitSet hasVertSpeed = new BitSet(inNumPoints);
+		BitSet hasGradient = new BitSet(inNumPoints);
+		prevTrackIndex = -1;
+		for (int i=0; i<inNumPoints; i++)
+		{
+			DataPoint point = points[i];
+			final boolean hasAltitude = !Double.isNaN(altitudes[i]);
+			// Speeds may be given in the data
+			if (point.hasHSpeed())
+			{
+				speeds[i] = point.getHSpeed().getValueInMetresPerSec();
+				hasSpeed.set(i);
+			}
+			if (point.hasVSpeed())
+			{
+				vertSpeeds[i] = point.getVSpeed().getValueInMetresPerSec();
+				hasVertSpeed.set(i);
+			}
+			// otherwise calculate them from the neighbouring points at least a second away
+			if ((!hasSpeed.get(i) || (!hasVertSpeed.get(i) && hasAltitude))
+				&& hasTime.get(i) && isTrackPoint[i])
+			{
+				final long time = times[i];
+				int earlyIndex = i, earlyAltIndex = i;
+				if (!isSegmentStart[i])
+				{
+					for (int j=i-1; j>=0; j--)
+					{
+						if (hasTime.get(j) && times[j] < time && isTrackPoint[j])
+						{
+							earlyIndex = j;
+							if (!Double.isNaN(altitudes[j])) {earlyAltIndex = j;}
+						}
+						if (isSegmentStart[j] || (hasTime.get(j) && time - times[j] >= MIN_TIME_DIFFERENCE_MS)) {
+							break;
+						}
+					}
+				}
+				int lateIndex = i, lateAltIndex = i;
+				for (int j=i+1; j<inNumPoints; j++)
+				{
+					if (isSegmentStart[j]) {break;}
+					if (hasTime.get(j) && times[j] >= time && isTrackPoint[j])
+					{
+						lateIndex = j;
+						if (!Double.isNaN(altitudes[j])) {lateAltIndex = j;}
+					}
+					if (hasTime.get(j) && times[j] - time >= MIN_TIME_DIFFERENCE_MS) {
+						break;
+					}
+				}
+				final long milliseconds = times[lateIndex] - times[earlyIndex];
+				if (milliseconds >= MIN_TIME_DIFFERENCE_MS)
+				{
+					final double seconds = milliseconds / 1000.0;
+					if (!hasSpeed.get(i))
+					{
+						final double radians = distances[lateIndex] - distances[earlyIndex];
+						speeds[i] = Distance.convertRadiansToDistance(radians, UnitSetLibrary.UNITS_METRES) / seconds;
+						hasSpeed.set(i);
+					}
+					if (!hasVertSpeed.get(i) && hasAltitude)
+					{
+						vertSpeeds[i] = (altitudes[lateAltIndex] - altitudes[earlyAltIndex]) / seconds;
+						hasVertSpeed.set(i);
+					}
+				}
+			}
+
+			// Gradient needs an altitude, and either both speeds or the neighbouring track points
+			if (hasAltitude && isTrackPoint[i])
+			{
+				if (point.hasHSpeed() && point.hasVSpeed())
+				{
+					gradients[i] = point.getVSpeed().getValueInMetresPerSec() / point.getHSpeed().getValueInMetresPerSec();
+					hasGradient.set(i);
+				}
+				else if (!isSegmentStart[i] && prevTrackIndex >= 0 && !Double.isNaN(altitudes[prevTrackIndex]))
+				{
+					int nextTrackIndex = i+1;
+					while (nextTrackIndex < inNumPoints
+						&& (!isTrackPoint[nextTrackIndex] || !points[nextTrackIndex].isValid()))
+					{
+						nextTrackIndex++;
+					}
+					if (nextTrackIndex < inNumPoints && !isSegmentStart[nextTrackIndex]
+						&& !Double.isNaN(altitudes[nextTrackIndex]))
+					{
+						final double horizDist = Distance.convertRadiansToDistance(
+							distances[nextTrackIndex] - distances[prevTrackIndex], UnitSetLibrary.UNITS_METRES);
+						final double heightDiff = altitudes[nextTrackIndex] - altitudes[prevTrackIndex];
+						// Get gradient in radians
+						gradients[i] = Math.atan2(heightDiff, horizDist);
+						hasGradient.set(i);
+					}
+				}
+			}
+			if (isTrackPoint[i] && point.isValid()) {
+				prevTrackIndex = i;
+			}
+		}
+		return new Values(inNumPoints, inVersion, speeds, vertSpeeds, gradients, distances,
+			hasSpeed, hasVertSpeed, hasGradient);
+	}
+
+	/**
+	 * @param inIndex point index
+	 * @return true if the point has a horizontal speed
+	 */
+	public boolean hasSpeed(int inIndex)
+	{
+		final Values values = _values;
+		return values != null && values.isInRange(inIndex) && values._hasSpeed.get(inIndex);
+	}
+
+	/**
+	 * @param inIndex point index
+	 * @param inUnit speed unit
+	 * @return horizontal speed in the given units
+	 */
+	public double getSpeed(int inIndex, Unit inUnit)
+	{
+		final Values values = _values;
+		if (values == null || !values.isInRange(inIndex) || !values._hasSpeed.get(inIndex)) {return 0.0;}
+		return values._speeds[inIndex] * inUnit.getMultFactorFromStd();
+	}
+
+	/**
+	 * @param inIndex point index
+	 * @return true if the point has a vertical speed
+	 */
+	public boolean hasVerticalSpeed(int inIndex)
+	{
+		final Values values = _values;
+		return values != null && values.isInRange(inIndex) && values._hasVertSpeed.get(inIndex);
+	}
+
+	/**
+	 * @param inIndex point index
+	 * @param inUnit vertical speed unit
+	 * @return vertical speed in the given units
+	 */
+	public double getVerticalSpeed(int inIndex, Unit inUnit)
+	{
+		final Values values = _values;
+		if (values == null || !values.isInRange(inIndex) || !values._hasVertSpeed.get(inIndex)) {return 0.0;}
+		return values._vertSpeeds[inIndex] * inUnit.getMultFactorFromStd();
+	}
+
+	/**
+	 * @param inIndex point index
+	 * @return true if the point has a gradient
+	 */
+	public boolean hasGradient(int inIndex)
+	{
+		final Values values = _values;
+		return values != null && values.isInRange(inIndex) && values._hasGradient.get(inIndex);
+	}
+
+	/**
+	 * @param inIndex point index
+	 * @return gradient
+	 */
+	public double getGradient(int inIndex)
+	{
+		final Values values = _values;
+		if (values == null || !values.isInRange(inIndex) || !values._hasGradient.get(inIndex)) {return 0.0;}
+		return values._gradients[inIndex];
+	}
+
+	/**
+	 * @param inIndex point index
+	 * @param inUnit distance unit
+	 * @return distance along the track from the first point, not including gaps between segments
+	 */
+	public double getDistance(int inIndex, Unit inUnit)
+	{
+		final Values values = _values;
+		if (values == null || !values.isInRange(inIndex)) {return 0.0;}
+		return Distance.convertRadiansToDistance(values._distances[inIndex], inUnit);
+	}
+}
@@ -0,0 +1,177 @@
+package tim.prune.data;
+
+/**
+ * Class to calculate great-circle distances in bulk, working on
+ * primitive arrays of coordinates instead of DataPoint and Coordinate objects.
+ * The radian values and the cosines of the latitudes are calculated just once
+ * per point, so each distance only needs two sines, a square root and an arcsine.
+ */
+public class DistanceCalculator
+{
+	/** Index of the first point, so that track indexes can be used directly */
+	private final int _firstIndex;
+	/** Number of points held */
+	private final int _numPoints;
+	/** Latitudes and longitudes in radians */
+	private final double[] _latRadians, _lonRadians;
+	/** Cosines of latitudes */
+	private final double[] _cosLatitudes;
+
+	/** Conversion factor from degrees to radians */
+	private static final double TO_RADIANS = Math.PI / 180.0;
+
+
+	/**
+	 * Constructor using arrays of coordinates
+	 * @param inLatitudes latitudes in degrees
+	 * @param inLongitudes longitudes in degrees
+	 */
+	public DistanceCalculator(double[] inLatitudes, double[] inLongitudes)
+	{
+		_firstIndex = 0;
+		_numPoints = Math.min(inLatitudes.length, inLongitudes.length);
+		_latRadians = new double[_numPoints];
+		_lonRadians = new double[_numPoints];
+		_cosLatitudes = new double[_numPoints];
+		for (int i=0; i<_numPoints; i++) {
+			setValues(i, inLatitudes[i], inLongitudes[i]);
+		}
+	}
+
+	/**
+	 * Constructor using an array of points
+	 * @param inPoints array of points, which may contain nulls
+	 */
+	public DistanceCalculator(DataPoint[] inPoints)
+	{
+		_firstIndex = 0;
+		_numPoints = inPoints.length;
+		_latRadians = new double[_numPoints];
+		_lonRadians = new double[_numPoints];
+		_cosLatitudes = new double[_numPoints];
+		for (int i=0; i<_numPoints; i++) {
+			setValues(i, inPoints[i]);
+		}
+	}
+
+	/**
+	 * Constructor using the whole of a track
+	 * @param inTrack track object
+	 */
+	public DistanceCalculator(Track inTrack)
+	{
+		this(inTrack, 0, inTrack.getNumPoints() - 1);
+	}
+
+	/**
+	 * Constructor using a range of a track, still addressed using the track's indexes
+	 * @param inTrack track object
+	 * @param inStartIndex start index of range
+	 * @param inEndIndex end index of range (inclusive)
+	 */
+	public DistanceCalculator(Track inTrack, int inStartIndex, int inEndIndex)
+	{
+		_firstIndex = Math.max(inStartIndex, 0);
+		_numPoints = Math.max(inEndIndex - _firstIndex + 1, 0);
+		_latRadians = new double[_numPoints];
+		_lonRadians = new double[_numPoints];
+		_cosLatitudes = new double[_numPoints];
+		for (int i=0; i<_numPoints; i++) {
+			setValues(i, inTrack.getPoint(_firstIndex + i));
+		}
+	}
+
+	/**
+	 * Set the cached values for the given point
+	 * @param inIndex index into arrays
+	 * @param inPoint point, or null
+	 */
+	private void setValues(int inIndex, DataPoint inPoint)
+	{
+		if (inPoint == null) {
+			// flag as missing, distances to this point will be zero
+			_latRadians[inIndex] = _lonRadians[inIndex] = _cosLatitudes[inIndex] = Double.NaN;
+		}
+		else {
+			setValues(inIndex, inPoint.getLatitude().getDouble(), inPoint.getLongitude().getDouble());
+		}
+	}
+
+	/**
+	 * Set the cached values for the given coordinates
+	 * @param inIndex index into arrays
+	 * @param inLatitude latitude in degrees
+	 * @param inLongitude longitude in degrees
+	 */
+	private void setValues(int inIndex, double inLatitude, double inLongitude)
+	{
+		final double latRads = inLatitude * TO_RADIANS;
+		_latRadians[inIndex] = latRads;
+		_lonRadians[inIndex] = inLongitude * TO_RADIANS;
+		_cosLatitudes[inIndex] = Math.cos(latRads);
+	}
+
+	/**
+	 * @return number of points held
+	 */
+	public int getNumPoints()
+	{
+		return _numPoints;
+	}
+
+	/**
+	 * Get the angular distance between two points
+	 * @param inIndex1 index of first point
+	 * @param inIndex2 index of second point
+	 * @return angular distance between points in radians, or 0 if either point is unknown
+	 */
+	public double getRadiansBetween(int inIndex1, int inIndex2)
+	{
+		final int i = inIndex1 - _firstIndex, j = inIndex2 - _firstIndex;
+		if (i < 0 || j < 0 || i >= _numPoints || j >= _numPoints) {
+			return 0.0;
+		}
+		return calculateRadians(_latRadians[i], _lonRadians[i], _cosLatitudes[i],
+			_latRadians[j], _lonRadians[j], _cosLatitudes[j]);
+	}
+
+	/**
+	 * Calculate the distances between each pair of consecutive points in one pass
+	 * @return array of angular distances in radians, where each value is the
+	 *         distance from the previous point (so the first value is always zero)
+	 */
+	public double[] getConsecutiveRadians()
+	{
+		double[] result = new double[_numPoints];
+		for (int i=1; i<_numPoints; i++)
+		{
+			result[i] = calculateRadians(_latRadians[i-1], _lonRadians[i-1], _cosLatitudes[i-1],
+				_latRadians[i], _lonRadians[i], _cosLatitudes[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate the angular distance between two points using the haversine formula
+	 * given by Wikipedia:Great-circle_distance:
+	 * angle = 2 arcsin( sqrt( (sin ((lat2-lat1)/2))^^2 + cos(lat1)cos(lat2)(sin((lon2-lon1)/2))^^2))
+	 * @param inLat1 latitude of first point in radians
+	 * @param inLon1 longitude of first point in radians
+	 * @param inCosLat1 cosine of first latitude
+	 * @param inLat2 latitude of second point in radians
+	 * @param inLon2 longitude of second point in radians
+	 * @param inCosLat2 cosine of second latitude
+	 * @return angular distance in radians, or 0 if values are missing
+	 */
+	static double calculateRadians(double inLat1, double inLon1, double inCosLat1,
+		double inLat2, double inLon2, double inCosLat2)
+	{
+		final double firstSine = Math.sin((inLat2 - inLat1) / 2.0);
+		final double secondSine = Math.sin((inLon2 - inLon1) / 2.0);
+		final double term = firstSine * firstSine + inCosLat1 * inCosLat2 * secondSine * secondSine;
+		// rounding errors could push the term just above 1 for antipodal points
+		final double answer = 2 * Math.asin(Math.sqrt(Math.min(term, 1.0)));
+		// NaN means that one of the points was missing
+		return Double.isNaN(answer) ? 0.0 : answer;
+	}
+}
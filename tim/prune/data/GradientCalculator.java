@@ -20,33 +20,10 @@ public abstract class GradientCalculator
 			System.err.println("Cannot calculate gradient for index " + inIndex);
 			return;
 		}
-
-		// If no altitude or it's a waypoint then no gradient either
-		DataPoint point = inTrack.getPoint(inIndex);
-		if (point == null || !point.hasAltitude() || point.isWaypoint()) {
-			return;
-		}
-
-		// If the point has horizontal and vertical speeds already then just use those
-		if (point.hasHSpeed() && point.hasVSpeed()) {
-			inValue.setValue(point.getVSpeed().getValueInMetresPerSec() / point.getHSpeed().getValueInMetresPerSec());
-		}
-		else if (!point.getSegmentStart())
-		{
-			// Use the previous track point and the next track point
-			DataPoint p = inTrack.getPreviousTrackPoint(inIndex-1);
-			DataPoint q = inTrack.getNextTrackPoint(inIndex+1);
-			if (p != null && q != null && !q.getSegmentStart()
-				&& p.hasAltitude() && q.hasAltitude())
-			{
-				final double horizRads = DataPoint.calculateRadiansBetween(p, point) +
-					DataPoint.calculateRadiansBetween(point,  q);
-				final double horizDist = Distance.convertRadiansToDistance(horizRads, UnitSetLibrary.UNITS_METRES);
-				final double heightDiff = q.getAltitude().getMetricValue() - p.getAltitude().getMetricValue();
-				// Get gradient in radians
-				final double gradient = Math.atan2(heightDiff, horizDist);
-				inValue.setValue(gradient);
-			}
+		// Gradients of the whole track are calculated together
+		DerivedSeries series = inTrack.getDerivedSeries();
+		if (series.hasGradient(inIndex)) {
+			inValue.setValue(series.getGradient(inIndex));
 		}
 		// otherwise, just leave value as invalid
 	}
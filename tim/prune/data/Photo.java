@@ -2,6 +2,8 @@ package tim.prune.data;
 
 import java.awt.Dimension;
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 
 import javax.swing.ImageIcon;
 
@@ -19,6 +21,10 @@ public class Photo extends MediaObject
 	private double _bearing = -1.0;
 	/** thumbnail for image (from exif) */
 	private byte[] _exifThumbnail = null;
+	/** position of exif thumbnail in file, if it hasn't been read yet */
+	private long _exifThumbnailOffset = -1L;
+	/** length of exif thumbnail in file */
+	private int _exifThumbnailLength = -1;
 
 	/**
 	 * Constructor
@@ -69,6 +75,18 @@ public class Photo extends MediaObject
 		return _size;
 	}
 
+	/**
+	 * Set the size of the image if it's already known, to save calculating it
+	 * @param inWidth width in pixels
+	 * @param inHeight height in pixels
+	 */
+	public void setSize(int inWidth, int inHeight)
+	{
+		if (inWidth > 0 && inHeight > 0) {
+			_size = new Dimension(inWidth, inHeight);
+		}
+	}
+
 	/**
 	 * @return width of the image, if known
 	 */
@@ -88,19 +106,69 @@ public class Photo extends MediaObject
 	}
 
 	/**
+	 * Synchronized because thumbnails may be requested from several worker threads
 	 * @return byte array of thumbnail data
 	 */
-	public byte[] getExifThumbnail()
+	public synchronized byte[] getExifThumbnail()
 	{
+		if (_exifThumbnail == null && _exifThumbnailOffset >= 0L && _file != null) {
+			_exifThumbnail = readExifThumbnail();
+		}
 		return _exifThumbnail;
 	}
 
 	/**
 	 * @param inBytes byte array from exif
 	 */
-	public void setExifThumbnail(byte[] inBytes)
+	public synchronized void setExifThumbnail(byte[] inBytes)
 	{
 		_exifThumbnail = inBytes;
+		_exifThumbnailOffset = -1L;
+	}
+
+	/**
+	 * Set where the exif thumbnail is in the file, so that it's only read when needed
+	 * @param inOffset offset from start of file
+	 * @param inLength length in bytes
+	 */
+	public synchronized void setExifThumbnailLocation(long inOffset, int inLength)
+	{
+		if (inOffset >= 0L && inLength > 0)
+		{
+			_exifThumbnailOffset = inOffset;
+			_exifThumbnailLength = inLength;
+		}
+	}
+
+	/**
+	 * @return thumbnail bytes read from the file, or null if they're not a jpeg
+	 */
+	private byte[] readExifThumbnail()
+	{
+		byte[] bytes = new byte[_exifThumbnailLength];
+		RandomAccessFile raFile = null;
+		try
+		{
+			raFile = new RandomAccessFile(_file, "r");
+			raFile.seek(_exifThumbnailOffset);
+			raFile.readFully(bytes);
+		}
+		catch (IOException e) {
+			bytes = null;
+		}
+		finally
+		{
+			try {
+				if (raFile != null) {raFile.close();}
+			}
+			catch (IOException e) {}
+		}
+		// Don't try again, whether it worked or not
+		_exifThumbnailOffset = -1L;
+		if (bytes == null || bytes.length < 2 || (bytes[0] & 0xFF) != 0xFF || (bytes[1] & 0xFF) != 0xD8) {
+			return null;
+		}
+		return bytes;
 	}
 
 	/**
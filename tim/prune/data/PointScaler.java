@@ -8,7 +8,7 @@ public class PointScaler
 	/** Original data */
 	private Track _track = null;
 	/** Secondary data for terrain grid */
-	private Track _terrainTrack = null;
+	private TerrainGrid _terrainGrid = null;
 	// Scaled values for data track
 	private double[] _xValues = null;
 	private double[] _yValues = null;
@@ -34,11 +34,11 @@ public class PointScaler
 	}
 
 	/**
-	 * @param inTrack terrain track to add
+	 * @param inGrid terrain grid to add
 	 */
-	public void addTerrain(Track inTrack)
+	public void addTerrain(TerrainGrid inGrid)
 	{
-		_terrainTrack = inTrack;
+		_terrainGrid = inGrid;
 	}
 
 	/**
@@ -54,8 +54,8 @@ public class PointScaler
 
 		// Find altitude range (including terrain)
 		DoubleRange altRangeMetres = extents.getAltitudeRange();
-		if (_terrainTrack != null) {
-			altRangeMetres.combine(new TrackExtents(_terrainTrack).getAltitudeRange());
+		if (_terrainGrid != null) {
+			altRangeMetres.combine(_terrainGrid.getAltitudeRange());
 		}
 		_altitudeRange = altRangeMetres.getRange() / _horizDistanceMetres;
 		_minAltitudeMetres = altRangeMetres.getMinimum();
@@ -66,12 +66,12 @@ public class PointScaler
 			_xValues = new double[numPoints];
 			_yValues = new double[numPoints];
 			_altValues = new double[numPoints];
-			if (_terrainTrack != null)
-			{
-				_terrainxValues = new double[_terrainTrack.getNumPoints()];
-				_terrainyValues = new double[_terrainTrack.getNumPoints()];
-				_terrainAltValues = new double[_terrainTrack.getNumPoints()];
-			}
+		}
+		if (_terrainGrid != null && (_terrainxValues == null || _terrainxValues.length != _terrainGrid.getNumPoints()))
+		{
+			_terrainxValues = new double[_terrainGrid.getNumPoints()];
+			_terrainyValues = new double[_terrainGrid.getNumPoints()];
+			_terrainAltValues = new double[_terrainGrid.getNumPoints()];
 		}
 
 		final double midXvalue = extents.getXRange().getMidValue();
@@ -89,13 +89,13 @@ public class PointScaler
 				_altValues[p] = (point.getAltitude().getMetricValue() - _minAltitudeMetres) / _horizDistanceMetres;
 			}
 		}
-		if (_terrainTrack != null)
+		if (_terrainGrid != null)
 		{
-			for (int p=0; p<_terrainTrack.getNumPoints(); p++)
+			for (int p=0; p<_terrainGrid.getNumPoints(); p++)
 			{
-				_terrainxValues[p] = (_terrainTrack.getX(p) - midXvalue) / xyRange;
-				_terrainyValues[p] = (midYvalue - _terrainTrack.getY(p)) / xyRange; // y values have to be inverted
-				_terrainAltValues[p] = (_terrainTrack.getPoint(p).getAltitude().getMetricValue() - _minAltitudeMetres) / _horizDistanceMetres;
+				_terrainxValues[p] = (_terrainGrid.getX(p) - midXvalue) / xyRange;
+				_terrainyValues[p] = (midYvalue - _terrainGrid.getY(p)) / xyRange; // y values have to be inverted
+				_terrainAltValues[p] = (_terrainGrid.getHeight(p) - _minAltitudeMetres) / _horizDistanceMetres;
 			}
 		}
 	}
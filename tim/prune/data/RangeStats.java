@@ -57,7 +57,9 @@ public class RangeStats
 		_gentleAltitudeRange = new AltitudeRange();
 		_steepAltitudeRange  = new AltitudeRange();
 		DataPoint prevPoint = null;
+		int prevIndex = -1;
 		Altitude prevAltitude = null;
+		DistanceCalculator distances = new DistanceCalculator(inTrack, inStartIndex, inEndIndex);
 		_totalDistanceRads = _movingDistanceRads = 0.0;
 		double radsSinceLastAltitude = 0.0;
 		_movingMilliseconds = 0L;
@@ -74,7 +76,7 @@ public class RangeStats
 			// Get the distance to the previous track point
 			if (prevPoint != null)
 			{
-				double rads = DataPoint.calculateRadiansBetween(prevPoint, p);
+				double rads = distances.getRadiansBetween(prevIndex, i);
 				_totalDistanceRads += rads;
 				if (!p.getSegmentStart()) {
 					_movingDistanceRads += rads;
@@ -136,6 +138,7 @@ public class RangeStats
 			}
 
 			prevPoint = p;
+			prevIndex = i;
 		}
 		return true;
 	}
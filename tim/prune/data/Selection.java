@@ -75,7 +75,9 @@ public class Selection
 			_altitudeRange = new AltitudeRange();
 			Altitude altitude = null;
 			Timestamp time = null, previousTime = null;
-			DataPoint lastPoint = null, currPoint = null;
+			DataPoint currPoint = null;
+			int lastIndex = -1;
+			DistanceCalculator distances = new DistanceCalculator(_track, _startIndex, _endIndex);
 			_angMovingDistance = 0.0;
 			_movingMilliseconds = 0L;
 			// Loop over points in selection
@@ -106,14 +108,14 @@ public class Selection
 				// Calculate distances, again ignoring waypoints
 				if (!currPoint.isWaypoint())
 				{
-					if (lastPoint != null)
+					if (lastIndex >= 0)
 					{
-						double radians = DataPoint.calculateRadiansBetween(lastPoint, currPoint);
+						double radians = distances.getRadiansBetween(lastIndex, i);
 						if (!currPoint.getSegmentStart()) {
 							_angMovingDistance += radians;
 						}
 					}
-					lastPoint = currPoint;
+					lastIndex = i;
 				}
 			}
 		}
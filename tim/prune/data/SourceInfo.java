@@ -114,6 +114,23 @@ public class SourceInfo
 		}
 	}
 
+	/**
+	 * @return number of point objects stored from the load
+	 */
+	public int getNumPointObjects()
+	{
+		return _points == null ? 0 : _points.length;
+	}
+
+	/**
+	 * @param inIndex index of point object
+	 * @return point object loaded from this source
+	 */
+	public DataPoint getPointObject(int inIndex)
+	{
+		return _points[inIndex];
+	}
+
 	/**
 	 * Look for the given point in the array
 	 * @param inPoint point to look for
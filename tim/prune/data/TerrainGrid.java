@@ -0,0 +1,291 @@
+package tim.prune.data;
+
+/**
+ * Square grid of terrain heights, held as a float array,
+ * covering a rectangle of map coordinates.
+ * Nodes are stored row by row, starting from the top left.
+ */
+public class TerrainGrid
+{
+	/** Number of nodes on each side of the grid */
+	private final int _gridSize;
+	/** Heights of the nodes in metres, NaN for voids */
+	private final float[] _heights;
+	/** Map coordinates of the top left node */
+	private final double _minX, _minY;
+	/** Spacing between nodes in map coordinates */
+	private final double _xStep, _yStep;
+	/** Coarser levels of detail, created when required */
+	private TerrainGrid[] _levels = null;
+
+
+	/**
+	 * Constructor
+	 * @param inGridSize number of nodes on each side
+	 * @param inXRange range of x coordinates
+	 * @param inYRange range of y coordinates
+	 */
+	public TerrainGrid(int inGridSize, DoubleRange inXRange, DoubleRange inYRange)
+	{
+		_gridSize = inGridSize;
+		_heights = new float[inGridSize * inGridSize];
+		_minX = inXRange.getMinimum();
+		_minY = inYRange.getMinimum();
+		_xStep = inXRange.getRange() / (inGridSize - 1);
+		_yStep = inYRange.getRange() / (inGridSize - 1);
+	}
+
+	/** @return number of nodes on each side of the grid */
+	public int getGridSize() {
+		return _gridSize;
+	}
+
+	/** @return total number of nodes */
+	public int getNumPoints() {
+		return _heights.length;
+	}
+
+	/**
+	 * @return total number of nodes including all the coarser levels which could be made,
+	 *         whether they have been made yet or not
+	 */
+	public long getNumPointsWithLevels()
+	{
+		long numPoints = getNumPoints();
+		for (int level=1; getLevelSize(level) > 2; level++)
+		{
+			final long levelSize = getLevelSize(level);
+			numPoints += levelSize * levelSize;
+		}
+		return numPoints;
+	}
+
+	/** @return x coordinate of the given column */
+	public double getColumnX(int inColumn) {
+		return _minX + inColumn * _xStep;
+	}
+
+	/** @return y coordinate of the given row */
+	public double getRowY(int inRow) {
+		return _minY + inRow * _yStep;
+	}
+
+	/** @return x coordinate of the given node */
+	public double getX(int inIndex) {
+		return getColumnX(inIndex % _gridSize);
+	}
+
+	/** @return y coordinate of the given node */
+	public double getY(int inIndex) {
+		return getRowY(inIndex / _gridSize);
+	}
+
+	/** @return height of the given node in metres */
+	public float getHeight(int inIndex) {
+		return _heights[inIndex];
+	}
+
+	/**
+	 * @param inIndex index of node
+	 * @param inHeight height in metres, or NaN for a void
+	 */
+	public void setHeight(int inIndex, float inHeight) {
+		_heights[inIndex] = inHeight;
+	}
+
+	/**
+	 * @return range of heights in metres
+	 */
+	public DoubleRange getAltitudeRange()
+	{
+		DoubleRange range = new DoubleRange();
+		for (float height : _heights)
+		{
+			if (!Float.isNaN(height)) {
+				range.addValue(height);
+			}
+		}
+		return range;
+	}
+
+	/**
+	 * Fill the voids by interpolating along the rows and columns,
+	 * giving more weight to whichever direction has the nearer neighbour.
+	 * Voids which reach the edge are filled with the nearest value.
+	 */
+	public void fillVoids()
+	{
+		final int size = _gridSize;
+		boolean hasVoids = false;
+		for (float height : _heights)
+		{
+			if (Float.isNaN(height)) {
+				hasVoids = true;
+				break;
+			}
+		}
+		if (!hasVoids) {return;}
+
+		// Distances to the nearest neighbour for each interpolated value
+		float[] rowValues = new float[_heights.length];
+		int[] rowDists = new int[_heights.length];
+		float[] colValues = new float[_heights.length];
+		int[] colDists = new int[_heights.length];
+		for (int i=0; i<size; i++)
+		{
+			// Scan along row i and down column i at the same time
+			interpolateLine(i * size, 1, rowValues, rowDists);
+			interpolateLine(i, size, colValues, colDists);
+		}
+		// Combine the two directions
+		for (int i=0; i<_heights.length; i++)
+		{
+			if (!Float.isNaN(_heights[i])) {continue;}
+			final int rowDist = rowDists[i], colDist = colDists[i];
+			if (rowDist > 0 && colDist > 0) {
+				_heights[i] = (rowValues[i] * colDist + colValues[i] * rowDist) / (rowDist + colDist);
+			}
+			else if (rowDist > 0) {
+				_heights[i] = rowValues[i];
+			}
+			else if (colDist > 0) {
+				_heights[i] = colValues[i];
+			}
+		}
+		// Anything left reaches the edges in both directions, so extend the nearest values
+		for (int i=0; i<size; i++) {
+			extendLine(i * size, 1);
+		}
+		for (int i=0; i<size; i++) {
+			extendLine(i, size);
+		}
+		// If there was nothing at all, use zero
+		for (int i=0; i<_heights.length; i++)
+		{
+			if (Float.isNaN(_heights[i])) {
+				_heights[i] = 0.0f;
+			}
+		}
+	}
+
+	/**
+	 * Interpolate linearly across the gaps in one row or column
+	 * @param inStart index of first node
+	 * @param inStep step between nodes
+	 * @param inValues array to hold interpolated values
+	 * @param inDists array to hold distances to nearest neighbour, zero if not interpolated
+	 */
+	private void interpolateLine(int inStart, int inStep, float[] inValues, int[] inDists)
+	{
+		int prev = -1;
+		for (int j=0; j<_gridSize; j++)
+		{
+			final float height = _heights[inStart + j * inStep];
+			if (Float.isNaN(height)) {continue;}
+			if (prev >= 0 && prev < j - 1)
+			{
+				final float startVal = _heights[inStart + prev * inStep];
+				final int gapLen = j - prev;
+				for (int k=prev+1; k<j; k++)
+				{
+					final int index = inStart + k * inStep;
+					inValues[index] = startVal + (height - startVal) * (k - prev) / gapLen;
+					inDists[index] = Math.min(k - prev, j - k);
+				}
+			}
+			prev = j;
+		}
+	}
+
+	/**
+	 * Fill the voids at the ends of one row or column with the nearest value
+	 * @param inStart index of first node
+	 * @param inStep step between nodes
+	 */
+	private void extendLine(int inStart, int inStep)
+	{
+		int first = -1, last = -1;
+		for (int j=0; j<_gridSize; j++)
+		{
+			if (!Float.isNaN(_heights[inStart + j * inStep]))
+			{
+				if (first < 0) {first = j;}
+				last = j;
+			}
+		}
+		if (first < 0) {return;}
+		for (int j=0; j<first; j++) {
+			_heights[inStart + j * inStep] = _heights[inStart + first * inStep];
+		}
+		for (int j=last+1; j<_gridSize; j++) {
+			_heights[inStart + j * inStep] = _heights[inStart + last * inStep];
+		}
+	}
+
+	/**
+	 * Get a level of detail no bigger than the given size
+	 * @param inMaxSize maximum number of nodes on each side
+	 * @return this grid if it's small enough, otherwise a coarser version of it
+	 */
+	public TerrainGrid getLevel(int inMaxSize)
+	{
+		int level = 0;
+		while (getLevelSize(level) > inMaxSize && getLevelSize(level + 1) > 2) {
+			level++;
+		}
+		if (level == 0) {return this;}
+		synchronized (this)
+		{
+			if (_levels == null || _levels.length <= level)
+			{
+				TerrainGrid[] levels = new TerrainGrid[level + 1];
+				if (_levels != null) {
+					System.arraycopy(_levels, 0, levels, 0, _levels.length);
+				}
+				_levels = levels;
+			}
+			if (_levels[level] == null) {
+				_levels[level] = resample(getLevelSize(level));
+			}
+			return _levels[level];
+		}
+	}
+
+	/**
+	 * @param inLevel level of detail, zero for full size
+	 * @return number of nodes on each side for this level
+	 */
+	private int getLevelSize(int inLevel)
+	{
+		return ((_gridSize - 1) >> inLevel) + 1;
+	}
+
+	/**
+	 * Make a smaller grid covering the same area using bilinear interpolation
+	 * @param inSize number of nodes on each side of new grid
+	 * @return new grid
+	 */
+	private TerrainGrid resample(int inSize)
+	{
+		TerrainGrid result = new TerrainGrid(inSize,
+			new DoubleRange(_minX, getColumnX(_gridSize - 1)), new DoubleRange(_minY, getRowY(_gridSize - 1)));
+		final double scale = (_gridSize - 1.0) / (inSize - 1.0);
+		for (int r=0; r<inSize; r++)
+		{
+			final double y = r * scale;
+			final int row = Math.min((int) y, _gridSize - 2);
+			final float beta = (float) (y - row);
+			for (int c=0; c<inSize; c++)
+			{
+				final double x = c * scale;
+				final int col = Math.min((int) x, _gridSize - 2);
+				final float alpha = (float) (x - col);
+				final int index = row * _gridSize + col;
+				final float top = _heights[index] * (1 - alpha) + _heights[index + 1] * alpha;
+				final float bottom = _heights[index + _gridSize] * (1 - alpha) + _heights[index + _gridSize + 1] * alpha;
+				result._heights[r * inSize + c] = top * (1 - beta) + bottom * beta;
+			}
+		}
+		return result;
+	}
+}
@@ -3,6 +3,7 @@ package tim.prune.data;
 import java.util.List;
 
 import tim.prune.UpdateMessageBroker;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.function.edit.FieldEdit;
 import tim.prune.function.edit.FieldEditList;
 import tim.prune.gui.map.MapUtils;
@@ -28,6 +29,8 @@ public class Track
 	// variable ranges
 	private DoubleRange _latRange = null, _longRange = null;
 	private DoubleRange _xRange = null, _yRange = null;
+	// Speeds, gradients and distances derived from the points
+	private DerivedSeries _derivedSeries = null;
 
 
 	/**
@@ -826,6 +829,7 @@ public class Track
 	 */
 	private synchronized void scalePoints()
 	{
+		final long startTime = Diagnostics.startTimer();
 		// Loop through all points in track, to see limits of lat, long
 		_longRange = new DoubleRange();
 		_latRange = new DoubleRange();
@@ -862,6 +866,7 @@ public class Track
 			}
 		}
 		_scaled = true;
+		Diagnostics.stopTimer(Diagnostics.TIMER_TRACK_SCALE, startTime);
 	}
 
 
@@ -1096,6 +1101,21 @@ public class Track
 	}
 
 
+	/**
+	 * Get the speeds, gradients and distances of the points, which are shared by
+	 * all the displays and only recalculated when the data changes
+	 * @return derived series, up to date with the current points
+	 */
+	public synchronized DerivedSeries getDerivedSeries()
+	{
+		if (_derivedSeries == null) {
+			_derivedSeries = new DerivedSeries(this);
+		}
+		_derivedSeries.update();
+		return _derivedSeries;
+	}
+
+
 	/**
 	 * Replace the track contents with the given point array
 	 * @param inContents array of DataPoint objects
@@ -0,0 +1,228 @@
+package tim.prune.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class to collect timers and counters for performance diagnostics.
+ * When collection is disabled, starting a timer just returns zero
+ * and stopping or counting just checks a flag, so the overhead is negligible.
+ */
+public abstract class Diagnostics
+{
+	/** Number of recent frames to remember */
+	private static final int NUM_RECENT_FRAMES = 200;
+	/** Flag to enable or disable collection */
+	private static volatile boolean _enabled = false;
+	/** Timer statistics by name */
+	private static final TreeMap<String, TimerStatistic> _timers = new TreeMap<String, TimerStatistic>();
+	/** Counter values by name */
+	private static final TreeMap<String, Long> _counters = new TreeMap<String, Long>();
+	/** Ring buffer of recent frames */
+	private static final FrameRecord[] _recentFrames = new FrameRecord[NUM_RECENT_FRAMES];
+	/** Index of next slot in ring buffer */
+	private static int _nextFrameIndex = 0;
+
+	// Timer names
+	public static final String TIMER_MAP_PAINT     = "map.paint";
+	public static final String TIMER_MAP_CONTENTS  = "map.paintcontents";
+	public static final String TIMER_TRACK_SCALE   = "track.scale";
+	public static final String TIMER_LOAD_PREFIX   = "load.";
+	public static final String TIMER_EXPORT_PREFIX = "export.";
+	/** Time taken by a function's begin method, which for most functions just opens a dialog */
+	public static final String TIMER_FUNCTION_START_PREFIX = "functionstart.";
+	// Counter names
+	public static final String COUNTER_TILES_MEMORY    = "tiles.memoryhit";
+	public static final String COUNTER_TILES_DISK      = "tiles.diskhit";
+	public static final String COUNTER_TILES_DOWNLOAD  = "tiles.download";
+	public static final String COUNTER_TILES_MISSING   = "tiles.missing";
+	public static final String COUNTER_LAYER_TILES_CACHED = "tracklayer.cached";
+	public static final String COUNTER_LAYER_TILES_DRAWN  = "tracklayer.drawn";
+
+
+	/**
+	 * @param inEnabled true to start collecting, false to stop
+	 */
+	public static void setEnabled(boolean inEnabled)
+	{
+		_enabled = inEnabled;
+	}
+
+	/**
+	 * @return true if collection is enabled
+	 */
+	public static boolean isEnabled()
+	{
+		return _enabled;
+	}
+
+	/**
+	 * Start a timer
+	 * @return start time to pass to stopTimer, or 0 if disabled
+	 */
+	public static long startTimer()
+	{
+		return _enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Stop a timer and record its duration
+	 * @param inName name of timer
+	 * @param inStartTime start time returned by startTimer
+	 */
+	public static void stopTimer(String inName, long inStartTime)
+	{
+		if (inStartTime != 0L) {
+			recordDuration(inName, System.nanoTime() - inStartTime, false);
+		}
+	}
+
+	/**
+	 * Stop a timer for a painted frame, and remember it in the list of recent frames
+	 * @param inName name of timer
+	 * @param inStartTime start time returned by startTimer
+	 */
+	public static void stopFrameTimer(String inName, long inStartTime)
+	{
+		if (inStartTime != 0L) {
+			recordDuration(inName, System.nanoTime() - inStartTime, true);
+		}
+	}
+
+	/**
+	 * Record a duration
+	 * @param inName name of timer
+	 * @param inNanos duration in nanoseconds
+	 * @param inIsFrame true if this is a painted frame
+	 */
+	private static synchronized void recordDuration(String inName, long inNanos, boolean inIsFrame)
+	{
+		TimerStatistic timer = _timers.get(inName);
+		if (timer == null)
+		{
+			timer = new TimerStatistic(inName);
+			_timers.put(inName, timer);
+		}
+		timer.addMeasurement(inNanos);
+		if (inIsFrame)
+		{
+			_recentFrames[_nextFrameIndex] = new FrameRecord(inName, System.currentTimeMillis(), inNanos);
+			_nextFrameIndex = (_nextFrameIndex + 1) % NUM_RECENT_FRAMES;
+		}
+	}
+
+	/**
+	 * Increment the given counter
+	 * @param inName name of counter
+	 */
+	public static void increment(String inName)
+	{
+		if (_enabled) {
+			addToCounter(inName);
+		}
+	}
+
+	/**
+	 * Increment the counter
+	 * @param inName name of counter
+	 */
+	private static synchronized void addToCounter(String inName)
+	{
+		Long value = _counters.get(inName);
+		_counters.put(inName, (value == null ? 1L : value + 1L));
+	}
+
+	/**
+	 * Clear all the collected values
+	 */
+	public static synchronized void reset()
+	{
+		_timers.clear();
+		_counters.clear();
+		for (int i=0; i<NUM_RECENT_FRAMES; i++) {
+			_recentFrames[i] = null;
+		}
+		_nextFrameIndex = 0;
+	}
+
+	/**
+	 * @return snapshot of all timer statistics, sorted by name
+	 */
+	public static synchronized List<TimerStatistic> getTimers()
+	{
+		ArrayList<TimerStatistic> timers = new ArrayList<TimerStatistic>(_timers.size());
+		for (TimerStatistic timer : _timers.values()) {
+			timers.add(new TimerStatistic(timer));
+		}
+		return timers;
+	}
+
+	/**
+	 * @return snapshot of all counters, sorted by name
+	 */
+	public static synchronized Map<String, Long> getCounters()
+	{
+		return new TreeMap<String, Long>(_counters);
+	}
+
+	/**
+	 * @param inName name of counter
+	 * @return current value of counter
+	 */
+	public static synchronized long getCounter(String inName)
+	{
+		Long value = _counters.get(inName);
+		return value == null ? 0L : value;
+	}
+
+	/**
+	 * @param inMaxFrames maximum number of frames to return
+	 * @return the slowest of the recently painted frames, slowest first
+	 */
+	public static synchronized List<FrameRecord> getSlowestRecentFrames(int inMaxFrames)
+	{
+		ArrayList<FrameRecord> frames = new ArrayList<FrameRecord>();
+		for (FrameRecord frame : _recentFrames)
+		{
+			if (frame != null) {
+				frames.add(frame);
+			}
+		}
+		Collections.sort(frames);
+		if (frames.size() > inMaxFrames) {
+			return new ArrayList<FrameRecord>(frames.subList(0, inMaxFrames));
+		}
+		return frames;
+	}
+
+	/**
+	 * @return fraction of tile requests which were answered by the memory cache, or -1 if none
+	 */
+	public static double getMemoryCacheHitRate()
+	{
+		return getTileFraction(getCounter(COUNTER_TILES_MEMORY));
+	}
+
+	/**
+	 * @return fraction of tile requests which were answered by the disk cache, or -1 if none
+	 */
+	public static double getDiskCacheHitRate()
+	{
+		return getTileFraction(getCounter(COUNTER_TILES_DISK));
+	}
+
+	/**
+	 * @param inCount number of tiles
+	 * @return fraction of all tile requests, or -1 if there weren't any
+	 */
+	private static double getTileFraction(long inCount)
+	{
+		final long total = getCounter(COUNTER_TILES_MEMORY) + getCounter(COUNTER_TILES_DISK)
+			+ getCounter(COUNTER_TILES_DOWNLOAD) + getCounter(COUNTER_TILES_MISSING);
+		if (total == 0L) {return -1.0;}
+		return inCount * 1.0 / total;
+	}
+}
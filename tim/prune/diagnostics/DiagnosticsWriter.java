@@ -0,0 +1,167 @@
+package tim.prune.diagnostics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to write the collected diagnostics to a file,
+ * either as json or as comma-separated values
+ */
+public abstract class DiagnosticsWriter
+{
+	/** Number of slow frames to write */
+	private static final int NUM_SLOW_FRAMES = 20;
+
+
+	/**
+	 * Write the diagnostics to the given file, choosing the format from the file extension
+	 * @param inFile file to write to
+	 * @throws IOException on write failure
+	 */
+	public static void writeFile(File inFile) throws IOException
+	{
+		final boolean useCsv = inFile.getName().toLowerCase().endsWith(".csv");
+		Writer writer = null;
+		try
+		{
+			writer = new OutputStreamWriter(new FileOutputStream(inFile), "UTF-8");
+			if (useCsv) {
+				writeCsv(writer);
+			}
+			else {
+				writeJson(writer);
+			}
+		}
+		finally
+		{
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Write the diagnostics in json format
+	 * @param inWriter writer to use
+	 * @throws IOException on write failure
+	 */
+	public static void writeJson(Writer inWriter) throws IOException
+	{
+		inWriter.write("{\n\"timers\": [");
+		List<TimerStatistic> timers = Diagnostics.getTimers();
+		for (int i=0; i<timers.size(); i++)
+		{
+			TimerStatistic timer = timers.get(i);
+			inWriter.write(i == 0 ? "\n" : ",\n");
+			inWriter.write("  {\"name\": \"" + escapeJson(timer.getName()) + "\", \"count\": " + timer.getCount()
+				+ ", \"totalMillis\": " + timer.getTotalMillis() + ", \"meanMillis\": " + timer.getMeanMillis()
+				+ ", \"minMillis\": " + timer.getMinMillis() + ", \"maxMillis\": " + timer.getMaxMillis()
+				+ ", \"histogram\": [");
+			long[] counts = timer.getBucketCounts();
+			for (int b=0; b<counts.length; b++)
+			{
+				if (b > 0) {inWriter.write(", ");}
+				inWriter.write("{\"upToMillis\": " + getBucketLimit(b) + ", \"count\": " + counts[b] + "}");
+			}
+			inWriter.write("]}");
+		}
+		inWriter.write("\n],\n\"counters\": {");
+		boolean first = true;
+		for (Map.Entry<String, Long> entry : Diagnostics.getCounters().entrySet())
+		{
+			inWriter.write(first ? "\n" : ",\n");
+			inWriter.write("  \"" + escapeJson(entry.getKey()) + "\": " + entry.getValue());
+			first = false;
+		}
+		inWriter.write("\n},\n\"tileCache\": {\"memoryHitRate\": " + Diagnostics.getMemoryCacheHitRate()
+			+ ", \"diskHitRate\": " + Diagnostics.getDiskCacheHitRate() + "},\n\"slowestFrames\": [");
+		List<FrameRecord> frames = Diagnostics.getSlowestRecentFrames(NUM_SLOW_FRAMES);
+		for (int i=0; i<frames.size(); i++)
+		{
+			FrameRecord frame = frames.get(i);
+			inWriter.write(i == 0 ? "\n" : ",\n");
+			inWriter.write("  {\"name\": \"" + escapeJson(frame.getName()) + "\", \"time\": " + frame.getPaintTime()
+				+ ", \"millis\": " + frame.getDurationMillis() + "}");
+		}
+		inWriter.write("\n]\n}\n");
+	}
+
+	/**
+	 * Escape the given string for use inside quotes in json
+	 * @param inString string to escape
+	 * @return escaped string
+	 */
+	private static String escapeJson(String inString)
+	{
+		if (inString == null) {return "";}
+		StringBuilder builder = new StringBuilder(inString.length() + 8);
+		for (int i=0; i<inString.length(); i++)
+		{
+			final char c = inString.charAt(i);
+			switch (c)
+			{
+				case '"':  builder.append("\\\""); break;
+				case '\\': builder.append("\\\\"); break;
+				case '\n': builder.append("\\n"); break;
+				case '\r': builder.append("\\r"); break;
+				case '\t': builder.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						builder.append(String.format("\\u%04x", (int) c));
+					}
+					else {
+						builder.append(c);
+					}
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Write the diagnostics as comma-separated values, one line per timer, counter or frame
+	 * @param inWriter writer to use
+	 * @throws IOException on write failure
+	 */
+	public static void writeCsv(Writer inWriter) throws IOException
+	{
+		final String lineSeparator = System.getProperty("line.separator");
+		inWriter.write("type,name,count,totalmillis,meanmillis,minmillis,maxmillis");
+		int[] limits = TimerStatistic.getBucketLimits();
+		for (int limit : limits) {
+			inWriter.write(",upto" + limit + "ms");
+		}
+		inWriter.write(",over" + limits[limits.length-1] + "ms" + lineSeparator);
+		for (TimerStatistic timer : Diagnostics.getTimers())
+		{
+			inWriter.write("timer," + timer.getName() + "," + timer.getCount() + "," + timer.getTotalMillis()
+				+ "," + timer.getMeanMillis() + "," + timer.getMinMillis() + "," + timer.getMaxMillis());
+			for (long count : timer.getBucketCounts()) {
+				inWriter.write("," + count);
+			}
+			inWriter.write(lineSeparator);
+		}
+		for (Map.Entry<String, Long> entry : Diagnostics.getCounters().entrySet()) {
+			inWriter.write("counter," + entry.getKey() + "," + entry.getValue() + lineSeparator);
+		}
+		for (FrameRecord frame : Diagnostics.getSlowestRecentFrames(NUM_SLOW_FRAMES))
+		{
+			inWriter.write("frame," + frame.getName() + ",1," + frame.getDurationMillis()
+				+ lineSeparator);
+		}
+	}
+
+	/**
+	 * @param inBucket bucket index
+	 * @return upper limit of bucket in millis, or -1 for the open-ended bucket
+	 */
+	private static int getBucketLimit(int inBucket)
+	{
+		int[] limits = TimerStatistic.getBucketLimits();
+		return inBucket < limits.length ? limits[inBucket] : -1;
+	}
+}
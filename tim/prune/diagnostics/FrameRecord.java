@@ -0,0 +1,51 @@
+package tim.prune.diagnostics;
+
+/**
+ * Class to hold the duration of a single painted frame
+ */
+public class FrameRecord implements Comparable<FrameRecord>
+{
+	/** Time at which the frame was painted, in milliseconds since 1970 */
+	private final long _paintTime;
+	/** Duration of painting in nanoseconds */
+	private final long _durationNanos;
+	/** Name of the timer used for the frame */
+	private final String _name;
+
+
+	/**
+	 * Constructor
+	 * @param inName name of timer
+	 * @param inPaintTime time of painting in millis
+	 * @param inDurationNanos duration in nanoseconds
+	 */
+	public FrameRecord(String inName, long inPaintTime, long inDurationNanos)
+	{
+		_name = inName;
+		_paintTime = inPaintTime;
+		_durationNanos = inDurationNanos;
+	}
+
+	/** @return name of timer */
+	public String getName() {
+		return _name;
+	}
+
+	/** @return time of painting in millis since 1970 */
+	public long getPaintTime() {
+		return _paintTime;
+	}
+
+	/** @return duration in milliseconds */
+	public double getDurationMillis() {
+		return _durationNanos / 1000000.0;
+	}
+
+	/**
+	 * Compare with another record so that the slowest frames come first
+	 */
+	public int compareTo(FrameRecord inOther)
+	{
+		return Long.compare(inOther._durationNanos, _durationNanos);
+	}
+}
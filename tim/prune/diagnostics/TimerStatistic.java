@@ -0,0 +1,103 @@
+package tim.prune.diagnostics;
+
+/**
+ * Class to hold the statistics for a single named timer,
+ * including a histogram of the measured durations
+ */
+public class TimerStatistic
+{
+	/** Name of timer */
+	private String _name = null;
+	/** Number of measurements */
+	private long _count = 0L;
+	/** Total, minimum and maximum durations in nanoseconds */
+	private long _totalNanos = 0L, _minNanos = 0L, _maxNanos = 0L;
+	/** Histogram counts, one per bucket */
+	private long[] _bucketCounts = new long[BUCKET_LIMITS_MILLIS.length + 1];
+
+	/** Upper limits of the histogram buckets in milliseconds, the last bucket is open-ended */
+	private static final int[] BUCKET_LIMITS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 5000};
+
+
+	/**
+	 * Constructor
+	 * @param inName name of timer
+	 */
+	public TimerStatistic(String inName)
+	{
+		_name = inName;
+	}
+
+	/**
+	 * Copy constructor, to get a consistent snapshot
+	 * @param inOther other statistic to copy
+	 */
+	public TimerStatistic(TimerStatistic inOther)
+	{
+		_name = inOther._name;
+		_count = inOther._count;
+		_totalNanos = inOther._totalNanos;
+		_minNanos = inOther._minNanos;
+		_maxNanos = inOther._maxNanos;
+		_bucketCounts = inOther._bucketCounts.clone();
+	}
+
+	/**
+	 * Add a measurement
+	 * @param inNanos duration in nanoseconds
+	 */
+	public void addMeasurement(long inNanos)
+	{
+		if (_count == 0L || inNanos < _minNanos) {_minNanos = inNanos;}
+		if (inNanos > _maxNanos) {_maxNanos = inNanos;}
+		_count++;
+		_totalNanos += inNanos;
+		// Find the right bucket
+		final double millis = inNanos / 1000000.0;
+		int bucket = 0;
+		while (bucket < BUCKET_LIMITS_MILLIS.length && millis > BUCKET_LIMITS_MILLIS[bucket]) {
+			bucket++;
+		}
+		_bucketCounts[bucket]++;
+	}
+
+	/** @return name of timer */
+	public String getName() {
+		return _name;
+	}
+
+	/** @return number of measurements */
+	public long getCount() {
+		return _count;
+	}
+
+	/** @return total time in milliseconds */
+	public double getTotalMillis() {
+		return _totalNanos / 1000000.0;
+	}
+
+	/** @return mean time in milliseconds */
+	public double getMeanMillis() {
+		return _count == 0L ? 0.0 : (_totalNanos / 1000000.0 / _count);
+	}
+
+	/** @return minimum time in milliseconds */
+	public double getMinMillis() {
+		return _minNanos / 1000000.0;
+	}
+
+	/** @return maximum time in milliseconds */
+	public double getMaxMillis() {
+		return _maxNanos / 1000000.0;
+	}
+
+	/** @return histogram counts, the last one being for all durations above the last limit */
+	public long[] getBucketCounts() {
+		return _bucketCounts.clone();
+	}
+
+	/** @return upper limits of histogram buckets in milliseconds */
+	public static int[] getBucketLimits() {
+		return BUCKET_LIMITS_MILLIS.clone();
+	}
+}
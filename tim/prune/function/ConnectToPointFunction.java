@@ -57,7 +57,7 @@ public class ConnectToPointFunction extends GenericFunction
 			audio.setDataPoint(point);
 			point.setAudio(audio);
 		}
-		UpdateMessageBroker.informSubscribers(DataSubscriber.SELECTION_CHANGED);
+		UpdateMessageBroker.informSubscribers((byte) (DataSubscriber.SELECTION_CHANGED | DataSubscriber.DATA_EDITED | DataSubscriber.PHOTOS_MODIFIED));
 		_app.completeFunction(undo, I18nManager.getText("confirm.media.connect"));
 	}
 }
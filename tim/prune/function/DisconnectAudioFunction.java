@@ -41,7 +41,7 @@ public class DisconnectAudioFunction extends GenericFunction
 			// disconnect
 			audio.setDataPoint(null);
 			point.setAudio(null);
-			UpdateMessageBroker.informSubscribers(DataSubscriber.SELECTION_CHANGED);
+			UpdateMessageBroker.informSubscribers((byte) (DataSubscriber.SELECTION_CHANGED | DataSubscriber.DATA_EDITED));
 			_app.completeFunction(undo, I18nManager.getText("confirm.audio.disconnect"));
 		}
 	}
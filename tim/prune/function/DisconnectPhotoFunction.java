@@ -40,7 +40,7 @@ public class DisconnectPhotoFunction extends GenericFunction
 			// disconnect
 			photo.setDataPoint(null);
 			point.setPhoto(null);
-			UpdateMessageBroker.informSubscribers(DataSubscriber.SELECTION_CHANGED);
+			UpdateMessageBroker.informSubscribers((byte) (DataSubscriber.SELECTION_CHANGED | DataSubscriber.PHOTOS_MODIFIED));
 			_app.completeFunction(undo, I18nManager.getText("confirm.photo.disconnect"));
 		}
 	}
@@ -4,6 +4,7 @@ import tim.prune.App;
 import tim.prune.GenericFunction;
 import tim.prune.I18nManager;
 import tim.prune.data.DataPoint;
+import tim.prune.data.DistanceCalculator;
 import tim.prune.data.Field;
 import tim.prune.data.Timestamp;
 import tim.prune.data.Track;
@@ -36,11 +37,8 @@ public class RedistributePointsFunction extends GenericFunction {
 		DataPoint[] oldPoints = track.cloneContents();
 
 		double[] distances = new double[guideSize + 1];
-		for (int i = 0; i <= guideSize; i++) {
-			DataPoint prev = oldPoints[startIndex + i];
-			DataPoint current = oldPoints[startIndex + i + 1];
-			distances[i] = DataPoint.calculateRadiansBetween(prev, current);
-		}
+		double[] radians = new DistanceCalculator(track, startIndex, endIndex).getConsecutiveRadians();
+		System.arraycopy(radians, 1, distances, 0, guideSize + 1);
 
 		double[] accDistances = new double[guideSize + 1];
 		accDistances[0] = distances[0];
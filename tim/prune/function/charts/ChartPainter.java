@@ -0,0 +1,51 @@
+package tim.prune.function.charts;
+
+import java.awt.Color;
+import java.io.IOException;
+
+/**
+ * Interface for the output of the chart renderer,
+ * either to an image or to an svg file
+ */
+public interface ChartPainter
+{
+	/** Text alignments */
+	public static final int ALIGN_LEFT = 0, ALIGN_CENTRE = 1, ALIGN_RIGHT = 2;
+
+	/**
+	 * Draw a straight line
+	 * @param inX1 x coordinate of start
+	 * @param inY1 y coordinate of start
+	 * @param inX2 x coordinate of end
+	 * @param inY2 y coordinate of end
+	 * @param inColour colour of line
+	 */
+	public void drawLine(double inX1, double inY1, double inX2, double inY2, Color inColour);
+
+	/**
+	 * Draw a filled polygon with an outline
+	 * @param inXs x coordinates
+	 * @param inYs y coordinates
+	 * @param inNumPoints number of points to use
+	 * @param inFill fill colour, including transparency
+	 * @param inOutline outline colour
+	 */
+	public void drawPolygon(double[] inXs, double[] inYs, int inNumPoints, Color inFill, Color inOutline);
+
+	/**
+	 * Draw some text
+	 * @param inText text to draw
+	 * @param inX x coordinate
+	 * @param inY y coordinate of baseline
+	 * @param inAlign alignment relative to the x coordinate
+	 * @param inVertical true to draw the text upwards instead of across
+	 * @param inColour colour of text
+	 */
+	public void drawText(String inText, double inX, double inY, int inAlign, boolean inVertical, Color inColour);
+
+	/**
+	 * Finish the output
+	 * @throws IOException if the output couldn't be written
+	 */
+	public void finish() throws IOException;
+}
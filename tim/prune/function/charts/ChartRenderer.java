@@ -0,0 +1,231 @@
+package tim.prune.function.charts;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+
+/**
+ * Class to draw a set of charts, one above the other,
+ * using a ChartPainter so that the same layout can go to an image or to an svg file
+ */
+public class ChartRenderer
+{
+	/** Width and height of output */
+	private final int _width, _height;
+	/** Charts to draw, from top to bottom */
+	private ArrayList<ChartDefinition> _charts = new ArrayList<ChartDefinition>();
+	/** Font metrics used for the layout */
+	private final FontMetrics _metrics;
+
+	/** Font used for all the text */
+	public static final Font CHART_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+	/** Colours */
+	private static final Color AXIS_COLOUR = Color.BLACK;
+	private static final Color GRID_COLOUR = new Color(220, 220, 220);
+	private static final Color OUTLINE_COLOUR = new Color(0, 0x90, 0);
+	private static final Color FILL_COLOUR = new Color(0, 0x90, 0, 128);
+	/** Approximate spacing of the axis ticks in pixels */
+	private static final int TICK_SPACING = 60;
+	/** Length of the axis ticks */
+	private static final int TICK_LENGTH = 5;
+
+
+	/**
+	 * Class to hold the definition of a single chart
+	 */
+	private static class ChartDefinition
+	{
+		private final String _title, _xLabel, _yLabel;
+		private final DecimatedSeries _series;
+
+		/** Constructor */
+		ChartDefinition(String inTitle, String inXLabel, String inYLabel, DecimatedSeries inSeries)
+		{
+			_title = inTitle;
+			_xLabel = inXLabel;
+			_yLabel = inYLabel;
+			_series = inSeries;
+		}
+	}
+
+
+	/**
+	 * Constructor
+	 * @param inWidth width of output in pixels
+	 * @param inHeight height of output in pixels
+	 */
+	public ChartRenderer(int inWidth, int inHeight)
+	{
+		_width = inWidth;
+		_height = inHeight;
+		Graphics g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+		g.setFont(CHART_FONT);
+		_metrics = g.getFontMetrics();
+		g.dispose();
+	}
+
+	/**
+	 * Add a chart below the ones already added
+	 * @param inTitle title of chart
+	 * @param inXLabel label for x axis
+	 * @param inYLabel label for y axis
+	 * @param inSeries data to show
+	 */
+	public void addChart(String inTitle, String inXLabel, String inYLabel, DecimatedSeries inSeries)
+	{
+		_charts.add(new ChartDefinition(inTitle, inXLabel, inYLabel, inSeries));
+	}
+
+	/**
+	 * Draw all the charts
+	 * @param inPainter painter to draw with
+	 */
+	public void paint(ChartPainter inPainter)
+	{
+		final int[] heights = getHeights(_charts.size());
+		for (int c=0; c<_charts.size(); c++)
+		{
+			// Heights are given from the bottom, as percentages
+			final double top = _height * (100 - heights[c*2] - heights[c*2+1]) / 100.0;
+			final double height = _height * heights[c*2+1] / 100.0;
+			paintChart(inPainter, _charts.get(c), top, height);
+		}
+	}
+
+	/**
+	 * Draw a single chart
+	 * @param inPainter painter to draw with
+	 * @param inChart chart to draw
+	 * @param inTop y coordinate of the top of the chart area
+	 * @param inHeight height of the chart area
+	 */
+	private void paintChart(ChartPainter inPainter, ChartDefinition inChart, double inTop, double inHeight)
+	{
+		final DecimatedSeries series = inChart._series;
+		final int textHeight = _metrics.getHeight();
+		// Work out the axis ranges, extended to whole ticks
+		final double plotHeightGuess = inHeight - 3 * textHeight - 20;
+		final double yStep = getTickStep(series.getMinY(), series.getMaxY(), plotHeightGuess / TICK_SPACING);
+		final double minY = Math.floor(series.getMinY() / yStep) * yStep;
+		final double maxY = Math.max(Math.ceil(series.getMaxY() / yStep) * yStep, minY + yStep);
+		NumberFormat yFormat = makeFormat(yStep);
+		int labelWidth = 0;
+		final int numYSteps = (int) Math.round((maxY - minY) / yStep);
+		for (int i=0; i<=numYSteps; i++) {
+			labelWidth = Math.max(labelWidth, _metrics.stringWidth(yFormat.format(minY + i * yStep + 0.0)));
+		}
+		// Position the plot area inside the chart area
+		final double left = textHeight + labelWidth + 2 * TICK_LENGTH + 8;
+		final double right = _width - 15;
+		final double top = inTop + textHeight + 8;
+		final double bottom = inTop + inHeight - 2 * textHeight - TICK_LENGTH - 6;
+		if (right - left < 10 || bottom - top < 10) {return;}
+		final double xStep = getTickStep(series.getMinX(), series.getMaxX(), (right - left) / TICK_SPACING);
+		final double minX = Math.floor(series.getMinX() / xStep) * xStep;
+		final double maxX = Math.max(Math.ceil(series.getMaxX() / xStep) * xStep, minX + xStep);
+		NumberFormat xFormat = makeFormat(xStep);
+		final double xScale = (right - left) / (maxX - minX);
+		final double yScale = (bottom - top) / (maxY - minY);
+
+		// Grid lines and ticks with their values
+		for (int i=0; i<=numYSteps; i++)
+		{
+			final double y = minY + i * yStep + 0.0; // adding zero avoids showing -0
+			final double py = bottom - (y - minY) * yScale;
+			inPainter.drawLine(left, py, right, py, GRID_COLOUR);
+			inPainter.drawLine(left - TICK_LENGTH, py, left, py, AXIS_COLOUR);
+			inPainter.drawText(yFormat.format(y), left - TICK_LENGTH - 3, py + _metrics.getAscent() / 2.0,
+				ChartPainter.ALIGN_RIGHT, false, AXIS_COLOUR);
+		}
+		final int numXSteps = (int) Math.round((maxX - minX) / xStep);
+		for (int i=0; i<=numXSteps; i++)
+		{
+			final double x = minX + i * xStep + 0.0;
+			final double px = left + (x - minX) * xScale;
+			inPainter.drawLine(px, top, px, bottom, GRID_COLOUR);
+			inPainter.drawLine(px, bottom, px, bottom + TICK_LENGTH, AXIS_COLOUR);
+			inPainter.drawText(xFormat.format(x), px, bottom + TICK_LENGTH + _metrics.getAscent() + 2,
+				ChartPainter.ALIGN_CENTRE, false, AXIS_COLOUR);
+		}
+
+		// Area under the data, down to zero or the bottom of the plot
+		final int numPoints = series.getNumPoints();
+		if (numPoints > 0)
+		{
+			double[] xs = new double[numPoints + 2], ys = new double[numPoints + 2];
+			for (int i=0; i<numPoints; i++)
+			{
+				xs[i] = left + (series.getX(i) - minX) * xScale;
+				ys[i] = bottom - (series.getY(i) - minY) * yScale;
+			}
+			final double zeroY = Math.max(top, Math.min(bottom, bottom + minY * yScale));
+			xs[numPoints] = xs[numPoints - 1]; ys[numPoints] = zeroY;
+			xs[numPoints + 1] = xs[0]; ys[numPoints + 1] = zeroY;
+			inPainter.drawPolygon(xs, ys, numPoints + 2, FILL_COLOUR, OUTLINE_COLOUR);
+		}
+
+		// Frame and labels
+		inPainter.drawLine(left, top, right, top, AXIS_COLOUR);
+		inPainter.drawLine(right, top, right, bottom, AXIS_COLOUR);
+		inPainter.drawLine(right, bottom, left, bottom, AXIS_COLOUR);
+		inPainter.drawLine(left, bottom, left, top, AXIS_COLOUR);
+		inPainter.drawText(inChart._title, right, top - 4, ChartPainter.ALIGN_RIGHT, false, AXIS_COLOUR);
+		inPainter.drawText(inChart._xLabel, (left + right) / 2, inTop + inHeight - _metrics.getDescent() - 2,
+			ChartPainter.ALIGN_CENTRE, false, AXIS_COLOUR);
+		inPainter.drawText(inChart._yLabel, _metrics.getAscent() + 2, (top + bottom) / 2,
+			ChartPainter.ALIGN_CENTRE, true, AXIS_COLOUR);
+	}
+
+	/**
+	 * Choose a round step between ticks
+	 * @param inMin minimum value
+	 * @param inMax maximum value
+	 * @param inNumTicks approximate number of ticks wanted
+	 * @return step size of 1, 2 or 5 times a power of ten
+	 */
+	private static double getTickStep(double inMin, double inMax, double inNumTicks)
+	{
+		final double range = Math.max(inMax - inMin, 1e-6);
+		final double roughStep = range / Math.max(1.0, inNumTicks);
+		final double power = Math.pow(10.0, Math.floor(Math.log10(roughStep)));
+		final double[] multiples = {1.0, 2.0, 5.0, 10.0};
+		for (double multiple : multiples)
+		{
+			if (power * multiple >= roughStep) {
+				return power * multiple;
+			}
+		}
+		return power * 10.0;
+	}
+
+	/**
+	 * @param inStep step between ticks
+	 * @return number format with enough decimal places for the step
+	 */
+	private static NumberFormat makeFormat(double inStep)
+	{
+		NumberFormat format = NumberFormat.getNumberInstance();
+		final int numDigits = Math.max(0, (int) -Math.floor(Math.log10(inStep) + 1e-9));
+		format.setMinimumFractionDigits(numDigits);
+		format.setMaximumFractionDigits(numDigits);
+		format.setGroupingUsed(false);
+		return format;
+	}
+
+	/**
+	 * @param inNumCharts number of charts to draw
+	 * @return array of ints describing position and height of each subchart,
+	 *         as percentages from the bottom
+	 */
+	static int[] getHeights(int inNumCharts)
+	{
+		if (inNumCharts <= 1) {return new int[] {0, 100};}
+		if (inNumCharts == 2) {return new int[] {25, 75, 0, 25};}
+		if (inNumCharts == 3) {return new int[] {40, 60, 20, 20, 0, 20};}
+		return new int[] {54, 46, 36, 18, 18, 18, 0, 18};
+	}
+}
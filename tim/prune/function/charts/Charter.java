@@ -5,14 +5,19 @@ import java.awt.FlowLayout;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.imageio.ImageIO;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
+import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JDialog;
@@ -30,16 +35,16 @@ import tim.prune.GenericFunction;
 import tim.prune.I18nManager;
 import tim.prune.config.Config;
 import tim.prune.data.DataPoint;
-import tim.prune.data.Distance;
+import tim.prune.data.DerivedSeries;
 import tim.prune.data.Field;
 import tim.prune.data.Timestamp;
 import tim.prune.data.Track;
-import tim.prune.gui.profile.SpeedData;
-import tim.prune.gui.profile.VerticalSpeedData;
+import tim.prune.data.Unit;
 import tim.prune.load.GenericFileFilter;
 
 /**
- * Class to manage the generation of charts using gnuplot
+ * Class to manage the generation of charts,
+ * either drawn directly or using gnuplot
  */
 public class Charter extends GenericFunction
 {
@@ -53,16 +58,20 @@ public class Charter extends GenericFunction
 	private JCheckBox[] _yAxesBoxes = null;
 	/** radio button for svg output */
 	private JRadioButton _svgRadio = null;
-	/** file chooser for saving svg file */
+	/** radio button for png output */
+	private JRadioButton _pngRadio = null;
+	/** checkbox for using gnuplot instead of drawing the charts directly */
+	private JCheckBox _gnuplotCheckbox = null;
+	/** file chooser for saving svg or png file */
 	private JFileChooser _fileChooser = null;
-	/** text field for svg width */
-	private JTextField _svgWidthField = null;
-	/** text field for svg height */
-	private JTextField _svgHeightField = null;
+	/** text field for chart width */
+	private JTextField _widthField = null;
+	/** text field for chart height */
+	private JTextField _heightField = null;
 
-	/** Default dimensions of Svg file */
-	private static final String DEFAULT_SVG_WIDTH  = "800";
-	private static final String DEFAULT_SVG_HEIGHT = "400";
+	/** Default dimensions of chart */
+	private static final int DEFAULT_WIDTH  = 800;
+	private static final int DEFAULT_HEIGHT = 400;
 
 
 	/**
@@ -87,12 +96,6 @@ public class Charter extends GenericFunction
 	 */
 	public void begin()
 	{
-		// First check if gnuplot is available
-		if (!ExternalTools.isToolInstalled(ExternalTools.TOOL_GNUPLOT))
-		{
-			_app.showErrorMessage(getNameKey(), "dialog.charts.gnuplotnotfound");
-			return;
-		}
 		// Make dialog window
 		if (_dialog == null)
 		{
@@ -164,23 +167,26 @@ public class Charter extends GenericFunction
 		JRadioButton screenRadio = new JRadioButton(I18nManager.getText("dialog.charts.screen"));
 		screenRadio.setSelected(true);
 		_svgRadio = new JRadioButton(I18nManager.getText("dialog.charts.svg"));
+		_pngRadio = new JRadioButton(I18nManager.getText("dialog.charts.png"));
 		ButtonGroup outputGroup = new ButtonGroup();
-		outputGroup.add(screenRadio); outputGroup.add(_svgRadio);
-		radiosPanel.add(screenRadio); radiosPanel.add(_svgRadio);
+		outputGroup.add(screenRadio); outputGroup.add(_svgRadio); outputGroup.add(_pngRadio);
+		radiosPanel.add(screenRadio); radiosPanel.add(_svgRadio); radiosPanel.add(_pngRadio);
 		outputPanel.add(radiosPanel, BorderLayout.NORTH);
-		// panel for svg width, height
+		_gnuplotCheckbox = new JCheckBox(I18nManager.getText("dialog.charts.usegnuplot"));
+		outputPanel.add(_gnuplotCheckbox, BorderLayout.WEST);
+		// panel for width, height
 		JPanel sizePanel = new JPanel();
 		sizePanel.setLayout(new GridLayout(2, 2, 10, 1));
 		JLabel widthLabel = new JLabel(I18nManager.getText("dialog.charts.svgwidth"));
 		widthLabel.setHorizontalAlignment(SwingConstants.RIGHT);
 		sizePanel.add(widthLabel);
-		_svgWidthField = new JTextField(DEFAULT_SVG_WIDTH, 5);
-		sizePanel.add(_svgWidthField);
+		_widthField = new JTextField("" + DEFAULT_WIDTH, 5);
+		sizePanel.add(_widthField);
 		JLabel heightLabel = new JLabel(I18nManager.getText("dialog.charts.svgheight"));
 		heightLabel.setHorizontalAlignment(SwingConstants.RIGHT);
 		sizePanel.add(heightLabel);
-		_svgHeightField = new JTextField(DEFAULT_SVG_HEIGHT, 5);
-		sizePanel.add(_svgHeightField);
+		_heightField = new JTextField("" + DEFAULT_HEIGHT, 5);
+		sizePanel.add(_heightField);
 
 		outputPanel.add(sizePanel, BorderLayout.EAST);
 		mainPanel.add(outputPanel);
@@ -230,6 +236,12 @@ public class Charter extends GenericFunction
 		enableYbox(1, hasAltitudes);
 		enableYbox(2, hasTimes);
 		enableYbox(3, hasTimes && hasAltitudes);
+		// gnuplot is optional, the charts can be drawn without it
+		final boolean hasGnuplot = ExternalTools.isToolInstalled(ExternalTools.TOOL_GNUPLOT);
+		_gnuplotCheckbox.setEnabled(hasGnuplot);
+		if (!hasGnuplot) {
+			_gnuplotCheckbox.setSelected(false);
+		}
 		return (hasTimes || hasAltitudes);
 	}
 
@@ -264,69 +276,86 @@ public class Charter extends GenericFunction
 			_yAxesBoxes[1].setSelected(true);
 			numCharts = 1;
 		}
-		int[] heights = getHeights(numCharts);
+		final boolean useGnuplot = _gnuplotCheckbox.isSelected();
+		if (useGnuplot && !ExternalTools.isToolInstalled(ExternalTools.TOOL_GNUPLOT))
+		{
+			_app.showErrorMessage(getNameKey(), "dialog.charts.gnuplotnotfound");
+			return;
+		}
+		final int width = getSizeValue(_widthField, DEFAULT_WIDTH);
+		final int height = getSizeValue(_heightField, DEFAULT_HEIGHT);
 
-		boolean showSvg = _svgRadio.isSelected();
-		File svgFile = null;
-		if (showSvg) {
-			svgFile = selectSvgFile();
-			if (svgFile == null) {showSvg = false;}
+		File outputFile = null;
+		if (_svgRadio.isSelected()) {
+			outputFile = selectFile("filetype.svg", "svg");
+			if (outputFile == null) {return;}
 		}
-		OutputStreamWriter writer = null;
-		try
+		else if (_pngRadio.isSelected()) {
+			outputFile = selectFile("filetype.png", "png");
+			if (outputFile == null) {return;}
+		}
+
+		// Reduce each series to the output width, so that nothing needs all the points
+		final boolean distanceAxis = _distanceRadio.isSelected();
+		ChartSeries distValues = getDistanceValues(inTrack);
+		ChartSeries xValues = (distanceAxis ? distValues : getTimeValues(inTrack));
+		final String xLabel = (distanceAxis ? getAxisLabel(0)
+			: I18nManager.getText("fieldname.time") + " (" + I18nManager.getText("units.hours") + ")");
+		ChartRenderer renderer = new ChartRenderer(width, height);
+		DecimatedSeries[] charts = new DecimatedSeries[_yAxesBoxes.length];
+		for (int c=0; c<_yAxesBoxes.length; c++)
 		{
-			final String gnuplotPath = Config.getConfigString(Config.KEY_GNUPLOT_PATH);
-			Process process = Runtime.getRuntime().exec(gnuplotPath + " -persist");
-			writer = new OutputStreamWriter(process.getOutputStream());
-			if (showSvg)
+			if (_yAxesBoxes[c].isSelected())
 			{
-				writer.write("set terminal svg size " + getSvgValue(_svgWidthField, DEFAULT_SVG_WIDTH) + " "
-					+ getSvgValue(_svgHeightField, DEFAULT_SVG_HEIGHT) + "\n");
-				writer.write("set out '" + svgFile.getAbsolutePath() + "'\n");
+				ChartSeries yValues = null;
+				switch (c)
+				{
+				case 0: // y axis is distance
+					yValues = distValues;
+					break;
+				case 1: // y axis is altitude
+					yValues = getAltitudeValues(inTrack);
+					break;
+				case 2: // y axis is speed
+					yValues = getSpeedValues(inTrack);
+					break;
+				case 3: // y axis is vertical speed
+					yValues = getVertSpeedValues(inTrack);
+					break;
+				}
+				charts[c] = new DecimatedSeries(xValues, yValues, width);
+				renderer.addChart(getChartTitle(c), xLabel, getAxisLabel(c), charts[c]);
 			}
-			else {
-				// For screen output, gnuplot should use the default terminal (windows or x11 or wxt or something)
+		}
+
+		try
+		{
+			if (useGnuplot) {
+				writeGnuplot(charts, numCharts, xLabel, outputFile, width, height);
 			}
-			if (numCharts > 1) {
-				writer.write("set multiplot layout " + numCharts + ",1\n");
+			else if (outputFile == null) {
+				showOnScreen(renderer, width, height);
 			}
-			// Loop over possible charts
-			int chartNum = 0;
-			for (int c=0; c<_yAxesBoxes.length; c++)
-			{
-				if (_yAxesBoxes[c].isSelected())
-				{
-					writer.write("set size 1," + (0.01*heights[chartNum*2+1]) + "\n");
-					writer.write("set origin 0," + (0.01*heights[chartNum*2]) + "\n");
-					writeChart(writer, inTrack, _distanceRadio.isSelected(), c);
-					chartNum++;
-				}
+			else if (_svgRadio.isSelected()) {
+				writeSvg(renderer, outputFile, width, height);
 			}
-			// Close multiplot if open
-			if (numCharts > 1) {
-				writer.write("unset multiplot\n");
+			else {
+				writePng(renderer, outputFile, width, height);
 			}
 		}
 		catch (Exception e) {
 			_app.showErrorMessageNoLookup(getNameKey(), e.getMessage());
 		}
-		finally {
-			try {
-				// Close writer
-				if (writer != null) writer.close();
-			}
-			catch (Exception e) {} // ignore
-		}
 	}
 
 
 	/**
-	 * Parse the given text field's value and return as string
+	 * Parse the given text field's value
 	 * @param inField text field to read from
 	 * @param inDefault default value if not valid
-	 * @return value of svg dimension as string
+	 * @return value of dimension
 	 */
-	private static String getSvgValue(JTextField inField, String inDefault)
+	private static int getSizeValue(JTextField inField, int inDefault)
 	{
 		int value = 0;
 		try {
@@ -334,109 +363,184 @@ public class Charter extends GenericFunction
 		}
 		catch (Exception e) {} // ignore, value stays zero
 		if (value > 0) {
-			return "" + value;
+			return value;
 		}
 		return inDefault;
 	}
 
 
 	/**
-	 * Write out the selected chart to the given Writer object
-	 * @param inWriter writer object
-	 * @param inTrack Track containing data
-	 * @param inDistance true if x axis is distance
-	 * @param inYaxis index of y axis
-	 * @throws IOException if writing error occurred
+	 * Draw the charts into an image and show it in a window
+	 * @param inRenderer renderer holding the charts
+	 * @param inWidth width of image
+	 * @param inHeight height of image
+	 */
+	private void showOnScreen(ChartRenderer inRenderer, int inWidth, int inHeight)
+	{
+		ImageChartPainter painter = new ImageChartPainter(inWidth, inHeight, ChartRenderer.CHART_FONT);
+		inRenderer.paint(painter);
+		painter.finish();
+		JDialog chartDialog = new JDialog(_parentFrame, I18nManager.getText(getNameKey()), false);
+		chartDialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+		chartDialog.getContentPane().add(new JLabel(new ImageIcon(painter.getImage())));
+		chartDialog.pack();
+		chartDialog.setLocationRelativeTo(_parentFrame);
+		chartDialog.setVisible(true);
+	}
+
+
+	/**
+	 * Write the charts to an svg file
+	 * @param inRenderer renderer holding the charts
+	 * @param inFile file to write to
+	 * @param inWidth width of chart
+	 * @param inHeight height of chart
+	 * @throws IOException if the file couldn't be written
 	 */
-	private static void writeChart(OutputStreamWriter inWriter, Track inTrack, boolean inDistance, int inYaxis)
+	private static void writeSvg(ChartRenderer inRenderer, File inFile, int inWidth, int inHeight)
 	throws IOException
 	{
-		ChartSeries xValues = null, yValues = null;
-		ChartSeries distValues = getDistanceValues(inTrack);
-		// Choose x values according to axis
-		if (inDistance) {
-			xValues = distValues;
-		}
-		else {
-			xValues = getTimeValues(inTrack);
+		Writer writer = null;
+		try
+		{
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(inFile), "UTF-8"));
+			SvgChartPainter painter = new SvgChartPainter(writer, inWidth, inHeight,
+				ChartRenderer.CHART_FONT.getSize());
+			inRenderer.paint(painter);
+			painter.finish();
 		}
-		// Choose y values according to axis
-		switch (inYaxis)
+		finally
 		{
-		case 0: // y axis is distance
-			yValues = distValues;
-			break;
-		case 1: // y axis is altitude
-			yValues = getAltitudeValues(inTrack);
-			break;
-		case 2: // y axis is speed
-			yValues = getSpeedValues(inTrack);
-			break;
-		case 3: // y axis is vertical speed
-			yValues = getVertSpeedValues(inTrack);
-			break;
+			if (writer != null) {
+				writer.close();
+			}
 		}
-		// Make a temporary data file for the output (one per subchart)
-		File tempFile = File.createTempFile("gpsprunedata", null);
-		tempFile.deleteOnExit();
-		// write out values for x and y to temporary file
-		FileWriter tempFileWriter = null;
-		try {
-			tempFileWriter = new FileWriter(tempFile);
-			tempFileWriter.write("# Temporary data file for GpsPrune charts\n\n");
-			for (int i=0; i<inTrack.getNumPoints(); i++) {
-				if (xValues.hasData(i) && yValues.hasData(i)) {
-					tempFileWriter.write("" + xValues.getData(i) + ", " + yValues.getData(i) + "\n");
+	}
+
+
+	/**
+	 * Write the charts to a png file
+	 * @param inRenderer renderer holding the charts
+	 * @param inFile file to write to
+	 * @param inWidth width of image
+	 * @param inHeight height of image
+	 * @throws IOException if the file couldn't be written
+	 */
+	private static void writePng(ChartRenderer inRenderer, File inFile, int inWidth, int inHeight)
+	throws IOException
+	{
+		ImageChartPainter painter = new ImageChartPainter(inWidth, inHeight, ChartRenderer.CHART_FONT);
+		inRenderer.paint(painter);
+		painter.finish();
+		if (!ImageIO.write(painter.getImage(), "png", inFile)) {
+			throw new IOException("No png writer available");
+		}
+	}
+
+
+	/**
+	 * Send the charts to gnuplot, passing the data inline through the pipe
+	 * @param inCharts decimated series for each y axis, or null if not selected
+	 * @param inNumCharts number of selected charts
+	 * @param inXLabel label for x axis
+	 * @param inFile file to write to, or null for screen
+	 * @param inWidth width of output
+	 * @param inHeight height of output
+	 * @throws IOException if writing error occurred
+	 */
+	private void writeGnuplot(DecimatedSeries[] inCharts, int inNumCharts, String inXLabel,
+		File inFile, int inWidth, int inHeight)
+	throws IOException
+	{
+		int[] heights = ChartRenderer.getHeights(inNumCharts);
+		Writer writer = null;
+		try
+		{
+			final String gnuplotPath = Config.getConfigString(Config.KEY_GNUPLOT_PATH);
+			Process process = Runtime.getRuntime().exec(gnuplotPath + " -persist");
+			writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+			if (inFile != null)
+			{
+				if (_svgRadio.isSelected()) {
+					writer.write("set terminal svg size " + inWidth + " " + inHeight + "\n");
+				}
+				else {
+					writer.write("set terminal png size " + inWidth + "," + inHeight + "\n");
 				}
+				writer.write("set out '" + inFile.getAbsolutePath() + "'\n");
+			}
+			else {
+				// For screen output, gnuplot should use the default terminal (windows or x11 or wxt or something)
+			}
+			if (inNumCharts > 1) {
+				writer.write("set multiplot layout " + inNumCharts + ",1\n");
+			}
+			// Loop over possible charts
+			int chartNum = 0;
+			for (int c=0; c<inCharts.length; c++)
+			{
+				if (inCharts[c] != null)
+				{
+					writer.write("set size 1," + (0.01*heights[chartNum*2+1]) + "\n");
+					writer.write("set origin 0," + (0.01*heights[chartNum*2]) + "\n");
+					writer.write("set xlabel '" + inXLabel + "'\n");
+					writer.write("set ylabel '" + getAxisLabel(c) + "'\n");
+					writer.write("set style fill solid 0.5 border -1\n");
+					writer.write("plot '-' title '" + getChartTitle(c) + "' with filledcurve y1=0 lt rgb \"#009000\"\n");
+					final DecimatedSeries series = inCharts[c];
+					for (int i=0; i<series.getNumPoints(); i++) {
+						writer.write("" + series.getX(i) + " " + series.getY(i) + "\n");
+					}
+					writer.write("e\n");
+					chartNum++;
+				}
+			}
+			// Close multiplot if open
+			if (inNumCharts > 1) {
+				writer.write("unset multiplot\n");
 			}
 		}
-		catch (IOException ioe) { // rethrow
-			throw ioe;
-		}
-		finally {
+		finally
+		{
 			try {
-				tempFileWriter.close();
+				// Close writer
+				if (writer != null) writer.close();
 			}
-			catch (Exception e) {}
+			catch (Exception e) {} // ignore
 		}
+	}
 
-		// Sort out units to use
-		final String distLabel = I18nManager.getText(Config.getUnitSet().getDistanceUnit().getShortnameKey());
-		final String altLabel  = I18nManager.getText(Config.getUnitSet().getAltitudeUnit().getShortnameKey());
-		final String speedLabel = I18nManager.getText(Config.getUnitSet().getSpeedUnit().getShortnameKey());
-		final String vertSpeedLabel = I18nManager.getText(Config.getUnitSet().getVerticalSpeedUnit().getShortnameKey());
 
-		// Set x axis label
-		if (inDistance) {
-			inWriter.write("set xlabel '" + I18nManager.getText("fieldname.distance") + " (" + distLabel + ")'\n");
-		}
-		else {
-			inWriter.write("set xlabel '" + I18nManager.getText("fieldname.time") + " (" + I18nManager.getText("units.hours") + ")'\n");
+	/**
+	 * @param inYaxis index of y axis
+	 * @return title of chart
+	 */
+	private static String getChartTitle(int inYaxis)
+	{
+		switch (inYaxis)
+		{
+			case 0: return I18nManager.getText("fieldname.distance");
+			case 1: return I18nManager.getText("fieldname.altitude");
+			case 2: return I18nManager.getText("fieldname.speed");
+			default: return I18nManager.getText("fieldname.verticalspeed");
 		}
+	}
 
-		// set other labels and plot chart
-		String chartTitle = null;
+	/**
+	 * @param inYaxis index of y axis
+	 * @return axis label including units
+	 */
+	private static String getAxisLabel(int inYaxis)
+	{
+		Unit unit = null;
 		switch (inYaxis)
 		{
-		case 0: // y axis is distance
-			inWriter.write("set ylabel '" + I18nManager.getText("fieldname.distance") + " (" + distLabel + ")'\n");
-			chartTitle = I18nManager.getText("fieldname.distance");
-			break;
-		case 1: // y axis is altitude
-			inWriter.write("set ylabel '" + I18nManager.getText("fieldname.altitude") + " (" + altLabel + ")'\n");
-			chartTitle = I18nManager.getText("fieldname.altitude");
-			break;
-		case 2: // y axis is speed
-			inWriter.write("set ylabel '" + I18nManager.getText("fieldname.speed") + " (" + speedLabel + ")'\n");
-			chartTitle = I18nManager.getText("fieldname.speed");
-			break;
-		case 3: // y axis is vertical speed
-			inWriter.write("set ylabel '" + I18nManager.getText("fieldname.verticalspeed") + " (" + vertSpeedLabel + ")'\n");
-			chartTitle = I18nManager.getText("fieldname.verticalspeed");
-			break;
+			case 0: unit = Config.getUnitSet().getDistanceUnit(); break;
+			case 1: unit = Config.getUnitSet().getAltitudeUnit(); break;
+			case 2: unit = Config.getUnitSet().getSpeedUnit(); break;
+			default: unit = Config.getUnitSet().getVerticalSpeedUnit(); break;
 		}
-		inWriter.write("set style fill solid 0.5 border -1\n");
-		inWriter.write("plot '" + tempFile.getAbsolutePath() + "' title '" + chartTitle + "' with filledcurve y1=0 lt rgb \"#009000\"\n");
+		return getChartTitle(inYaxis) + " (" + I18nManager.getText(unit.getShortnameKey()) + ")";
 	}
 
 
@@ -447,22 +551,14 @@ public class Charter extends GenericFunction
 	 */
 	private static ChartSeries getDistanceValues(Track inTrack)
 	{
-		// Calculate distances and fill in in values array
+		// Distances along the track are shared with the other displays
+		DerivedSeries series = inTrack.getDerivedSeries();
+		final Unit distUnit = Config.getUnitSet().getDistanceUnit();
 		ChartSeries values = new ChartSeries(inTrack.getNumPoints());
-		double totalRads = 0;
-		DataPoint prevPoint = null, currPoint = null;
 		for (int i=0; i<inTrack.getNumPoints(); i++)
 		{
-			currPoint = inTrack.getPoint(i);
-			if (prevPoint != null && !currPoint.isWaypoint() && !currPoint.getSegmentStart())
-			{
-				totalRads += DataPoint.calculateRadiansBetween(prevPoint, currPoint);
-			}
-
 			// distance values use currently configured units
-			values.setData(i, Distance.convertRadiansToDistance(totalRads));
-
-			prevPoint = currPoint;
+			values.setData(i, series.getDistance(i, distUnit));
 		}
 		return values;
 	}
@@ -518,18 +614,15 @@ public class Charter extends GenericFunction
 	 */
 	private static ChartSeries getSpeedValues(Track inTrack)
 	{
-		// Calculate speeds using the same formula as the profile chart
-		SpeedData speeds = new SpeedData(inTrack);
-		speeds.init(Config.getUnitSet());
-
+		// Speeds are shared with the profile chart
+		DerivedSeries series = inTrack.getDerivedSeries();
+		final Unit speedUnit = Config.getUnitSet().getSpeedUnit();
 		final int numPoints = inTrack.getNumPoints();
 		ChartSeries values = new ChartSeries(numPoints);
-		// Loop over collected points
 		for (int i=0; i<numPoints; i++)
 		{
-			if (speeds.hasData(i))
-			{
-				values.setData(i, speeds.getData(i));
+			if (series.hasSpeed(i)) {
+				values.setData(i, series.getSpeed(i, speedUnit));
 			}
 		}
 		return values;
@@ -542,18 +635,14 @@ public class Charter extends GenericFunction
 	 */
 	private static ChartSeries getVertSpeedValues(Track inTrack)
 	{
-		// Calculate speeds using the same formula as the profile chart
-		VerticalSpeedData speeds = new VerticalSpeedData(inTrack);
-		speeds.init(Config.getUnitSet());
-
+		DerivedSeries series = inTrack.getDerivedSeries();
+		final Unit speedUnit = Config.getUnitSet().getVerticalSpeedUnit();
 		final int numPoints = inTrack.getNumPoints();
 		ChartSeries values = new ChartSeries(numPoints);
-		// Loop over collected points
 		for (int i=0; i<numPoints; i++)
 		{
-			if (speeds.hasData(i))
-			{
-				values.setData(i, speeds.getData(i));
+			if (series.hasVerticalSpeed(i)) {
+				values.setData(i, series.getVerticalSpeed(i, speedUnit));
 			}
 		}
 		return values;
@@ -561,21 +650,24 @@ public class Charter extends GenericFunction
 
 
 	/**
-	 * Select a file to write for the SVG output
+	 * Select a file to write for the file output
+	 * @param inTypeKey key for file type description
+	 * @param inExtension file extension without the dot
 	 * @return selected File object or null if cancelled
 	 */
-	private File selectSvgFile()
+	private File selectFile(String inTypeKey, String inExtension)
 	{
 		if (_fileChooser == null)
 		{
 			_fileChooser = new JFileChooser();
 			_fileChooser.setDialogType(JFileChooser.SAVE_DIALOG);
-			_fileChooser.setFileFilter(new GenericFileFilter("filetype.svg", new String[] {"svg"}));
 			_fileChooser.setAcceptAllFileFilterUsed(false);
 			// start from directory in config which should be set
 			String configDir = Config.getConfigString(Config.KEY_TRACK_DIR);
 			if (configDir != null) {_fileChooser.setCurrentDirectory(new File(configDir));}
 		}
+		_fileChooser.resetChoosableFileFilters();
+		_fileChooser.setFileFilter(new GenericFileFilter(inTypeKey, new String[] {inExtension}));
 		boolean chooseAgain = true;
 		while (chooseAgain)
 		{
@@ -585,8 +677,8 @@ public class Charter extends GenericFunction
 				// OK pressed and file chosen
 				File file = _fileChooser.getSelectedFile();
 				// Check file extension
-				if (!file.getName().toLowerCase().endsWith(".svg")) {
-					file = new File(file.getAbsolutePath() + ".svg");
+				if (!file.getName().toLowerCase().endsWith("." + inExtension)) {
+					file = new File(file.getAbsolutePath() + "." + inExtension);
 				}
 				// Check if file exists and if necessary prompt for overwrite
 				Object[] buttonTexts = {I18nManager.getText("button.overwrite"), I18nManager.getText("button.cancel")};
@@ -604,17 +696,4 @@ public class Charter extends GenericFunction
 		// Cancel pressed so no file selected
 		return null;
 	}
-
-
-	/**
-	 * @param inNumCharts number of charts to draw
-	 * @return array of ints describing position and height of each subchart
-	 */
-	private static int[] getHeights(int inNumCharts)
-	{
-		if (inNumCharts <= 1) {return new int[] {0, 100};}
-		if (inNumCharts == 2) {return new int[] {25, 75, 0, 25};}
-		if (inNumCharts == 3) {return new int[] {40, 60, 20, 20, 0, 20};}
-		return new int[] {54, 46, 36, 18, 18, 18, 0, 18};
-	}
 }
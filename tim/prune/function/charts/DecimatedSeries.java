@@ -0,0 +1,142 @@
+package tim.prune.function.charts;
+
+import java.util.Arrays;
+
+/**
+ * Class to hold the points of a chart reduced to the output resolution,
+ * keeping the minimum and maximum y values within each column
+ * so that the outline of the chart is the same as with all the points
+ */
+public class DecimatedSeries
+{
+	/** x and y values of the kept points */
+	private double[] _xValues = null, _yValues = null;
+	/** Number of kept points */
+	private int _numPoints = 0;
+	/** Ranges of the values */
+	private double _minX = 0.0, _maxX = 0.0, _minY = 0.0, _maxY = 0.0;
+
+
+	/**
+	 * Constructor, reducing the given series
+	 * @param inX series of x values, which should not decrease
+	 * @param inY series of y values
+	 * @param inNumColumns number of columns in the output
+	 */
+	public DecimatedSeries(ChartSeries inX, ChartSeries inY, int inNumColumns)
+	{
+		final int numPoints = inX.getNumPoints();
+		// First find the ranges of the values
+		boolean foundAny = false;
+		for (int i=0; i<numPoints; i++)
+		{
+			if (inX.hasData(i) && inY.hasData(i))
+			{
+				final double x = inX.getData(i), y = inY.getData(i);
+				if (!foundAny)
+				{
+					_minX = _maxX = x;
+					_minY = _maxY = y;
+					foundAny = true;
+				}
+				_minX = Math.min(_minX, x); _maxX = Math.max(_maxX, x);
+				_minY = Math.min(_minY, y); _maxY = Math.max(_maxY, y);
+			}
+		}
+		final int numColumns = Math.max(1, inNumColumns);
+		_xValues = new double[Math.min(numPoints, 2 * numColumns + 2)];
+		_yValues = new double[_xValues.length];
+		if (!foundAny) {return;}
+		final double xScale = (_maxX > _minX ? (numColumns - 1) / (_maxX - _minX) : 0.0);
+
+		// Then keep the lowest and highest points in each column, in their original order
+		int column = -1;
+		int minIndex = -1, maxIndex = -1;
+		for (int i=0; i<numPoints; i++)
+		{
+			if (!inX.hasData(i) || !inY.hasData(i)) {continue;}
+			final int pointColumn = (int) ((inX.getData(i) - _minX) * xScale);
+			if (pointColumn != column)
+			{
+				addColumn(inX, inY, minIndex, maxIndex);
+				column = pointColumn;
+				minIndex = maxIndex = i;
+			}
+			else
+			{
+				if (inY.getData(i) < inY.getData(minIndex)) {minIndex = i;}
+				if (inY.getData(i) > inY.getData(maxIndex)) {maxIndex = i;}
+			}
+		}
+		addColumn(inX, inY, minIndex, maxIndex);
+	}
+
+	/**
+	 * Add the points for one column
+	 * @param inX series of x values
+	 * @param inY series of y values
+	 * @param inMinIndex index of lowest point in column
+	 * @param inMaxIndex index of highest point in column
+	 */
+	private void addColumn(ChartSeries inX, ChartSeries inY, int inMinIndex, int inMaxIndex)
+	{
+		if (inMinIndex < 0) {return;}
+		final int firstIndex = Math.min(inMinIndex, inMaxIndex), secondIndex = Math.max(inMinIndex, inMaxIndex);
+		addPoint(inX.getData(firstIndex), inY.getData(firstIndex));
+		if (secondIndex != firstIndex) {
+			addPoint(inX.getData(secondIndex), inY.getData(secondIndex));
+		}
+	}
+
+	/**
+	 * Add a single point, growing the arrays if the x values weren't in order
+	 * @param inX x value
+	 * @param inY y value
+	 */
+	private void addPoint(double inX, double inY)
+	{
+		if (_numPoints == _xValues.length)
+		{
+			_xValues = Arrays.copyOf(_xValues, Math.max(16, _numPoints * 2));
+			_yValues = Arrays.copyOf(_yValues, _xValues.length);
+		}
+		_xValues[_numPoints] = inX;
+		_yValues[_numPoints] = inY;
+		_numPoints++;
+	}
+
+	/** @return number of kept points */
+	public int getNumPoints() {
+		return _numPoints;
+	}
+
+	/** @return x value of the given point */
+	public double getX(int inIndex) {
+		return _xValues[inIndex];
+	}
+
+	/** @return y value of the given point */
+	public double getY(int inIndex) {
+		return _yValues[inIndex];
+	}
+
+	/** @return minimum x value */
+	public double getMinX() {
+		return _minX;
+	}
+
+	/** @return maximum x value */
+	public double getMaxX() {
+		return _maxX;
+	}
+
+	/** @return minimum y value */
+	public double getMinY() {
+		return _minY;
+	}
+
+	/** @return maximum y value */
+	public double getMaxY() {
+		return _maxY;
+	}
+}
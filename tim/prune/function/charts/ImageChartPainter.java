@@ -0,0 +1,95 @@
+package tim.prune.function.charts;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Chart painter to draw onto an image
+ */
+public class ImageChartPainter implements ChartPainter
+{
+	/** Image to draw on */
+	private final BufferedImage _image;
+	/** Graphics object for image */
+	private final Graphics2D _graphics;
+
+
+	/**
+	 * Constructor
+	 * @param inWidth width of image
+	 * @param inHeight height of image
+	 * @param inFont font to use for text
+	 */
+	public ImageChartPainter(int inWidth, int inHeight, Font inFont)
+	{
+		_image = new BufferedImage(inWidth, inHeight, BufferedImage.TYPE_INT_RGB);
+		_graphics = _image.createGraphics();
+		_graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		_graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		_graphics.setColor(Color.WHITE);
+		_graphics.fillRect(0, 0, inWidth, inHeight);
+		_graphics.setFont(inFont);
+	}
+
+	/** Draw a straight line */
+	public void drawLine(double inX1, double inY1, double inX2, double inY2, Color inColour)
+	{
+		_graphics.setColor(inColour);
+		_graphics.draw(new Line2D.Double(inX1, inY1, inX2, inY2));
+	}
+
+	/** Draw a filled polygon with an outline */
+	public void drawPolygon(double[] inXs, double[] inYs, int inNumPoints, Color inFill, Color inOutline)
+	{
+		if (inNumPoints < 2) {return;}
+		Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, inNumPoints);
+		path.moveTo(inXs[0], inYs[0]);
+		for (int i=1; i<inNumPoints; i++) {
+			path.lineTo(inXs[i], inYs[i]);
+		}
+		path.closePath();
+		_graphics.setColor(inFill);
+		_graphics.fill(path);
+		_graphics.setColor(inOutline);
+		_graphics.draw(path);
+	}
+
+	/** Draw some text */
+	public void drawText(String inText, double inX, double inY, int inAlign, boolean inVertical, Color inColour)
+	{
+		_graphics.setColor(inColour);
+		final int width = _graphics.getFontMetrics().stringWidth(inText);
+		final double offset = (inAlign == ALIGN_CENTRE ? width / 2.0 : (inAlign == ALIGN_RIGHT ? width : 0.0));
+		if (inVertical)
+		{
+			AffineTransform oldTransform = _graphics.getTransform();
+			_graphics.translate(inX, inY);
+			_graphics.rotate(-Math.PI / 2.0);
+			_graphics.drawString(inText, (float) -offset, 0.0f);
+			_graphics.setTransform(oldTransform);
+		}
+		else {
+			_graphics.drawString(inText, (float) (inX - offset), (float) inY);
+		}
+	}
+
+	/** Finish drawing */
+	public void finish()
+	{
+		_graphics.dispose();
+	}
+
+	/**
+	 * @return the finished image
+	 */
+	public BufferedImage getImage()
+	{
+		return _image;
+	}
+}
@@ -0,0 +1,134 @@
+package tim.prune.function.charts;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Chart painter to write the chart as svg elements
+ */
+public class SvgChartPainter implements ChartPainter
+{
+	/** Writer for the svg file */
+	private final Writer _writer;
+	/** Font size in pixels */
+	private final int _fontSize;
+	/** First exception thrown while writing, to be rethrown at the end */
+	private IOException _exception = null;
+
+
+	/**
+	 * Constructor, writing the start of the svg file
+	 * @param inWriter writer to use
+	 * @param inWidth width of chart
+	 * @param inHeight height of chart
+	 * @param inFontSize font size in pixels
+	 */
+	public SvgChartPainter(Writer inWriter, int inWidth, int inHeight, int inFontSize)
+	{
+		_writer = inWriter;
+		_fontSize = inFontSize;
+		write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"" + inWidth
+			+ "\" height=\"" + inHeight + "\" viewBox=\"0 0 " + inWidth + " " + inHeight + "\">\n");
+		write("<rect x=\"0\" y=\"0\" width=\"" + inWidth + "\" height=\"" + inHeight + "\" fill=\"white\"/>\n");
+	}
+
+	/** Draw a straight line */
+	public void drawLine(double inX1, double inY1, double inX2, double inY2, Color inColour)
+	{
+		write("<line x1=\"" + format(inX1) + "\" y1=\"" + format(inY1) + "\" x2=\"" + format(inX2)
+			+ "\" y2=\"" + format(inY2) + "\" stroke=\"" + makeColour(inColour) + "\"/>\n");
+	}
+
+	/** Draw a filled polygon with an outline */
+	public void drawPolygon(double[] inXs, double[] inYs, int inNumPoints, Color inFill, Color inOutline)
+	{
+		if (inNumPoints < 2) {return;}
+		write("<polygon fill=\"" + makeColour(inFill) + "\" fill-opacity=\"" + format(inFill.getAlpha() / 255.0)
+			+ "\" stroke=\"" + makeColour(inOutline) + "\" points=\"");
+		StringBuilder builder = new StringBuilder();
+		for (int i=0; i<inNumPoints; i++)
+		{
+			builder.append(format(inXs[i])).append(',').append(format(inYs[i])).append(' ');
+			// Write the points in batches so that the string doesn't get too big
+			if (builder.length() > 8000)
+			{
+				write(builder.toString());
+				builder.setLength(0);
+			}
+		}
+		write(builder.toString());
+		write("\"/>\n");
+	}
+
+	/** Draw some text */
+	public void drawText(String inText, double inX, double inY, int inAlign, boolean inVertical, Color inColour)
+	{
+		final String[] anchors = {"start", "middle", "end"};
+		write("<text x=\"" + format(inX) + "\" y=\"" + format(inY) + "\" font-family=\"sans-serif\" font-size=\""
+			+ _fontSize + "\" text-anchor=\"" + anchors[inAlign] + "\" fill=\"" + makeColour(inColour) + "\"");
+		if (inVertical) {
+			write(" transform=\"rotate(-90 " + format(inX) + " " + format(inY) + ")\"");
+		}
+		write(">" + escape(inText) + "</text>\n");
+	}
+
+	/**
+	 * Finish the svg file
+	 * @throws IOException if any of the writing failed
+	 */
+	public void finish() throws IOException
+	{
+		write("</svg>\n");
+		if (_exception != null) {
+			throw _exception;
+		}
+	}
+
+	/**
+	 * Write the given string, remembering the first exception
+	 * @param inString string to write
+	 */
+	private void write(String inString)
+	{
+		if (_exception != null) {return;}
+		try {
+			_writer.write(inString);
+		}
+		catch (IOException ioe) {
+			_exception = ioe;
+		}
+	}
+
+	/**
+	 * @param inValue coordinate value
+	 * @return value rounded to one decimal place
+	 */
+	private static String format(double inValue)
+	{
+		final long tenths = Math.round(inValue * 10.0);
+		if (tenths % 10 == 0) {
+			return "" + (tenths / 10);
+		}
+		return (tenths < 0 ? "-" : "") + (Math.abs(tenths) / 10) + "." + (Math.abs(tenths) % 10);
+	}
+
+	/**
+	 * @param inColour colour object
+	 * @return colour as hex string
+	 */
+	private static String makeColour(Color inColour)
+	{
+		return String.format("#%06x", inColour.getRGB() & 0xffffff);
+	}
+
+	/**
+	 * @param inText text to write
+	 * @return text with xml special characters escaped
+	 */
+	private static String escape(String inText)
+	{
+		return inText.replaceAll("&", "&amp;").replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+	}
+}
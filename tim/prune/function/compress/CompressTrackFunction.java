@@ -29,6 +29,7 @@ public class CompressTrackFunction extends MarkAndDeleteFunction
 	private JDialog _dialog = null;
 	private JButton _okButton = null;
 	private CompressionAlgorithm[] _algorithms = null;
+	private TrackDetails _trackDetails = null;
 	private SummaryLabel _summaryLabel = null;
 
 
@@ -62,12 +63,18 @@ public class CompressTrackFunction extends MarkAndDeleteFunction
 			_dialog.getContentPane().add(makeDialogComponents());
 			_dialog.pack();
 		}
+		// Track may have changed since last time, so recalculate everything once
+		_trackDetails.initialise();
+		for (int i=0; i<_algorithms.length; i++) {
+			_algorithms[i].clearCache();
+		}
 		preview();
 		_dialog.setVisible(true);
 	}
 
 	/**
-	 * Preview the compression by calling each algorithm in turn
+	 * Preview the compression by calling each algorithm in turn,
+	 * each of which only recalculates if its inputs have changed
 	 * @return array of delete flags
 	 */
 	private boolean[] preview()
@@ -150,14 +157,17 @@ public class CompressTrackFunction extends MarkAndDeleteFunction
 			};
 		};
 		// construct track details to be used by all algorithms
-		TrackDetails details = new TrackDetails(_track);
+		_trackDetails = new TrackDetails(_track);
 		// make array of algorithm objects
 		_algorithms = new CompressionAlgorithm[] {
-			new DuplicatePointAlgorithm(_track, details, changeListener),
-			new ClosePointsAlgorithm(_track, details, changeListener),
-			new WackyPointAlgorithm(_track, details, changeListener),
-			new SingletonAlgorithm(_track, details, changeListener),
-			new DouglasPeuckerAlgorithm(_track, details, changeListener)
+			new DuplicatePointAlgorithm(_track, _trackDetails, changeListener),
+			new ClosePointsAlgorithm(_track, _trackDetails, changeListener),
+			new WackyPointAlgorithm(_track, _trackDetails, changeListener),
+			new SingletonAlgorithm(_track, _trackDetails, changeListener),
+			new DouglasPeuckerAlgorithm(_track, _trackDetails, changeListener),
+			new VisvalingamAlgorithm(_track, _trackDetails, changeListener),
+			new OpheimAlgorithm(_track, _trackDetails, changeListener),
+			new DeadReckoningAlgorithm(_track, _trackDetails, changeListener)
 		};
 	}
 
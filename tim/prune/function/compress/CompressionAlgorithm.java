@@ -3,6 +3,7 @@ package tim.prune.function.compress;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
 
 import javax.swing.BorderFactory;
 import javax.swing.JCheckBox;
@@ -20,6 +21,14 @@ public abstract class CompressionAlgorithm
 	protected SummaryLabel _summaryLabel = null;
 	protected Track _track = null;
 	protected TrackDetails _trackDetails = null;
+	/** Copy of the flags given to the last preview, to see whether they have changed */
+	private boolean[] _cachedInputFlags = null;
+	/** Flags resulting from the last preview */
+	private boolean[] _cachedResultFlags = null;
+	/** Number of points deleted by the last preview */
+	private int _cachedNumDeleted = 0;
+	/** Settings used for the last preview */
+	private String _cachedSettings = null;
 
 
 	/**
@@ -68,7 +77,9 @@ public abstract class CompressionAlgorithm
 	}
 
 	/**
-	 * Preview the algorithm by counting the number of points deleted
+	 * Preview the algorithm by counting the number of points deleted.
+	 * If neither the incoming flags nor the settings have changed since
+	 * the last preview, then the previous result is reused.
 	 * @param inFlags array of deletion flags from previous algorithms
 	 * @return number of points to be deleted by this algorithm
 	 */
@@ -77,9 +88,22 @@ public abstract class CompressionAlgorithm
 		int numDeleted = 0;
 		if (isActivated())
 		{
-			// Run the compression and set the deletion flags
-			_trackDetails.initialise();
-			numDeleted = compress(inFlags);
+			final String settings = getSettings();
+			if (_cachedResultFlags != null && settings.equals(_cachedSettings)
+				&& Arrays.equals(inFlags, _cachedInputFlags))
+			{
+				System.arraycopy(_cachedResultFlags, 0, inFlags, 0, inFlags.length);
+				numDeleted = _cachedNumDeleted;
+			}
+			else
+			{
+				// Run the compression and set the deletion flags
+				_cachedInputFlags = inFlags.clone();
+				numDeleted = compress(inFlags);
+				_cachedResultFlags = inFlags.clone();
+				_cachedNumDeleted = numDeleted;
+				_cachedSettings = settings;
+			}
 			_summaryLabel.setValue(numDeleted);
 		}
 		else {
@@ -88,6 +112,22 @@ public abstract class CompressionAlgorithm
 		return numDeleted;
 	}
 
+	/**
+	 * Forget the result of the last preview, for example because the track has changed
+	 */
+	public void clearCache()
+	{
+		_cachedInputFlags = _cachedResultFlags = null;
+		_cachedSettings = null;
+	}
+
+	/**
+	 * @return string describing the current settings of the algorithm, to see when they change
+	 */
+	protected String getSettings()
+	{
+		return "";
+	}
 
 	/**
 	 * @return key to use for title text of algorithm
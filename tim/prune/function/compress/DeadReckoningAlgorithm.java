@@ -0,0 +1,142 @@
+package tim.prune.function.compress;
+
+import java.awt.Component;
+import java.awt.event.ActionListener;
+
+import tim.prune.data.DataPoint;
+import tim.prune.data.Timestamp;
+import tim.prune.data.Track;
+
+/**
+ * Dead-reckoning algorithm for compression, using the timestamps of the points.
+ * From each kept point, the velocity towards the following point is used to predict
+ * where the next points should be at their times. Points close enough to their
+ * predicted positions are removed, and when a point is too far from its prediction,
+ * a new prediction is started from the last point which was close enough.
+ * Points without timestamps are kept.
+ */
+public class DeadReckoningAlgorithm extends SegmentCompressionAlgorithm
+{
+	/**
+	 * Constructor
+	 * @param inTrack track object
+	 * @param inDetails track details object
+	 * @param inListener listener to attach to activation control
+	 */
+	public DeadReckoningAlgorithm(Track inTrack, TrackDetails inDetails, ActionListener inListener)
+	{
+		super(inTrack, inDetails, inListener);
+	}
+
+	/**
+	 * Compress a single segment
+	 * @param inIndexes array of point indexes in the segment
+	 * @param inNumPoints number of points in the segment
+	 * @param inThreshold distance threshold
+	 * @param inFlags deletion flags to set
+	 * @return number of points deleted
+	 */
+	protected int compressSegment(int[] inIndexes, int inNumPoints, double inThreshold,
+		boolean[] inFlags)
+	{
+		if (inNumPoints < 3) {return 0;} // segment too short to compress
+		final double threshold2 = inThreshold * inThreshold;
+		final int lastPos = inNumPoints - 1;
+		// Get the times of all the points in seconds, relative to the first one with a timestamp
+		double[] seconds = new double[inNumPoints];
+		Timestamp firstTimestamp = null;
+		for (int i=0; i<inNumPoints; i++)
+		{
+			DataPoint point = _track.getPoint(inIndexes[i]);
+			if (point.hasTimestamp())
+			{
+				if (firstTimestamp == null) {firstTimestamp = point.getTimestamp();}
+				seconds[i] = point.getTimestamp().getMillisecondsSince(firstTimestamp) / 1000.0;
+			}
+			else {
+				seconds[i] = Double.NaN;
+			}
+		}
+		if (firstTimestamp == null) {return 0;} // no timestamps, nothing to do
+
+		int numDeleted = 0;
+		int anchorPos = 0;
+		while (anchorPos < lastPos - 1)
+		{
+			// Velocity is given by the anchor and the following point
+			final int velocityPos = anchorPos + 1;
+			final double timeDiff = seconds[velocityPos] - seconds[anchorPos];
+			// Can't predict without a forward time difference, so just move on
+			if (!(timeDiff > 0.0) || mustKeep(inIndexes[velocityPos]))
+			{
+				anchorPos = velocityPos;
+				continue;
+			}
+			final double anchorX = _track.getX(inIndexes[anchorPos]);
+			final double anchorY = _track.getY(inIndexes[anchorPos]);
+			final double xSpeed = (_track.getX(inIndexes[velocityPos]) - anchorX) / timeDiff;
+			final double ySpeed = (_track.getY(inIndexes[velocityPos]) - anchorY) / timeDiff;
+			// Move forwards while the points are close to their predicted positions
+			int pos = velocityPos + 1;
+			while (pos < lastPos && !mustKeep(inIndexes[pos])
+				&& isPredicted(inIndexes[pos], seconds[pos] - seconds[anchorPos], anchorX, anchorY,
+					xSpeed, ySpeed, threshold2))
+			{
+				pos++;
+			}
+			// Now pos is either the end, a point which must be kept or a point which wasn't predicted.
+			// In the last case the point before it is also kept, so that the straight line
+			// from the anchor stays close to all the removed points
+			int newAnchorPos = pos;
+			if (!isPredicted(inIndexes[pos], seconds[pos] - seconds[anchorPos], anchorX, anchorY,
+				xSpeed, ySpeed, threshold2))
+			{
+				newAnchorPos = pos - 1;
+			}
+			// Delete the predicted points between the anchor and the new anchor
+			for (int i=anchorPos+1; i<newAnchorPos; i++)
+			{
+				inFlags[inIndexes[i]] = true;
+				numDeleted++;
+			}
+			anchorPos = newAnchorPos;
+		}
+		return numDeleted;
+	}
+
+	/**
+	 * Check whether a point is close to its predicted position
+	 * @param inPointIndex index of point in track
+	 * @param inSeconds seconds since the anchor point, or NaN if unknown
+	 * @param inAnchorX x value of anchor
+	 * @param inAnchorY y value of anchor
+	 * @param inXSpeed speed in x direction per second
+	 * @param inYSpeed speed in y direction per second
+	 * @param inThreshold2 square of distance threshold
+	 * @return true if point is close enough to the prediction
+	 */
+	private boolean isPredicted(int inPointIndex, double inSeconds, double inAnchorX, double inAnchorY,
+		double inXSpeed, double inYSpeed, double inThreshold2)
+	{
+		final double dx = _track.getX(inPointIndex) - (inAnchorX + inXSpeed * inSeconds);
+		final double dy = _track.getY(inPointIndex) - (inAnchorY + inYSpeed * inSeconds);
+		// a missing time gives NaN, which fails the comparison
+		return dx * dx + dy * dy <= inThreshold2;
+	}
+
+	/**
+	 * @return specific gui components for dialog
+	 */
+	protected Component getSpecificGuiComponents()
+	{
+		return getSpecificGuiComponents("dialog.compress.deadreckoning.paramdesc", "2000");
+	}
+
+	/**
+	 * @return title key for box
+	 */
+	protected String getTitleTextKey()
+	{
+		return "dialog.compress.deadreckoning.title";
+	}
+}
@@ -0,0 +1,274 @@
+package tim.prune.function.compress;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import tim.prune.data.DataPoint;
+import tim.prune.data.Track;
+
+/**
+ * Class to run the Douglas-Peucker algorithm over primitive arrays of x and y values.
+ * The algorithm is iterative, using an explicit stack of index ranges instead
+ * of recursion, and doesn't create any objects per point.
+ * Large tracks are split so that separate segments, and separate halves of
+ * long segments, can be processed in parallel on the common fork-join pool.
+ */
+public class DouglasPeuckerCompressor
+{
+	/** Track, only used for segments which start and end at the same place */
+	private final Track _track;
+	/** x values of points */
+	private final double[] _xValues;
+	/** y values of points */
+	private final double[] _yValues;
+	/** Flags for each point, 1 to keep, -1 already deleted, 0 unknown */
+	private final int[] _keepFlags;
+	/** Distance threshold */
+	private final double _threshold;
+	/** True to fork large ranges into separate tasks */
+	private final boolean _parallel;
+
+	/** Minimum total number of points for which the work is done in parallel */
+	private static final int MIN_POINTS_FOR_PARALLEL = 20000;
+	/** Minimum number of points in a range for it to be forked as a separate task */
+	private static final int MIN_POINTS_TO_FORK = 5000;
+
+
+	/**
+	 * Constructor
+	 * @param inTrack track from which the values were taken
+	 * @param inXValues x values of all points
+	 * @param inYValues y values of all points
+	 * @param inKeepFlags keep flags for all points, will be modified
+	 * @param inThreshold distance threshold
+	 */
+	public DouglasPeuckerCompressor(Track inTrack, double[] inXValues, double[] inYValues, int[] inKeepFlags,
+		double inThreshold)
+	{
+		_track = inTrack;
+		_xValues = inXValues;
+		_yValues = inYValues;
+		_keepFlags = inKeepFlags;
+		_threshold = inThreshold;
+		_parallel = inKeepFlags.length >= MIN_POINTS_FOR_PARALLEL
+			&& Runtime.getRuntime().availableProcessors() > 1;
+	}
+
+	/**
+	 * Compress the given segments, setting the keep flags of the points to be kept
+	 * @param inSegStarts start indexes of segments
+	 * @param inSegEnds end indexes of segments (inclusive)
+	 * @param inNumSegments number of segments
+	 */
+	public void compressSegments(int[] inSegStarts, int[] inSegEnds, int inNumSegments)
+	{
+		if (inNumSegments <= 0) {return;}
+		if (_parallel) {
+			ForkJoinPool.commonPool().invoke(new SegmentsTask(inSegStarts, inSegEnds, 0, inNumSegments));
+		}
+		else
+		{
+			for (int i=0; i<inNumSegments; i++) {
+				compressRange(inSegStarts[i], inSegEnds[i], null);
+			}
+		}
+	}
+
+	/**
+	 * Compress the given range of points without recursion
+	 * @param inStart index of start point
+	 * @param inEnd index of end point
+	 * @param inForkedTasks list to hold forked tasks, or null to do all the work in this thread
+	 */
+	private void compressRange(int inStart, int inEnd, ArrayList<RangeTask> inForkedTasks)
+	{
+		if (inEnd - inStart < 2) {return;} // range too short to compress
+		// Each kept point adds at most one more range, so the stack can't grow beyond this
+		int[] stack = new int[2 * (inEnd - inStart + 1)];
+		int stackSize = 0;
+		stack[stackSize++] = inStart;
+		stack[stackSize++] = inEnd;
+		while (stackSize > 0)
+		{
+			final int end = stack[--stackSize];
+			final int start = stack[--stackSize];
+			final int splitIndex = findSplitIndex(start, end);
+			if (splitIndex < 0) {continue;}
+			// Process the range before and the range after the split point
+			if (inForkedTasks != null && splitIndex - start >= MIN_POINTS_TO_FORK
+				&& end - splitIndex >= MIN_POINTS_TO_FORK)
+			{
+				RangeTask task = new RangeTask(start, splitIndex);
+				task.fork();
+				inForkedTasks.add(task);
+			}
+			else if (splitIndex - start >= 2)
+			{
+				stack[stackSize++] = start;
+				stack[stackSize++] = splitIndex;
+			}
+			if (end - splitIndex >= 2)
+			{
+				stack[stackSize++] = splitIndex;
+				stack[stackSize++] = end;
+			}
+		}
+	}
+
+	/**
+	 * Find the point at which to split the given range
+	 * @param inStart index of start point
+	 * @param inEnd index of end point
+	 * @return index of split point, or -1 if range doesn't need to be split
+	 */
+	private int findSplitIndex(int inStart, int inEnd)
+	{
+		final double startX = _xValues[inStart], startY = _yValues[inStart];
+		final double endX = _xValues[inEnd], endY = _yValues[inEnd];
+		// Calculate parameters of straight line AB between first and last
+		final double abX = endX - startX, abY = endY - startY;
+		final double dist2AB = abX * abX + abY * abY;
+		if (dist2AB <= 0.0)
+		{
+			// start and end are the same, so split at the furthest point from start without marking it
+			return getFurthestPointIndex(inStart, inEnd);
+		}
+		// unit vector perpendicular to AB
+		final double distAB = Math.sqrt(dist2AB);
+		final double perpX = abY / distAB, perpY = -abX / distAB;
+
+		double maxDist = -1.0, dist = -1.0;
+		int furthestIndex = -1;
+		for (int i=inStart+1; i<inEnd; i++)
+		{
+			if (_keepFlags[i] == 0) // unknown status
+			{
+				final double acX = _xValues[i] - startX, acY = _yValues[i] - startY;
+				final double distAP = (abX * acX + abY * acY) / dist2AB;
+				// calc distance from point to line depending on distAP
+				if (distAP < 0.0) {
+					dist = Math.sqrt(acX * acX + acY * acY); // outside line segment AB on the A side
+				}
+				else if (distAP > 1.0)
+				{
+					// outside on the B side
+					final double bcX = _xValues[i] - endX, bcY = _yValues[i] - endY;
+					dist = Math.sqrt(bcX * bcX + bcY * bcY);
+				}
+				else {
+					// P lies between A and B so use dot product
+					dist = Math.abs(perpX * acX + perpY * acY);
+				}
+				if (dist > maxDist)
+				{
+					maxDist = dist;
+					furthestIndex = i;
+				}
+			}
+		}
+		// Check furthest point and see if it's further than the threshold
+		if (maxDist > _threshold)
+		{
+			_keepFlags[furthestIndex] = 1;
+			return furthestIndex;
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the index of the track point furthest away from the start point,
+	 * measured along the great circle and ignoring waypoints
+	 * @param inStart start index of range
+	 * @param inEnd end index of range
+	 * @return index of furthest point, or -1 if none found
+	 */
+	private int getFurthestPointIndex(int inStart, int inEnd)
+	{
+		int furthestIndex = -1;
+		final DataPoint startPoint = _track.getPoint(inStart);
+		double maxDist = 0.0;
+		for (int i=inStart+1; i<inEnd; i++)
+		{
+			DataPoint p = _track.getPoint(i);
+			if (!p.isWaypoint())
+			{
+				final double distFromStart = DataPoint.calculateRadiansBetween(startPoint, p);
+				if (distFromStart > maxDist)
+				{
+					furthestIndex = i;
+					maxDist = distFromStart;
+				}
+			}
+		}
+		return furthestIndex;
+	}
+
+
+	/**
+	 * Task to compress a list of segments, splitting the list in two if there's more than one
+	 */
+	private class SegmentsTask extends RecursiveAction
+	{
+		private final int[] _segStarts, _segEnds;
+		private final int _from, _to;
+
+		/**
+		 * Constructor
+		 * @param inSegStarts start indexes of segments
+		 * @param inSegEnds end indexes of segments
+		 * @param inFrom index of first segment to process
+		 * @param inTo index after last segment to process
+		 */
+		SegmentsTask(int[] inSegStarts, int[] inSegEnds, int inFrom, int inTo)
+		{
+			_segStarts = inSegStarts;
+			_segEnds = inSegEnds;
+			_from = inFrom;
+			_to = inTo;
+		}
+
+		/** Do the work */
+		protected void compute()
+		{
+			if (_to - _from > 1)
+			{
+				final int middle = (_from + _to) / 2;
+				invokeAll(new SegmentsTask(_segStarts, _segEnds, _from, middle),
+					new SegmentsTask(_segStarts, _segEnds, middle, _to));
+			}
+			else {
+				new RangeTask(_segStarts[_from], _segEnds[_from]).compute();
+			}
+		}
+	}
+
+	/**
+	 * Task to compress a single range of points, forking off large sub-ranges
+	 */
+	private class RangeTask extends RecursiveAction
+	{
+		private final int _start, _end;
+
+		/**
+		 * Constructor
+		 * @param inStart index of start point
+		 * @param inEnd index of end point
+		 */
+		RangeTask(int inStart, int inEnd)
+		{
+			_start = inStart;
+			_end = inEnd;
+		}
+
+		/** Do the work */
+		protected void compute()
+		{
+			ArrayList<RangeTask> forkedTasks = new ArrayList<RangeTask>();
+			compressRange(_start, _end, forkedTasks);
+			for (RangeTask task : forkedTasks) {
+				task.join();
+			}
+		}
+	}
+}
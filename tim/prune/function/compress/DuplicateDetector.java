@@ -0,0 +1,250 @@
+package tim.prune.function.compress;
+
+import tim.prune.data.DataPoint;
+import tim.prune.data.Distance;
+import tim.prune.data.Timestamp;
+import tim.prune.data.Track;
+import tim.prune.data.UnitSetLibrary;
+
+/**
+ * Class to find duplicate points anywhere in the track, not just nearby,
+ * using a hash of the position, timestamp and waypoint name of each point.
+ * In tolerance mode the positions are hashed into cells at least as big as the tolerance,
+ * and the neighbouring cells are checked using the actual distance between the points.
+ * Doesn't need any gui so it can also be used without the compress dialog
+ */
+public class DuplicateDetector
+{
+	/** Ways of comparing points */
+	public enum Mode
+	{
+		/** Exactly the same position */
+		EXACT,
+		/** Position within the tolerance */
+		TOLERANCE,
+		/** Exactly the same position and the same timestamp */
+		SAME_TIMESTAMP
+	}
+
+	/** Comparison mode */
+	private Mode _mode = Mode.EXACT;
+	/** Size of latitude cells in degrees, or 0 for exact comparison */
+	private double _latCellSize = 0.0;
+	/** Tolerance in radians, only used for tolerance mode */
+	private double _toleranceRadians = 0.0;
+
+	/** Reference time for getting milliseconds from timestamps */
+	private static final Timestamp EPOCH = new Timestamp(0L);
+
+
+	/**
+	 * Constructor
+	 * @param inMode comparison mode
+	 * @param inToleranceMetres tolerance in metres, only used for tolerance mode
+	 */
+	public DuplicateDetector(Mode inMode, double inToleranceMetres)
+	{
+		_mode = inMode;
+		if (inMode == Mode.TOLERANCE && inToleranceMetres > 0.0)
+		{
+			_toleranceRadians = Distance.convertDistanceToRadians(inToleranceMetres, UnitSetLibrary.UNITS_METRES);
+			_latCellSize = Math.toDegrees(_toleranceRadians);
+		}
+	}
+
+	/**
+	 * Find the duplicate points in the track in a single pass.
+	 * The first of each set of duplicates is kept, and points with media are never deleted
+	 * @param inTrack track object
+	 * @param inFlags deletion flags from previous algorithms, to be set for the duplicates
+	 * @return number of points newly flagged for deletion
+	 */
+	public int findDuplicates(Track inTrack, boolean[] inFlags)
+	{
+		final int numPoints = inTrack.getNumPoints();
+		// Last kept point for each key, and for each kept point the previous one with the same key
+		LongIndexMap lastPoints = new LongIndexMap(numPoints);
+		int[] previousPoints = new int[numPoints];
+		int numDeleted = 0;
+		for (int i=0; i<numPoints; i++)
+		{
+			// Points already deleted can't be duplicated
+			DataPoint point = inTrack.getPoint(i);
+			if (inFlags[i] || point == null || !point.isValid()) {continue;}
+			if (_mode == Mode.SAME_TIMESTAMP && !point.hasTimestamp()) {continue;}
+			if (!point.hasMedia() && hasMatch(inTrack, point, lastPoints, previousPoints))
+			{
+				inFlags[i] = true;
+				numDeleted++;
+			}
+			else {
+				previousPoints[i] = lastPoints.put(getKey(point), i);
+			}
+		}
+		return numDeleted;
+	}
+
+	/**
+	 * Check whether the given point matches any of the kept points.
+	 * In tolerance mode, the neighbouring cells are checked too
+	 * @param inTrack track object
+	 * @param inPoint point to check
+	 * @param inLastPoints map from key to last kept point with that key
+	 * @param inPreviousPoints indexes of previous kept points with the same key
+	 * @return true if the point is a duplicate
+	 */
+	private boolean hasMatch(Track inTrack, DataPoint inPoint, LongIndexMap inLastPoints, int[] inPreviousPoints)
+	{
+		if (_latCellSize <= 0.0) {
+			return hasMatch(inTrack, inPoint, getKey(inPoint), inLastPoints, inPreviousPoints);
+		}
+		final double latitude = inPoint.getLatitude().getDouble();
+		final double longitude = inPoint.getLongitude().getDouble();
+		final long latCell = getLatitudeCell(latitude);
+		for (long row = latCell-1; row <= latCell+1; row++)
+		{
+			final long lonCell = getLongitudeCell(row, longitude);
+			for (long column = lonCell-1; column <= lonCell+1; column++)
+			{
+				if (hasMatch(inTrack, inPoint, getCellKey(inPoint, row, column), inLastPoints, inPreviousPoints)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether the given point matches any of the kept points with the given key
+	 * @param inTrack track object
+	 * @param inPoint point to check
+	 * @param inKey key to look up
+	 * @param inLastPoints map from key to last kept point with that key
+	 * @param inPreviousPoints indexes of previous kept points with the same key
+	 * @return true if the point is a duplicate
+	 */
+	private boolean hasMatch(Track inTrack, DataPoint inPoint, long inKey, LongIndexMap inLastPoints,
+		int[] inPreviousPoints)
+	{
+		// Check the points really match, in case of a hash collision
+		for (int j = inLastPoints.get(inKey); j >= 0; j = inPreviousPoints[j])
+		{
+			if (isDuplicate(inPoint, inTrack.getPoint(j))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param inPoint point
+	 * @return hash of the position, time and name according to the mode
+	 */
+	private long getKey(DataPoint inPoint)
+	{
+		final double latitude = inPoint.getLatitude().getDouble();
+		final double longitude = inPoint.getLongitude().getDouble();
+		if (_latCellSize > 0.0)
+		{
+			final long latCell = getLatitudeCell(latitude);
+			return getCellKey(inPoint, latCell, getLongitudeCell(latCell, longitude));
+		}
+		long key = mix(Double.doubleToLongBits(latitude));
+		key = mix(key ^ Double.doubleToLongBits(longitude));
+		if (_mode == Mode.SAME_TIMESTAMP) {
+			key = mix(key ^ getMilliseconds(inPoint));
+		}
+		return addName(key, inPoint);
+	}
+
+	/**
+	 * @param inPoint point
+	 * @param inLatCell index of latitude cell
+	 * @param inLonCell index of longitude cell
+	 * @return hash of the cell and name for tolerance mode
+	 */
+	private static long getCellKey(DataPoint inPoint, long inLatCell, long inLonCell)
+	{
+		final long key = mix(mix(inLatCell) ^ inLonCell);
+		return addName(key, inPoint);
+	}
+
+	/**
+	 * @param inKey hash of position
+	 * @param inPoint point
+	 * @return hash including the waypoint name, if any
+	 */
+	private static long addName(long inKey, DataPoint inPoint)
+	{
+		if (inPoint.isWaypoint()) {
+			return mix(inKey ^ inPoint.getWaypointName().hashCode() ^ 0x100000000L);
+		}
+		return inKey;
+	}
+
+	/**
+	 * Check whether the second point is a duplicate of the first one
+	 * @param inPoint point to check
+	 * @param inOther earlier point with the same key
+	 * @return true if the points match according to the mode
+	 */
+	private boolean isDuplicate(DataPoint inPoint, DataPoint inOther)
+	{
+		if (inPoint.isWaypoint() != inOther.isWaypoint()
+			|| (inPoint.isWaypoint() && !inPoint.getWaypointName().equals(inOther.getWaypointName())))
+		{
+			return false;
+		}
+		if (_latCellSize > 0.0) {
+			return DataPoint.calculateRadiansBetween(inPoint, inOther) <= _toleranceRadians;
+		}
+		return inPoint.getLatitude().getDouble() == inOther.getLatitude().getDouble()
+			&& inPoint.getLongitude().getDouble() == inOther.getLongitude().getDouble()
+			&& (_mode != Mode.SAME_TIMESTAMP || getMilliseconds(inPoint) == getMilliseconds(inOther));
+	}
+
+	/**
+	 * @param inLatitude latitude in degrees
+	 * @return index of latitude cell
+	 */
+	private long getLatitudeCell(double inLatitude)
+	{
+		return (long) Math.floor(inLatitude / _latCellSize);
+	}
+
+	/**
+	 * Longitude cells are wider towards the poles so that they're at least
+	 * as wide as the tolerance, even at the poleward edge of the row
+	 * @param inLatCell index of latitude cell
+	 * @param inLongitude longitude in degrees
+	 * @return index of longitude cell
+	 */
+	private long getLongitudeCell(long inLatCell, double inLongitude)
+	{
+		final double poleLatitude = Math.min(90.0, Math.max(Math.abs(inLatCell * _latCellSize),
+			Math.abs((inLatCell + 1) * _latCellSize)));
+		final double lonCellSize = _latCellSize / Math.max(Math.cos(Math.toRadians(poleLatitude)), 0.01);
+		return (long) Math.floor(inLongitude / lonCellSize);
+	}
+
+	/**
+	 * @param inPoint point with timestamp
+	 * @return milliseconds of timestamp
+	 */
+	private static long getMilliseconds(DataPoint inPoint)
+	{
+		return inPoint.getTimestamp().getMillisecondsSince(EPOCH);
+	}
+
+	/**
+	 * Mix the bits of the given value
+	 * @param inValue value
+	 * @return mixed value
+	 */
+	private static long mix(long inValue)
+	{
+		long result = (inValue ^ (inValue >>> 33)) * 0xFF51AFD7ED558CCDL;
+		result = (result ^ (result >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return result ^ (result >>> 33);
+	}
+}
@@ -1,18 +1,38 @@
 package tim.prune.function.compress;
 
 import java.awt.Component;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 
-import tim.prune.data.DataPoint;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.SwingConstants;
+
+import tim.prune.I18nManager;
 import tim.prune.data.Track;
 
 /**
- * Algorithm for detecting duplicate points to compress
+ * Algorithm for detecting duplicate points to compress,
+ * looking for duplicates anywhere in the track
  */
 public class DuplicatePointAlgorithm extends CompressionAlgorithm
 {
-	/** Number of points before this one to consider as duplicates */
-	private static final int NUM_POINTS_TO_BACKTRACK = 20;
+	/** Dropdown for comparison mode */
+	private JComboBox<String> _modeDropdown = null;
+	/** Text field for tolerance */
+	private JTextField _toleranceField = null;
+	/** Listener from parent dialog */
+	private ActionListener _listener = null;
+
+	/** Comparison modes in the order of the dropdown */
+	private static final DuplicateDetector.Mode[] MODES = {DuplicateDetector.Mode.EXACT,
+		DuplicateDetector.Mode.TOLERANCE, DuplicateDetector.Mode.SAME_TIMESTAMP};
+
 
 	/**
 	 * Constructor
@@ -23,6 +43,7 @@ public class DuplicatePointAlgorithm extends CompressionAlgorithm
 	public DuplicatePointAlgorithm(Track inTrack, TrackDetails inDetails, ActionListener inListener)
 	{
 		super(inTrack, inDetails, inListener);
+		_listener = inListener;
 	}
 
 	/**
@@ -32,33 +53,16 @@ public class DuplicatePointAlgorithm extends CompressionAlgorithm
 	 */
 	protected int compress(boolean[] inFlags)
 	{
-		int numPoints = _track.getNumPoints();
-		int numDeleted = 0;
-		// Loop over all points looking for duplicates
-		for (int i=1; i<numPoints; i++)
-		{
-			// Don't delete points which are already marked as deleted
-			if (!inFlags[i])
-			{
-				DataPoint currPoint = _track.getPoint(i);
-				// Don't delete any photo points or audio points
-				if (!currPoint.hasMedia())
-				{
-					// loop over last few points before this one
-					for (int j=i-NUM_POINTS_TO_BACKTRACK; j<i; j++)
-					{
-						if (j<0) {j=0;} // only look at last few points, but not before 0
-						if (!inFlags[j] && currPoint.isDuplicate(_track.getPoint(j)))
-						{
-							inFlags[i] = true;
-							numDeleted++;
-							break;
-						}
-					}
-				}
-			}
+		final DuplicateDetector.Mode mode = MODES[_modeDropdown.getSelectedIndex()];
+		double tolerance = 0.0;
+		try {
+			tolerance = Double.parseDouble(_toleranceField.getText());
+		}
+		catch (NumberFormatException nfe) {} // ignore, tolerance stays zero
+		if (mode == DuplicateDetector.Mode.TOLERANCE && tolerance <= 0.0) {
+			return 0;
 		}
-		return numDeleted;
+		return new DuplicateDetector(mode, tolerance).findDuplicates(_track, inFlags);
 	}
 
 
@@ -67,8 +71,47 @@ public class DuplicatePointAlgorithm extends CompressionAlgorithm
 	 */
 	protected Component getSpecificGuiComponents()
 	{
-		// no parameters to set, so no gui components
-		return null;
+		JPanel panel = new JPanel();
+		panel.setLayout(new GridLayout(0, 2));
+		// Dropdown for the mode
+		JLabel modeLabel = new JLabel(I18nManager.getText("dialog.compress.duplicates.mode") + " : ");
+		modeLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+		panel.add(modeLabel);
+		final String[] modeKeys = {"exact", "tolerance", "timestamp"};
+		String[] modeNames = new String[modeKeys.length];
+		for (int i=0; i<modeKeys.length; i++) {
+			modeNames[i] = I18nManager.getText("dialog.compress.duplicates.mode." + modeKeys[i]);
+		}
+		_modeDropdown = new JComboBox<String>(modeNames);
+		_modeDropdown.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e)
+			{
+				_toleranceField.setEnabled(_modeDropdown.getSelectedIndex() == 1);
+				if (isActivated()) {_listener.actionPerformed(null);}
+			}
+		});
+		panel.add(_modeDropdown);
+		// Text field for the tolerance
+		JLabel toleranceLabel = new JLabel(I18nManager.getText("dialog.compress.duplicates.tolerance") + " : ");
+		toleranceLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+		panel.add(toleranceLabel);
+		_toleranceField = new JTextField("1");
+		_toleranceField.setEnabled(false);
+		_toleranceField.addKeyListener(new KeyAdapter() {
+			public void keyReleased(KeyEvent e) {
+				if (isActivated()) {_listener.actionPerformed(null);}
+			}
+		});
+		panel.add(_toleranceField);
+		return panel;
+	}
+
+	/**
+	 * @return the selected mode and tolerance, to see when they change
+	 */
+	protected String getSettings()
+	{
+		return _modeDropdown.getSelectedIndex() + ":" + _toleranceField.getText();
 	}
 
 	/**
@@ -0,0 +1,157 @@
+package tim.prune.function.compress;
+
+/**
+ * Binary min-heap of integer items from 0 to n-1, ordered by a double key.
+ * Each item remembers its position in the heap, so that its key can be changed
+ * without searching. All storage is in primitive arrays allocated once.
+ */
+public class IndexedMinHeap
+{
+	/** Items in heap order */
+	private final int[] _heap;
+	/** Position of each item in the heap, or -1 if not in the heap */
+	private final int[] _positions;
+	/** Key of each item */
+	private final double[] _keys;
+	/** Number of items in the heap */
+	private int _size = 0;
+
+
+	/**
+	 * Constructor
+	 * @param inCapacity maximum number of items
+	 */
+	public IndexedMinHeap(int inCapacity)
+	{
+		_heap = new int[inCapacity];
+		_positions = new int[inCapacity];
+		_keys = new double[inCapacity];
+		for (int i=0; i<inCapacity; i++) {
+			_positions[i] = -1;
+		}
+	}
+
+	/** @return true if the heap is empty */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * @param inItem item to check
+	 * @return true if the item is in the heap
+	 */
+	public boolean contains(int inItem) {
+		return _positions[inItem] >= 0;
+	}
+
+	/** @return item with the smallest key, without removing it */
+	public int peek() {
+		return _heap[0];
+	}
+
+	/**
+	 * @param inItem item
+	 * @return current key of item
+	 */
+	public double getKey(int inItem) {
+		return _keys[inItem];
+	}
+
+	/**
+	 * Add an item to the heap
+	 * @param inItem item to add, must not already be in the heap
+	 * @param inKey key of item
+	 */
+	public void add(int inItem, double inKey)
+	{
+		_keys[inItem] = inKey;
+		_heap[_size] = inItem;
+		_positions[inItem] = _size;
+		_size++;
+		siftUp(_size - 1);
+	}
+
+	/**
+	 * Remove and return the item with the smallest key
+	 * @return removed item
+	 */
+	public int poll()
+	{
+		final int item = _heap[0];
+		_size--;
+		_positions[item] = -1;
+		if (_size > 0)
+		{
+			_heap[0] = _heap[_size];
+			_positions[_heap[0]] = 0;
+			siftDown(0);
+		}
+		return item;
+	}
+
+	/**
+	 * Change the key of an item already in the heap
+	 * @param inItem item to change
+	 * @param inKey new key
+	 */
+	public void changeKey(int inItem, double inKey)
+	{
+		final double oldKey = _keys[inItem];
+		_keys[inItem] = inKey;
+		if (inKey < oldKey) {
+			siftUp(_positions[inItem]);
+		}
+		else {
+			siftDown(_positions[inItem]);
+		}
+	}
+
+	/**
+	 * Move the item at the given position up until the heap is ordered
+	 * @param inPosition position in heap
+	 */
+	private void siftUp(int inPosition)
+	{
+		final int item = _heap[inPosition];
+		final double key = _keys[item];
+		int pos = inPosition;
+		while (pos > 0)
+		{
+			final int parentPos = (pos - 1) / 2;
+			final int parent = _heap[parentPos];
+			if (_keys[parent] <= key) {break;}
+			_heap[pos] = parent;
+			_positions[parent] = pos;
+			pos = parentPos;
+		}
+		_heap[pos] = item;
+		_positions[item] = pos;
+	}
+
+	/**
+	 * Move the item at the given position down until the heap is ordered
+	 * @param inPosition position in heap
+	 */
+	private void siftDown(int inPosition)
+	{
+		final int item = _heap[inPosition];
+		final double key = _keys[item];
+		int pos = inPosition;
+		while (true)
+		{
+			int childPos = 2 * pos + 1;
+			if (childPos >= _size) {break;}
+			// Choose the smaller of the two children
+			if (childPos + 1 < _size && _keys[_heap[childPos + 1]] < _keys[_heap[childPos]]) {
+				childPos++;
+			}
+			final int child = _heap[childPos];
+			if (_keys[child] >= key) {break;}
+			_heap[pos] = child;
+			_positions[child] = pos;
+			pos = childPos;
+		}
+		_heap[pos] = item;
+		_positions[item] = pos;
+	}
+}
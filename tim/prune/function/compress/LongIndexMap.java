@@ -0,0 +1,120 @@
+package tim.prune.function.compress;
+
+import java.util.Arrays;
+
+/**
+ * Map from long keys to non-negative int values, using open addressing
+ * with linear probing in primitive arrays to avoid boxing every key
+ */
+public class LongIndexMap
+{
+	private long[] _keys = null;
+	/** Values, or -1 for an empty slot */
+	private int[] _values = null;
+	private int _size = 0;
+	private int _mask = 0;
+
+
+	/**
+	 * Constructor
+	 * @param inExpectedSize expected number of entries
+	 */
+	public LongIndexMap(int inExpectedSize)
+	{
+		int capacity = 16;
+		while (capacity < inExpectedSize * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Allocate empty arrays
+	 * @param inCapacity capacity, a power of two
+	 */
+	private void allocate(int inCapacity)
+	{
+		_keys = new long[inCapacity];
+		_values = new int[inCapacity];
+		Arrays.fill(_values, -1);
+		_mask = inCapacity - 1;
+		_size = 0;
+	}
+
+	/**
+	 * @param inKey key
+	 * @return value for this key, or -1 if not found
+	 */
+	public int get(long inKey)
+	{
+		int slot = getSlot(inKey);
+		while (_values[slot] >= 0)
+		{
+			if (_keys[slot] == inKey) {
+				return _values[slot];
+			}
+			slot = (slot + 1) & _mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Set the value for the given key, replacing any existing value
+	 * @param inKey key
+	 * @param inValue value to set, must not be negative
+	 * @return the previous value for this key, or -1 if there wasn't one
+	 */
+	public int put(long inKey, int inValue)
+	{
+		int slot = getSlot(inKey);
+		while (_values[slot] >= 0)
+		{
+			if (_keys[slot] == inKey)
+			{
+				final int previous = _values[slot];
+				_values[slot] = inValue;
+				return previous;
+			}
+			slot = (slot + 1) & _mask;
+		}
+		_keys[slot] = inKey;
+		_values[slot] = inValue;
+		_size++;
+		if (_size * 2 > _keys.length) {
+			grow();
+		}
+		return -1;
+	}
+
+	/** @return number of entries */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * @param inKey key
+	 * @return first slot to try for this key
+	 */
+	private int getSlot(long inKey)
+	{
+		// Spread the bits so that similar keys don't cluster
+		long hash = inKey * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & _mask;
+	}
+
+	/**
+	 * Double the capacity and reinsert all the entries
+	 */
+	private void grow()
+	{
+		long[] oldKeys = _keys;
+		int[] oldValues = _values;
+		allocate(oldKeys.length * 2);
+		for (int i=0; i<oldKeys.length; i++)
+		{
+			if (oldValues[i] >= 0) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package tim.prune.function.compress;
+
+import java.awt.Component;
+import java.awt.event.ActionListener;
+
+import tim.prune.data.Track;
+
+/**
+ * Reumann-Witkam algorithm for compression, with Opheim's limits on the search window.
+ * In a single pass along the segment, a line is drawn from the last kept point
+ * through the next point outside the threshold, and the following points are
+ * removed as long as they stay close to this line and within a maximum distance.
+ */
+public class OpheimAlgorithm extends SegmentCompressionAlgorithm
+{
+	/** Maximum window length as a multiple of the threshold */
+	private static final double MAX_DISTANCE_FACTOR = 20.0;
+
+
+	/**
+	 * Constructor
+	 * @param inTrack track object
+	 * @param inDetails track details object
+	 * @param inListener listener to attach to activation control
+	 */
+	public OpheimAlgorithm(Track inTrack, TrackDetails inDetails, ActionListener inListener)
+	{
+		super(inTrack, inDetails, inListener);
+	}
+
+	/**
+	 * Compress a single segment
+	 * @param inIndexes array of point indexes in the segment
+	 * @param inNumPoints number of points in the segment
+	 * @param inThreshold distance threshold
+	 * @param inFlags deletion flags to set
+	 * @return number of points deleted
+	 */
+	protected int compressSegment(int[] inIndexes, int inNumPoints, double inThreshold,
+		boolean[] inFlags)
+	{
+		if (inNumPoints < 3) {return 0;} // segment too short to compress
+		final double threshold2 = inThreshold * inThreshold;
+		final double maxDistance = inThreshold * MAX_DISTANCE_FACTOR;
+		final double maxDistance2 = maxDistance * maxDistance;
+		final int lastPos = inNumPoints - 1;
+		int numDeleted = 0;
+		int anchorPos = 0;
+		while (anchorPos < lastPos - 1)
+		{
+			final double anchorX = _track.getX(inIndexes[anchorPos]);
+			final double anchorY = _track.getY(inIndexes[anchorPos]);
+			// Skip over the points close to the anchor to find the direction of the line
+			int pos = anchorPos + 1;
+			double dx = 0.0, dy = 0.0;
+			while (pos < lastPos && !mustKeep(inIndexes[pos]))
+			{
+				dx = _track.getX(inIndexes[pos]) - anchorX;
+				dy = _track.getY(inIndexes[pos]) - anchorY;
+				if (dx * dx + dy * dy > threshold2) {break;}
+				pos++;
+			}
+			int newAnchorPos = pos;
+			if (pos < lastPos && !mustKeep(inIndexes[pos]))
+			{
+				// Unit vector perpendicular to the line from the anchor to this point
+				final double len = Math.sqrt(dx * dx + dy * dy);
+				final double perpX = dy / len, perpY = -dx / len;
+				// Move forwards while the points stay close to the line and near enough to the anchor,
+				// the last point inside the window becomes the next anchor
+				for (int nextPos=pos+1; nextPos<=lastPos; nextPos++)
+				{
+					if (!isInsideWindow(inIndexes[nextPos], anchorX, anchorY, perpX, perpY,
+						inThreshold, maxDistance2)) {
+						break;
+					}
+					newAnchorPos = nextPos;
+					if (nextPos == lastPos || mustKeep(inIndexes[nextPos])) {
+						break;
+					}
+				}
+			}
+			// Delete all the points between the old and new anchors
+			for (int i=anchorPos+1; i<newAnchorPos; i++)
+			{
+				inFlags[inIndexes[i]] = true;
+				numDeleted++;
+			}
+			anchorPos = newAnchorPos;
+		}
+		return numDeleted;
+	}
+
+	/**
+	 * Check whether a point lies inside the search window
+	 * @param inPointIndex index of point in track
+	 * @param inAnchorX x value of anchor
+	 * @param inAnchorY y value of anchor
+	 * @param inPerpX x component of unit vector perpendicular to line
+	 * @param inPerpY y component of unit vector perpendicular to line
+	 * @param inThreshold distance threshold
+	 * @param inMaxDistance2 square of maximum distance from anchor
+	 * @return true if point is close enough to the line and to the anchor
+	 */
+	private boolean isInsideWindow(int inPointIndex, double inAnchorX, double inAnchorY,
+		double inPerpX, double inPerpY, double inThreshold, double inMaxDistance2)
+	{
+		final double nx = _track.getX(inPointIndex) - inAnchorX;
+		final double ny = _track.getY(inPointIndex) - inAnchorY;
+		return Math.abs(nx * inPerpX + ny * inPerpY) <= inThreshold
+			&& nx * nx + ny * ny <= inMaxDistance2;
+	}
+
+	/**
+	 * @return specific gui components for dialog
+	 */
+	protected Component getSpecificGuiComponents()
+	{
+		return getSpecificGuiComponents("dialog.compress.opheim.paramdesc", "2000");
+	}
+
+	/**
+	 * @return title key for box
+	 */
+	protected String getTitleTextKey()
+	{
+		return "dialog.compress.opheim.title";
+	}
+}
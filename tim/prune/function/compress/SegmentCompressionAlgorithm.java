@@ -0,0 +1,92 @@
+package tim.prune.function.compress;
+
+import java.awt.event.ActionListener;
+
+import tim.prune.data.DataPoint;
+import tim.prune.data.Track;
+
+/**
+ * Superclass for compression algorithms which work on one track segment at a time,
+ * using a distance threshold given as a fraction of the track span
+ */
+public abstract class SegmentCompressionAlgorithm extends SingleParameterAlgorithm
+{
+	/**
+	 * Constructor
+	 * @param inTrack track object
+	 * @param inDetails track details object
+	 * @param inListener listener to attach to activation control
+	 */
+	public SegmentCompressionAlgorithm(Track inTrack, TrackDetails inDetails, ActionListener inListener)
+	{
+		super(inTrack, inDetails, inListener);
+	}
+
+	/**
+	 * Perform the compression and work out which points should be deleted
+	 * @param inFlags deletion flags from previous algorithms
+	 * @return number of points deleted
+	 */
+	protected int compress(boolean[] inFlags)
+	{
+		// Parse parameter
+		double param = getParameter();
+		// Use 1/x if x greater than 1
+		if (param > 1.0) param = 1.0 / param;
+		if (param <= 0.0 || param >= 1.0) {
+			// Parameter isn't valid, don't delete any
+			return 0;
+		}
+		final double threshold = _trackDetails.getTrackSpan() * param;
+
+		// Collect the indexes of the remaining track points in each segment
+		final int numPoints = _track.getNumPoints();
+		int[] segmentIndexes = new int[numPoints];
+		int segmentLength = 0;
+		int numDeleted = 0;
+		boolean pendingBreak = false;
+		for (int i=0; i<numPoints; i++)
+		{
+			DataPoint point = _track.getPoint(i);
+			if (point.isWaypoint()) {continue;}
+			// Segment starts count even if the point itself is already marked as deleted
+			if (point.getSegmentStart()) {pendingBreak = true;}
+			// Don't consider points which are already marked as deleted
+			if (!inFlags[i])
+			{
+				if (pendingBreak && segmentLength > 0)
+				{
+					numDeleted += compressSegment(segmentIndexes, segmentLength, threshold, inFlags);
+					segmentLength = 0;
+				}
+				pendingBreak = false;
+				segmentIndexes[segmentLength++] = i;
+			}
+		}
+		// Last segment
+		if (segmentLength > 0) {
+			numDeleted += compressSegment(segmentIndexes, segmentLength, threshold, inFlags);
+		}
+		return numDeleted;
+	}
+
+	/**
+	 * Compress a single segment, never deleting the first or last point or any points with media
+	 * @param inIndexes array of point indexes in the segment
+	 * @param inNumPoints number of points in the segment
+	 * @param inThreshold distance threshold in scaled track units
+	 * @param inFlags deletion flags to set
+	 * @return number of points deleted
+	 */
+	protected abstract int compressSegment(int[] inIndexes, int inNumPoints, double inThreshold,
+		boolean[] inFlags);
+
+	/**
+	 * @param inPointIndex index of point
+	 * @return true if the point must be kept whatever the algorithm says
+	 */
+	protected boolean mustKeep(int inPointIndex)
+	{
+		return _track.getPoint(inPointIndex).hasMedia();
+	}
+}
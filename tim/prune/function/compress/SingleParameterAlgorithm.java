@@ -76,6 +76,14 @@ public abstract class SingleParameterAlgorithm extends CompressionAlgorithm
 		return param;
 	}
 
+	/**
+	 * @return the contents of the text field, to see when it changes
+	 */
+	protected String getSettings()
+	{
+		return _parameterField.getText();
+	}
+
 	/**
 	 * @return the text field component
 	 */
@@ -1,6 +1,7 @@
 package tim.prune.function.compress;
 
 import tim.prune.data.DataPoint;
+import tim.prune.data.DistanceCalculator;
 import tim.prune.data.Track;
 
 /**
@@ -19,6 +20,8 @@ public class TrackDetails
 	private boolean[] _segmentEnds = null;
 	/** Mean distance between track points in radians */
 	private double _meanRadians = 0.0;
+	/** Calculator for distances between points */
+	private DistanceCalculator _distances = null;
 
 
 	/**
@@ -42,6 +45,7 @@ public class TrackDetails
 
 		// Calculate segment starts / ends
 		int numPoints = _track.getNumPoints();
+		_distances = new DistanceCalculator(_track);
 		_segmentStarts = new boolean[numPoints];
 		_segmentEnds = new boolean[numPoints];
 		int prevTrackPointIndex = -1;
@@ -65,7 +69,7 @@ public class TrackDetails
 					// Add up distances between points within the same track segment
 					if (prevTrackPointIndex >= 0) {
 						numDistances++;
-						totalRadians += DataPoint.calculateRadiansBetween(_track.getPoint(prevTrackPointIndex), point);
+						totalRadians += _distances.getRadiansBetween(prevTrackPointIndex, i);
 					}
 				}
 				prevTrackPointIndex = i;
@@ -109,6 +113,36 @@ public class TrackDetails
 		return _segmentEnds[inPointIndex];
 	}
 
+	/**
+	 * Get the distance between two points of the track
+	 * @param inIndex1 index of first point, or -1
+	 * @param inIndex2 index of second point, or -1
+	 * @return angular distance in radians, or 0 if either index is -1
+	 */
+	public double getRadiansBetween(int inIndex1, int inIndex2)
+	{
+		if (_distances == null ||
+			_distances.getNumPoints() != _track.getNumPoints()) {initialise();}
+		return _distances.getRadiansBetween(inIndex1, inIndex2);
+	}
+
+	/**
+	 * Get the index of the next track point
+	 * @param inStartIndex index to start looking from
+	 * @return index of next track point, or -1 if none found
+	 */
+	public int getNextTrackPointIndex(int inStartIndex)
+	{
+		for (int i=inStartIndex; i<_track.getNumPoints(); i++)
+		{
+			DataPoint point = _track.getPoint(i);
+			if (point.isValid() && !point.isWaypoint()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * @return mean radians between adjacent track points
 	 */
@@ -0,0 +1,112 @@
+package tim.prune.function.compress;
+
+import java.awt.Component;
+import java.awt.event.ActionListener;
+
+import tim.prune.data.Track;
+
+/**
+ * Visvalingam-Whyatt algorithm for compression, which repeatedly removes
+ * the point making the smallest triangle with its neighbours.
+ * The points are kept in a heap ordered by their effective areas.
+ */
+public class VisvalingamAlgorithm extends SegmentCompressionAlgorithm
+{
+	/**
+	 * Constructor
+	 * @param inTrack track object
+	 * @param inDetails track details object
+	 * @param inListener listener to attach to activation control
+	 */
+	public VisvalingamAlgorithm(Track inTrack, TrackDetails inDetails, ActionListener inListener)
+	{
+		super(inTrack, inDetails, inListener);
+	}
+
+	/**
+	 * Compress a single segment
+	 * @param inIndexes array of point indexes in the segment
+	 * @param inNumPoints number of points in the segment
+	 * @param inThreshold distance threshold
+	 * @param inFlags deletion flags to set
+	 * @return number of points deleted
+	 */
+	protected int compressSegment(int[] inIndexes, int inNumPoints, double inThreshold,
+		boolean[] inFlags)
+	{
+		if (inNumPoints < 3) {return 0;} // segment too short to compress
+		// Triangles smaller than the square of the threshold are removed
+		final double maxArea = inThreshold * inThreshold;
+		double[] xValues = new double[inNumPoints];
+		double[] yValues = new double[inNumPoints];
+		// Linked list of remaining points
+		int[] prevs = new int[inNumPoints];
+		int[] nexts = new int[inNumPoints];
+		for (int i=0; i<inNumPoints; i++)
+		{
+			xValues[i] = _track.getX(inIndexes[i]);
+			yValues[i] = _track.getY(inIndexes[i]);
+			prevs[i] = i - 1;
+			nexts[i] = i + 1;
+		}
+		// Put all the removable points into the heap, first and last points are always kept
+		IndexedMinHeap heap = new IndexedMinHeap(inNumPoints);
+		for (int i=1; i<inNumPoints-1; i++)
+		{
+			if (!mustKeep(inIndexes[i])) {
+				heap.add(i, getArea(xValues, yValues, i-1, i, i+1));
+			}
+		}
+		int numDeleted = 0;
+		while (!heap.isEmpty() && heap.getKey(heap.peek()) < maxArea)
+		{
+			final double area = heap.getKey(heap.peek());
+			final int i = heap.poll();
+			inFlags[inIndexes[i]] = true;
+			numDeleted++;
+			// Unlink point and recalculate the areas of its neighbours
+			final int prev = prevs[i], next = nexts[i];
+			nexts[prev] = next;
+			prevs[next] = prev;
+			// Effective areas never decrease, otherwise points could be removed out of order
+			if (heap.contains(prev)) {
+				heap.changeKey(prev, Math.max(area, getArea(xValues, yValues, prevs[prev], prev, next)));
+			}
+			if (heap.contains(next)) {
+				heap.changeKey(next, Math.max(area, getArea(xValues, yValues, prev, next, nexts[next])));
+			}
+		}
+		return numDeleted;
+	}
+
+	/**
+	 * Calculate the area of a triangle
+	 * @param inXValues array of x values
+	 * @param inYValues array of y values
+	 * @param inA index of first point
+	 * @param inB index of second point
+	 * @param inC index of third point
+	 * @return area of triangle
+	 */
+	private static double getArea(double[] inXValues, double[] inYValues, int inA, int inB, int inC)
+	{
+		return Math.abs((inXValues[inB] - inXValues[inA]) * (inYValues[inC] - inYValues[inA])
+			- (inXValues[inC] - inXValues[inA]) * (inYValues[inB] - inYValues[inA])) / 2.0;
+	}
+
+	/**
+	 * @return specific gui components for dialog
+	 */
+	protected Component getSpecificGuiComponents()
+	{
+		return getSpecificGuiComponents("dialog.compress.visvalingam.paramdesc", "2000");
+	}
+
+	/**
+	 * @return title key for box
+	 */
+	protected String getTitleTextKey()
+	{
+		return "dialog.compress.visvalingam.title";
+	}
+}
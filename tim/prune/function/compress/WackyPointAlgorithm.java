@@ -34,7 +34,8 @@ public class WackyPointAlgorithm extends SingleParameterAlgorithm
 		int numPoints = _track.getNumPoints();
 		int numDeleted = 0;
 		double threshold = param * _trackDetails.getMeanRadians();
-		DataPoint currPoint = null, prevPoint = null;
+		DataPoint currPoint = null;
+		int prevIndex = -1;
 		// Loop over all points looking for points far away from neighbours
 		for (int i=0; i<numPoints; i++)
 		{
@@ -47,12 +48,12 @@ public class WackyPointAlgorithm extends SingleParameterAlgorithm
 					&& !_trackDetails.isSegmentStart(i) && !_trackDetails.isSegmentEnd(i))
 				{
 					// Measure distance from previous track point
-					if (DataPoint.calculateRadiansBetween(prevPoint, currPoint) > threshold)
+					if (_trackDetails.getRadiansBetween(prevIndex, i) > threshold)
 					{
 						// Now need to find next track point, and measure distances
-						DataPoint nextPoint = _track.getNextTrackPoint(i+1);
-						if (nextPoint != null && DataPoint.calculateRadiansBetween(currPoint, nextPoint) > threshold
-							&& DataPoint.calculateRadiansBetween(prevPoint, nextPoint) < threshold)
+						int nextIndex = _trackDetails.getNextTrackPointIndex(i+1);
+						if (nextIndex >= 0 && _trackDetails.getRadiansBetween(i, nextIndex) > threshold
+							&& _trackDetails.getRadiansBetween(prevIndex, nextIndex) < threshold)
 						{
 							// Found a point to delete (hope that next point hasn't been deleted already)
 							inFlags[i] = true;
@@ -61,7 +62,7 @@ public class WackyPointAlgorithm extends SingleParameterAlgorithm
 					}
 				}
 				// Remember last (not-deleted) track point
-				if (!currPoint.isWaypoint()) {prevPoint = currPoint;}
+				if (!currPoint.isWaypoint()) {prevIndex = i;}
 			}
 		}
 		return numDeleted;
@@ -208,7 +208,7 @@ public class DeleteByDateFunction extends MarkAndDeleteFunction
 		else {
 			// Do nothing   //System.out.println("Nothing selected to delete!");
 			// delete flags might have been reset, so refresh display
-			UpdateMessageBroker.informSubscribers(DataSubscriber.SELECTION_CHANGED);
+			UpdateMessageBroker.informSubscribers((byte) (DataSubscriber.SELECTION_CHANGED | DataSubscriber.DATA_EDITED));
 		}
 		_dialog.dispose();
 	}
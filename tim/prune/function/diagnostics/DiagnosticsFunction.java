@@ -0,0 +1,225 @@
+package tim.prune.function.diagnostics;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+
+import tim.prune.App;
+import tim.prune.GenericFunction;
+import tim.prune.I18nManager;
+import tim.prune.diagnostics.Diagnostics;
+import tim.prune.diagnostics.DiagnosticsWriter;
+import tim.prune.diagnostics.FrameRecord;
+import tim.prune.load.GenericFileFilter;
+
+/**
+ * Class to show the collected performance diagnostics
+ * and to allow them to be saved to a file
+ */
+public class DiagnosticsFunction extends GenericFunction
+{
+	/** Dialog */
+	private JDialog _dialog = null;
+	/** Checkbox to enable collection */
+	private JCheckBox _enableCheckbox = null;
+	/** Table model for timers */
+	private TimerTableModel _timerModel = null;
+	/** Label for tile cache information */
+	private JLabel _tileCacheLabel = null;
+	/** Text area for slowest frames */
+	private JTextArea _framesArea = null;
+	/** File chooser for saving */
+	private JFileChooser _fileChooser = null;
+
+	/** Number of slow frames to show */
+	private static final int NUM_SLOW_FRAMES = 10;
+
+
+	/**
+	 * Constructor
+	 * @param inApp App object
+	 */
+	public DiagnosticsFunction(App inApp)
+	{
+		super(inApp);
+	}
+
+	/** Get the name key */
+	public String getNameKey() {
+		return "function.diagnostics";
+	}
+
+	/**
+	 * Begin the function
+	 */
+	public void begin()
+	{
+		if (_dialog == null)
+		{
+			_dialog = new JDialog(_parentFrame, I18nManager.getText(getNameKey()), false);
+			_dialog.setLocationRelativeTo(_parentFrame);
+			_dialog.getContentPane().add(makeDialogComponents());
+			_dialog.pack();
+		}
+		_enableCheckbox.setSelected(Diagnostics.isEnabled());
+		refreshValues();
+		_dialog.setVisible(true);
+	}
+
+	/**
+	 * Create dialog components
+	 * @return Panel containing all gui elements in dialog
+	 */
+	private Component makeDialogComponents()
+	{
+		JPanel dialogPanel = new JPanel();
+		dialogPanel.setLayout(new BorderLayout(5, 5));
+		dialogPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+		// Checkbox at top
+		_enableCheckbox = new JCheckBox(I18nManager.getText("dialog.diagnostics.enable"));
+		_enableCheckbox.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Diagnostics.setEnabled(_enableCheckbox.isSelected());
+			}
+		});
+		dialogPanel.add(_enableCheckbox, BorderLayout.NORTH);
+
+		// Table of timers
+		_timerModel = new TimerTableModel();
+		JTable timerTable = new JTable(_timerModel);
+		timerTable.setAutoCreateRowSorter(true);
+		JScrollPane scrollPane = new JScrollPane(timerTable);
+		scrollPane.setPreferredSize(new Dimension(450, 200));
+		dialogPanel.add(scrollPane, BorderLayout.CENTER);
+
+		// Tile cache and frame information below table
+		JPanel lowerPanel = new JPanel();
+		lowerPanel.setLayout(new BorderLayout(3, 3));
+		_tileCacheLabel = new JLabel(" ");
+		lowerPanel.add(_tileCacheLabel, BorderLayout.NORTH);
+		_framesArea = new JTextArea(6, 30);
+		_framesArea.setEditable(false);
+		JScrollPane framesPane = new JScrollPane(_framesArea);
+		framesPane.setBorder(BorderFactory.createTitledBorder(I18nManager.getText("dialog.diagnostics.slowestframes")));
+		lowerPanel.add(framesPane, BorderLayout.CENTER);
+
+		// button panel at bottom
+		JPanel buttonPanel = new JPanel();
+		buttonPanel.setLayout(new FlowLayout(FlowLayout.RIGHT));
+		JButton refreshButton = new JButton(I18nManager.getText("button.refresh"));
+		refreshButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				refreshValues();
+			}
+		});
+		buttonPanel.add(refreshButton);
+		JButton resetButton = new JButton(I18nManager.getText("button.reset"));
+		resetButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Diagnostics.reset();
+				refreshValues();
+			}
+		});
+		buttonPanel.add(resetButton);
+		JButton saveButton = new JButton(I18nManager.getText("button.save"));
+		saveButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				saveToFile();
+			}
+		});
+		buttonPanel.add(saveButton);
+		JButton closeButton = new JButton(I18nManager.getText("button.close"));
+		closeButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				_dialog.dispose();
+			}
+		});
+		buttonPanel.add(closeButton);
+		lowerPanel.add(buttonPanel, BorderLayout.SOUTH);
+		dialogPanel.add(lowerPanel, BorderLayout.SOUTH);
+		return dialogPanel;
+	}
+
+	/**
+	 * Refresh the displayed values from the collected diagnostics
+	 */
+	private void refreshValues()
+	{
+		_timerModel.init(Diagnostics.getTimers());
+		_tileCacheLabel.setText(I18nManager.getText("dialog.diagnostics.tilecache") + " : "
+			+ I18nManager.getText("dialog.diagnostics.memory") + " " + describeRate(Diagnostics.getMemoryCacheHitRate())
+			+ ", " + I18nManager.getText("dialog.diagnostics.disk") + " " + describeRate(Diagnostics.getDiskCacheHitRate()));
+		StringBuilder builder = new StringBuilder();
+		SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+		for (FrameRecord frame : Diagnostics.getSlowestRecentFrames(NUM_SLOW_FRAMES))
+		{
+			builder.append(timeFormat.format(new Date(frame.getPaintTime()))).append(" : ")
+				.append(frame.getName()).append(" : ")
+				.append(Math.round(frame.getDurationMillis() * 10.0) / 10.0).append(" ms\n");
+		}
+		_framesArea.setText(builder.toString());
+	}
+
+	/**
+	 * @param inRate hit rate as a fraction, or negative if unknown
+	 * @return rate as a percentage string
+	 */
+	private static String describeRate(double inRate)
+	{
+		if (inRate < 0.0) {return "-";}
+		return "" + Math.round(inRate * 1000.0) / 10.0 + "%";
+	}
+
+	/**
+	 * Select a file and save the diagnostics to it
+	 */
+	private void saveToFile()
+	{
+		if (_fileChooser == null)
+		{
+			_fileChooser = new JFileChooser();
+			_fileChooser.addChoosableFileFilter(new GenericFileFilter("filetype.json", new String[] {"json"}));
+			_fileChooser.addChoosableFileFilter(new GenericFileFilter("filetype.csv", new String[] {"csv"}));
+			_fileChooser.setAcceptAllFileFilterUsed(false);
+		}
+		if (_fileChooser.showSaveDialog(_dialog) == JFileChooser.APPROVE_OPTION)
+		{
+			File file = _fileChooser.getSelectedFile();
+			String name = file.getName().toLowerCase();
+			if (!name.endsWith(".json") && !name.endsWith(".csv"))
+			{
+				// Add the extension of the selected filter
+				boolean isCsv = _fileChooser.getFileFilter().getDescription().equals(I18nManager.getText("filetype.csv"));
+				file = new File(file.getAbsolutePath() + (isCsv ? ".csv" : ".json"));
+			}
+			try {
+				DiagnosticsWriter.writeFile(file);
+			}
+			catch (IOException ioe)
+			{
+				JOptionPane.showMessageDialog(_dialog,
+					I18nManager.getText("error.save.failed") + " : " + ioe.getMessage(),
+					I18nManager.getText("error.save.dialogtitle"), JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
+}
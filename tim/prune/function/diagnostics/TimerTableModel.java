@@ -0,0 +1,90 @@
+package tim.prune.function.diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import tim.prune.I18nManager;
+import tim.prune.diagnostics.TimerStatistic;
+
+/**
+ * Class to hold the table model for the timers in the diagnostics dialog
+ */
+public class TimerTableModel extends AbstractTableModel
+{
+	/** List of timer statistics */
+	private List<TimerStatistic> _timers = new ArrayList<TimerStatistic>();
+
+	/** Column heading keys */
+	private static final String[] COLUMN_KEYS = {"dialog.diagnostics.column.name",
+		"dialog.diagnostics.column.count", "dialog.diagnostics.column.mean",
+		"dialog.diagnostics.column.max", "dialog.diagnostics.column.total"};
+
+
+	/**
+	 * Initialise the model with the given statistics
+	 * @param inTimers list of timer statistics
+	 */
+	public void init(List<TimerStatistic> inTimers)
+	{
+		_timers = inTimers;
+		fireTableDataChanged();
+	}
+
+	/** @return column count */
+	public int getColumnCount() {
+		return COLUMN_KEYS.length;
+	}
+
+	/** @return row count */
+	public int getRowCount() {
+		return _timers.size();
+	}
+
+	/**
+	 * @param inColumnIndex column index
+	 * @return column name
+	 */
+	public String getColumnName(int inColumnIndex) {
+		return I18nManager.getText(COLUMN_KEYS[inColumnIndex]);
+	}
+
+	/**
+	 * @param inColumnIndex column index
+	 * @return class of column
+	 */
+	public Class<?> getColumnClass(int inColumnIndex)
+	{
+		if (inColumnIndex == 0) return String.class;
+		if (inColumnIndex == 1) return Long.class;
+		return Double.class;
+	}
+
+	/**
+	 * @param inRowIndex row index
+	 * @param inColumnIndex column index
+	 * @return cell value
+	 */
+	public Object getValueAt(int inRowIndex, int inColumnIndex)
+	{
+		TimerStatistic timer = _timers.get(inRowIndex);
+		switch (inColumnIndex)
+		{
+			case 0: return timer.getName();
+			case 1: return timer.getCount();
+			case 2: return roundMillis(timer.getMeanMillis());
+			case 3: return roundMillis(timer.getMaxMillis());
+			default: return roundMillis(timer.getTotalMillis());
+		}
+	}
+
+	/**
+	 * @param inMillis value in milliseconds
+	 * @return value rounded to hundredths of a millisecond
+	 */
+	private static Double roundMillis(double inMillis)
+	{
+		return Math.round(inMillis * 100.0) / 100.0;
+	}
+}
@@ -26,6 +26,7 @@ import tim.prune.I18nManager;
 import tim.prune.config.Config;
 import tim.prune.data.DataPoint;
 import tim.prune.data.Distance;
+import tim.prune.data.DistanceCalculator;
 import tim.prune.data.RangeStats;
 import tim.prune.data.Track;
 import tim.prune.data.Unit;
@@ -104,11 +105,13 @@ public class LearnParameters extends GenericFunction implements Runnable
 		Track track = _app.getTrackInfo().getTrack();
 		final int numPoints = track.getNumPoints();
 		final int sampleSize = numPoints / 30;
+		// Distances between consecutive points, calculated once for all samples
+		final double[] radians = new DistanceCalculator(track).getConsecutiveRadians();
 		int prevStartIndex = -1;
 		for (int i=0; i<30; i++)
 		{
 			int startIndex = i * sampleSize;
-			RangeStats stats = getRangeStats(track, startIndex, startIndex + sampleSize, prevStartIndex);
+			RangeStats stats = getRangeStats(track, radians, startIndex, startIndex + sampleSize, prevStartIndex);
 			if (stats != null && stats.getMovingDistanceKilometres() > 1.0
 				&& !stats.getTimestampsIncomplete() && !stats.getTimestampsOutOfSequence()
 				&& stats.getTotalDurationInSeconds() > 100
@@ -241,12 +244,13 @@ public class LearnParameters extends GenericFunction implements Runnable
 	/**
 	 * Construct a rangestats object for the selected range
 	 * @param inTrack track object
+	 * @param inRadians distances in radians between consecutive points
 	 * @param inStartIndex start index
 	 * @param inEndIndex end index
 	 * @param inPreviousStartIndex the previously used start index, or -1
 	 * @return range stats object or null if required information missing from this bit of the track
 	 */
-	private RangeStats getRangeStats(Track inTrack, int inStartIndex, int inEndIndex, int inPreviousStartIndex)
+	private RangeStats getRangeStats(Track inTrack, double[] inRadians, int inStartIndex, int inEndIndex, int inPreviousStartIndex)
 	{
 		// Check parameters
 		if (inTrack == null || inStartIndex < 0 || inEndIndex <= inStartIndex || inStartIndex > inTrack.getNumPoints()) {
@@ -271,7 +275,6 @@ public class LearnParameters extends GenericFunction implements Runnable
 		// Search forward (counting the radians) until a decent end point found
 		double movingRads = 0.0;
 		final double minimumRads = Distance.convertDistanceToRadians(1.0, UnitSetLibrary.UNITS_KILOMETRES);
-		DataPoint prevPoint = inTrack.getPoint(start);
 		int endIndex = start;
 		boolean shouldStop = false;
 		do
@@ -281,11 +284,10 @@ public class LearnParameters extends GenericFunction implements Runnable
 			if (p != null && !p.isWaypoint())
 			{
 				if (!p.hasAltitude() || !p.hasTimestamp()) {return null;} // abort if no time/altitude
-				if (prevPoint != null && !p.getSegmentStart()) {
-					movingRads += DataPoint.calculateRadiansBetween(prevPoint, p);
+				if (!p.getSegmentStart()) {
+					movingRads += inRadians[endIndex];
 				}
 			}
-			prevPoint = p;
 			if (endIndex >= numPoints) {
 				shouldStop = true; // reached the end of the track
 			}
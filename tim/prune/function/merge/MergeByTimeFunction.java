@@ -0,0 +1,252 @@
+package tim.prune.function.merge;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import javax.swing.BorderFactory;
+import javax.swing.BoxLayout;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+
+import tim.prune.App;
+import tim.prune.I18nManager;
+import tim.prune.data.DataPoint;
+import tim.prune.data.FileInfo;
+import tim.prune.data.SourceInfo;
+import tim.prune.data.Track;
+import tim.prune.function.compress.MarkAndDeleteFunction;
+import tim.prune.undo.UndoMergeByTime;
+
+/**
+ * Function to interleave the points from several loaded sources by time,
+ * for example from several devices recording at the same time
+ */
+public class MergeByTimeFunction extends MarkAndDeleteFunction
+{
+	/** Dialog */
+	private JDialog _dialog = null;
+	/** List of source names in order of priority */
+	private DefaultListModel<String> _sourceListModel = null;
+	/** List box for sources */
+	private JList<String> _sourceList = null;
+	/** Field for maximum gap in minutes */
+	private JTextField _maxGapField = null;
+	/** Sources in order of priority */
+	private ArrayList<SourceInfo> _sources = new ArrayList<SourceInfo>();
+
+
+	/**
+	 * Constructor
+	 * @param inApp App object
+	 */
+	public MergeByTimeFunction(App inApp)
+	{
+		super(inApp);
+	}
+
+	/** @return name key */
+	public String getNameKey() {
+		return "function.mergebytime";
+	}
+
+	/**
+	 * Begin the function
+	 */
+	public void begin()
+	{
+		FileInfo fileInfo = _app.getTrackInfo().getFileInfo();
+		if (fileInfo.getNumFiles() < 2)
+		{
+			_app.showErrorMessage(getNameKey(), "dialog.mergebytime.onesource");
+			return;
+		}
+		if (_dialog == null)
+		{
+			_dialog = new JDialog(_parentFrame, I18nManager.getText(getNameKey()), true);
+			_dialog.setLocationRelativeTo(_parentFrame);
+			_dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+			_dialog.getContentPane().add(makeDialogComponents());
+			_dialog.pack();
+		}
+		// Fill the list with the current sources, in the order they were loaded
+		_sources.clear();
+		_sourceListModel.clear();
+		for (int i=0; i<fileInfo.getNumFiles(); i++)
+		{
+			SourceInfo source = fileInfo.getSource(i);
+			_sources.add(source);
+			_sourceListModel.addElement(source.getName());
+		}
+		_sourceList.setSelectedIndex(0);
+		_dialog.setVisible(true);
+	}
+
+	/**
+	 * Create dialog components
+	 * @return Panel containing all gui elements in dialog
+	 */
+	private Component makeDialogComponents()
+	{
+		JPanel dialogPanel = new JPanel();
+		dialogPanel.setLayout(new BorderLayout(5, 5));
+		JLabel topLabel = new JLabel(I18nManager.getText("dialog.mergebytime.intro"));
+		topLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+		dialogPanel.add(topLabel, BorderLayout.NORTH);
+
+		// List of sources with buttons to change the priority
+		JPanel centrePanel = new JPanel();
+		centrePanel.setLayout(new BorderLayout(5, 5));
+		_sourceListModel = new DefaultListModel<String>();
+		_sourceList = new JList<String>(_sourceListModel);
+		_sourceList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		JScrollPane scrollPane = new JScrollPane(_sourceList);
+		scrollPane.setPreferredSize(new Dimension(250, 100));
+		centrePanel.add(scrollPane, BorderLayout.CENTER);
+		JPanel moveButtonPanel = new JPanel();
+		moveButtonPanel.setLayout(new BoxLayout(moveButtonPanel, BoxLayout.Y_AXIS));
+		JButton moveUpButton = new JButton(I18nManager.getText("button.moveup"));
+		moveUpButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				moveSelectedSource(-1);
+			}
+		});
+		moveButtonPanel.add(moveUpButton);
+		JButton moveDownButton = new JButton(I18nManager.getText("button.movedown"));
+		moveDownButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				moveSelectedSource(1);
+			}
+		});
+		moveButtonPanel.add(moveDownButton);
+		centrePanel.add(moveButtonPanel, BorderLayout.EAST);
+		// Field for the maximum gap
+		JPanel gapPanel = new JPanel();
+		gapPanel.setLayout(new GridLayout(0, 2));
+		gapPanel.add(new JLabel(I18nManager.getText("dialog.mergebytime.maxgap") + " : "));
+		_maxGapField = new JTextField("5");
+		gapPanel.add(_maxGapField);
+		centrePanel.add(gapPanel, BorderLayout.SOUTH);
+		centrePanel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
+		dialogPanel.add(centrePanel, BorderLayout.CENTER);
+
+		// button panel at bottom
+		JPanel buttonPanel = new JPanel();
+		buttonPanel.setLayout(new FlowLayout(FlowLayout.RIGHT));
+		JButton okButton = new JButton(I18nManager.getText("button.ok"));
+		okButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e)
+			{
+				final double maxGapMinutes = getMaxGapMinutes();
+				if (maxGapMinutes < 0.0)
+				{
+					_app.showErrorMessage(getNameKey(), "dialog.mergebytime.invalidgap");
+					_maxGapField.requestFocus();
+					return;
+				}
+				_dialog.dispose();
+				performMerge(maxGapMinutes);
+			}
+		});
+		buttonPanel.add(okButton);
+		JButton cancelButton = new JButton(I18nManager.getText("button.cancel"));
+		cancelButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				_dialog.dispose();
+			}
+		});
+		buttonPanel.add(cancelButton);
+		dialogPanel.add(buttonPanel, BorderLayout.SOUTH);
+		return dialogPanel;
+	}
+
+	/**
+	 * Move the selected source up or down the list
+	 * @param inOffset -1 for up, 1 for down
+	 */
+	private void moveSelectedSource(int inOffset)
+	{
+		final int index = _sourceList.getSelectedIndex();
+		final int newIndex = index + inOffset;
+		if (index < 0 || newIndex < 0 || newIndex >= _sources.size()) {
+			return;
+		}
+		_sources.add(newIndex, _sources.remove(index));
+		_sourceListModel.add(newIndex, _sourceListModel.remove(index));
+		_sourceList.setSelectedIndex(newIndex);
+	}
+
+	/**
+	 * @return maximum gap in minutes from the text field, or -1 if it's not valid
+	 */
+	private double getMaxGapMinutes()
+	{
+		try
+		{
+			final double maxGapMinutes = Double.parseDouble(_maxGapField.getText().trim());
+			if (maxGapMinutes >= 0.0 && !Double.isInfinite(maxGapMinutes)) {
+				return maxGapMinutes;
+			}
+		}
+		catch (NumberFormatException nfe) {} // not valid
+		return -1.0;
+	}
+
+	/**
+	 * Merge the sources according to the selected priorities
+	 * @param inMaxGapMinutes maximum gap in minutes before a new segment is started
+	 */
+	private void performMerge(double inMaxGapMinutes)
+	{
+		final Track track = _app.getTrackInfo().getTrack();
+		final int numPoints = track.getNumPoints();
+		// Find which source each point came from
+		IdentityHashMap<DataPoint, Integer> sourceIndices = new IdentityHashMap<DataPoint, Integer>(numPoints);
+		for (int s=0; s<_sources.size(); s++)
+		{
+			SourceInfo source = _sources.get(s);
+			for (int i=0; i<source.getNumPointObjects(); i++) {
+				sourceIndices.put(source.getPointObject(i), s);
+			}
+		}
+		// Split the track into one list per source, each is sorted by time by the merger if necessary
+		// Points which weren't loaded from any of the sources come last
+		ArrayList<ArrayList<DataPoint>> sourcePoints = new ArrayList<ArrayList<DataPoint>>();
+		for (int s=0; s<=_sources.size(); s++) {
+			sourcePoints.add(new ArrayList<DataPoint>());
+		}
+		for (int i=0; i<numPoints; i++)
+		{
+			DataPoint point = track.getPoint(i);
+			Integer sourceIndex = sourceIndices.get(point);
+			sourcePoints.get(sourceIndex == null ? _sources.size() : sourceIndex).add(point);
+		}
+		TimeMerger merger = new TimeMerger((long) (inMaxGapMinutes * 60 * 1000));
+		for (ArrayList<DataPoint> points : sourcePoints) {
+			merger.addSource(points.toArray(new DataPoint[points.size()]));
+		}
+		// Replace the track contents with the merged points
+		UndoMergeByTime undo = new UndoMergeByTime(track);
+		track.replaceContents(merger.merge());
+		_app.getTrackInfo().getSelection().clearAll();
+		_app.completeFunction(undo, I18nManager.getText("confirm.mergebytime"));
+		// Points at the same time as points from a higher-priority source have been marked
+		final int numMarked = merger.getNumCollisions();
+		if (numMarked > 0) {
+			optionallyDeleteMarkedPoints(numMarked);
+		}
+	}
+}
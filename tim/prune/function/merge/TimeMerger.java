@@ -0,0 +1,253 @@
+package tim.prune.function.merge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import tim.prune.data.DataPoint;
+import tim.prune.data.Timestamp;
+
+/**
+ * Class to merge several sources of points into a single time-ordered list.
+ * Each source is first sorted by time if it isn't already in order, then only
+ * the next point of each source is compared, so merging n points from k sources takes O(n log k).
+ * Waypoints are merged separately and come before the track points.
+ * Points without timestamps stay after the previous point from the same source.
+ */
+public class TimeMerger
+{
+	/** Track points of the sources in order of priority, highest first */
+	private ArrayList<DataPoint[]> _trackSources = new ArrayList<DataPoint[]>();
+	/** Waypoints of the sources in order of priority, highest first */
+	private ArrayList<DataPoint[]> _waypointSources = new ArrayList<DataPoint[]>();
+	/** Maximum time gap in milliseconds before a new segment is started */
+	private long _maxGapMillis = 0L;
+	/** Number of points found at the same time as a point from a higher-priority source */
+	private int _numCollisions = 0;
+
+	/** Reference time for getting milliseconds from timestamps */
+	private static final Timestamp EPOCH = new Timestamp(0L);
+
+
+	/**
+	 * Class to hold the position in one of the sources
+	 */
+	private static class SourceCursor
+	{
+		private DataPoint[] _points = null;
+		private int _priority = 0;
+		private int _index = -1;
+		/** Time of current point, or of the last point with a timestamp */
+		private long _time = Long.MIN_VALUE;
+
+		/**
+		 * Constructor
+		 * @param inPoints points of this source
+		 * @param inPriority priority, lower numbers first
+		 */
+		SourceCursor(DataPoint[] inPoints, int inPriority)
+		{
+			_points = inPoints;
+			_priority = inPriority;
+		}
+
+		/**
+		 * Move to the next point
+		 * @return false if there are no more points
+		 */
+		boolean advance()
+		{
+			_index++;
+			if (_index >= _points.length) {
+				return false;
+			}
+			DataPoint point = _points[_index];
+			if (point.hasTimestamp()) {
+				_time = getMilliseconds(point);
+			}
+			return true;
+		}
+
+		/** @return current point */
+		DataPoint getPoint() {
+			return _points[_index];
+		}
+	}
+
+
+	/**
+	 * Constructor
+	 * @param inMaxGapMillis maximum time gap in milliseconds before a new segment is started
+	 */
+	public TimeMerger(long inMaxGapMillis)
+	{
+		_maxGapMillis = inMaxGapMillis;
+	}
+
+	/**
+	 * Add a source, sources should be added in order of priority, highest first
+	 * @param inPoints points of the source, in any order
+	 */
+	public void addSource(DataPoint[] inPoints)
+	{
+		if (inPoints == null) {return;}
+		ArrayList<DataPoint> trackPoints = new ArrayList<DataPoint>(inPoints.length);
+		ArrayList<DataPoint> waypoints = new ArrayList<DataPoint>();
+		for (DataPoint point : inPoints)
+		{
+			if (point.isWaypoint()) {
+				waypoints.add(point);
+			}
+			else {
+				trackPoints.add(point);
+			}
+		}
+		_trackSources.add(sortByTime(trackPoints));
+		_waypointSources.add(sortByTime(waypoints));
+	}
+
+	/**
+	 * Sort the points by time if they're not already in order.
+	 * The sort is stable, and points without timestamps stay after the previous point
+	 * @param inPoints points of one source
+	 * @return array of points in time order
+	 */
+	private static DataPoint[] sortByTime(ArrayList<DataPoint> inPoints)
+	{
+		final int numPoints = inPoints.size();
+		final long[] times = new long[numPoints];
+		long time = Long.MIN_VALUE;
+		boolean inOrder = true;
+		for (int i=0; i<numPoints; i++)
+		{
+			DataPoint point = inPoints.get(i);
+			if (point.hasTimestamp())
+			{
+				final long pointTime = getMilliseconds(point);
+				if (pointTime < time) {inOrder = false;}
+				time = pointTime;
+			}
+			times[i] = time;
+		}
+		DataPoint[] result = new DataPoint[numPoints];
+		if (inOrder) {
+			return inPoints.toArray(result);
+		}
+		Integer[] order = new Integer[numPoints];
+		for (int i=0; i<numPoints; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer inFirst, Integer inSecond) {
+				return Long.compare(times[inFirst], times[inSecond]);
+			}
+		});
+		for (int i=0; i<numPoints; i++) {
+			result[i] = inPoints.get(order[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Merge the sources into a single list, with the waypoints first.
+	 * The segment start flags of the track points are set according to the time gaps,
+	 * and points at exactly the same time as a point from a higher-priority source
+	 * are marked for deletion (unless they have media attached)
+	 * @return merged points
+	 */
+	public DataPoint[] merge()
+	{
+		_numCollisions = 0;
+		DataPoint[] waypoints = merge(_waypointSources);
+		DataPoint[] trackPoints = merge(_trackSources);
+		DataPoint[] result = new DataPoint[waypoints.length + trackPoints.length];
+		System.arraycopy(waypoints, 0, result, 0, waypoints.length);
+		System.arraycopy(trackPoints, 0, result, waypoints.length, trackPoints.length);
+		return result;
+	}
+
+	/**
+	 * Merge the given sources, which are already in time order
+	 * @param inSources sources in order of priority
+	 * @return merged points
+	 */
+	private DataPoint[] merge(ArrayList<DataPoint[]> inSources)
+	{
+		int numPoints = 0;
+		PriorityQueue<SourceCursor> queue = new PriorityQueue<SourceCursor>(Math.max(1, inSources.size()),
+			new Comparator<SourceCursor>() {
+				public int compare(SourceCursor inFirst, SourceCursor inSecond)
+				{
+					if (inFirst._time != inSecond._time) {
+						return inFirst._time < inSecond._time ? -1 : 1;
+					}
+					return inFirst._priority - inSecond._priority;
+				}
+			});
+		for (int i=0; i<inSources.size(); i++)
+		{
+			SourceCursor cursor = new SourceCursor(inSources.get(i), i);
+			if (cursor.advance()) {
+				queue.add(cursor);
+			}
+			numPoints += inSources.get(i).length;
+		}
+		DataPoint[] result = new DataPoint[numPoints];
+		int resultIndex = 0;
+		boolean anyTrackPoints = false;
+		long lastTrackTime = Long.MIN_VALUE;
+		int lastTrackPriority = -1;
+		while (!queue.isEmpty())
+		{
+			SourceCursor cursor = queue.poll();
+			DataPoint point = cursor.getPoint();
+			result[resultIndex++] = point;
+			if (!point.isWaypoint())
+			{
+				boolean collision = false;
+				if (point.hasTimestamp())
+				{
+					final long time = cursor._time;
+					collision = anyTrackPoints && time == lastTrackTime && cursor._priority != lastTrackPriority;
+					// Start a new segment if the gap is too large, otherwise join them together
+					point.setSegmentStart(!anyTrackPoints || (!collision && time - lastTrackTime > _maxGapMillis));
+					if (!collision)
+					{
+						lastTrackTime = time;
+						lastTrackPriority = cursor._priority;
+					}
+				}
+				else if (!anyTrackPoints) {
+					point.setSegmentStart(true);
+				}
+				if (collision && !point.hasMedia()) {
+					_numCollisions++;
+				}
+				point.setMarkedForDeletion(collision && !point.hasMedia());
+				anyTrackPoints = true;
+			}
+			if (cursor.advance()) {
+				queue.add(cursor);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of points marked for deletion by the last merge
+	 */
+	public int getNumCollisions()
+	{
+		return _numCollisions;
+	}
+
+	/**
+	 * @param inPoint point with timestamp
+	 * @return milliseconds of timestamp
+	 */
+	private static long getMilliseconds(DataPoint inPoint)
+	{
+		return inPoint.getTimestamp().getMillisecondsSince(EPOCH);
+	}
+}
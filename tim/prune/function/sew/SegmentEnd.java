@@ -1,19 +1,20 @@
 package tim.prune.function.sew;
 
-import tim.prune.data.Coordinate;
 import tim.prune.data.DataPoint;
 
 /**
  * Class to represent one end of a segment, including the
- * coordinates and the other end of the segment
+ * coordinates, the other end of the segment and the
+ * segment end to which it has been joined
  */
 public class SegmentEnd implements Comparable<SegmentEnd>
 {
 	private SegmentEnd _otherEnd = null;
-	private Coordinate _longitude = null;
-	private Coordinate _latitude  = null;
+	private SegmentEnd _joinedEnd = null;
+	private TrackBlock _block = null;
+	private double     _latitude  = 0.0;
+	private double     _longitude = 0.0;
 	private int        _pointIndex = 0;
-	private boolean    _active = true;
 
 
 	/**
@@ -23,10 +24,9 @@ public class SegmentEnd implements Comparable<SegmentEnd>
 	 */
 	public SegmentEnd(DataPoint inPoint, int inIndex)
 	{
-		_longitude = inPoint.getLongitude();
-		_latitude  = inPoint.getLatitude();
+		_latitude  = inPoint.getLatitude().getDouble();
+		_longitude = inPoint.getLongitude().getDouble();
 		_pointIndex = inIndex;
-		_active    = true;
 	}
 
 	/**
@@ -38,7 +38,7 @@ public class SegmentEnd implements Comparable<SegmentEnd>
 	}
 
 	/**
-	 * @return other end
+	 * @return other end of the segment
 	 */
 	public SegmentEnd getOtherEnd()
 	{
@@ -46,83 +46,69 @@ public class SegmentEnd implements Comparable<SegmentEnd>
 	}
 
 	/**
-	 * @return true if this is the start of the segment
+	 * @param inOther end of another segment to which this one is joined
 	 */
-	public boolean isStart()
+	public void setJoinedEnd(SegmentEnd inOther)
 	{
-		return _otherEnd == null || _otherEnd._pointIndex > _pointIndex;
+		_joinedEnd = inOther;
 	}
 
-	/** @return point index */
-	public int getPointIndex() {
-		return _pointIndex;
-	}
-
-	/** @return point index of other end */
-	public int getOtherPointIndex()
+	/**
+	 * @return end of the segment to which this one is joined, or null
+	 */
+	public SegmentEnd getJoinedEnd()
 	{
-		return _otherEnd == null ? _pointIndex : _otherEnd._pointIndex;
-	}
-
-	/** @return get the earlier of the two point indices */
-	public int getEarlierIndex() {
-		return isStart() ? _pointIndex : _otherEnd._pointIndex;
-	}
-
-	/** @return get the later of the two point indices */
-	public int getLaterIndex() {
-		return isStart() ? _otherEnd._pointIndex : _pointIndex;
+		return _joinedEnd;
 	}
 
 	/**
-	 * @return earlier end of this segment
+	 * @param inBlock block of which this is the first or last end
 	 */
-	public SegmentEnd getEarlierEnd() {
-		return isStart() ? this : _otherEnd;
+	public void setBlock(TrackBlock inBlock)
+	{
+		_block = inBlock;
 	}
 
 	/**
-	 * @return later end of this segment
+	 * @return block of which this is the first or last end
 	 */
-	public SegmentEnd getLaterEnd() {
-		return isStart() ? _otherEnd : this;
+	public TrackBlock getBlock()
+	{
+		return _block;
 	}
 
 	/**
-	 * Reverse this segment, by swapping the point indices of the start and end
-	 * isStart() will thereby also be reversed for both ends
+	 * @return true if this is the start of the segment in the original track
 	 */
-	public void reverseSegment()
+	public boolean isStart()
 	{
-		if (_otherEnd != null)
-		{
-			int pointIndex = _pointIndex;
-			_pointIndex = _otherEnd._pointIndex;
-			_otherEnd._pointIndex = pointIndex;
-		}
+		return _otherEnd == null || _otherEnd._pointIndex > _pointIndex;
 	}
 
-	/**
-	 * @return true if this node is still active
-	 */
-	public boolean isActive() {
-		return _active;
+	/** @return point index in the original track */
+	public int getPointIndex() {
+		return _pointIndex;
 	}
 
-	/**
-	 * Deactive this node, don't use it any more (it's already been merged)
-	 */
-	public void deactivate() {
-		_active = false;
+	/** @return latitude in degrees */
+	public double getLatitude() {
+		return _latitude;
+	}
+
+	/** @return longitude in degrees */
+	public double getLongitude() {
+		return _longitude;
 	}
 
 	/**
 	 * @param inOther other segment end
-	 * @return true if the coordinates are identical
+	 * @param inTolerance tolerance in degrees
+	 * @return true if the coordinates are within the tolerance
 	 */
-	public boolean atSamePointAs(SegmentEnd inOther)
+	public boolean isCloseTo(SegmentEnd inOther, double inTolerance)
 	{
-		return inOther != null && _latitude.equals(inOther._latitude) && _longitude.equals(inOther._longitude);
+		return inOther != null && Math.abs(_latitude - inOther._latitude) <= inTolerance
+			&& Math.abs(_longitude - inOther._longitude) <= inTolerance;
 	}
 
 	/**
@@ -132,66 +118,14 @@ public class SegmentEnd implements Comparable<SegmentEnd>
 	{
 		if (o == null) return -1;
 		// First, sort by latitude
-		if (!_latitude.equals(o._latitude)) {
-			return (_latitude.getDouble() < o._latitude.getDouble() ? -1 : 1);
+		if (_latitude != o._latitude) {
+			return (_latitude < o._latitude ? -1 : 1);
 		}
 		// Latitudes same, so sort by longitude
-		if (!_longitude.equals(o._longitude)) {
-			return (_longitude.getDouble() < o._longitude.getDouble() ? -1 : 1);
+		if (_longitude != o._longitude) {
+			return (_longitude < o._longitude ? -1 : 1);
 		}
 		// Points are identical so just sort by index
 		return _pointIndex - o._pointIndex;
 	}
-
-	/**
-	 * Adjust the point index as a result of a cut/move operation on the track
-	 * @param inSegmentStart index of start of segment to be moved
-	 * @param inSegmentEnd index of end of segment to be moved
-	 * @param inMoveTo index of point before which the segment should be moved
-	 */
-	public void adjustPointIndex(int inSegmentStart, int inSegmentEnd, int inMoveTo)
-	{
-		final int segmentSize = inSegmentEnd - inSegmentStart + 1; // number of points moved
-		final boolean forwardsMove = inMoveTo > inSegmentEnd;
-		// Min and max indices of affected points (apart from segment to be moved)
-		final int minIndex = forwardsMove ? inSegmentEnd + 1 : inMoveTo;
-		final int maxIndex = forwardsMove ? inMoveTo - 1 : inSegmentStart - 1;
-		if (_pointIndex >= minIndex && _pointIndex <= maxIndex)
-		{
-			// final int origIndex = _pointIndex;
-			if (forwardsMove) {
-				_pointIndex -= segmentSize; // segment moved forwards, point indices reduced
-			}
-			else {
-				_pointIndex += segmentSize; // segment moved backwards, point indices shifted forwards
-			}
-			// System.out.println("    Need to adjust index: " + origIndex + " -> " + _pointIndex);
-		}
-		else if (_pointIndex == inSegmentStart)
-		{
-			// final int origIndex = _pointIndex;
-			if (forwardsMove) {
-				_pointIndex = inMoveTo - segmentSize;
-			}
-			else
-			{
-				// Point index moves to moveTo
-				_pointIndex = inMoveTo;
-			}
-			// System.out.println("    Need to adjust movedseg: " + origIndex + " -> " + _pointIndex);
-		}
-		else if (_pointIndex == inSegmentEnd)
-		{
-			// final int origEndIndex = _otherEnd._pointIndex;
-			if (forwardsMove) {
-				_pointIndex = inMoveTo - 1;
-			}
-			else
-			{
-				// Point index moves to moveTo
-				_pointIndex = inMoveTo + inSegmentEnd - inSegmentStart;
-			}
-			// System.out.println("    Need to adjust movedseg: " + origEndIndex + " -> " + _pointIndex);
-		}
-	}
 }
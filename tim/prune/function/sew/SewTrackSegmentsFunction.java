@@ -1,6 +1,9 @@
 package tim.prune.function.sew;
 
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import tim.prune.App;
 import tim.prune.GenericFunction;
@@ -10,20 +13,22 @@ import tim.prune.data.DataPoint;
 import tim.prune.data.Track;
 import tim.prune.function.Cancellable;
 import tim.prune.gui.GenericProgressDialog;
-import tim.prune.undo.UndoException;
 import tim.prune.undo.UndoSewSegments;
 
 /**
  * Function to sew the track segments together if possible,
- * reversing and moving as required
+ * reversing and moving as required.
+ * The joins are worked out first using a list of blocks,
+ * and then the track is rebuilt in one go
  */
 public class SewTrackSegmentsFunction extends GenericFunction implements Runnable, Cancellable
 {
-	/** Set of sorted segment endpoints */
-	private TreeSet<SegmentEnd> _nodes = null;
 	/** Cancel flag */
 	private boolean _cancelled = false;
 
+	/** Tolerance in degrees for segment ends to be at the same place */
+	private static final double MATCH_TOLERANCE = 1e-9;
+
 
 	/** Constructor */
 	public SewTrackSegmentsFunction(App inApp) {
@@ -52,235 +57,347 @@ public class SewTrackSegmentsFunction extends GenericFunction implements Runnabl
 		// Make a progress bar
 		GenericProgressDialog progressDialog = new GenericProgressDialog(getNameKey(), null, _parentFrame, this);
 		progressDialog.show();
-		// Make an undo object to store the current points and sequence
-		UndoSewSegments undo = new UndoSewSegments(_app.getTrackInfo().getTrack());
+		final Track track = _app.getTrackInfo().getTrack();
 
-		// Make list of all the segment ends
-		_nodes = buildNodeList(_app.getTrackInfo().getTrack());
-		final int numNodes = (_nodes == null ? 0 : _nodes.size());
+		// Make list of all the segments
+		ArrayList<SegmentEnd> segmentStarts = buildSegmentList(track);
+		final int numNodes = segmentStarts.size() * 2;
 		if (numNodes < 4)
 		{
 			System.out.println("Can't do anything with this, not enough segments");
 			progressDialog.close();
+			return;
 		}
-		else
-		{
-			progressDialog.showProgress(10, 100); // Say 10% for building the nodes
+		progressDialog.showProgress(10, 100); // Say 10% for building the nodes
 
-			// Disable messaging because we're probably doing a lot of reverses and moves
-			UpdateMessageBroker.enableMessaging(false);
-			// Set now contains all pairs of segment ends, ends at the same location are adjacent
-			// Now we're just interested in pairs of nodes, not three or more at the same location
-			SegmentEnd firstNode = null, secondNode = null;
-			int numJoins = 0, currNode = 0;
-			for (SegmentEnd node : _nodes)
-			{
-				if (!node.isActive()) {continue;}
-				if (firstNode == null)
-				{
-					firstNode = node;
-				}
-				else if (secondNode == null)
-				{
-					if (node.atSamePointAs(firstNode)) {
-						secondNode = node;
-					}
-					else {
-						firstNode = node;
-					}
-				}
-				else if (node.atSamePointAs(secondNode))
-				{
-					// Found three colocated nodes, not interested
-					firstNode = secondNode = null;
-				}
-				else
-				{
-					// Found a pair
-					joinSegments(firstNode, secondNode);
-					numJoins++;
-					firstNode = node; secondNode = null;
-				}
-				if (_cancelled) {break;}
-				final double fractionDone = 1.0 * currNode / numNodes;
-				progressDialog.showProgress(10 + (int) (fractionDone * 80), 100);
-				currNode++;
-			}
-			if (firstNode != null && secondNode != null)
-			{
-				joinSegments(firstNode, secondNode);
+		// Find the pairs of segment ends at the same location, in order of location
+		ArrayList<SegmentEnd> pairs = findPairs(segmentStarts);
+		progressDialog.showProgress(30, 100);
+
+		// Work out the order of the segments, without touching the track yet
+		TrackBlock firstBlock = buildBlockList(track, segmentStarts);
+		int numJoins = 0;
+		for (int i=0; i<pairs.size() && !_cancelled; i+=2)
+		{
+			if (joinSegments(pairs.get(i), pairs.get(i+1))) {
 				numJoins++;
 			}
+		}
+		progressDialog.showProgress(80, 100);
+		if (_cancelled)
+		{
+			progressDialog.close();
+			return;
+		}
 
-			progressDialog.showProgress(90, 100); // Say 90%, only duplicate point deletion left
+		// Make an undo object to store the current points and sequence
+		UndoSewSegments undo = new UndoSewSegments(track);
+		// Disable messaging while the track is rebuilt
+		UpdateMessageBroker.enableMessaging(false);
+		if (numJoins > 0) {
+			rebuildTrack(track, firstBlock);
+		}
+		progressDialog.showProgress(90, 100); // Say 90%, only duplicate point deletion left
 
-			// Delete the duplicate points
-			final int numDeleted = _cancelled ? 0 : deleteSegmentStartPoints(_app.getTrackInfo().getTrack());
+		// Delete the duplicate points
+		final int numDeleted = deleteSegmentStartPoints(track);
 
-			progressDialog.close();
-			// Enable the messaging again
-			UpdateMessageBroker.enableMessaging(true);
-			if (_cancelled) // TODO: Also revert if any of the operations failed
-			{
-				// try to restore using undo object
-				try {
-					undo.performUndo(_app.getTrackInfo());
-				}
-				catch (UndoException ue) {
-					_app.showErrorMessage("oops", "CANNOT UNDO");
-				}
-			}
-			else if (numJoins > 0 || numDeleted > 0)
-			{
-				// Give Undo object back to App to confirm
-				final String confirmMessage = (numJoins > 0 ? I18nManager.getTextWithNumber("confirm.sewsegments", numJoins)
-					: "" + numDeleted + " " + I18nManager.getText("confirm.deletepoint.multi"));
-				_app.completeFunction(undo, confirmMessage);
-				UpdateMessageBroker.informSubscribers();
-			}
-			else
-			{
-				// Nothing done
-				_app.showErrorMessageNoLookup(getNameKey(), I18nManager.getTextWithNumber("error.sewsegments.nothingdone", numNodes/2));
-			}
+		progressDialog.close();
+		// Enable the messaging again
+		UpdateMessageBroker.enableMessaging(true);
+		if (numJoins > 0 || numDeleted > 0)
+		{
+			// Give Undo object back to App to confirm
+			final String confirmMessage = (numJoins > 0 ? I18nManager.getTextWithNumber("confirm.sewsegments", numJoins)
+				: "" + numDeleted + " " + I18nManager.getText("confirm.deletepoint.multi"));
+			_app.completeFunction(undo, confirmMessage);
+			UpdateMessageBroker.informSubscribers();
+		}
+		else
+		{
+			// Nothing done
+			_app.showErrorMessageNoLookup(getNameKey(), I18nManager.getTextWithNumber("error.sewsegments.nothingdone", numNodes/2));
 		}
 	}
 
 	/**
-	 * Build a sorted list of all the segment start points and end points
-	 * Creates a TreeSet containing two SegmentEnd objects for each segment
+	 * Build a list of all the segments in the track
 	 * @param inTrack track object
-	 * @return sorted list of segment ends
+	 * @return list of segment starts in track order, each linked to its segment end
 	 */
-	private static TreeSet<SegmentEnd> buildNodeList(Track inTrack)
+	private static ArrayList<SegmentEnd> buildSegmentList(Track inTrack)
 	{
-		TreeSet<SegmentEnd> nodes = new TreeSet<SegmentEnd>();
+		ArrayList<SegmentEnd> starts = new ArrayList<SegmentEnd>();
 		final int numPoints = inTrack.getNumPoints();
 		DataPoint prevTrackPoint = null;
 		int       prevTrackPointIndex = -1;
 		SegmentEnd segmentStart = null;
-		for (int i=0; i<numPoints; i++)
+		for (int i=0; i<=numPoints; i++)
 		{
-			DataPoint point = inTrack.getPoint(i);
-			if (!point.isWaypoint() && !point.hasMedia())
+			DataPoint point = (i < numPoints ? inTrack.getPoint(i) : null);
+			if (point == null || (!point.isWaypoint() && !point.hasMedia() && point.getSegmentStart()))
 			{
-				if (point.getSegmentStart())
+				// Start of new segment (or end of track) - does previous one need to be saved?
+				if (segmentStart != null && prevTrackPointIndex > 0 && prevTrackPointIndex != segmentStart.getPointIndex())
 				{
-					// Start of new segment - does previous one need to be saved?
-					if (segmentStart != null && prevTrackPointIndex > 0 && prevTrackPointIndex != segmentStart.getPointIndex())
-					{
-						// Finish previous segment and store in list
-						SegmentEnd segmentEnd = new SegmentEnd(prevTrackPoint, prevTrackPointIndex);
-						segmentStart.setOtherEnd(segmentEnd);
-						segmentEnd.setOtherEnd(segmentStart);
-						// Don't add closed loops
-						if (!segmentStart.atSamePointAs(segmentEnd))
-						{
-							nodes.add(segmentStart);
-							nodes.add(segmentEnd);
-						}
+					// Finish previous segment and store in list
+					SegmentEnd segmentEnd = new SegmentEnd(prevTrackPoint, prevTrackPointIndex);
+					segmentStart.setOtherEnd(segmentEnd);
+					segmentEnd.setOtherEnd(segmentStart);
+					// Don't add closed loops
+					if (!segmentStart.isCloseTo(segmentEnd, MATCH_TOLERANCE)) {
+						starts.add(segmentStart);
 					}
-					// Remember segment start
-					segmentStart = new SegmentEnd(point, i);
 				}
-				prevTrackPoint = point;
-				prevTrackPointIndex = i;
+				// Remember segment start
+				segmentStart = (point == null ? null : new SegmentEnd(point, i));
 			}
-		}
-		// Probably need to deal with segmentStart and prevTrackPoint, prevTrackPointIndex
-		if (segmentStart != null && prevTrackPointIndex > 0 && prevTrackPointIndex != segmentStart.getPointIndex())
-		{
-			// Finish last segment and store in list
-			SegmentEnd segmentEnd = new SegmentEnd(prevTrackPoint, prevTrackPointIndex);
-			segmentStart.setOtherEnd(segmentEnd);
-			segmentEnd.setOtherEnd(segmentStart);
-			// Don't add closed loops
-			if (!segmentStart.atSamePointAs(segmentEnd))
+			if (point != null && !point.isWaypoint() && !point.hasMedia())
 			{
-				nodes.add(segmentStart);
-				nodes.add(segmentEnd);
+				prevTrackPoint = point;
+				prevTrackPointIndex = i;
 			}
 		}
-		return nodes;
+		return starts;
 	}
 
 	/**
-	 * Join the two segments together represented by the given nodes
-	 * @param inFirstNode first node (order doesn't matter)
-	 * @param inSecondNode other node
+	 * Find the segment ends which can be joined, using a hash grid of the end positions.
+	 * Only pairs are joined, not three or more ends at the same place
+	 * @param inStarts list of segment starts
+	 * @return list of ends, with each pair in consecutive elements, sorted by location
 	 */
-	private void joinSegments(SegmentEnd inFirstNode, SegmentEnd inSecondNode)
+	private static ArrayList<SegmentEnd> findPairs(ArrayList<SegmentEnd> inStarts)
 	{
-		final Track track = _app.getTrackInfo().getTrack();
-		// System.out.println("Join: (" + inFirstNode.getPointIndex() + "-" + inFirstNode.getOtherPointIndex() + ") with ("
-		//	+ inSecondNode.getPointIndex() + "-" + inSecondNode.getOtherPointIndex() + ")");
-		// System.out.println("    : " + (inFirstNode.isStart() ? "start" : "end") + " to " + (inSecondNode.isStart() ? "start" : "end"));
-		final boolean moveSecondBeforeFirst = inFirstNode.isStart();
-		if (inFirstNode.isStart() == inSecondNode.isStart())
+		// Put all the ends into the grid cells
+		HashMap<Long, ArrayList<SegmentEnd>> grid = new HashMap<Long, ArrayList<SegmentEnd>>();
+		ArrayList<SegmentEnd> ends = new ArrayList<SegmentEnd>(inStarts.size() * 2);
+		for (SegmentEnd start : inStarts)
 		{
-			if (track.reverseRange(inSecondNode.getEarlierIndex(), inSecondNode.getLaterIndex()))
+			ends.add(start);
+			ends.add(start.getOtherEnd());
+		}
+		for (SegmentEnd end : ends)
+		{
+			final Long key = getGridKey(getGridCell(end.getLatitude()), getGridCell(end.getLongitude()));
+			ArrayList<SegmentEnd> cell = grid.get(key);
+			if (cell == null)
 			{
-				inSecondNode.reverseSegment();
-				// System.out.println("    : Reverse segment: " + inSecondNode.getEarlierIndex() + " - " + inSecondNode.getLaterIndex());
+				cell = new ArrayList<SegmentEnd>(2);
+				grid.put(key, cell);
 			}
-			else {
-				System.err.println("Oops, reverse range didn't work");
-				// TODO: Abort?
+			cell.add(end);
+		}
+		// For each end, look for the other ends in the neighbouring cells
+		HashMap<SegmentEnd, SegmentEnd> partners = new HashMap<SegmentEnd, SegmentEnd>();
+		HashSet<SegmentEnd> crowdedEnds = new HashSet<SegmentEnd>();
+		for (SegmentEnd end : ends)
+		{
+			final long latCell = getGridCell(end.getLatitude());
+			final long lonCell = getGridCell(end.getLongitude());
+			for (long dLat = -1; dLat <= 1; dLat++)
+			{
+				for (long dLon = -1; dLon <= 1; dLon++)
+				{
+					ArrayList<SegmentEnd> cell = grid.get(getGridKey(latCell + dLat, lonCell + dLon));
+					if (cell == null) {continue;}
+					for (SegmentEnd other : cell)
+					{
+						if (other != end && end.isCloseTo(other, MATCH_TOLERANCE))
+						{
+							if (partners.put(end, other) != null) {
+								crowdedEnds.add(end);
+							}
+						}
+					}
+				}
 			}
 		}
-		if (moveSecondBeforeFirst)
+		// Only take the pairs where each end has exactly one partner
+		ArrayList<SegmentEnd> firstEnds = new ArrayList<SegmentEnd>();
+		for (SegmentEnd end : ends)
 		{
-			if ((inSecondNode.getLaterIndex()+1) != inFirstNode.getPointIndex())
+			SegmentEnd partner = partners.get(end);
+			if (partner != null && end.getPointIndex() < partner.getPointIndex()
+				&& !crowdedEnds.contains(end) && !crowdedEnds.contains(partner))
 			{
-				// System.out.println("    : Move second segment before first");
-				cutAndMoveSegment(inSecondNode.getEarlierIndex(), inSecondNode.getLaterIndex(), inFirstNode.getPointIndex());
+				firstEnds.add(end);
 			}
 		}
-		else if ((inFirstNode.getLaterIndex()+1) != inSecondNode.getPointIndex())
+		// Sort the pairs by location, to join them in the same order as before
+		Collections.sort(firstEnds);
+		ArrayList<SegmentEnd> pairs = new ArrayList<SegmentEnd>(firstEnds.size() * 2);
+		for (SegmentEnd end : firstEnds)
 		{
-			// System.out.println("    : Move first segment before second (because " + (inFirstNode.getLaterIndex()+1) + " isn't " + inSecondNode.getPointIndex() + ")");
-			cutAndMoveSegment(inFirstNode.getEarlierIndex(), inFirstNode.getLaterIndex(), inSecondNode.getPointIndex());
+			pairs.add(end);
+			pairs.add(partners.get(end));
 		}
-		// Now merge the SegmentEnds so that they're not split up again
-		if (inSecondNode.getEarlierIndex() == (inFirstNode.getLaterIndex()+1)) {
-			// System.out.println("second node is now directly after the first node");
+		return pairs;
+	}
+
+	/**
+	 * @param inDegrees latitude or longitude in degrees
+	 * @return index of grid cell
+	 */
+	private static long getGridCell(double inDegrees)
+	{
+		return (long) Math.floor(inDegrees / MATCH_TOLERANCE);
+	}
+
+	/**
+	 * @param inLatCell latitude cell index
+	 * @param inLonCell longitude cell index
+	 * @return key for grid map
+	 */
+	private static Long getGridKey(long inLatCell, long inLonCell)
+	{
+		return Long.valueOf(inLatCell * 92821L + inLonCell);
+	}
+
+	/**
+	 * Build the linked list of blocks, one for each segment and one for each range of other points
+	 * @param inTrack track object
+	 * @param inStarts list of segment starts in track order
+	 * @return first block of the list, which is empty
+	 */
+	private static TrackBlock buildBlockList(Track inTrack, ArrayList<SegmentEnd> inStarts)
+	{
+		TrackBlock firstBlock = new TrackBlock(0, -1, -1);
+		TrackBlock prevBlock = firstBlock;
+		int nextIndex = 0;
+		for (SegmentEnd start : inStarts)
+		{
+			if (start.getPointIndex() > nextIndex)
+			{
+				TrackBlock block = makeOtherBlock(inTrack, nextIndex, start.getPointIndex() - 1);
+				block.append(prevBlock);
+				prevBlock = block;
+			}
+			TrackBlock block = new TrackBlock(start);
+			block.append(prevBlock);
+			prevBlock = block;
+			nextIndex = start.getOtherEnd().getPointIndex() + 1;
 		}
-		else if (inFirstNode.getEarlierIndex() == (inSecondNode.getLaterIndex()+1)) {
-			//System.out.println("first node is now directly after the second node");
+		if (nextIndex < inTrack.getNumPoints()) {
+			makeOtherBlock(inTrack, nextIndex, inTrack.getNumPoints() - 1).append(prevBlock);
 		}
-		else {
-			System.err.println("Why aren't the segments directly consecutive after the join?");
+		return firstBlock;
+	}
+
+	/**
+	 * Make a block for the points between segments
+	 * @param inTrack track object
+	 * @param inStartIndex start index, inclusive
+	 * @param inEndIndex end index, inclusive
+	 * @return block object
+	 */
+	private static TrackBlock makeOtherBlock(Track inTrack, int inStartIndex, int inEndIndex)
+	{
+		int firstTrackPointIndex = -1;
+		for (int i=inStartIndex; i<=inEndIndex && firstTrackPointIndex < 0; i++)
+		{
+			DataPoint point = inTrack.getPoint(i);
+			if (point.isValid() && !point.isWaypoint()) {
+				firstTrackPointIndex = i;
+			}
 		}
-		// Find the earliest and latest ends of these two segments
-		SegmentEnd earlierSegmentEnd = (inFirstNode.getEarlierIndex() < inSecondNode.getEarlierIndex() ? inFirstNode : inSecondNode).getEarlierEnd();
-		SegmentEnd laterSegmentEnd   = (inFirstNode.getLaterIndex() > inSecondNode.getLaterIndex() ? inFirstNode : inSecondNode).getLaterEnd();
-		// Get rid of the inner two segment ends, join the earliest and latest together
-		earlierSegmentEnd.getOtherEnd().deactivate();
-		laterSegmentEnd.getOtherEnd().deactivate();
-		earlierSegmentEnd.setOtherEnd(laterSegmentEnd);
-		laterSegmentEnd.setOtherEnd(earlierSegmentEnd);
+		return new TrackBlock(inStartIndex, inEndIndex, firstTrackPointIndex);
 	}
 
 	/**
-	 * Cut and move the segment to a different position
-	 * @param inSegmentStart start index of segment
-	 * @param inSegmentEnd end index of segment
-	 * @param inMoveToPos index before which the segment should be moved
+	 * Join the two chains of segments together represented by the given nodes.
+	 * The second chain is reversed if necessary, and then the chain which is
+	 * joined at its start is moved to directly after the other chain.
+	 * @param inFirstNode first node (with lower point index)
+	 * @param inSecondNode other node
+	 * @return true if the chains were joined
 	 */
-	private void cutAndMoveSegment(int inSegmentStart, int inSegmentEnd, int inMoveToPos)
+	private static boolean joinSegments(SegmentEnd inFirstNode, SegmentEnd inSecondNode)
 	{
-		if (!_app.getTrackInfo().getTrack().cutAndMoveSection(inSegmentStart, inSegmentEnd, inMoveToPos))
+		final TrackBlock firstChain = inFirstNode.getBlock();
+		final TrackBlock secondChain = inSecondNode.getBlock();
+		if (firstChain == secondChain) {
+			return false; // would make a closed loop
+		}
+		if (firstChain.getFirstEnd() == inFirstNode)
 		{
-			System.err.println("   Oops, cut and move didn't work");
-			// TODO: Throw exception? Return false?
+			// Join the second chain's end to the start of the first chain
+			if (secondChain.getFirstEnd() == inSecondNode) {
+				secondChain.reverse();
+			}
+			firstChain.setEnds(secondChain.getFirstEnd(), firstChain.getLastEnd());
+			secondChain.remove();
 		}
 		else
 		{
-			// Loop over each node to inform it of the index changes
-			for (SegmentEnd node : _nodes) {
-				node.adjustPointIndex(inSegmentStart, inSegmentEnd, inMoveToPos);
+			// Join the end of the first chain to the second chain's start
+			if (secondChain.getLastEnd() == inSecondNode) {
+				secondChain.reverse();
+			}
+			secondChain.setEnds(firstChain.getFirstEnd(), secondChain.getLastEnd());
+			firstChain.remove();
+		}
+		inFirstNode.setJoinedEnd(inSecondNode);
+		inSecondNode.setJoinedEnd(inFirstNode);
+		return true;
+	}
+
+	/**
+	 * Rebuild the track in a single pass according to the list of blocks
+	 * @param inTrack track object
+	 * @param inFirstBlock first block of list
+	 */
+	private static void rebuildTrack(Track inTrack, TrackBlock inFirstBlock)
+	{
+		final int numPoints = inTrack.getNumPoints();
+		DataPoint[] newPoints = new DataPoint[numPoints];
+		int copyIndex = 0;
+		for (TrackBlock block = inFirstBlock; block != null; block = block.getNextBlock())
+		{
+			if (!block.isChain())
+			{
+				// Other points stay in the same order
+				for (int i=block.getStartIndex(); i<=block.getEndIndex(); i++) {
+					newPoints[copyIndex++] = inTrack.getPoint(i);
+				}
+				if (block.isStartForced()) {
+					inTrack.getPoint(block.getFirstTrackPointIndex()).setSegmentStart(true);
+				}
+				continue;
+			}
+			// Follow the chain of segments from its first end
+			SegmentEnd end = block.getFirstEnd();
+			while (end != null)
+			{
+				final int fromIndex = end.getPointIndex();
+				final int toIndex = end.getOtherEnd().getPointIndex();
+				if (end.isStart())
+				{
+					// Segment forwards, it already starts with a segment start
+					for (int i=fromIndex; i<=toIndex; i++) {
+						newPoints[copyIndex++] = inTrack.getPoint(i);
+					}
+				}
+				else
+				{
+					// Segment backwards, so the segment breaks move to the other side of each point
+					boolean startFlag = true;
+					for (int i=fromIndex; i>=toIndex; i--)
+					{
+						DataPoint point = inTrack.getPoint(i);
+						if (!point.isWaypoint())
+						{
+							final boolean nextFlag = point.getSegmentStart();
+							point.setSegmentStart(startFlag);
+							startFlag = nextFlag;
+						}
+						newPoints[copyIndex++] = point;
+					}
+				}
+				end = end.getOtherEnd().getJoinedEnd();
 			}
 		}
+		inTrack.replaceContents(newPoints);
 	}
 
 	/**
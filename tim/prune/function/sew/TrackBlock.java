@@ -0,0 +1,143 @@
+package tim.prune.function.sew;
+
+/**
+ * Class to represent a block of consecutive points in the track,
+ * either a chain of joined segments or the points in between them.
+ * Blocks are kept in a linked list so that they can be moved cheaply
+ * while the joins are worked out, before the track is rebuilt
+ */
+public class TrackBlock
+{
+	private TrackBlock _prevBlock = null;
+	private TrackBlock _nextBlock = null;
+	/** First and last ends of the chain, or null for other points */
+	private SegmentEnd _firstEnd = null;
+	private SegmentEnd _lastEnd = null;
+	/** Range of other points */
+	private int _startIndex = -1;
+	private int _endIndex = -1;
+	/** Index of first track point in range, or -1 if none */
+	private int _firstTrackPointIndex = -1;
+	/** True if the first track point has to start a new segment */
+	private boolean _startForced = false;
+
+
+	/**
+	 * Constructor for a single segment
+	 * @param inStart start of segment
+	 */
+	public TrackBlock(SegmentEnd inStart)
+	{
+		setEnds(inStart, inStart.getOtherEnd());
+	}
+
+	/**
+	 * Constructor for the points between segments
+	 * @param inStartIndex start index, inclusive
+	 * @param inEndIndex end index, inclusive
+	 * @param inFirstTrackPointIndex index of first track point, or -1 if none
+	 */
+	public TrackBlock(int inStartIndex, int inEndIndex, int inFirstTrackPointIndex)
+	{
+		_startIndex = inStartIndex;
+		_endIndex = inEndIndex;
+		_firstTrackPointIndex = inFirstTrackPointIndex;
+	}
+
+	/** @return true if this block is a chain of segments */
+	public boolean isChain() {
+		return _firstEnd != null;
+	}
+
+	/** @return first end of chain */
+	public SegmentEnd getFirstEnd() {
+		return _firstEnd;
+	}
+
+	/** @return last end of chain */
+	public SegmentEnd getLastEnd() {
+		return _lastEnd;
+	}
+
+	/**
+	 * Set the ends of the chain
+	 * @param inFirst first end
+	 * @param inLast last end
+	 */
+	public void setEnds(SegmentEnd inFirst, SegmentEnd inLast)
+	{
+		_firstEnd = inFirst;
+		_lastEnd = inLast;
+		inFirst.setBlock(this);
+		inLast.setBlock(this);
+	}
+
+	/** @return start index of range */
+	public int getStartIndex() {
+		return _startIndex;
+	}
+
+	/** @return end index of range */
+	public int getEndIndex() {
+		return _endIndex;
+	}
+
+	/** @return index of first track point in range, or -1 */
+	public int getFirstTrackPointIndex() {
+		return _firstTrackPointIndex;
+	}
+
+	/** @return true if the first track point has to start a new segment */
+	public boolean isStartForced() {
+		return _startForced;
+	}
+
+	/** @return next block */
+	public TrackBlock getNextBlock() {
+		return _nextBlock;
+	}
+
+	/**
+	 * Reverse the chain, which also forces a segment break after it
+	 */
+	public void reverse()
+	{
+		SegmentEnd first = _firstEnd;
+		_firstEnd = _lastEnd;
+		_lastEnd = first;
+		// The next track point has to start a new segment, but chains already do
+		TrackBlock block = _nextBlock;
+		while (block != null && !block.isChain() && block._firstTrackPointIndex < 0) {
+			block = block._nextBlock;
+		}
+		if (block != null && !block.isChain()) {
+			block._startForced = true;
+		}
+	}
+
+	/**
+	 * Add this block after the given one
+	 * @param inPrevious previous block, or null
+	 */
+	public void append(TrackBlock inPrevious)
+	{
+		_prevBlock = inPrevious;
+		if (inPrevious != null) {
+			inPrevious._nextBlock = this;
+		}
+	}
+
+	/**
+	 * Remove this block from the list
+	 */
+	public void remove()
+	{
+		if (_prevBlock != null) {
+			_prevBlock._nextBlock = _nextBlock;
+		}
+		if (_nextBlock != null) {
+			_nextBlock._prevBlock = _prevBlock;
+		}
+		_prevBlock = _nextBlock = null;
+	}
+}
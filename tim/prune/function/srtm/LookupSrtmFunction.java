@@ -1,12 +1,8 @@
 package tim.prune.function.srtm;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import javax.swing.JOptionPane;
 
@@ -15,7 +11,6 @@ import tim.prune.DataSubscriber;
 import tim.prune.GenericFunction;
 import tim.prune.I18nManager;
 import tim.prune.UpdateMessageBroker;
-import tim.prune.config.Config;
 import tim.prune.data.Altitude;
 import tim.prune.data.DataPoint;
 import tim.prune.data.Field;
@@ -27,7 +22,7 @@ import tim.prune.undo.UndoLookupSrtm;
 
 /**
  * Class to provide a lookup function for point altitudes using the Space
- * Shuttle's SRTM data files. HGT files are downloaded into memory via HTTP and
+ * Shuttle's SRTM data files. HGT files are loaded through the SrtmTileCache and
  * point altitudes can then be interpolated from the 3m grid data.
  */
 public class LookupSrtmFunction extends GenericFunction implements Runnable
@@ -43,10 +38,8 @@ public class LookupSrtmFunction extends GenericFunction implements Runnable
 	/** Flag to check whether this function is currently running or not */
 	private boolean _running = false;
 
-	/** Expected size of hgt file in bytes */
-	private static final long HGT_SIZE = 2884802L;
-	/** Altitude below which is considered void */
-	private static final int VOID_VAL = -32768;
+	/** Altitude which is considered void */
+	private static final int VOID_VAL = SrtmTileCache.VOID_VAL;
 
 	/**
 	 * Constructor
@@ -182,30 +175,11 @@ public class LookupSrtmFunction extends GenericFunction implements Runnable
 				{
 					// Set progress
 					_progress.setValue(t);
-					final int ARRLENGTH = 1201 * 1201;
-					int[] heights = new int[ARRLENGTH];
-					// Open zipinputstream on url and check size
-					ZipInputStream inStream = getStreamToHgtFile(urls[t]);
-					boolean entryOk = false;
-					if (inStream != null)
-					{
-						ZipEntry entry = inStream.getNextEntry();
-						entryOk = (entry != null && entry.getSize() == HGT_SIZE);
-						if (entryOk)
-						{
-							// Read entire file contents into one byte array
-							for (int i = 0; i < ARRLENGTH; i++)
-							{
-								heights[i] = inStream.read() * 256 + inStream.read();
-								if (heights[i] >= 32768) {heights[i] -= 65536;}
-							}
-						}
-						// else {
-						//	System.out.println("length not ok: " + entry.getSize());
-						// }
-						// Close stream from url
-						inStream.close();
+					if (!SrtmTileCache.isAvailableLocally(tile, urls[t])) {
+						_hadToDownload = true;
 					}
+					short[] heights = SrtmTileCache.getHeights(tile, urls[t]);
+					final boolean entryOk = (heights != null);
 
 					if (entryOk)
 					{
@@ -289,35 +263,6 @@ public class LookupSrtmFunction extends GenericFunction implements Runnable
 		}
 	}
 
-	/**
-	 * See whether the SRTM file is already available locally first, then try online
-	 * @param inUrl URL for online resource
-	 * @return ZipInputStream either on the local file or on the downloaded zip file
-	 */
-	private ZipInputStream getStreamToHgtFile(URL inUrl)
-	throws IOException
-	{
-		String diskCachePath = Config.getConfigString(Config.KEY_DISK_CACHE);
-		if (diskCachePath != null)
-		{
-			File srtmDir = new File(diskCachePath, "srtm");
-			if (srtmDir.exists() && srtmDir.isDirectory() && srtmDir.canRead())
-			{
-				File srtmFile = new File(srtmDir, new File(inUrl.getFile()).getName());
-				if (srtmFile.exists() && srtmFile.isFile() && srtmFile.canRead())
-				{
-					// System.out.println("Lookup: Using file " + srtmFile.getAbsolutePath());
-					// File found, use this one
-					return new ZipInputStream(new FileInputStream(srtmFile));
-				}
-			}
-		}
-		// System.out.println("Lookup: Trying online: " + inUrl.toString());
-		_hadToDownload = true;
-		// MAYBE: Only download if we're in online mode?
-		return new ZipInputStream(inUrl.openStream());
-	}
-
 	/**
 	 * Perform a bilinear interpolation on the given altitude array
 	 * @param inAltitudes array of four altitude values on corners of square (bl, br, tl, tr)
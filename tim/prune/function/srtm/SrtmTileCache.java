@@ -0,0 +1,148 @@
+package tim.prune.function.srtm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import tim.prune.config.Config;
+
+/**
+ * Class to load the heights of Srtm tiles, either from the disk cache or online,
+ * and keep the most recently used ones in memory
+ */
+public abstract class SrtmTileCache
+{
+	/** Number of values on each side of a tile */
+	public static final int TILE_SIZE = 1201;
+	/** Altitude which marks a void */
+	public static final int VOID_VAL = -32768;
+	/** Expected size of hgt file in bytes */
+	private static final long HGT_SIZE = 2884802L;
+	/** Maximum number of tiles to keep in memory (each is nearly 3MB) */
+	private static final int MAX_TILES = 9;
+
+	/** Loaded tiles, in order of use */
+	private static final LinkedHashMap<Integer, short[]> _tiles = new LinkedHashMap<Integer, short[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<Integer, short[]> inEldest) {
+			return size() > MAX_TILES;
+		}
+	};
+
+
+	/**
+	 * Get the heights of the given tile, loading them if necessary
+	 * @param inTile tile to get
+	 * @param inUrl url of tile, used for the filename and for downloading
+	 * @return array of heights, from the top left corner row by row, or null if tile not valid
+	 * @throws IOException if the tile couldn't be read
+	 */
+	public static short[] getHeights(SrtmTile inTile, URL inUrl)
+	throws IOException
+	{
+		final Integer key = getKey(inTile);
+		synchronized (_tiles)
+		{
+			short[] heights = _tiles.get(key);
+			if (heights != null) {return heights;}
+		}
+		if (inUrl == null) {return null;}
+		short[] heights = readTile(inUrl);
+		if (heights != null)
+		{
+			synchronized (_tiles) {
+				_tiles.put(key, heights);
+			}
+		}
+		return heights;
+	}
+
+	/**
+	 * @param inTile tile to check
+	 * @param inUrl url of tile
+	 * @return true if the tile is either in memory or in the disk cache
+	 */
+	public static boolean isAvailableLocally(SrtmTile inTile, URL inUrl)
+	{
+		synchronized (_tiles)
+		{
+			if (_tiles.containsKey(getKey(inTile))) {return true;}
+		}
+		return inUrl != null && getCachedFile(inUrl) != null;
+	}
+
+	/**
+	 * @param inTile tile
+	 * @return key for map of loaded tiles
+	 */
+	private static Integer getKey(SrtmTile inTile)
+	{
+		return Integer.valueOf((inTile.getLatitude() + 90) * 360 + inTile.getLongitude() + 180);
+	}
+
+	/**
+	 * Read the heights from the zipped hgt file
+	 * @param inUrl url of tile
+	 * @return array of heights, or null if the file didn't have the expected size
+	 * @throws IOException if the file couldn't be read
+	 */
+	private static short[] readTile(URL inUrl)
+	throws IOException
+	{
+		File cachedFile = getCachedFile(inUrl);
+		// MAYBE: Only download if we're in online mode?
+		InputStream rawStream = (cachedFile == null ? inUrl.openStream() : new FileInputStream(cachedFile));
+		ZipInputStream inStream = new ZipInputStream(rawStream);
+		try
+		{
+			ZipEntry entry = inStream.getNextEntry();
+			// Size may not be known in advance, but if it is then it has to match
+			if (entry == null || (entry.getSize() >= 0 && entry.getSize() != HGT_SIZE)) {return null;}
+			// Read entire file contents into one byte array, then convert to heights
+			byte[] bytes = new byte[(int) HGT_SIZE];
+			int numRead = 0;
+			while (numRead < bytes.length)
+			{
+				final int count = inStream.read(bytes, numRead, bytes.length - numRead);
+				if (count < 0) {return null;}
+				numRead += count;
+			}
+			short[] heights = new short[TILE_SIZE * TILE_SIZE];
+			for (int i=0; i<heights.length; i++) {
+				heights[i] = (short) (((bytes[i*2] & 0xff) << 8) | (bytes[i*2+1] & 0xff));
+			}
+			return heights;
+		}
+		finally {
+			inStream.close();
+		}
+	}
+
+	/**
+	 * See whether the Srtm file is already available in the disk cache
+	 * @param inUrl URL for online resource
+	 * @return file in disk cache, or null if not found
+	 */
+	private static File getCachedFile(URL inUrl)
+	{
+		String diskCachePath = Config.getConfigString(Config.KEY_DISK_CACHE);
+		if (diskCachePath != null)
+		{
+			File srtmDir = new File(diskCachePath, "srtm");
+			if (srtmDir.exists() && srtmDir.isDirectory() && srtmDir.canRead())
+			{
+				File srtmFile = new File(srtmDir, new File(inUrl.getFile()).getName());
+				if (srtmFile.exists() && srtmFile.isFile() && srtmFile.canRead()) {
+					return srtmFile;
+				}
+			}
+		}
+		return null;
+	}
+}
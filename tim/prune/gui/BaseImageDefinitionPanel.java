@@ -78,6 +78,14 @@ public class BaseImageDefinitionPanel extends JPanel implements BaseImageConsume
 		_baseImageConfig.setImageDefinition(inDefinition);
 	}
 
+	/**
+	 * @param inSize largest image size which the parent can use
+	 */
+	public void setMaxImageSize(int inSize)
+	{
+		_baseImageConfig.setMaxImageSize(inSize);
+	}
+
 	/**
 	 * Change the base image by calling the BaseImageConfigDialog
 	 */
@@ -3,6 +3,7 @@ package tim.prune.gui;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import tim.prune.GenericFunction;
+import tim.prune.diagnostics.Diagnostics;
 
 /**
  * Class to launch a function triggered by an action
@@ -27,7 +28,10 @@ public class FunctionLauncher implements ActionListener
 	 */
 	public void actionPerformed(ActionEvent e)
 	{
+		// Only measures the start of the function, not any work done after a dialog is confirmed
+		final long startTime = Diagnostics.startTimer();
 		_function.begin();
+		Diagnostics.stopTimer(Diagnostics.TIMER_FUNCTION_START_PREFIX + _function.getClass().getSimpleName(), startTime);
 	}
 
 }
\ No newline at end of file
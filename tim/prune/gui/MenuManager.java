@@ -84,6 +84,7 @@ public class MenuManager implements DataSubscriber
 	private JMenuItem _rearrangeWaypointsItem = null;
 	private JMenuItem _splitSegmentsItem = null;
 	private JMenuItem _sewSegmentsItem = null;
+	private JMenuItem _mergeByTimeItem = null;
 	private JMenuItem _cutAndMoveItem = null;
 	private JMenuItem _convertNamesToTimesItem = null;
 	private JMenuItem _deleteFieldValuesItem = null;
@@ -363,6 +364,9 @@ public class MenuManager implements DataSubscriber
 		// Sew track segments
 		_sewSegmentsItem = makeMenuItem(FunctionLibrary.FUNCTION_SEW_SEGMENTS, false);
 		trackMenu.add(_sewSegmentsItem);
+		// Merge loaded files by time
+		_mergeByTimeItem = makeMenuItem(FunctionLibrary.FUNCTION_MERGE_BY_TIME, false);
+		trackMenu.add(_mergeByTimeItem);
 		trackMenu.addSeparator();
 		_learnEstimationParams = makeMenuItem(FunctionLibrary.FUNCTION_LEARN_ESTIMATION_PARAMS, false);
 		trackMenu.add(_learnEstimationParams);
@@ -685,6 +689,7 @@ public class MenuManager implements DataSubscriber
 		helpMenu.add(makeMenuItem(FunctionLibrary.FUNCTION_SHOW_KEYS));
 		helpMenu.add(makeMenuItem(FunctionLibrary.FUNCTION_ABOUT));
 		helpMenu.add(makeMenuItem(FunctionLibrary.FUNCTION_CHECK_VERSION));
+		helpMenu.add(makeMenuItem(FunctionLibrary.FUNCTION_DIAGNOSTICS));
 		menubar.add(helpMenu);
 
 		return menubar;
@@ -883,6 +888,8 @@ public class MenuManager implements DataSubscriber
 		_rearrangeWaypointsItem.setEnabled(hasData && _track.hasTrackPoints() && _track.hasWaypoints());
 		_splitSegmentsItem.setEnabled(hasData && _track.hasTrackPoints() && _track.getNumPoints() > 3);
 		_sewSegmentsItem.setEnabled(hasData && _track.hasTrackPoints() && _track.getNumPoints() > 3);
+		_mergeByTimeItem.setEnabled(hasData && _track.hasTrackPoints()
+			&& _app.getTrackInfo().getFileInfo().getNumFiles() > 1);
 		_selectAllItem.setEnabled(hasData);
 		_selectNoneItem.setEnabled(hasData);
 		_show3dItem.setEnabled(hasMultiplePoints);
@@ -4,7 +4,8 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Image;
-import javax.swing.ImageIcon;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
@@ -14,13 +15,15 @@ import tim.prune.data.Photo;
 /**
  * GUI component for showing photo thumbnail
  */
-public class PhotoThumbnail extends JPanel implements Runnable
+public class PhotoThumbnail extends JPanel implements ThumbnailListener
 {
 	private Photo _photo = null;
 	private Image _thumbnail = null;
 	private boolean _loadingImage = false;
 	private boolean _loadFailed = false;
 	private boolean _inPanel = false;
+	/** Size of thumbnails shown in the details panel */
+	private static final int PANEL_THUMB_SIZE = 400;
 	/** String to show before photo is loaded */
 	private static final String LOADING_STRING = I18nManager.getText("details.photo.loading") + " ...";
 
@@ -55,6 +58,7 @@ public class PhotoThumbnail extends JPanel implements Runnable
 			_photo = inPhoto;
 			_thumbnail = null;
 			_loadFailed = false;
+			_loadingImage = false;
 		}
 		repaint();
 	}
@@ -66,6 +70,7 @@ public class PhotoThumbnail extends JPanel implements Runnable
 	{
 		_thumbnail = null;
 		_loadFailed = false;
+		_loadingImage = false;
 	}
 
 	/**
@@ -77,11 +82,20 @@ public class PhotoThumbnail extends JPanel implements Runnable
 		super.paint(inG);
 		if (_photo != null)
 		{
-			// read thumbnail in separate thread
+			// read thumbnail in the background using the shared thumbnail manager
 			if (_thumbnail == null && !_loadingImage && !_loadFailed)
 			{
 				_loadingImage = true;
-				new Thread(this).start();
+				if (_inPanel) {
+					// use either exif thumbnail or photo scaled down to sensible size
+					ThumbnailManager.requestThumbnail(_photo, PANEL_THUMB_SIZE, true, this);
+				}
+				else
+				{
+					// no need to load more pixels than the screen can show
+					Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+					ThumbnailManager.requestThumbnail(_photo, Math.max(screenSize.width, screenSize.height), false, this);
+				}
 			}
 			// if loading, display message
 			if (_loadingImage)
@@ -122,44 +136,22 @@ public class PhotoThumbnail extends JPanel implements Runnable
 
 
 	/**
-	 * Run method, for loading image in separate thread
-	 * @see java.lang.Runnable#run()
+	 * Receive the loaded thumbnail from the thumbnail manager
+	 * @param inPhoto photo for which the thumbnail was requested
+	 * @param inThumbnail thumbnail image, or null if loading failed
 	 */
-	public void run()
+	public void thumbnailLoaded(final Photo inPhoto, final BufferedImage inThumbnail)
 	{
-		if (_inPanel)
-		{
-			// use either exif thumbnail or photo scaled down to sensible size
-			if (_photo.getExifThumbnail() != null) {
-				// Use exif thumbnail
-				Image image = new ImageIcon(_photo.getExifThumbnail()).getImage();
-				_thumbnail = ImageUtils.createScaledImage(image, image.getWidth(null), image.getHeight(null));
-				image = null;
-			}
-			else
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run()
 			{
-				// no exif thumbnail available, going to have to read whole thing
-				int picWidth = _photo.getWidth();
-				int picHeight = _photo.getHeight();
-				if (picWidth > -1 && picHeight > -1)
-				{
-					// Just set a "reasonable" thumbnail size for now
-					final int DEFAULT_THUMB_SIZE = 400;
-					// calculate maximum thumbnail size
-					Dimension thumbSize = ImageUtils.getThumbnailSize(picWidth, picHeight, DEFAULT_THUMB_SIZE, DEFAULT_THUMB_SIZE);
-					// Make icon to load image into
-					Image image = _photo.createImageIcon().getImage();
-					// save scaled, smoothed thumbnail for reuse
-					_thumbnail = ImageUtils.createScaledImage(image, thumbSize.width, thumbSize.height);
-					image = null;
-				}
-				else _loadFailed = true;
+				// Ignore the result if the photo has changed in the meantime
+				if (inPhoto != _photo || !_loadingImage) {return;}
+				_thumbnail = inThumbnail;
+				_loadFailed = (inThumbnail == null);
+				_loadingImage = false;
+				repaint();
 			}
-		}
-		else {
-			_thumbnail = _photo.createImageIcon().getImage();
-		}
-		_loadingImage = false;
-		repaint();
+		});
 	}
 }
@@ -0,0 +1,19 @@
+package tim.prune.gui;
+
+import java.awt.image.BufferedImage;
+
+import tim.prune.data.Photo;
+
+/**
+ * Interface implemented by clients who want to be told
+ * when a requested photo thumbnail is ready
+ */
+public interface ThumbnailListener
+{
+	/**
+	 * Inform the client that the thumbnail has been loaded
+	 * @param inPhoto photo for which the thumbnail was requested
+	 * @param inThumbnail thumbnail image, or null if it couldn't be loaded
+	 */
+	public void thumbnailLoaded(Photo inPhoto, BufferedImage inThumbnail);
+}
@@ -0,0 +1,372 @@
+package tim.prune.gui;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.ImageIcon;
+
+import tim.prune.config.Config;
+import tim.prune.data.Photo;
+
+/**
+ * Class to create and cache thumbnails of photos, shared by the details panel,
+ * the photo popup and the kmz export.
+ * Images are decoded with subsampling so that the full-resolution image is never
+ * held in memory, using a small pool of threads. Thumbnails are kept in a memory cache
+ * limited by the number of pixels, and also in the disk cache if one is configured.
+ */
+public abstract class ThumbnailManager
+{
+	/** Memory cache, in order of access */
+	private static final LinkedHashMap<String, BufferedImage> MEMORY_CACHE
+		= new LinkedHashMap<String, BufferedImage>(64, 0.75f, true);
+	/** Total number of pixels in memory cache */
+	private static long _cachedPixels = 0L;
+	/** Listeners waiting for thumbnails which are being loaded */
+	private static final HashMap<String, ArrayList<ThumbnailListener>> PENDING_REQUESTS
+		= new HashMap<String, ArrayList<ThumbnailListener>>();
+	/** Pool of threads for decoding images, created when first needed */
+	private static ExecutorService _decodingPool = null;
+
+	/** Maximum number of pixels to keep in memory, about 32MB */
+	private static final long MAX_CACHED_PIXELS = 8000000L;
+	/** Maximum number of decoding threads */
+	private static final int MAX_DECODING_THREADS = 4;
+	/** Name of subdirectory of disk cache */
+	private static final String DISK_CACHE_DIRECTORY = "thumbnails";
+
+
+	/**
+	 * Get a thumbnail, decoding it in the current thread if necessary
+	 * @param inPhoto photo
+	 * @param inMaxSize maximum width and height of thumbnail
+	 * @param inUseExif true to use the exif thumbnail if there is one
+	 * @return unrotated thumbnail, or null if it couldn't be loaded
+	 */
+	public static BufferedImage getThumbnail(Photo inPhoto, int inMaxSize, boolean inUseExif)
+	{
+		final String key = makeKey(inPhoto, inMaxSize, inUseExif);
+		if (key == null) {return null;}
+		BufferedImage thumbnail = getFromMemory(key);
+		if (thumbnail == null)
+		{
+			thumbnail = loadThumbnail(inPhoto, inMaxSize, inUseExif, key);
+			if (thumbnail != null) {
+				addToMemory(key, thumbnail);
+			}
+		}
+		return thumbnail;
+	}
+
+	/**
+	 * Request a thumbnail in the background, or immediately if it's already in memory
+	 * @param inPhoto photo
+	 * @param inMaxSize maximum width and height of thumbnail
+	 * @param inUseExif true to use the exif thumbnail if there is one
+	 * @param inListener listener to inform when the thumbnail is ready
+	 */
+	public static void requestThumbnail(final Photo inPhoto, final int inMaxSize, final boolean inUseExif,
+		ThumbnailListener inListener)
+	{
+		final String key = makeKey(inPhoto, inMaxSize, inUseExif);
+		BufferedImage thumbnail = (key == null ? null : getFromMemory(key));
+		if (key == null || thumbnail != null)
+		{
+			inListener.thumbnailLoaded(inPhoto, thumbnail);
+			return;
+		}
+		synchronized (PENDING_REQUESTS)
+		{
+			// If this thumbnail is already being loaded, just wait for it
+			ArrayList<ThumbnailListener> listeners = PENDING_REQUESTS.get(key);
+			if (listeners != null)
+			{
+				listeners.add(inListener);
+				return;
+			}
+			listeners = new ArrayList<ThumbnailListener>();
+			listeners.add(inListener);
+			PENDING_REQUESTS.put(key, listeners);
+		}
+		getDecodingPool().execute(new Runnable() {
+			public void run()
+			{
+				BufferedImage image = null;
+				try {
+					image = getThumbnail(inPhoto, inMaxSize, inUseExif);
+				}
+				finally
+				{
+					// Even if loading failed, the listeners mustn't be left waiting
+					ArrayList<ThumbnailListener> listeners = null;
+					synchronized (PENDING_REQUESTS) {
+						listeners = PENDING_REQUESTS.remove(key);
+					}
+					for (ThumbnailListener listener : listeners) {
+						listener.thumbnailLoaded(inPhoto, image);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return thread pool for decoding, with daemon threads so that they don't prevent exit
+	 */
+	private static synchronized ExecutorService getDecodingPool()
+	{
+		if (_decodingPool == null)
+		{
+			final int numThreads = Math.max(1, Math.min(MAX_DECODING_THREADS,
+				Runtime.getRuntime().availableProcessors()));
+			_decodingPool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+				public Thread newThread(Runnable inRunnable)
+				{
+					Thread thread = new Thread(inRunnable, "ThumbnailDecoder");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.NORM_PRIORITY - 1);
+					return thread;
+				}
+			});
+		}
+		return _decodingPool;
+	}
+
+	/**
+	 * Make the key for the caches
+	 * @param inPhoto photo
+	 * @param inMaxSize thumbnail size
+	 * @param inUseExif true to use the exif thumbnail
+	 * @return key from file path, file size, modification time and thumbnail size, or null if photo not available
+	 */
+	private static String makeKey(Photo inPhoto, int inMaxSize, boolean inUseExif)
+	{
+		if (inPhoto == null) {return null;}
+		String sizeKey = (inUseExif && inPhoto.getExifThumbnail() != null) ? "exif" : ("" + inMaxSize);
+		File file = inPhoto.getFile();
+		if (file != null) {
+			return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified() + "|" + sizeKey;
+		}
+		byte[] data = inPhoto.getByteData();
+		if (data != null) {
+			return "data:" + inPhoto.getFullPath() + "|" + data.length + "|" + Arrays.hashCode(data) + "|" + sizeKey;
+		}
+		return null;
+	}
+
+	/**
+	 * @param inKey cache key
+	 * @return thumbnail from memory cache, or null if not there
+	 */
+	private static BufferedImage getFromMemory(String inKey)
+	{
+		synchronized (MEMORY_CACHE) {
+			return MEMORY_CACHE.get(inKey);
+		}
+	}
+
+	/**
+	 * Add the given thumbnail to the memory cache, removing the least recently used ones if necessary
+	 * @param inKey cache key
+	 * @param inThumbnail thumbnail image
+	 */
+	private static void addToMemory(String inKey, BufferedImage inThumbnail)
+	{
+		synchronized (MEMORY_CACHE)
+		{
+			BufferedImage previous = MEMORY_CACHE.put(inKey, inThumbnail);
+			if (previous != null) {
+				_cachedPixels -= getNumPixels(previous);
+			}
+			_cachedPixels += getNumPixels(inThumbnail);
+			Iterator<BufferedImage> iterator = MEMORY_CACHE.values().iterator();
+			while (_cachedPixels > MAX_CACHED_PIXELS && MEMORY_CACHE.size() > 1 && iterator.hasNext())
+			{
+				_cachedPixels -= getNumPixels(iterator.next());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param inImage image
+	 * @return number of pixels in image
+	 */
+	private static long getNumPixels(BufferedImage inImage)
+	{
+		return inImage.getWidth() * (long) inImage.getHeight();
+	}
+
+	/**
+	 * Load the thumbnail from the disk cache, or decode it from the photo
+	 * @param inPhoto photo
+	 * @param inMaxSize thumbnail size
+	 * @param inUseExif true to use the exif thumbnail
+	 * @param inKey cache key
+	 * @return thumbnail image, or null if it couldn't be loaded
+	 */
+	private static BufferedImage loadThumbnail(Photo inPhoto, int inMaxSize, boolean inUseExif, String inKey)
+	{
+		if (inUseExif && inPhoto.getExifThumbnail() != null)
+		{
+			// exif thumbnails are small enough to decode directly, so no need for disk cache
+			BufferedImage exifThumb = readImage(new ByteArrayInputStream(inPhoto.getExifThumbnail()), 1);
+			if (exifThumb != null) {
+				return exifThumb;
+			}
+		}
+		File cacheFile = (inPhoto.getFile() == null ? null : getDiskCacheFile(inKey));
+		if (cacheFile != null && cacheFile.exists() && cacheFile.length() > 0)
+		{
+			try
+			{
+				BufferedImage cached = ImageIO.read(cacheFile);
+				if (cached != null) {
+					return cached;
+				}
+			}
+			catch (IOException e) {} // ignore, just decode the photo again
+		}
+		BufferedImage thumbnail = decodeThumbnail(inPhoto, inMaxSize);
+		if (thumbnail != null && cacheFile != null)
+		{
+			try {
+				ImageIO.write(thumbnail, "jpg", cacheFile);
+			}
+			catch (IOException e) {
+				cacheFile.delete(); // don't leave incomplete files in the cache
+			}
+		}
+		return thumbnail;
+	}
+
+	/**
+	 * @param inKey cache key
+	 * @return file in disk cache, or null if there's no disk cache
+	 */
+	private static File getDiskCacheFile(String inKey)
+	{
+		String diskCachePath = Config.getConfigString(Config.KEY_DISK_CACHE);
+		if (diskCachePath == null) {return null;}
+		File thumbDir = new File(diskCachePath, DISK_CACHE_DIRECTORY);
+		if (!thumbDir.exists() && !thumbDir.mkdir()) {return null;}
+		if (!thumbDir.isDirectory() || !thumbDir.canWrite()) {return null;}
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest(inKey.getBytes(StandardCharsets.UTF_8))) {
+				builder.append(String.format("%02x", b));
+			}
+			return new File(thumbDir, builder.toString() + ".jpg");
+		}
+		catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Decode the photo at reduced resolution and scale it to the thumbnail size
+	 * @param inPhoto photo
+	 * @param inMaxSize maximum width and height of thumbnail
+	 * @return thumbnail image, or null if it couldn't be decoded
+	 */
+	private static BufferedImage decodeThumbnail(Photo inPhoto, int inMaxSize)
+	{
+		Object input = inPhoto.getFile();
+		if (input == null && inPhoto.getByteData() != null) {
+			input = new ByteArrayInputStream(inPhoto.getByteData());
+		}
+		if (input == null) {return null;}
+		BufferedImage image = readImage(input, inMaxSize);
+		if (image == null)
+		{
+			// ImageIO couldn't read it (for example some CMYK jpegs), so fall back to the slow way
+			ImageIcon icon = inPhoto.createImageIcon();
+			if (icon == null || icon.getIconWidth() <= 0 || icon.getIconHeight() <= 0) {return null;}
+			Dimension thumbSize = ImageUtils.getThumbnailSize(icon.getIconWidth(), icon.getIconHeight(),
+				inMaxSize, inMaxSize);
+			return ImageUtils.createScaledImage(icon.getImage(), thumbSize.width, thumbSize.height);
+		}
+		Dimension thumbSize = ImageUtils.getThumbnailSize(image.getWidth(), image.getHeight(), inMaxSize, inMaxSize);
+		return scaleImage(image, thumbSize.width, thumbSize.height);
+	}
+
+	/**
+	 * Read an image using ImageIO, subsampling so that it's not much bigger than the given size
+	 * @param inInput file or input stream
+	 * @param inMaxSize size to aim for, or 1 to read the whole image
+	 * @return image, or null if it couldn't be read
+	 */
+	private static BufferedImage readImage(Object inInput, int inMaxSize)
+	{
+		ImageInputStream stream = null;
+		ImageReader reader = null;
+		try
+		{
+			stream = ImageIO.createImageInputStream(inInput);
+			if (stream == null) {return null;}
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) {return null;}
+			reader = readers.next();
+			reader.setInput(stream, true, true);
+			ImageReadParam param = reader.getDefaultReadParam();
+			if (inMaxSize > 1)
+			{
+				// Skip rows and columns so that the image is still at least as big as needed
+				final int subsampling = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / inMaxSize);
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+			}
+			return reader.read(0, param);
+		}
+		catch (Exception e) {
+			return null;
+		}
+		finally
+		{
+			if (reader != null) {reader.dispose();}
+			if (stream != null) {
+				try {stream.close();} catch (IOException e) {}
+			}
+		}
+	}
+
+	/**
+	 * Scale the given image to the given size with bilinear interpolation
+	 * @param inImage image to scale
+	 * @param inWidth new width
+	 * @param inHeight new height
+	 * @return scaled rgb image
+	 */
+	private static BufferedImage scaleImage(Image inImage, int inWidth, int inHeight)
+	{
+		BufferedImage result = new BufferedImage(inWidth, inHeight, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = result.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(inImage, 0, 0, inWidth, inHeight, null);
+		g.dispose();
+		return result;
+	}
+}
@@ -24,7 +24,7 @@ public class AltitudeColourer extends ContinuousPointColourer
 	@Override
 	public void calculateColours(TrackInfo inTrackInfo)
 	{
-		Track track = inTrackInfo == null ? null : inTrackInfo.getTrack();
+		final Track track = inTrackInfo == null ? null : inTrackInfo.getTrack();
 		final int numPoints = track == null ? 0 : track.getNumPoints();
 		DataPoint point = null;
 
@@ -51,20 +51,18 @@ public class AltitudeColourer extends ContinuousPointColourer
 		}
 		else
 		{
-			// initialise the array to the right size
-			init(numPoints);
-			// loop over track points to calculate colours
-			for (int i=0; i<numPoints; i++)
-			{
-				point = track.getPoint(i);
-				if (point != null && point.hasAltitude() && !point.isWaypoint())
+			// calculate colours for each track point
+			final double minValue = minAltitude, range = maxAltitude - minAltitude;
+			setFractions(numPoints, new FractionSource() {
+				public float getFraction(int inPointIndex)
 				{
-					double altValue = point.getAltitude().getMetricValue();
-					double fraction = (altValue - minAltitude) / (maxAltitude - minAltitude);
-					setColour(i, mixColour((float) fraction));
+					DataPoint p = track.getPoint(inPointIndex);
+					if (p != null && p.hasAltitude() && !p.isWaypoint()) {
+						return (float) ((p.getAltitude().getMetricValue() - minValue) / range);
+					}
+					return Float.NaN;
 				}
-				else setColour(i, null);
-			}
+			});
 		}
 	}
 }
@@ -1,11 +1,33 @@
 package tim.prune.gui.colour;
 
 import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * Abstract class for colouring points on a continuous scale between the start and end colours,
+ * using a palette of shades between them
+ */
 public abstract class ContinuousPointColourer extends PointColourer
 {
-	/** array of colours to use */
-	private Color[] _colours = null;
+	/** Number of shades in the palette */
+	private static final int NUM_SHADES = 256;
+	/** Number of points to calculate in each parallel task */
+	private static final int POINTS_PER_TASK = 32768;
+
+
+	/**
+	 * Interface to supply the position of each point on the scale
+	 */
+	protected interface FractionSource
+	{
+		/**
+		 * @param inPointIndex point index
+		 * @return fraction between 0.0 (start colour) and 1.0 (end colour), or NaN for the default colour
+		 */
+		public float getFraction(int inPointIndex);
+	}
+
 
 	/**
 	 * Constructor
@@ -28,47 +50,79 @@ public abstract class ContinuousPointColourer extends PointColourer
 	 */
 	protected void init(int inNumPoints)
 	{
-		if (_colours == null || _colours.length != inNumPoints)
+		initIndexes(inNumPoints, -1);
+		if (inNumPoints > 0 && !hasPalette())
 		{
-			// Array needs to be created or resized
-			if (inNumPoints > 0) {
-				_colours = new Color[inNumPoints];
-			}
-			else {
-				_colours = null;
+			// Palette only depends on the start and end colours so it only needs to be made once
+			Color[] palette = new Color[NUM_SHADES];
+			for (int i=0; i<NUM_SHADES; i++) {
+				palette[i] = mixColour((float) i / (NUM_SHADES - 1));
 			}
+			setPalette(palette);
 		}
 	}
 
+	/**
+	 * Set the colours of all the points, sharing the work between threads for large tracks
+	 * @param inNumPoints number of points in the track
+	 * @param inSource source of the fraction for each point
+	 */
+	protected void setFractions(int inNumPoints, FractionSource inSource)
+	{
+		init(inNumPoints);
+		ForkJoinPool.commonPool().invoke(new FractionTask(inSource, 0, inNumPoints));
+	}
+
 	/**
 	 * Set the colour at the given index
 	 * @param inPointIndex point index
-	 * @param inColour colour to use, or null
+	 * @param inFraction fraction between 0.0 and 1.0, or NaN for the default colour
 	 */
-	protected void setColour(int inPointIndex, Color inColour)
+	private void setFraction(int inPointIndex, float inFraction)
 	{
-		if (_colours != null && _colours.length > inPointIndex && inPointIndex >= 0)
-		{
-			_colours[inPointIndex] = inColour;
+		if (Float.isNaN(inFraction) || inFraction < 0.0f || inFraction > 1.0f) {
+			setColourIndex(inPointIndex, -1);
+		}
+		else {
+			setColourIndex(inPointIndex, Math.round(inFraction * (NUM_SHADES - 1)));
 		}
 	}
 
 	/**
-	 * Get the colour for the given point index
-	 * @param inPointIndex index of point in track
-	 * @return colour object
+	 * Task to set the colours of a range of points
 	 */
-	public Color getColour(int inPointIndex)
+	private class FractionTask extends RecursiveAction
 	{
-		Color colour = null;
-		if (_colours != null && _colours.length > inPointIndex && inPointIndex >= 0)
+		private final FractionSource _source;
+		private final int _from, _to;
+
+		/**
+		 * Constructor
+		 * @param inSource source of fractions
+		 * @param inFrom index of first point
+		 * @param inTo index after last point
+		 */
+		FractionTask(FractionSource inSource, int inFrom, int inTo)
 		{
-			colour = _colours[inPointIndex];
+			_source = inSource;
+			_from = inFrom;
+			_to = inTo;
 		}
-		if (colour == null) {
-			// not found, use default
-			colour = super.getDefaultColour();
+
+		/** Do the work */
+		protected void compute()
+		{
+			if (_to - _from > POINTS_PER_TASK)
+			{
+				final int middle = (_from + _to) / 2;
+				invokeAll(new FractionTask(_source, _from, middle), new FractionTask(_source, middle, _to));
+			}
+			else
+			{
+				for (int i=_from; i<_to; i++) {
+					setFraction(i, _source.getFraction(i));
+				}
+			}
 		}
-		return colour;
 	}
 }
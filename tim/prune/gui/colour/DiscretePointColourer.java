@@ -8,12 +8,6 @@ import java.awt.Color;
  */
 public abstract class DiscretePointColourer extends PointColourer
 {
-	/** array of discrete colours to use */
-	private Color[] _discreteColours = null;
-	/** array of colour indexes */
-	private int[] _colourIndexes = null;
-
-
 	/**
 	 * Constructor
 	 * @param inStartColour start colour of scale
@@ -36,47 +30,22 @@ public abstract class DiscretePointColourer extends PointColourer
 	 */
 	protected void init(int inNumPoints)
 	{
-		if (_colourIndexes == null || _colourIndexes.length != inNumPoints)
-		{
-			// Array needs to be created or resized
-			if (inNumPoints > 0) {
-				_colourIndexes = new int[inNumPoints];
-			}
-			else {
-				_colourIndexes = null;
-			}
-		}
+		initIndexes(inNumPoints, getMaxColours() > 0 ? 0 : -1);
 	}
 
 	/**
 	 * Set the colour at the given index
 	 * @param inPointIndex point index
-	 * @param inColourIndex index of colour to use
+	 * @param inColourIndex index of colour to use, which wraps around after the maximum number of colours
 	 */
 	protected void setColour(int inPointIndex, int inColourIndex)
 	{
-		if (_colourIndexes != null && _colourIndexes.length > inPointIndex && inPointIndex >= 0)
-		{
-			_colourIndexes[inPointIndex] = inColourIndex;
+		if (getMaxColours() > 0 && inColourIndex >= 0) {
+			setColourIndex(inPointIndex, inColourIndex % getMaxColours());
 		}
-	}
-
-	/**
-	 * Get the colour for the given point index
-	 * @param inPointIndex index of point in track
-	 * @return colour object
-	 */
-	public Color getColour(int inPointIndex)
-	{
-		if (_colourIndexes != null && _colourIndexes.length > inPointIndex && inPointIndex >= 0 && getMaxColours() > 0)
-		{
-			int colourIndex = _colourIndexes[inPointIndex] % getMaxColours();
-			if (colourIndex >= 0 && _discreteColours != null && colourIndex < _discreteColours.length) {
-				return _discreteColours[colourIndex];
-			}
+		else {
+			setColourIndex(inPointIndex, -1);
 		}
-		// not found, use default
-		return super.getDefaultColour();
 	}
 
 	/**
@@ -91,10 +60,11 @@ public abstract class DiscretePointColourer extends PointColourer
 		else if (inNumCategories > maxColours) {inNumCategories = maxColours;}
 
 		// Use this number of categories to generate the colours
-		_discreteColours = new Color[inNumCategories];
+		Color[] palette = new Color[inNumCategories];
 		for (int i=0; i<inNumCategories; i++) {
-			_discreteColours[i] = mixColour(i, inNumCategories);
+			palette[i] = mixColour(i, inNumCategories);
 		}
+		setPalette(palette);
 	}
 
 	/**
@@ -108,17 +78,4 @@ public abstract class DiscretePointColourer extends PointColourer
 		float fraction = inWrap < 2 ? 0.0f : (float) inIndex / (float) (inWrap - 1);
 		return mixColour(fraction);
 	}
-
-	/**
-	 * @param inIndex specified colour index
-	 * @return precalculated colour at the given index
-	 */
-	protected Color getDiscreteColour(int inIndex)
-	{
-		if (_discreteColours == null || inIndex < 0 || getMaxColours() <= 1) {
-			return getDefaultColour();
-		}
-		return _discreteColours[inIndex % getMaxColours()];
-	}
-
 }
@@ -1,13 +1,16 @@
 package tim.prune.gui.colour;
 
 import java.awt.Color;
+import java.util.Arrays;
 
 import tim.prune.data.TrackInfo;
 
 /**
  * Abstract class to do the colouring of points,
  * that is holding a colour for each track point
- * in the current track
+ * in the current track.  Each point just has an index
+ * into a palette, so that points with the same colour
+ * can easily be drawn together
  */
 public abstract class PointColourer
 {
@@ -17,6 +20,10 @@ public abstract class PointColourer
 	private Color _startColour = null, _endColour = null;
 	/** max number of unique colours before wrapping */
 	private int _maxColours = 1;
+	/** palette of colours to use */
+	private Color[] _palette = null;
+	/** palette index for each point, or -1 for the default colour */
+	private short[] _colourIndexes = null;
 
 
 	/**
@@ -55,9 +62,80 @@ public abstract class PointColourer
 	 */
 	public Color getColour(int inPointIndex)
 	{
+		return getPaletteColour(getColourIndex(inPointIndex));
+	}
+
+	/**
+	 * Get the palette index for the given point index
+	 * @param inPointIndex index of point in track
+	 * @return palette index, or -1 for the default colour
+	 */
+	public int getColourIndex(int inPointIndex)
+	{
+		if (_colourIndexes != null && inPointIndex >= 0 && inPointIndex < _colourIndexes.length) {
+			return _colourIndexes[inPointIndex];
+		}
+		return -1;
+	}
+
+	/**
+	 * @param inPaletteIndex index in palette
+	 * @return colour from palette, or the default colour if not found
+	 */
+	public Color getPaletteColour(int inPaletteIndex)
+	{
+		if (_palette != null && inPaletteIndex >= 0 && inPaletteIndex < _palette.length) {
+			return _palette[inPaletteIndex];
+		}
 		return _defaultColour;
 	}
 
+	/**
+	 * @param inPalette palette of colours to use
+	 */
+	protected void setPalette(Color[] inPalette)
+	{
+		_palette = inPalette;
+	}
+
+	/**
+	 * @return true if the palette has been set
+	 */
+	protected boolean hasPalette()
+	{
+		return _palette != null;
+	}
+
+	/**
+	 * Initialise the array of palette indexes to the right size
+	 * @param inNumPoints number of points in the track, or 0 to use the default colour for all
+	 * @param inInitialIndex palette index to start with for each point
+	 */
+	protected void initIndexes(int inNumPoints, int inInitialIndex)
+	{
+		if (inNumPoints <= 0)
+		{
+			_colourIndexes = null;
+			return;
+		}
+		if (_colourIndexes == null || _colourIndexes.length != inNumPoints) {
+			_colourIndexes = new short[inNumPoints];
+		}
+		Arrays.fill(_colourIndexes, (short) inInitialIndex);
+	}
+
+	/**
+	 * Set the palette index for the given point
+	 * @param inPointIndex point index
+	 * @param inPaletteIndex palette index, or -1 for the default colour
+	 */
+	protected void setColourIndex(int inPointIndex, int inPaletteIndex)
+	{
+		if (_colourIndexes != null && inPointIndex >= 0 && inPointIndex < _colourIndexes.length) {
+			_colourIndexes[inPointIndex] = (short) inPaletteIndex;
+		}
+	}
+
 	/**
 	 * @param inColor default colour to use
 	 */
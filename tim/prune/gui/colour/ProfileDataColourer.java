@@ -24,15 +24,15 @@ public abstract class ProfileDataColourer extends ContinuousPointColourer
 	/**
 	 * Calculate the colours according to the track and the profile data
 	 */
-	public void calculateColours(Track inTrack, ProfileData inData)
+	public void calculateColours(Track inTrack, final ProfileData inData)
 	{
 		final int numPoints = inTrack == null ? 0 : inTrack.getNumPoints();
 
 		// Calculate values for each point
 		inData.init(Config.getUnitSet());
 		// Figure out speed range
-		double minValue = inData.getMinValue();
-		double maxValue = inData.getMaxValue();
+		final double minValue = inData.getMinValue();
+		final double maxValue = inData.getMaxValue();
 		if (!inData.hasData() || (maxValue - minValue) < 0.1)
 		{
 			// not enough value range, set all to null
@@ -40,18 +40,16 @@ public abstract class ProfileDataColourer extends ContinuousPointColourer
 		}
 		else
 		{
-			// initialise the array to the right size
-			init(numPoints);
-			// loop over track points to calculate colours
-			for (int i=0; i<numPoints; i++)
-			{
-				if (inData.hasData(i))
+			// calculate colours for each track point
+			setFractions(numPoints, new FractionSource() {
+				public float getFraction(int inPointIndex)
 				{
-					double fraction = (inData.getData(i) - minValue) / (maxValue - minValue);
-					setColour(i, mixColour((float) fraction));
+					if (inData.hasData(inPointIndex)) {
+						return (float) ((inData.getData(inPointIndex) - minValue) / (maxValue - minValue));
+					}
+					return Float.NaN;
 				}
-				else setColour(i, null);
-			}
+			});
 		}
 	}
 }
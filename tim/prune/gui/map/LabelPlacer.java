@@ -0,0 +1,272 @@
+package tim.prune.gui.map;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Class to place waypoint names so that they don't cover the track or each other.
+ * The areas where names might go are reserved first, then the drawn points and lines
+ * are marked in an occupancy bitmap covering just those areas, and finally the names
+ * are placed one at a time in the order given, each one taking the first free position.
+ * Checking a position only looks at a few bitmap rows, so the time taken doesn't depend
+ * on how much is drawn underneath.
+ */
+public class LabelPlacer
+{
+	/** Occupancy bitmaps, one long per row of cells, for each block near a waypoint */
+	private final HashMap<Long, long[]> _blocks = new HashMap<Long, long[]>();
+	/** Number of steps to move names away from their points */
+	private final int _numSteps;
+	/** Area within which names must lie */
+	private final Rectangle _bounds;
+
+	/** Size of each cell of the bitmap in pixels */
+	private static final int CELL_SIZE = 2;
+	/** Number of cells along each side of a block */
+	private static final int BLOCK_CELLS = 64;
+	/** Size of each block in pixels */
+	private static final int BLOCK_SIZE = CELL_SIZE * BLOCK_CELLS;
+	/** Distance to move names away from their points each step */
+	private static final int STEP_SIZE = 3;
+
+
+	/**
+	 * Constructor
+	 * @param inBounds area within which names must lie
+	 * @param inNumSteps number of steps to try moving each name away from its point
+	 */
+	public LabelPlacer(Rectangle inBounds, int inNumSteps)
+	{
+		_bounds = inBounds;
+		_numSteps = Math.max(1, inNumSteps);
+	}
+
+	/**
+	 * Reserve the area where a name might be placed, must be called before marking
+	 * @param inX x coordinate of waypoint
+	 * @param inY y coordinate of waypoint
+	 * @param inWidth width of name
+	 * @param inHeight height of name
+	 */
+	public void reserveLabel(int inX, int inY, int inWidth, int inHeight)
+	{
+		final int distance = 2 + STEP_SIZE * _numSteps;
+		final int minX = inX - inWidth - distance, maxX = inX + inWidth + distance;
+		final int minY = inY - inHeight - distance, maxY = inY + inHeight + distance;
+		for (int blockX = Math.floorDiv(minX, BLOCK_SIZE); blockX <= Math.floorDiv(maxX, BLOCK_SIZE); blockX++)
+		{
+			for (int blockY = Math.floorDiv(minY, BLOCK_SIZE); blockY <= Math.floorDiv(maxY, BLOCK_SIZE); blockY++)
+			{
+				final long key = makeKey(blockX, blockY);
+				if (!_blocks.containsKey(key)) {
+					_blocks.put(key, new long[BLOCK_CELLS]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if no names could be placed because none have been reserved
+	 */
+	public boolean isEmpty()
+	{
+		return _blocks.isEmpty();
+	}
+
+	/**
+	 * Mark a rectangle as occupied
+	 * @param inX left x coordinate
+	 * @param inY top y coordinate
+	 * @param inWidth width in pixels
+	 * @param inHeight height in pixels
+	 */
+	public void markRect(int inX, int inY, int inWidth, int inHeight)
+	{
+		setCells(Math.floorDiv(inX, CELL_SIZE), Math.floorDiv(inY, CELL_SIZE),
+			Math.floorDiv(inX + inWidth - 1, CELL_SIZE), Math.floorDiv(inY + inHeight - 1, CELL_SIZE), true);
+	}
+
+	/**
+	 * Mark a line as occupied
+	 * @param inX1 x coordinate of start
+	 * @param inY1 y coordinate of start
+	 * @param inX2 x coordinate of end
+	 * @param inY2 y coordinate of end
+	 * @param inLineWidth width of line in pixels
+	 */
+	public void markLine(int inX1, int inY1, int inX2, int inY2, int inLineWidth)
+	{
+		if (_blocks.isEmpty()) {return;}
+		final int halfWidth = (inLineWidth + 1) / 2;
+		final int minBlockX = Math.floorDiv(Math.min(inX1, inX2) - halfWidth, BLOCK_SIZE);
+		final int maxBlockX = Math.floorDiv(Math.max(inX1, inX2) + halfWidth, BLOCK_SIZE);
+		final int minBlockY = Math.floorDiv(Math.min(inY1, inY2) - halfWidth, BLOCK_SIZE);
+		final int maxBlockY = Math.floorDiv(Math.max(inY1, inY2) + halfWidth, BLOCK_SIZE);
+		final long numBlocks = (long) (maxBlockX - minBlockX + 1) * (maxBlockY - minBlockY + 1);
+		if (numBlocks <= _blocks.size())
+		{
+			for (int blockX = minBlockX; blockX <= maxBlockX; blockX++)
+			{
+				for (int blockY = minBlockY; blockY <= maxBlockY; blockY++)
+				{
+					if (_blocks.containsKey(makeKey(blockX, blockY))) {
+						markLineInBlock(inX1, inY1, inX2, inY2, halfWidth, blockX, blockY);
+					}
+				}
+			}
+		}
+		else
+		{
+			// Line is long, so just check the blocks which exist
+			ArrayList<Long> keys = new ArrayList<Long>(_blocks.keySet());
+			for (long key : keys)
+			{
+				final int blockX = (int) (key >> 32), blockY = (int) key;
+				if (blockX >= minBlockX && blockX <= maxBlockX && blockY >= minBlockY && blockY <= maxBlockY) {
+					markLineInBlock(inX1, inY1, inX2, inY2, halfWidth, blockX, blockY);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mark the part of a line which lies within the given block
+	 * @param inX1 x coordinate of start
+	 * @param inY1 y coordinate of start
+	 * @param inX2 x coordinate of end
+	 * @param inY2 y coordinate of end
+	 * @param inHalfWidth half the line width in pixels
+	 * @param inBlockX x index of block
+	 * @param inBlockY y index of block
+	 */
+	private void markLineInBlock(int inX1, int inY1, int inX2, int inY2, int inHalfWidth, int inBlockX, int inBlockY)
+	{
+		// Clip the line to the block, including a border for the line width
+		final double left = inBlockX * BLOCK_SIZE - inHalfWidth, right = (inBlockX + 1) * BLOCK_SIZE + inHalfWidth;
+		final double top = inBlockY * BLOCK_SIZE - inHalfWidth, bottom = (inBlockY + 1) * BLOCK_SIZE + inHalfWidth;
+		final double dx = inX2 - inX1, dy = inY2 - inY1;
+		double tMin = 0.0, tMax = 1.0;
+		final double[] ps = {-dx, dx, -dy, dy};
+		final double[] qs = {inX1 - left, right - inX1, inY1 - top, bottom - inY1};
+		for (int i=0; i<4; i++)
+		{
+			if (ps[i] == 0.0)
+			{
+				if (qs[i] < 0.0) {return;} // parallel to this edge and outside
+			}
+			else
+			{
+				final double t = qs[i] / ps[i];
+				if (ps[i] < 0.0) {tMin = Math.max(tMin, t);}
+				else {tMax = Math.min(tMax, t);}
+			}
+		}
+		if (tMin > tMax) {return;}
+		// Step along the clipped part of the line one cell at a time
+		final double startX = inX1 + tMin * dx, startY = inY1 + tMin * dy;
+		final double length = (tMax - tMin) * Math.max(Math.abs(dx), Math.abs(dy));
+		final int numSteps = (int) Math.ceil(length / CELL_SIZE);
+		for (int s=0; s<=numSteps; s++)
+		{
+			final double frac = (numSteps == 0 ? 0.0 : (tMax - tMin) * s / numSteps);
+			final int x = (int) Math.round(startX + frac * dx), y = (int) Math.round(startY + frac * dy);
+			setCells(Math.floorDiv(x - inHalfWidth, CELL_SIZE), Math.floorDiv(y - inHalfWidth, CELL_SIZE),
+				Math.floorDiv(x + inHalfWidth, CELL_SIZE), Math.floorDiv(y + inHalfWidth, CELL_SIZE), true);
+		}
+	}
+
+	/**
+	 * Find a free place for a name near its point, and mark it as occupied
+	 * @param inX x coordinate of waypoint
+	 * @param inY y coordinate of waypoint
+	 * @param inWidth width of name
+	 * @param inHeight height of name
+	 * @return rectangle where the name goes, or null if there's no space
+	 */
+	public Rectangle placeLabel(int inX, int inY, int inWidth, int inHeight)
+	{
+		// Make arrays for baseline coordinates right left up down
+		int[] nameXs = {inX + 2, inX - inWidth - 2, inX - inWidth/2, inX - inWidth/2};
+		int[] nameYs = {inY + inHeight/2, inY + inHeight/2, inY - 2, inY + inHeight + 2};
+		for (int step = 0; step < _numSteps; step++)
+		{
+			// Shift arrays for coordinates right left up down
+			nameXs[0] += STEP_SIZE; nameXs[1] -= STEP_SIZE;
+			nameYs[2] -= STEP_SIZE; nameYs[3] += STEP_SIZE;
+			// Check each direction in turn right left up down
+			for (int a=0; a<4; a++)
+			{
+				final int top = nameYs[a] - inHeight + 1;
+				if (nameXs[a] > _bounds.x && nameXs[a] + inWidth < _bounds.x + _bounds.width
+					&& top > _bounds.y && nameYs[a] < _bounds.y + _bounds.height
+					&& isFree(nameXs[a], top, inWidth, inHeight))
+				{
+					markRect(nameXs[a], top, inWidth, inHeight);
+					return new Rectangle(nameXs[a], top, inWidth, inHeight);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param inX left x coordinate
+	 * @param inY top y coordinate
+	 * @param inWidth width in pixels
+	 * @param inHeight height in pixels
+	 * @return true if nothing in the given rectangle has been marked
+	 */
+	private boolean isFree(int inX, int inY, int inWidth, int inHeight)
+	{
+		return !setCells(Math.floorDiv(inX, CELL_SIZE), Math.floorDiv(inY, CELL_SIZE),
+			Math.floorDiv(inX + inWidth - 1, CELL_SIZE), Math.floorDiv(inY + inHeight - 1, CELL_SIZE), false);
+	}
+
+	/**
+	 * Set or test the cells within the given range, ignoring blocks which haven't been reserved
+	 * @param inMinCellX first cell x index
+	 * @param inMinCellY first cell y index
+	 * @param inMaxCellX last cell x index
+	 * @param inMaxCellY last cell y index
+	 * @param inSet true to set the cells, false to just test them
+	 * @return true if testing and any of the cells are set
+	 */
+	private boolean setCells(int inMinCellX, int inMinCellY, int inMaxCellX, int inMaxCellY, boolean inSet)
+	{
+		for (int blockX = Math.floorDiv(inMinCellX, BLOCK_CELLS); blockX <= Math.floorDiv(inMaxCellX, BLOCK_CELLS); blockX++)
+		{
+			final int firstCol = Math.max(inMinCellX - blockX * BLOCK_CELLS, 0);
+			final int lastCol = Math.min(inMaxCellX - blockX * BLOCK_CELLS, BLOCK_CELLS - 1);
+			// Mask with bits set for the columns in this block
+			final long mask = (lastCol == 63 ? -1L : (1L << (lastCol + 1)) - 1L) & (-1L << firstCol);
+			for (int blockY = Math.floorDiv(inMinCellY, BLOCK_CELLS); blockY <= Math.floorDiv(inMaxCellY, BLOCK_CELLS); blockY++)
+			{
+				long[] rows = _blocks.get(makeKey(blockX, blockY));
+				if (rows == null) {continue;}
+				final int firstRow = Math.max(inMinCellY - blockY * BLOCK_CELLS, 0);
+				final int lastRow = Math.min(inMaxCellY - blockY * BLOCK_CELLS, BLOCK_CELLS - 1);
+				for (int r=firstRow; r<=lastRow; r++)
+				{
+					if (inSet) {
+						rows[r] |= mask;
+					}
+					else if ((rows[r] & mask) != 0L) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param inBlockX x index of block
+	 * @param inBlockY y index of block
+	 * @return key for block map
+	 */
+	private static long makeKey(int inBlockX, int inBlockY)
+	{
+		return ((long) inBlockX << 32) | (inBlockY & 0xffffffffL);
+	}
+}
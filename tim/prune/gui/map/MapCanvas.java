@@ -7,7 +7,6 @@ import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
@@ -56,12 +55,12 @@ import tim.prune.data.MidpointData;
 import tim.prune.data.Selection;
 import tim.prune.data.Track;
 import tim.prune.data.TrackInfo;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.function.compress.MarkPointsInRectangleFunction;
 import tim.prune.function.edit.FieldEdit;
 import tim.prune.function.edit.FieldEditList;
 import tim.prune.gui.IconManager;
 import tim.prune.gui.TripleStateCheckBox;
-import tim.prune.gui.colour.PointColourer;
 import tim.prune.tips.TipManager;
 
 /**
@@ -86,10 +85,19 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 	private int _prevSelectedPoint = -1;
 	/** Tile manager */
 	private MapTileManager _tileManager = new MapTileManager(this);
-	/** Image to display */
+	/** Last completed frame to display, and the map position it was drawn at */
 	private BufferedImage _mapImage = null;
-	/** Second image for drawing track (only needed for alpha blending) */
-	private BufferedImage _trackImage = null;
+	private MapPosition _framePosition = null;
+	/** Image for the next frame, being drawn by the render worker */
+	private BufferedImage _backImage = null;
+	/** Lock for swapping the frames */
+	private final Object _frameLock = new Object();
+	/** Worker thread for drawing the frames */
+	private MapRenderWorker _renderWorker = null;
+	/** Size of the most recently requested frame */
+	private int _requestedWidth = -1, _requestedHeight = -1;
+	/** Track drawn onto cached tiles */
+	private TrackLayer _trackLayer = null;
 	/** Slider for transparency */
 	private JSlider _transparencySlider = null;
 	/** Checkbox for scale bar */
@@ -164,6 +172,9 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 		_selection = inTrackInfo.getSelection();
 		_midpoints = new MidpointData();
 		_mapPosition = new MapPosition();
+		_trackLayer = new TrackLayer(inApp, _track);
+		_renderWorker = new MapRenderWorker(this);
+		_renderWorker.start();
 		addMouseListener(this);
 		addMouseMotionListener(this);
 		addMouseWheelListener(this);
@@ -386,15 +397,14 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 
 
 	/**
-	 * Paint method
+	 * Paint method, which just shows the last completed frame with the overlays on top.
+	 * The frames themselves are drawn by the render worker.
 	 * @see java.awt.Canvas#paint(java.awt.Graphics)
 	 */
 	public void paint(Graphics inG)
 	{
+		final long paintStartTime = Diagnostics.startTimer();
 		super.paint(inG);
-		if (_mapImage != null && (_mapImage.getWidth() != getWidth() || _mapImage.getHeight() != getHeight())) {
-			_mapImage = null;
-		}
 		if (_track.getNumPoints() > 0)
 		{
 			// Check for autopan if enabled / necessary
@@ -408,16 +418,27 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 				_prevSelectedPoint = selectedPoint;
 			}
 
-			// Draw the map contents if necessary
-			if ((_mapImage == null || _recalculate))
+			// Ask for a new frame if necessary
+			if (_recalculate || _mapImage == null || _requestedWidth != getWidth() || _requestedHeight != getHeight())
 			{
-				paintMapContents();
+				requestFrame();
 				_scaleBar.updateScale(_mapPosition.getZoom(), _mapPosition.getYFromPixels(0, 0));
 			}
-			// Draw the prepared image onto the panel
-			if (_mapImage != null) {
-				inG.drawImage(_mapImage, 0, 0, getWidth(), getHeight(), null);
+			// Draw the last frame onto the panel, moved and scaled to the current position
+			inG.setColor(Config.getColourScheme().getColour(ColourScheme.IDX_BACKGROUND));
+			inG.fillRect(0, 0, getWidth(), getHeight());
+			synchronized (_frameLock)
+			{
+				if (_mapImage != null)
+				{
+					final int frameWidth = _mapImage.getWidth(), frameHeight = _mapImage.getHeight();
+					double[] transform = _mapPosition.getImageTransform(_framePosition,
+						frameWidth, frameHeight, getWidth(), getHeight());
+					inG.drawImage(_mapImage, (int) Math.round(transform[0]), (int) Math.round(transform[1]),
+						(int) Math.round(frameWidth * transform[2]), (int) Math.round(frameHeight * transform[2]), null);
+				}
 			}
+			drawCrosshairs(inG);
 
 			switch (_drawMode)
 			{
@@ -462,6 +483,7 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 		}
 		// Draw slider etc on top
 		paintChildren(inG);
+		Diagnostics.stopFrameTimer(Diagnostics.TIMER_MAP_PAINT, paintStartTime);
 	}
 
 	/**
@@ -505,26 +527,17 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 	}
 
 	/**
-	 * Paint the map tiles and the points on to the _mapImage
+	 * Take the settings from the controls and pass a request for a new frame to the render worker,
+	 * which abandons any frame it's still drawing
 	 */
-	private void paintMapContents()
+	private void requestFrame()
 	{
-		if (_mapImage == null || _mapImage.getWidth() != getWidth() || _mapImage.getHeight() != getHeight())
-		{
-			_mapImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-		}
-
-		Graphics g = _mapImage.getGraphics();
-		// Set antialiasing according to config
-		((Graphics2D) g).setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-			Config.getConfigBoolean(Config.KEY_ANTIALIAS) ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
-		// Clear to background
-		g.setColor(Config.getColourScheme().getColour(ColourScheme.IDX_BACKGROUND));
-		g.fillRect(0, 0, getWidth(), getHeight());
-
+		if (getWidth() <= 0 || getHeight() <= 0) {return;}
 		// Check whether maps are on or not
 		final boolean showMap = Config.getConfigBoolean(Config.KEY_SHOW_MAP);
 		_mapCheckBox.setSelected(showMap);
+		// enable / disable transparency slider
+		_transparencySlider.setEnabled(showMap);
 		// Check whether disk cache is on or not
 		final boolean usingDiskCache = Config.getConfigString(Config.KEY_DISK_CACHE) != null;
 		// Show tip to recommend setting up a cache
@@ -536,32 +549,59 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 				}
 			});
 		}
-
 		// reset error message
 		if (!showMap) {_shownOsmErrorAlready = false;}
+
+		_requestedWidth = getWidth();
+		_requestedHeight = getHeight();
+		_renderWorker.submit(new MapRenderRequest(_mapPosition, _requestedWidth, _requestedHeight, showMap,
+			_transparencySlider.getValue(), _connectCheckBox.getCurrentState(), _checkBounds));
+		// The bounds flag is only reset when a frame with it has been completed
 		_recalculate = false;
+	}
+
+	/**
+	 * Paint the map tiles and the points on to a new frame, called by the render worker.
+	 * The frame is only shown if it's completed before another one is requested.
+	 * @param inRequest settings for the frame
+	 */
+	void renderFrame(MapRenderRequest inRequest)
+	{
+		final long startTime = Diagnostics.startTimer();
+		final int width = inRequest._width, height = inRequest._height;
+		if (_backImage == null || _backImage.getWidth() != width || _backImage.getHeight() != height)
+		{
+			_backImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		}
+
+		Graphics g = _backImage.getGraphics();
+		// Set antialiasing according to config
+		((Graphics2D) g).setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			Config.getConfigBoolean(Config.KEY_ANTIALIAS) ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+		// Clear to background
+		g.setColor(Config.getColourScheme().getColour(ColourScheme.IDX_BACKGROUND));
+		g.fillRect(0, 0, width, height);
+
 		// Only get map tiles if selected
-		if (showMap)
+		final MapPosition position = inRequest._position;
+		if (inRequest._showMap)
 		{
 			// init tile cacher
-			_tileManager.centreMap(_mapPosition.getZoom(), _mapPosition.getCentreTileX(), _mapPosition.getCentreTileY());
-
-			boolean loadingFailed = false;
-			if (_mapImage == null) return;
+			_tileManager.centreMap(position.getZoom(), position.getCentreTileX(), position.getCentreTileY());
 
 			if (_tileManager.isOverzoomed())
 			{
 				// display overzoom message
 				g.setColor(COLOR_MESSAGES);
-				g.drawString(I18nManager.getText("map.overzoom"), 50, getHeight()/2);
+				g.drawString(I18nManager.getText("map.overzoom"), 50, height/2);
 			}
 			else
 			{
 				int numLayers = _tileManager.getNumLayers();
 				// Loop over tiles drawing each one
-				int[] tileIndices = _mapPosition.getTileIndices(getWidth(), getHeight());
-				int[] pixelOffsets = _mapPosition.getDisplayOffsets(getWidth(), getHeight());
-				for (int tileX = tileIndices[0]; tileX <= tileIndices[1] && !loadingFailed; tileX++)
+				int[] tileIndices = position.getTileIndices(width, height);
+				int[] pixelOffsets = position.getDisplayOffsets(width, height);
+				for (int tileX = tileIndices[0]; tileX <= tileIndices[1] && !_renderWorker.isCancelled(inRequest); tileX++)
 				{
 					int x = (tileX - tileIndices[0]) * 256 - pixelOffsets[0];
 					for (int tileY = tileIndices[2]; tileY <= tileIndices[3]; tileY++)
@@ -579,14 +619,14 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 				}
 
 				// Make maps brighter / fainter according to slider
-				final int brightnessIndex = Math.max(1, _transparencySlider.getValue()) - 1;
+				final int brightnessIndex = Math.max(1, inRequest._transparency) - 1;
 				if (brightnessIndex > 0)
 				{
 					final int[] alphas = {0, 40, 80, 120, 160, 210};
 					Color bgColor = Config.getColourScheme().getColour(ColourScheme.IDX_BACKGROUND);
 					bgColor = new Color(bgColor.getRed(), bgColor.getGreen(), bgColor.getBlue(), alphas[brightnessIndex]);
 					g.setColor(bgColor);
-					g.fillRect(0, 0, getWidth(), getHeight());
+					g.fillRect(0, 0, width, height);
 				}
 			}
 		}
@@ -594,262 +634,132 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 		// Work out track opacity according to slider
 		final float[] opacities = {1.0f, 0.75f, 0.5f, 0.3f, 0.15f, 0.0f};
 		float trackOpacity = 1.0f;
-		if (_transparencySlider.getValue() < 0) {
-			trackOpacity = opacities[-1 - _transparencySlider.getValue()];
+		if (inRequest._transparency < 0) {
+			trackOpacity = opacities[-1 - inRequest._transparency];
 		}
 
-		if (trackOpacity > 0.0f)
+		int pointsPainted = 1;
+		if (trackOpacity > 0.0f && !_renderWorker.isCancelled(inRequest))
 		{
-			// Paint the track points on top
-			int pointsPainted = 1;
-			try
-			{
-				if (trackOpacity > 0.9f)
-				{
-					// Track is fully opaque, just draw it directly
-					pointsPainted = paintPoints(g);
-					_trackImage = null;
-				}
-				else
+			// Paint the track points on top, then the selection
+			// (if the data is changed during drawing, the worker drops this frame and asks for another)
+			pointsPainted = _trackLayer.drawLayer(g, inRequest, trackOpacity, _renderWorker);
+			paintSelection(g, inRequest, trackOpacity);
+		}
+
+		// free g
+		g.dispose();
+		if (_renderWorker.isCancelled(inRequest)) {
+			return;
+		}
+
+		// Swap the frames so that the new one is shown
+		synchronized (_frameLock)
+		{
+			BufferedImage shownImage = _mapImage;
+			_mapImage = _backImage;
+			_backImage = shownImage;
+			_framePosition = position;
+		}
+		Diagnostics.stopTimer(Diagnostics.TIMER_MAP_CONTENTS, startTime);
+
+		if (inRequest._checkBounds)
+		{
+			final boolean anyPointsPainted = pointsPainted > 0;
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run()
 				{
-					// Track is partly transparent, so use a separate BufferedImage
-					if (_trackImage == null || _trackImage.getWidth() != getWidth() || _trackImage.getHeight() != getHeight())
+					_checkBounds = false;
+					// Zoom to fit if no points found
+					if (!anyPointsPainted)
 					{
-						_trackImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+						zoomToFit();
+						_recalculate = true;
+						repaint();
 					}
-					// Clear to transparent
-					Graphics2D gTrack = _trackImage.createGraphics();
-					gTrack.setComposite(AlphaComposite.getInstance(AlphaComposite.CLEAR, 0.0f));
-					gTrack.fillRect(0, 0, getWidth(), getHeight());
-					gTrack.setPaintMode();
-					// Draw the track onto this separate image
-					pointsPainted = paintPoints(gTrack);
-					((Graphics2D) g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, trackOpacity));
-					g.drawImage(_trackImage, 0, 0, null);
 				}
-			}
-			catch (NullPointerException npe) {} // ignore, probably due to data being changed during drawing
-			catch (ArrayIndexOutOfBoundsException obe) {} // also ignore
+			});
+		}
+		repaint();
+	}
 
-			// Zoom to fit if no points found
-			if (pointsPainted <= 0 && _checkBounds)
+	/**
+	 * Called by the render worker when a frame couldn't be completed,
+	 * to rebuild the track layer and request another frame
+	 */
+	void rerenderFrame()
+	{
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run()
 			{
-				zoomToFit();
+				_trackLayer.dataChanged();
 				_recalculate = true;
 				repaint();
 			}
-		}
+		});
+	}
 
-		// free g
+	/**
+	 * Draw crosshairs at the selected point
+	 * @param inG graphics object
+	 */
+	private void drawCrosshairs(Graphics inG)
+	{
+		final int selectedPoint = _selection.getCurrentPointIndex();
+		// Crosshairs are hidden along with the track
+		if (selectedPoint < 0 || selectedPoint >= _track.getNumPoints() || _transparencySlider.getValue() <= -6) {
+			return;
+		}
+		final int winWidth = getWidth(), winHeight = getHeight();
+		int px = winWidth / 2 + _mapPosition.getXFromCentre(_track.getX(selectedPoint));
+		px = wrapLongitudeValue(px, winWidth, _mapPosition.getZoom());
+		final int py = winHeight / 2 + _mapPosition.getYFromCentre(_track.getY(selectedPoint));
+		Graphics2D g = (Graphics2D) inG.create();
+		int lineWidth = Config.getConfigInt(Config.KEY_LINE_WIDTH);
+		if (lineWidth < 1 || lineWidth > 4) {lineWidth = 2;}
+		g.setStroke(new BasicStroke(lineWidth));
+		g.setColor(Config.getColourScheme().getColour(ColourScheme.IDX_PRIMARY));
+		g.drawLine(px, 0, px, winHeight);
+		g.drawLine(0, py, winWidth, py);
 		g.dispose();
-
-		_checkBounds = false;
-		// enable / disable transparency slider
-		_transparencySlider.setEnabled(showMap);
 	}
 
 
 	/**
-	 * Paint the points using the given graphics object
+	 * Paint the selected range on top of the track
 	 * @param inG Graphics object to use for painting
-	 * @return number of points painted, if any
+	 * @param inRequest settings for the frame
+	 * @param inOpacity opacity to draw the selection with
 	 */
-	private int paintPoints(Graphics inG)
+	private void paintSelection(Graphics inG, MapRenderRequest inRequest, float inOpacity)
 	{
-		// Set up colours
-		final ColourScheme cs = Config.getColourScheme();
-		final Color pointColour  = cs.getColour(ColourScheme.IDX_POINT);
-		final Color rangeColour  = cs.getColour(ColourScheme.IDX_SELECTION);
-		final Color currentColour = cs.getColour(ColourScheme.IDX_PRIMARY);
-		final Color secondColour = cs.getColour(ColourScheme.IDX_SECONDARY);
-		final Color textColour   = cs.getColour(ColourScheme.IDX_TEXT);
-		final PointColourer pointColourer = _app.getPointColourer();
-
-		final int winWidth  = getWidth();
-		final int winHeight = getHeight();
-		final int halfWinWidth  = winWidth / 2;
-		final int halfWinHeight = winHeight / 2;
-
-		final int numPoints = _track.getNumPoints();
-		final int[] xPixels = new int[numPoints];
-		final int[] yPixels = new int[numPoints];
-
-		// try to set line width for painting
-		if (inG instanceof Graphics2D)
-		{
-			int lineWidth = Config.getConfigInt(Config.KEY_LINE_WIDTH);
-			if (lineWidth < 1 || lineWidth > 4) {lineWidth = 2;}
-			((Graphics2D) inG).setStroke(new BasicStroke(lineWidth));
-		}
-		int pointsPainted = 0;
-		// draw track points
-		inG.setColor(pointColour);
-		int prevX = -1, prevY = -1;
-		final int connectState = _connectCheckBox.getCurrentState();
-		final boolean drawLines = (connectState % 2) == 0; // 0 or 2
-		final boolean drawPoints = (connectState <= 1);    // 0 or 1
-		boolean prevPointVisible = false, currPointVisible = false;
-		boolean anyWaypoints = false;
-		boolean isWaypoint = false;
-		for (int i=0; i<numPoints; i++)
-		{
-			// Calculate pixel position of point from its x, y coordinates
-			int px = halfWinWidth  + _mapPosition.getXFromCentre(_track.getX(i));
-			int py = halfWinHeight + _mapPosition.getYFromCentre(_track.getY(i));
-			px = wrapLongitudeValue(px, winWidth, _mapPosition.getZoom());
-			// Remember these calculated pixel values so they don't have to be recalculated
-			xPixels[i] = px; yPixels[i] = py;
-
-			currPointVisible = px >= 0 && px < winWidth && py >= 0 && py < winHeight;
-			isWaypoint = _track.getPoint(i).isWaypoint();
-			anyWaypoints = anyWaypoints || isWaypoint;
-			if (!isWaypoint)
-			{
-				if ((currPointVisible || prevPointVisible) && drawPoints)
-				{
-					// For track points, work out which colour to use
-					if (_track.getPoint(i).getDeleteFlag()) {
-						inG.setColor(currentColour);
-					}
-					else if (pointColourer != null)
-					{  // use the point colourer if there is one
-						Color trackColour = pointColourer.getColour(i);
-						inG.setColor(trackColour);
-					}
-					else
-					{
-						inG.setColor(pointColour);
-					}
-
-					// Draw rectangle for track point if it's visible
-					if (currPointVisible)
-					{
-						inG.drawRect(px-2, py-2, 3, 3);
-						pointsPainted++;
-					}
-				}
-
-				// Connect track points if either of them are visible
-				if (drawLines && !(prevX == -1 && prevY == -1)
-				 && !_track.getPoint(i).getSegmentStart())
-				{
-					inG.drawLine(prevX, prevY, px, py);
-				}
-				prevX = px; prevY = py;
-			}
-			prevPointVisible = currPointVisible;
+		if (!_selection.hasRangeSelected()) {
+			return;
 		}
-
-		// Loop over points, just drawing blobs for waypoints
-		inG.setColor(textColour);
-		FontMetrics fm = inG.getFontMetrics();
-		int nameHeight = fm.getHeight();
-		if (anyWaypoints)
-		{
-			int numWaypoints = 0;
-			for (int i=0; i<_track.getNumPoints(); i++)
-			{
-				if (_track.getPoint(i).isWaypoint())
-				{
-					int px = xPixels[i];
-					int py = yPixels[i];
-					if (px >= 0 && px < winWidth && py >= 0 && py < winHeight)
-					{
-						inG.fillRect(px-3, py-3, 6, 6);
-						pointsPainted++;
-						numWaypoints++;
-					}
-				}
-			}
-			// Take more care with waypoint names if less than 100 are visible
-			final int numNameSteps = (numWaypoints > 100 ? 1 : 4);
-			final int numPointSteps = (numWaypoints > 1000 ? 2 : 1);
-
-			// Loop over points again, now draw names for waypoints
-			int[] nameXs = {0, 0, 0, 0};
-			int[] nameYs = {0, 0, 0, 0};
-			for (int i=0; i<_track.getNumPoints(); i += numPointSteps)
-			{
-				if (_track.getPoint(i).isWaypoint())
-				{
-					int px = xPixels[i];
-					int py = yPixels[i];
-					if (px >= 0 && px < winWidth && py >= 0 && py < winHeight)
-					{
-						// Figure out where to draw waypoint name so it doesn't obscure track
-						String waypointName = _track.getPoint(i).getWaypointName();
-						int nameWidth = fm.stringWidth(waypointName);
-						boolean drawnName = false;
-						// Make arrays for coordinates right left up down
-						nameXs[0] = px + 2; nameXs[1] = px - nameWidth - 2;
-						nameXs[2] = nameXs[3] = px - nameWidth/2;
-						nameYs[0] = nameYs[1] = py + (nameHeight/2);
-						nameYs[2] = py - 2; nameYs[3] = py + nameHeight + 2;
-						for (int extraSpace = 0; extraSpace < numNameSteps && !drawnName; extraSpace++)
-						{
-							// Shift arrays for coordinates right left up down
-							nameXs[0] += 3; nameXs[1] -= 3;
-							nameYs[2] -= 3; nameYs[3] += 3;
-							// Check each direction in turn right left up down
-							for (int a=0; a<4; a++)
-							{
-								if (nameXs[a] > 0 && (nameXs[a] + nameWidth) < winWidth
-									&& nameYs[a] < winHeight && (nameYs[a] - nameHeight) > 0
-									&& !MapUtils.overlapsPoints(_mapImage, nameXs[a], nameYs[a], nameWidth, nameHeight, textColour))
-								{
-									// Found a rectangle to fit - draw name here and quit
-									inG.drawString(waypointName, nameXs[a], nameYs[a]);
-									drawnName = true;
-									break;
-								}
-							}
-						}
-					}
-				}
-			}
+		final MapPosition position = inRequest._position;
+		final int winWidth  = inRequest._width;
+		final int winHeight = inRequest._height;
+		Graphics2D g = (Graphics2D) inG.create();
+		if (inOpacity < 1.0f) {
+			g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, inOpacity));
 		}
-		// Loop over points, drawing blobs for photo / audio points
-		inG.setColor(secondColour);
-		for (int i=0; i<_track.getNumPoints(); i++)
+		g.setStroke(new BasicStroke(TrackLayer.getLineWidth()));
+		g.setColor(Config.getColourScheme().getColour(ColourScheme.IDX_SELECTION));
+		final int endIndex = Math.min(_selection.getEnd(), _track.getNumPoints() - 1);
+		for (int i=_selection.getStart(); i<=endIndex; i++)
 		{
-			if (_track.getPoint(i).hasMedia())
-			{
-				int px = xPixels[i];
-				int py = yPixels[i];
-				if (px >= 0 && px < winWidth && py >= 0 && py < winHeight)
-				{
-					inG.drawRect(px-1, py-1, 2, 2);
-					inG.drawRect(px-2, py-2, 4, 4);
-					pointsPainted++;
-				}
+			// Give up every so often if a newer frame has been requested
+			if ((i & 4095) == 0 && _renderWorker.isCancelled(inRequest)) {
+				break;
 			}
-		}
-
-		// Draw selected range
-		if (_selection.hasRangeSelected())
-		{
-			inG.setColor(rangeColour);
-			for (int i=_selection.getStart(); i<=_selection.getEnd(); i++)
-			{
-				int px = xPixels[i];
-				int py = yPixels[i];
-				inG.drawRect(px-1, py-1, 2, 2);
+			int px = winWidth / 2 + position.getXFromCentre(_track.getX(i));
+			px = wrapLongitudeValue(px, winWidth, position.getZoom());
+			final int py = winHeight / 2 + position.getYFromCentre(_track.getY(i));
+			if (px >= -2 && px < winWidth + 2 && py >= -2 && py < winHeight + 2) {
+				g.drawRect(px-1, py-1, 2, 2);
 			}
 		}
-
-		// Draw crosshairs at selected point
-		int selectedPoint = _selection.getCurrentPointIndex();
-		if (selectedPoint >= 0)
-		{
-			int px = xPixels[selectedPoint];
-			int py = yPixels[selectedPoint];
-			inG.setColor(currentColour);
-			// crosshairs
-			inG.drawLine(px, 0, px, winHeight);
-			inG.drawLine(0, py, winWidth, py);
-		}
-		// Return the number of points painted
-		return pointsPainted;
+		g.dispose();
 	}
 
 	/**
@@ -1351,6 +1261,10 @@ public class MapCanvas extends JPanel implements MouseListener, MouseMotionListe
 	public void dataUpdated(byte inUpdateType)
 	{
 		_recalculate = true;
+		// Track layer only needs to be redrawn if something other than the selection has changed
+		if (inUpdateType != DataSubscriber.SELECTION_CHANGED) {
+			_trackLayer.dataChanged();
+		}
 		if ((inUpdateType & DataSubscriber.DATA_ADDED_OR_REMOVED) > 0) {
 			_checkBounds = true;
 		}
@@ -21,6 +21,22 @@ public class MapPosition
 	private static final int MAX_ZOOM = 21;
 
 
+	/**
+	 * Default constructor
+	 */
+	public MapPosition() {}
+
+	/**
+	 * Copy constructor
+	 * @param inOther position to copy
+	 */
+	public MapPosition(MapPosition inOther)
+	{
+		_xPosition = inOther._xPosition;
+		_yPosition = inOther._yPosition;
+		setZoom(inOther._zoom);
+	}
+
 	/**
 	 * Zoom and pan to show the selected area
 	 * @param inMinX minimum transformed X
@@ -116,6 +132,33 @@ public class MapPosition
 		return (int) (inValue * MAP_TILE_SIZE * (1 << inZoom));
 	}
 
+	/**
+	 * @param inValue x or y value to transform
+	 * @return pixel coordinate across the whole map at the current zoom level
+	 */
+	public int getPixels(double inValue)
+	{
+		return transformToPixels(inValue);
+	}
+
+	/**
+	 * @param inWidth width of window
+	 * @return pixel coordinate of the window's left edge across the whole map
+	 */
+	public int getLeftPixel(int inWidth)
+	{
+		return _xPosition - inWidth/2;
+	}
+
+	/**
+	 * @param inHeight height of window
+	 * @return pixel coordinate of the window's top edge across the whole map
+	 */
+	public int getTopPixel(int inHeight)
+	{
+		return _yPosition - inHeight/2;
+	}
+
 	/**
 	 * Convert pixels back into x coordinates
 	 * @param inPixelX x coordinate on screen
@@ -232,6 +275,25 @@ public class MapPosition
 		// I thought that &255 would be slightly faster, but it gives the wrong result
 	}
 
+	/**
+	 * Work out where an image drawn at another position should be shown at this position,
+	 * so that an old image can be shown while a new one is being drawn
+	 * @param inImagePosition position at which the image was drawn
+	 * @param inImageWidth width of image
+	 * @param inImageHeight height of image
+	 * @param inWidth width of display
+	 * @param inHeight height of display
+	 * @return x and y of the image's top left corner, and the scale factor
+	 */
+	public double[] getImageTransform(MapPosition inImagePosition, int inImageWidth, int inImageHeight,
+		int inWidth, int inHeight)
+	{
+		final double scale = Math.pow(2.0, _zoom - inImagePosition._zoom);
+		final double x = scale * (inImagePosition._xPosition - inImageWidth/2) - _xPosition + inWidth/2;
+		final double y = scale * (inImagePosition._yPosition - inImageHeight/2) - _yPosition + inHeight/2;
+		return new double[] {x, y, scale};
+	}
+
 	/**
 	 * Zoom in one level
 	 */
@@ -0,0 +1,44 @@
+package tim.prune.gui.map;
+
+/**
+ * Class to hold the settings needed to render a frame of the map,
+ * taken from the gui controls on the event dispatch thread
+ */
+class MapRenderRequest
+{
+	/** Map position, copied so that it doesn't change during rendering */
+	final MapPosition _position;
+	/** Size of frame in pixels */
+	final int _width, _height;
+	/** True to show map tiles */
+	final boolean _showMap;
+	/** Value of transparency slider */
+	final int _transparency;
+	/** State of connect checkbox */
+	final int _connectState;
+	/** True to zoom to fit the data if no points are visible */
+	final boolean _checkBounds;
+
+
+	/**
+	 * Constructor
+	 * @param inPosition current map position
+	 * @param inWidth width of canvas
+	 * @param inHeight height of canvas
+	 * @param inShowMap true to show map tiles
+	 * @param inTransparency value of transparency slider
+	 * @param inConnectState state of connect checkbox
+	 * @param inCheckBounds true to check that some points are visible
+	 */
+	MapRenderRequest(MapPosition inPosition, int inWidth, int inHeight, boolean inShowMap,
+		int inTransparency, int inConnectState, boolean inCheckBounds)
+	{
+		_position = new MapPosition(inPosition);
+		_width = inWidth;
+		_height = inHeight;
+		_showMap = inShowMap;
+		_transparency = inTransparency;
+		_connectState = inConnectState;
+		_checkBounds = inCheckBounds;
+	}
+}
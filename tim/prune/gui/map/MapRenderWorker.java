@@ -0,0 +1,106 @@
+package tim.prune.gui.map;
+
+import java.util.ConcurrentModificationException;
+
+/**
+ * Thread to draw the map contents away from the event dispatch thread.
+ * Only the most recent request is rendered, and a request which
+ * is still being rendered when a newer one arrives is abandoned.
+ */
+class MapRenderWorker extends Thread
+{
+	/** Canvas to render for */
+	private final MapCanvas _canvas;
+	/** Most recent request */
+	private volatile MapRenderRequest _request = null;
+	/** Request which was last started */
+	private MapRenderRequest _startedRequest = null;
+	/** Number of frames in a row which have failed */
+	private int _numFailures = 0;
+
+	/** Maximum number of failed frames in a row before giving up until the next request */
+	private static final int MAX_FAILURES = 3;
+
+
+	/**
+	 * Constructor
+	 * @param inCanvas map canvas
+	 */
+	MapRenderWorker(MapCanvas inCanvas)
+	{
+		super("MapRenderer");
+		_canvas = inCanvas;
+		setDaemon(true);
+	}
+
+	/**
+	 * Request a new frame, replacing any previous request
+	 * @param inRequest details of the frame to render
+	 */
+	synchronized void submit(MapRenderRequest inRequest)
+	{
+		_request = inRequest;
+		notifyAll();
+	}
+
+	/**
+	 * @param inRequest request being rendered
+	 * @return true if a newer request has arrived, so this one should be abandoned
+	 */
+	boolean isCancelled(MapRenderRequest inRequest)
+	{
+		return inRequest != _request;
+	}
+
+	/**
+	 * Run method, waiting for requests and rendering them
+	 */
+	public void run()
+	{
+		while (true)
+		{
+			MapRenderRequest request = null;
+			synchronized (this)
+			{
+				while (_request == null || _request == _startedRequest)
+				{
+					try {
+						wait();
+					}
+					catch (InterruptedException ie) {
+						return;
+					}
+				}
+				request = _request;
+				_startedRequest = request;
+			}
+			try
+			{
+				_canvas.renderFrame(request);
+				_numFailures = 0;
+			}
+			// These are probably due to the data being changed during drawing
+			catch (NullPointerException npe) {
+				frameFailed(request);
+			}
+			catch (IndexOutOfBoundsException obe) {
+				frameFailed(request);
+			}
+			catch (ConcurrentModificationException cme) {
+				frameFailed(request);
+			}
+		}
+	}
+
+	/**
+	 * Drop the failed frame and ask for another one, unless a newer one has already been requested
+	 * @param inRequest request which failed
+	 */
+	private void frameFailed(MapRenderRequest inRequest)
+	{
+		_numFailures++;
+		if (!isCancelled(inRequest) && _numFailures <= MAX_FAILURES) {
+			_canvas.rerenderFrame();
+		}
+	}
+}
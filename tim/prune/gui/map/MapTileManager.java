@@ -6,6 +6,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 
 import tim.prune.config.Config;
+import tim.prune.diagnostics.Diagnostics;
 
 
 /**
@@ -47,7 +48,7 @@ public class MapTileManager implements ImageObserver
 	 * @param inTileX x coord of central tile
 	 * @param inTileY y coord of central tile
 	 */
-	public void centreMap(int inZoom, int inTileX, int inTileY)
+	public synchronized void centreMap(int inZoom, int inTileX, int inTileY)
 	{
 		setZoom(inZoom);
 		// Pass params onto all memory cachers
@@ -59,7 +60,7 @@ public class MapTileManager implements ImageObserver
 	}
 
 	/** @param inZoom zoom level to set */
-	public void setZoom(int inZoom)
+	public synchronized void setZoom(int inZoom)
 	{
 		_zoom = inZoom;
 		// Calculate number of tiles = 2^^zoom
@@ -94,7 +95,7 @@ public class MapTileManager implements ImageObserver
 	/**
 	 * Clear all the memory caches due to changed config / zoom
 	 */
-	public void clearMemoryCaches()
+	public synchronized void clearMemoryCaches()
 	{
 		int numLayers = _mapSource.getNumLayers();
 		if (_tempCaches == null || _tempCaches.length != numLayers)
@@ -124,7 +125,7 @@ public class MapTileManager implements ImageObserver
 	/**
 	 * @param inMapSource selected map source
 	 */
-	public void setMapSource(MapSource inMapSource)
+	public synchronized void setMapSource(MapSource inMapSource)
 	{
 		_mapSource = inMapSource;
 		if (_mapSource == null) {_mapSource = MapSourceLibrary.getSource(0);}
@@ -148,7 +149,7 @@ public class MapTileManager implements ImageObserver
 	 * @param inDownloadIfNecessary true to download the file if it's not available
 	 * @return selected tile if already loaded, or null otherwise
 	 */
-	public Image getTile(int inLayer, int inX, int inY, boolean inDownloadIfNecessary)
+	public synchronized Image getTile(int inLayer, int inX, int inY, boolean inDownloadIfNecessary)
 	{
 		if (inY < 0 || inY >= _numTileIndices) return null;
 		// Wrap tile indices which are too big or too small
@@ -161,7 +162,9 @@ public class MapTileManager implements ImageObserver
 		{
 			tempCache = _tempCaches[inLayer]; // Should probably guard array indexes here
 			tile = tempCache.getTile(inX, inY);
-			if (tile != null) {
+			if (tile != null)
+			{
+				Diagnostics.increment(Diagnostics.COUNTER_TILES_MEMORY);
 				return tile;
 			}
 		}
@@ -175,6 +178,7 @@ public class MapTileManager implements ImageObserver
 			tile = DiskTileCacher.getTile(diskCachePath, _mapSource.makeFilePath(inLayer, _zoom, inX, inY), onlineMode);
 			if (tile != null)
 			{
+				Diagnostics.increment(Diagnostics.COUNTER_TILES_DISK);
 				if (_returnIncompleteImages) {return tile;}
 				// Pass tile to memory cache
 				if (tempCache != null) {
@@ -188,6 +192,7 @@ public class MapTileManager implements ImageObserver
 		// Tile wasn't in memory or on disk, so if online let's get it
 		if (onlineMode && _downloadTiles && inDownloadIfNecessary)
 		{
+			Diagnostics.increment(Diagnostics.COUNTER_TILES_DOWNLOAD);
 			try
 			{
 				URL tileUrl = new URL(_mapSource.makeURL(inLayer, _zoom, inX, inY));
@@ -206,6 +211,9 @@ public class MapTileManager implements ImageObserver
 			}
 			catch (MalformedURLException urle) {} // ignore
 		}
+		else {
+			Diagnostics.increment(Diagnostics.COUNTER_TILES_MISSING);
+		}
 		return null;
 	}
 
@@ -0,0 +1,256 @@
+package tim.prune.gui.map;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+
+import javax.imageio.ImageIO;
+
+import tim.prune.GpsPrune;
+import tim.prune.config.Config;
+import tim.prune.diagnostics.Diagnostics;
+
+/**
+ * Class to fetch single map tiles synchronously, either from the disk cache
+ * or by downloading them, and to return them fully decoded.
+ * Unlike the MapTileManager, the calling thread blocks until the tile is ready,
+ * so it's intended to be called from a pool of worker threads
+ */
+public class TileFetcher
+{
+	/** Map source */
+	private final MapSource _mapSource;
+	/** Zoom level */
+	private final int _zoom;
+	/** True to download tiles which aren't in the disk cache */
+	private final boolean _download;
+	/** Base path of disk cache, or null if there isn't one */
+	private final String _diskCachePath;
+
+	/** Maximum number of attempts to download each tile */
+	private static final int MAX_ATTEMPTS = 3;
+	/** Delay before the first retry, doubled for each following retry */
+	private static final long RETRY_DELAY_MS = 500L;
+	/** Timeout for connecting and for reading */
+	private static final int TIMEOUT_MS = 10000;
+	/** Time limit to use cached images for, the same as the DiskTileCacher */
+	private static final long CACHE_TIME_LIMIT = 20 * 24 * 60 * 60 * 1000L; // 20 days in ms
+
+
+	/**
+	 * Constructor
+	 * @param inMapSource map source
+	 * @param inZoom zoom level
+	 * @param inDownload true to download missing tiles (if online), false to just use the disk cache
+	 */
+	public TileFetcher(MapSource inMapSource, int inZoom, boolean inDownload)
+	{
+		_mapSource = inMapSource;
+		_zoom = inZoom;
+		_download = inDownload && Config.getConfigBoolean(Config.KEY_ONLINE_MODE);
+		_diskCachePath = Config.getConfigString(Config.KEY_DISK_CACHE);
+	}
+
+	/**
+	 * Get the specified tile, blocking until it's loaded or has failed
+	 * @param inLayer layer number, starting from 0
+	 * @param inX x index of tile
+	 * @param inY y index of tile
+	 * @return decoded tile image, or null if not available
+	 */
+	public BufferedImage getTile(int inLayer, int inX, int inY)
+	{
+		final int numTileIndices = 1 << _zoom;
+		if (inY < 0 || inY >= numTileIndices) {return null;}
+		// Wrap tile indices which are too big or too small
+		final int x = ((inX % numTileIndices) + numTileIndices) % numTileIndices;
+
+		// Look in the disk cache first
+		File tileFile = null;
+		if (_diskCachePath != null)
+		{
+			tileFile = new File(_diskCachePath, _mapSource.makeFilePath(inLayer, _zoom, x, inY));
+			if (tileFile.exists() && tileFile.canRead() && tileFile.length() > 0)
+			{
+				// Old tiles are only used if they can't be downloaded again
+				final boolean isOld = (System.currentTimeMillis() - tileFile.lastModified()) >= CACHE_TIME_LIMIT;
+				if (!isOld || !_download)
+				{
+					BufferedImage tile = readFile(tileFile);
+					if (tile != null)
+					{
+						Diagnostics.increment(Diagnostics.COUNTER_TILES_DISK);
+						return tile;
+					}
+				}
+			}
+		}
+		if (_download)
+		{
+			BufferedImage tile = download(inLayer, x, inY, tileFile);
+			if (tile != null) {
+				return tile;
+			}
+			// If the download failed, an old tile is better than nothing
+			if (tileFile != null && tileFile.exists())
+			{
+				tile = readFile(tileFile);
+				if (tile != null) {
+					return tile;
+				}
+			}
+		}
+		Diagnostics.increment(Diagnostics.COUNTER_TILES_MISSING);
+		return null;
+	}
+
+	/**
+	 * Check whether the specified tile is in the disk cache, without reading it
+	 * @param inLayer layer number, starting from 0
+	 * @param inX x index of tile
+	 * @param inY y index of tile
+	 * @return true if the tile file exists
+	 */
+	public boolean isTileCached(int inLayer, int inX, int inY)
+	{
+		final int numTileIndices = 1 << _zoom;
+		if (_diskCachePath == null || inY < 0 || inY >= numTileIndices) {return false;}
+		final int x = ((inX % numTileIndices) + numTileIndices) % numTileIndices;
+		File tileFile = new File(_diskCachePath, _mapSource.makeFilePath(inLayer, _zoom, x, inY));
+		return tileFile.exists() && tileFile.length() > 0;
+	}
+
+	/**
+	 * Download the specified tile, retrying a few times if necessary
+	 * @param inLayer layer number
+	 * @param inX x index of tile
+	 * @param inY y index of tile
+	 * @param inCacheFile file in disk cache to save tile to, or null
+	 * @return decoded tile image, or null if download failed
+	 */
+	private BufferedImage download(int inLayer, int inX, int inY, File inCacheFile)
+	{
+		Diagnostics.increment(Diagnostics.COUNTER_TILES_DOWNLOAD);
+		long retryDelay = RETRY_DELAY_MS;
+		for (int attempt=1; attempt<=MAX_ATTEMPTS; attempt++)
+		{
+			try
+			{
+				byte[] data = downloadBytes(new URL(_mapSource.makeURL(inLayer, _zoom, inX, inY)));
+				BufferedImage tile = ImageIO.read(new ByteArrayInputStream(data));
+				if (tile == null) {
+					return null; // not an image, no point trying again
+				}
+				if (inCacheFile != null) {
+					saveToCache(data, inCacheFile);
+				}
+				return tile;
+			}
+			catch (FileNotFoundException fnfe) {
+				return null; // tile doesn't exist on server, so don't retry
+			}
+			catch (IOException ioe) {
+				System.err.println("Tile download: " + ioe.getClass().getName() + " - " + ioe.getMessage());
+			}
+			// Wait a bit before trying again
+			if (attempt < MAX_ATTEMPTS)
+			{
+				try {
+					Thread.sleep(retryDelay);
+				}
+				catch (InterruptedException ie) {
+					return null; // grouting has been given up
+				}
+				retryDelay *= 2;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read all the bytes from the given url
+	 * @param inUrl url to download
+	 * @return byte array
+	 * @throws IOException on failure
+	 */
+	private static byte[] downloadBytes(URL inUrl) throws IOException
+	{
+		URLConnection conn = inUrl.openConnection();
+		conn.setRequestProperty("User-Agent", "GpsPrune v" + GpsPrune.VERSION_NUMBER);
+		conn.setConnectTimeout(TIMEOUT_MS);
+		conn.setReadTimeout(TIMEOUT_MS);
+		InputStream in = null;
+		try
+		{
+			in = conn.getInputStream();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(conn.getContentLength(), 1024));
+			byte[] buffer = new byte[8192];
+			int numRead = 0;
+			while ((numRead = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, numRead);
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			try {in.close();} catch (Exception e) {} // ignore
+		}
+	}
+
+	/**
+	 * Save the downloaded tile to the disk cache, via a temporary file
+	 * @param inData tile contents
+	 * @param inFile file to save to
+	 */
+	private static void saveToCache(byte[] inData, File inFile)
+	{
+		File dir = inFile.getParentFile();
+		if (!(dir.exists() || dir.mkdirs()) || !dir.canWrite()) {
+			return;
+		}
+		File tempFile = new File(inFile.getAbsolutePath() + ".temp" + Thread.currentThread().getId());
+		FileOutputStream out = null;
+		boolean written = false;
+		try
+		{
+			out = new FileOutputStream(tempFile);
+			out.write(inData);
+			written = true;
+		}
+		catch (IOException ioe) {} // ignore, tile is just not cached
+		finally
+		{
+			try {out.close();} catch (Exception e) {} // ignore
+		}
+		if (written)
+		{
+			// Replace the old tile if there was one
+			if (inFile.exists()) {inFile.delete();}
+			written = tempFile.renameTo(inFile);
+		}
+		if (!written) {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * @param inFile image file
+	 * @return decoded image, or null if it couldn't be read
+	 */
+	private static BufferedImage readFile(File inFile)
+	{
+		try {
+			return ImageIO.read(inFile);
+		}
+		catch (IOException ioe) {
+			return null;
+		}
+	}
+}
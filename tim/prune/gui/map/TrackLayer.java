@@ -0,0 +1,614 @@
+package tim.prune.gui.map;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tim.prune.App;
+import tim.prune.config.ColourScheme;
+import tim.prune.config.Config;
+import tim.prune.data.DataPoint;
+import tim.prune.data.Track;
+import tim.prune.diagnostics.Diagnostics;
+import tim.prune.gui.colour.PointColourer;
+
+/**
+ * Class to hold the track drawn onto transparent tiles, using pixel coordinates
+ * across the whole map, so that a pan only needs the tiles at the newly exposed
+ * edges to be drawn.  Tiles are kept for each zoom level until the data or
+ * the drawing style changes.  An index of which points are near each tile means
+ * that drawing a tile depends on the number of points on it, not on the size of the track.
+ */
+class TrackLayer
+{
+	/** App object for getting the point colourer */
+	private final App _app;
+	/** Track object */
+	private final Track _track;
+	/** Drawn tiles, in order of use so that the least recently used can be dropped */
+	private LinkedHashMap<Long, BufferedImage> _tiles = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> inEldest) {
+			return size() > MAX_TILES;
+		}
+	};
+	/** Data version, incremented whenever the data changes */
+	private volatile int _dataVersion = 0;
+	/** Data version and drawing style used for the current tiles */
+	private int _tilesVersion = -1;
+	private String _tilesStyle = null;
+	/** Indexes of the points and the placed names for the most recently used zoom levels */
+	private LinkedHashMap<Integer, LayerIndex> _indexes = new LinkedHashMap<Integer, LayerIndex>(8, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<Integer, LayerIndex> inEldest) {
+			return size() > MAX_INDEXES;
+		}
+	};
+
+	/** Size of the layer tiles in pixels */
+	private static final int TILE_SIZE = 256;
+	/** Maximum number of tiles to keep */
+	private static final int MAX_TILES = 128;
+	/** Maximum number of zoom levels to keep the indexes for */
+	private static final int MAX_INDEXES = 4;
+	/** Number of steps to try moving the waypoint names away from their points */
+	private static final int NUM_NAME_STEPS = 4;
+	/** Lines covering more tiles than this aren't indexed, they're checked for every tile instead */
+	private static final int MAX_LINE_TILES = 64;
+	/** Special colour keys, apart from the colourer's palette indexes */
+	private static final int POINT_COLOUR_KEY = -3, DELETED_COLOUR_KEY = -2, NO_COLOUR_KEY = -4;
+	/** Marker for tiles with nothing on them */
+	private static final BufferedImage EMPTY_TILE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+
+	/**
+	 * Class to hold a list of int values, growing as necessary
+	 */
+	private static class IndexList
+	{
+		private int[] _values = new int[8];
+		private int _size = 0;
+
+		/** Add a value to the end of the list */
+		void add(int inValue)
+		{
+			if (_size == _values.length) {
+				_values = Arrays.copyOf(_values, _size * 2);
+			}
+			_values[_size++] = inValue;
+		}
+	}
+
+	/**
+	 * Class to hold the pixel positions of the points at one zoom level,
+	 * which points are on or near each tile, and where the waypoint names go
+	 */
+	private static class LayerIndex
+	{
+		private final int _zoom;
+		private int[] _xs = null, _ys = null;
+		/** Index of the previous track point to draw a line from, or -1 */
+		private int[] _prevIndex = null;
+		private boolean[] _isWaypoint = null, _hasMedia = null;
+		/** Flags for lines too long to be indexed by tile */
+		private boolean[] _isLongLine = null;
+		private IndexList _longLines = new IndexList();
+		private HashMap<Long, IndexList> _pointsByTile = new HashMap<Long, IndexList>();
+		/** Waypoint names and where they've been placed */
+		private ArrayList<String> _labelNames = new ArrayList<String>();
+		private ArrayList<Rectangle> _labelRects = new ArrayList<Rectangle>();
+		private HashMap<Long, IndexList> _labelsByTile = new HashMap<Long, IndexList>();
+
+		/** Constructor */
+		LayerIndex(int inZoom) {
+			_zoom = inZoom;
+		}
+	}
+
+
+	/**
+	 * Constructor
+	 * @param inApp App object
+	 * @param inTrack track object
+	 */
+	TrackLayer(App inApp, Track inTrack)
+	{
+		_app = inApp;
+		_track = inTrack;
+	}
+
+	/**
+	 * Throw away the drawn tiles because the data has changed
+	 */
+	void dataChanged()
+	{
+		_dataVersion++;
+	}
+
+	/**
+	 * Draw the visible part of the layer, drawing any tiles which aren't there yet
+	 * @param inG graphics object for frame
+	 * @param inRequest settings for the frame
+	 * @param inOpacity opacity to draw the track with
+	 * @param inWorker render worker, to check whether the frame has been cancelled
+	 * @return number of visible points if the request checks bounds, otherwise 1
+	 */
+	int drawLayer(Graphics inG, MapRenderRequest inRequest, float inOpacity, MapRenderWorker inWorker)
+	{
+		// Throw away the tiles if they're out of date
+		final String style = makeStyleKey(inRequest._connectState);
+		final int version = _dataVersion;
+		if (version != _tilesVersion || !style.equals(_tilesStyle))
+		{
+			_tiles.clear();
+			_indexes.clear();
+			_tilesVersion = version;
+			_tilesStyle = style;
+		}
+		final MapPosition position = inRequest._position;
+		final int zoom = position.getZoom();
+		final int numTileIndices = 1 << zoom;
+		final int left = position.getLeftPixel(inRequest._width);
+		final int top = position.getTopPixel(inRequest._height);
+		Graphics2D g = (Graphics2D) inG.create();
+		if (inOpacity < 1.0f) {
+			g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, inOpacity));
+		}
+		for (int tileY = Math.floorDiv(top, TILE_SIZE); tileY <= Math.floorDiv(top + inRequest._height - 1, TILE_SIZE); tileY++)
+		{
+			if (tileY < 0 || tileY >= numTileIndices) {continue;}
+			for (int tileX = Math.floorDiv(left, TILE_SIZE); tileX <= Math.floorDiv(left + inRequest._width - 1, TILE_SIZE); tileX++)
+			{
+				if (inWorker.isCancelled(inRequest))
+				{
+					g.dispose();
+					return 1;
+				}
+				// Tiles off the edge of the map are wrapped round
+				BufferedImage tile = getTile(inRequest, Math.floorMod(tileX, numTileIndices), tileY, inWorker);
+				if (tile != null) {
+					g.drawImage(tile, tileX * TILE_SIZE - left, tileY * TILE_SIZE - top, null);
+				}
+			}
+		}
+		g.dispose();
+		if (inRequest._checkBounds) {
+			return countVisiblePoints(inRequest, inWorker);
+		}
+		return 1;
+	}
+
+	/**
+	 * @param inConnectState state of connect checkbox
+	 * @return key describing everything which affects the drawing of the tiles apart from the data
+	 */
+	private String makeStyleKey(int inConnectState)
+	{
+		final ColourScheme cs = Config.getColourScheme();
+		return inConnectState + "," + getLineWidth() + "," + Config.getConfigBoolean(Config.KEY_ANTIALIAS)
+			+ "," + cs.getColour(ColourScheme.IDX_POINT).getRGB() + "," + cs.getColour(ColourScheme.IDX_PRIMARY).getRGB()
+			+ "," + cs.getColour(ColourScheme.IDX_SECONDARY).getRGB() + "," + cs.getColour(ColourScheme.IDX_TEXT).getRGB()
+			+ "," + System.identityHashCode(_app.getPointColourer());
+	}
+
+	/**
+	 * @return line width to use
+	 */
+	static int getLineWidth()
+	{
+		int lineWidth = Config.getConfigInt(Config.KEY_LINE_WIDTH);
+		if (lineWidth < 1 || lineWidth > 4) {lineWidth = 2;}
+		return lineWidth;
+	}
+
+	/**
+	 * @param inZoom zoom level
+	 * @param inTileX x index of tile
+	 * @param inTileY y index of tile
+	 * @return key for the tile maps
+	 */
+	private static long makeKey(int inZoom, int inTileX, int inTileY)
+	{
+		return ((long) inZoom << 50) | ((long) inTileX << 25) | inTileY;
+	}
+
+	/**
+	 * Get the specified tile, drawing it if necessary
+	 * @param inRequest settings for the frame
+	 * @param inTileX x index of tile
+	 * @param inTileY y index of tile
+	 * @param inWorker render worker
+	 * @return tile image, or null if there's nothing on it
+	 */
+	private BufferedImage getTile(MapRenderRequest inRequest, int inTileX, int inTileY, MapRenderWorker inWorker)
+	{
+		final int zoom = inRequest._position.getZoom();
+		final long key = makeKey(zoom, inTileX, inTileY);
+		BufferedImage tile = _tiles.get(key);
+		if (tile == null)
+		{
+			LayerIndex index = getIndex(inRequest, inWorker);
+			if (index == null) {return null;} // cancelled
+			tile = drawTile(index, inRequest._connectState, inTileX, inTileY);
+			_tiles.put(key, tile);
+			Diagnostics.increment(Diagnostics.COUNTER_LAYER_TILES_DRAWN);
+		}
+		else {
+			Diagnostics.increment(Diagnostics.COUNTER_LAYER_TILES_CACHED);
+		}
+		return tile == EMPTY_TILE ? null : tile;
+	}
+
+	/**
+	 * Get the index for the request's zoom level, building it if necessary
+	 * @param inRequest settings for the frame
+	 * @param inWorker render worker
+	 * @return index, or null if the frame was cancelled while building it
+	 */
+	private LayerIndex getIndex(MapRenderRequest inRequest, MapRenderWorker inWorker)
+	{
+		final MapPosition position = inRequest._position;
+		LayerIndex cachedIndex = _indexes.get(position.getZoom());
+		if (cachedIndex != null) {
+			return cachedIndex;
+		}
+		final boolean drawLines = (inRequest._connectState % 2) == 0; // 0 or 2
+		final boolean drawPoints = (inRequest._connectState <= 1);    // 0 or 1
+		final int lineWidth = getLineWidth();
+		final int margin = lineWidth + 4;
+		final int numPoints = _track.getNumPoints();
+		LayerIndex index = new LayerIndex(position.getZoom());
+		index._xs = new int[numPoints];
+		index._ys = new int[numPoints];
+		index._prevIndex = new int[numPoints];
+		index._isWaypoint = new boolean[numPoints];
+		index._hasMedia = new boolean[numPoints];
+		index._isLongLine = new boolean[numPoints];
+		int prevTrackIndex = -1;
+		for (int i=0; i<numPoints; i++)
+		{
+			if ((i & 4095) == 0 && inWorker.isCancelled(inRequest)) {
+				return null;
+			}
+			DataPoint point = _track.getPoint(i);
+			final int x = position.getPixels(_track.getX(i));
+			final int y = position.getPixels(_track.getY(i));
+			index._xs[i] = x;
+			index._ys[i] = y;
+			index._isWaypoint[i] = point.isWaypoint();
+			index._hasMedia[i] = point.hasMedia();
+			index._prevIndex[i] = -1;
+			int minX = x - margin, maxX = x + margin, minY = y - margin, maxY = y + margin;
+			if (!point.isWaypoint())
+			{
+				if (drawLines && prevTrackIndex >= 0 && !point.getSegmentStart())
+				{
+					index._prevIndex[i] = prevTrackIndex;
+					final int prevX = index._xs[prevTrackIndex], prevY = index._ys[prevTrackIndex];
+					final int lineMinX = Math.min(x, prevX) - margin, lineMaxX = Math.max(x, prevX) + margin;
+					final int lineMinY = Math.min(y, prevY) - margin, lineMaxY = Math.max(y, prevY) + margin;
+					final long numLineTiles = (long) (Math.floorDiv(lineMaxX, TILE_SIZE) - Math.floorDiv(lineMinX, TILE_SIZE) + 1)
+						* (Math.floorDiv(lineMaxY, TILE_SIZE) - Math.floorDiv(lineMinY, TILE_SIZE) + 1);
+					if (numLineTiles > MAX_LINE_TILES)
+					{
+						index._isLongLine[i] = true;
+						index._longLines.add(i);
+					}
+					else
+					{
+						minX = lineMinX; maxX = lineMaxX;
+						minY = lineMinY; maxY = lineMaxY;
+					}
+				}
+				prevTrackIndex = i;
+			}
+			addToTiles(index._pointsByTile, index._zoom, i, minX, minY, maxX, maxY);
+		}
+		placeNames(index, drawPoints, lineWidth);
+		_indexes.put(index._zoom, index);
+		return index;
+	}
+
+	/**
+	 * Add the given value to the lists of all the tiles covering a rectangle
+	 * @param inMap map of lists by tile
+	 * @param inZoom zoom level
+	 * @param inValue value to add
+	 * @param inMinX minimum x pixel
+	 * @param inMinY minimum y pixel
+	 * @param inMaxX maximum x pixel
+	 * @param inMaxY maximum y pixel
+	 */
+	private static void addToTiles(HashMap<Long, IndexList> inMap, int inZoom, int inValue,
+		int inMinX, int inMinY, int inMaxX, int inMaxY)
+	{
+		final int numTileIndices = 1 << inZoom;
+		for (int tileX = Math.floorDiv(inMinX, TILE_SIZE); tileX <= Math.floorDiv(inMaxX, TILE_SIZE); tileX++)
+		{
+			for (int tileY = Math.max(0, Math.floorDiv(inMinY, TILE_SIZE));
+				tileY <= Math.min(numTileIndices - 1, Math.floorDiv(inMaxY, TILE_SIZE)); tileY++)
+			{
+				final long key = makeKey(inZoom, Math.floorMod(tileX, numTileIndices), tileY);
+				IndexList list = inMap.get(key);
+				if (list == null)
+				{
+					list = new IndexList();
+					inMap.put(key, list);
+				}
+				list.add(inValue);
+			}
+		}
+	}
+
+	/**
+	 * Decide where to put the waypoint names so they don't obscure the track or each other
+	 * @param inIndex index for the zoom level
+	 * @param inDrawPoints true if track points are drawn
+	 * @param inLineWidth line width
+	 */
+	private void placeNames(LayerIndex inIndex, boolean inDrawPoints, int inLineWidth)
+	{
+		final int numPoints = inIndex._xs.length;
+		final int mapSize = TILE_SIZE << inIndex._zoom;
+		LabelPlacer placer = new LabelPlacer(new Rectangle(0, 0, mapSize, mapSize), NUM_NAME_STEPS);
+		Graphics g = EMPTY_TILE.getGraphics();
+		FontMetrics fm = g.getFontMetrics();
+		g.dispose();
+		final int nameHeight = fm.getHeight();
+		// Reserve space around the waypoints first, so only those parts of the track need to be marked
+		int[] nameWidths = new int[numPoints];
+		for (int i=0; i<numPoints; i++)
+		{
+			if (inIndex._isWaypoint[i])
+			{
+				nameWidths[i] = fm.stringWidth(_track.getPoint(i).getWaypointName());
+				placer.reserveLabel(inIndex._xs[i], inIndex._ys[i], nameWidths[i], nameHeight);
+			}
+		}
+		if (placer.isEmpty()) {return;}
+		for (int i=0; i<numPoints; i++)
+		{
+			final int x = inIndex._xs[i], y = inIndex._ys[i];
+			if (inIndex._isWaypoint[i]) {
+				placer.markRect(x-3, y-3, 6, 6);
+			}
+			else
+			{
+				if (inDrawPoints) {
+					placer.markRect(x-2, y-2, 4, 4);
+				}
+				final int prev = inIndex._prevIndex[i];
+				if (prev >= 0) {
+					placer.markLine(inIndex._xs[prev], inIndex._ys[prev], x, y, inLineWidth);
+				}
+			}
+		}
+		// Place the names in track order, each one avoiding those already placed
+		for (int i=0; i<numPoints; i++)
+		{
+			if (!inIndex._isWaypoint[i]) {continue;}
+			Rectangle nameRect = placer.placeLabel(inIndex._xs[i], inIndex._ys[i], nameWidths[i], nameHeight);
+			if (nameRect != null)
+			{
+				final int labelIndex = inIndex._labelNames.size();
+				inIndex._labelNames.add(_track.getPoint(i).getWaypointName());
+				inIndex._labelRects.add(nameRect);
+				addToTiles(inIndex._labelsByTile, inIndex._zoom, labelIndex, nameRect.x - 2,
+					nameRect.y - 2, nameRect.x + nameRect.width + 2, nameRect.y + 2 * nameRect.height);
+			}
+		}
+	}
+
+	/**
+	 * Draw a single tile of the layer
+	 * @param inIndex index for the zoom level
+	 * @param inConnectState state of connect checkbox
+	 * @param inTileX x index of tile
+	 * @param inTileY y index of tile
+	 * @return tile image, or EMPTY_TILE if there's nothing on it
+	 */
+	private BufferedImage drawTile(LayerIndex inIndex, int inConnectState, int inTileX, int inTileY)
+	{
+		final long key = makeKey(inIndex._zoom, inTileX, inTileY);
+		final IndexList points = inIndex._pointsByTile.get(key);
+		final IndexList labels = inIndex._labelsByTile.get(key);
+		// Only the long lines which actually cross this tile need to be drawn
+		final Rectangle tileBounds = new Rectangle(inTileX * TILE_SIZE, inTileY * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+		final int margin = getLineWidth() + 4;
+		tileBounds.grow(margin, margin);
+		IndexList longLines = null;
+		for (int l=0; l<inIndex._longLines._size; l++)
+		{
+			final int i = inIndex._longLines._values[l];
+			final int prev = inIndex._prevIndex[i];
+			if (tileBounds.intersectsLine(inIndex._xs[prev], inIndex._ys[prev], inIndex._xs[i], inIndex._ys[i]))
+			{
+				if (longLines == null) {longLines = new IndexList();}
+				longLines.add(i);
+			}
+		}
+		if (points == null && labels == null && longLines == null) {
+			return EMPTY_TILE;
+		}
+		// Set up colours
+		final ColourScheme cs = Config.getColourScheme();
+		final Color pointColour   = cs.getColour(ColourScheme.IDX_POINT);
+		final Color currentColour = cs.getColour(ColourScheme.IDX_PRIMARY);
+		final Color secondColour  = cs.getColour(ColourScheme.IDX_SECONDARY);
+		final Color textColour    = cs.getColour(ColourScheme.IDX_TEXT);
+		final PointColourer pointColourer = _app.getPointColourer();
+		final boolean drawPoints = (inConnectState <= 1); // 0 or 1
+
+		BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = tile.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			Config.getConfigBoolean(Config.KEY_ANTIALIAS) ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+		g.setStroke(new BasicStroke(getLineWidth()));
+		// Draw using pixel coordinates across the whole map
+		g.translate(-inTileX * TILE_SIZE, -inTileY * TILE_SIZE);
+
+		// Long lines first, then the other lines joined into polylines of the same colour
+		for (int l=0; longLines != null && l<longLines._size; l++)
+		{
+			final int i = longLines._values[l];
+			final int prev = inIndex._prevIndex[i];
+			g.setColor(getColour(getColourKey(i, drawPoints, pointColourer), pointColourer, pointColour, currentColour));
+			g.drawLine(inIndex._xs[prev], inIndex._ys[prev], inIndex._xs[i], inIndex._ys[i]);
+		}
+		int[] lineXs = new int[64], lineYs = new int[64];
+		int lineLength = 0, lineKey = 0, lineEnd = -1;
+		for (int p=0; points != null && p<points._size; p++)
+		{
+			final int i = points._values[p];
+			final int prev = inIndex._prevIndex[i];
+			if (inIndex._isWaypoint[i] || prev < 0 || inIndex._isLongLine[i]) {continue;}
+			final int colourKey = getColourKey(i, drawPoints, pointColourer);
+			if (lineLength > 0 && (prev != lineEnd || colourKey != lineKey))
+			{
+				g.setColor(getColour(lineKey, pointColourer, pointColour, currentColour));
+				g.drawPolyline(lineXs, lineYs, lineLength);
+				lineLength = 0;
+			}
+			if (lineLength + 2 > lineXs.length)
+			{
+				lineXs = Arrays.copyOf(lineXs, lineXs.length * 2);
+				lineYs = Arrays.copyOf(lineYs, lineYs.length * 2);
+			}
+			if (lineLength == 0)
+			{
+				lineXs[0] = inIndex._xs[prev]; lineYs[0] = inIndex._ys[prev];
+				lineLength = 1;
+				lineKey = colourKey;
+			}
+			lineXs[lineLength] = inIndex._xs[i]; lineYs[lineLength] = inIndex._ys[i];
+			lineLength++;
+			lineEnd = i;
+		}
+		if (lineLength > 0)
+		{
+			g.setColor(getColour(lineKey, pointColourer, pointColour, currentColour));
+			g.drawPolyline(lineXs, lineYs, lineLength);
+		}
+		// Then the track points on top
+		if (drawPoints)
+		{
+			int rectKey = NO_COLOUR_KEY;
+			for (int p=0; points != null && p<points._size; p++)
+			{
+				final int i = points._values[p];
+				if (inIndex._isWaypoint[i]) {continue;}
+				final int colourKey = getColourKey(i, true, pointColourer);
+				if (colourKey != rectKey)
+				{
+					g.setColor(getColour(colourKey, pointColourer, pointColour, currentColour));
+					rectKey = colourKey;
+				}
+				g.drawRect(inIndex._xs[i]-2, inIndex._ys[i]-2, 3, 3);
+			}
+		}
+		// Blobs for waypoints, then their names
+		g.setColor(textColour);
+		for (int p=0; points != null && p<points._size; p++)
+		{
+			final int i = points._values[p];
+			if (inIndex._isWaypoint[i]) {
+				g.fillRect(inIndex._xs[i]-3, inIndex._ys[i]-3, 6, 6);
+			}
+		}
+		for (int l=0; labels != null && l<labels._size; l++)
+		{
+			final int labelIndex = labels._values[l];
+			Rectangle rect = inIndex._labelRects.get(labelIndex);
+			g.drawString(inIndex._labelNames.get(labelIndex), rect.x, rect.y + rect.height - 1);
+		}
+		// Blobs for photo / audio points
+		g.setColor(secondColour);
+		for (int p=0; points != null && p<points._size; p++)
+		{
+			final int i = points._values[p];
+			if (inIndex._hasMedia[i])
+			{
+				g.drawRect(inIndex._xs[i]-1, inIndex._ys[i]-1, 2, 2);
+				g.drawRect(inIndex._xs[i]-2, inIndex._ys[i]-2, 4, 4);
+			}
+		}
+		g.dispose();
+		return tile;
+	}
+
+	/**
+	 * Work out which colour to use for a track point and the line leading to it
+	 * @param inIndex point index
+	 * @param inDrawPoints true if points are drawn, otherwise all the lines use the point colour
+	 * @param inColourer point colourer, or null
+	 * @return palette index from the colourer, or one of the special keys
+	 */
+	private int getColourKey(int inIndex, boolean inDrawPoints, PointColourer inColourer)
+	{
+		if (!inDrawPoints) {return POINT_COLOUR_KEY;}
+		if (_track.getPoint(inIndex).getDeleteFlag()) {
+			return DELETED_COLOUR_KEY;
+		}
+		if (inColourer == null) {return POINT_COLOUR_KEY;}
+		return inColourer.getColourIndex(inIndex);
+	}
+
+	/**
+	 * @param inColourKey colour key from getColourKey
+	 * @param inColourer point colourer, or null
+	 * @param inPointColour default point colour
+	 * @param inDeletedColour colour for points marked for deletion
+	 * @return colour to use
+	 */
+	private static Color getColour(int inColourKey, PointColourer inColourer,
+		Color inPointColour, Color inDeletedColour)
+	{
+		if (inColourKey == DELETED_COLOUR_KEY) {return inDeletedColour;}
+		if (inColourKey == POINT_COLOUR_KEY || inColourer == null) {return inPointColour;}
+		Color colour = inColourer.getPaletteColour(inColourKey);
+		return colour == null ? inPointColour : colour;
+	}
+
+	/**
+	 * Count the points within the frame, to check whether the map needs to be moved to show the data
+	 * @param inRequest settings for the frame
+	 * @param inWorker render worker
+	 * @return number of visible points, stopping at the first one found
+	 */
+	private int countVisiblePoints(MapRenderRequest inRequest, MapRenderWorker inWorker)
+	{
+		LayerIndex index = getIndex(inRequest, inWorker);
+		if (index == null) {return 1;}
+		final MapPosition position = inRequest._position;
+		final int numTileIndices = 1 << position.getZoom();
+		final int left = position.getLeftPixel(inRequest._width);
+		final int top = position.getTopPixel(inRequest._height);
+		for (int tileY = Math.floorDiv(top, TILE_SIZE); tileY <= Math.floorDiv(top + inRequest._height - 1, TILE_SIZE); tileY++)
+		{
+			for (int tileX = Math.floorDiv(left, TILE_SIZE); tileX <= Math.floorDiv(left + inRequest._width - 1, TILE_SIZE); tileX++)
+			{
+				final int wrappedX = Math.floorMod(tileX, numTileIndices);
+				IndexList points = index._pointsByTile.get(makeKey(index._zoom, wrappedX, tileY));
+				for (int p=0; points != null && p<points._size; p++)
+				{
+					final int i = points._values[p];
+					final int px = index._xs[i] + (tileX - wrappedX) * TILE_SIZE - left;
+					final int py = index._ys[i] - top;
+					if (px >= 0 && px < inRequest._width && py >= 0 && py < inRequest._height) {
+						return 1;
+					}
+				}
+			}
+		}
+		return 0;
+	}
+}
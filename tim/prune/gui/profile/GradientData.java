@@ -1,8 +1,7 @@
 package tim.prune.gui.profile;
 
 import tim.prune.I18nManager;
-import tim.prune.data.GradientCalculator;
-import tim.prune.data.SpeedValue;
+import tim.prune.data.DerivedSeries;
 import tim.prune.data.Track;
 import tim.prune.data.UnitSet;
 
@@ -29,22 +28,22 @@ public class GradientData extends ProfileData
 		initArrays();
 		_hasData = false;
 		_minValue = _maxValue = 0.0;
-		SpeedValue speed = new SpeedValue();
 		if (_track != null)
 		{
+			// Gradients come either from the speed values or from the distances and altitudes
+			DerivedSeries series = _track.getDerivedSeries();
 			for (int i=0; i<_track.getNumPoints(); i++)
 			{
-				// Get the gradient either from the speed values or from the distances and altitudes
-				GradientCalculator.calculateGradient(_track, i, speed);
-				if (speed.isValid())
+				final boolean hasGradient = series.hasGradient(i);
+				if (hasGradient)
 				{
-					double speedValue = speed.getValue();
-					_pointValues[i] = speedValue;
-					if (speedValue < _minValue || !_hasData) {_minValue = speedValue;}
-					if (speedValue > _maxValue || !_hasData) {_maxValue = speedValue;}
+					double gradient = series.getGradient(i);
+					_pointValues[i] = gradient;
+					if (gradient < _minValue || !_hasData) {_minValue = gradient;}
+					if (gradient > _maxValue || !_hasData) {_maxValue = gradient;}
 					_hasData = true;
 				}
-				_pointHasData[i] = speed.isValid();
+				_pointHasData[i] = hasGradient;
 			}
 		}
 	}
@@ -161,33 +161,50 @@ public class ProfileChart extends GenericDisplay implements MouseListener
 
 			try
 			{
-				// loop through points
-				g.setColor(barColour);
-				for (int p = 0; p < numPoints; p++)
+				final int plotWidth = width - 2 * BORDER_WIDTH - 1;
+				if (numPoints > plotWidth)
 				{
-					x = (int) (_xScaleFactor * p) + 1;
-					if (p == selectionStart)
-						g.setColor(rangeColour);
-					else if (p == (selectionEnd+1))
-						g.setColor(barColour);
-					if (_data.hasData(p))
+					// More points than pixels, so draw one column per pixel using the envelope
+					ProfileEnvelope envelope = _data.getEnvelope();
+					double[] range = new double[2];
+					int pFrom = 0;
+					for (int col = 0; col < plotWidth && pFrom < numPoints; col++)
 					{
-						value = _data.getData(p);
-						// Normal case is the minimum value greater than zero
-						if (minValue >= 0)
+						// Find the points which would be drawn in this column
+						int pTo = Math.max(pFrom, (int) Math.ceil((col + 1) / _xScaleFactor));
+						while (pTo < numPoints && (int) (_xScaleFactor * pTo) <= col) {pTo++;}
+						while (pTo > pFrom && (int) (_xScaleFactor * (pTo-1)) > col) {pTo--;}
+						x = col + 1;
+						if (envelope.getRange(pFrom, pTo, range))
 						{
-							y = (int) (yScaleFactor * (value - minValue));
-							g.fillRect(BORDER_WIDTH+x, height-BORDER_WIDTH - y, barWidth, y);
+							g.setColor(barColour);
+							paintBar(g, x, 1, range[0], range[1], minValue, yScaleFactor, zeroY);
 						}
-						else if (value >= 0.0) {
-							// Bar upwards from the zero line
-							y = height-BORDER_WIDTH - (int) (yScaleFactor * (value - minValue));
-							g.fillRect(BORDER_WIDTH+x, y, barWidth, zeroY - y);
+						// Selected points are drawn over the top
+						final int selFrom = Math.max(pFrom, selectionStart), selTo = Math.min(pTo, selectionEnd + 1);
+						if (selectionStart >= 0 && selFrom < selTo && envelope.getRange(selFrom, selTo, range))
+						{
+							g.setColor(rangeColour);
+							paintBar(g, x, 1, range[0], range[1], minValue, yScaleFactor, zeroY);
 						}
-						else {
-							// Bar downwards from the zero line
-							int barHeight = (int) (yScaleFactor * value);
-							g.fillRect(BORDER_WIDTH+x, zeroY, barWidth, -barHeight);
+						pFrom = pTo;
+					}
+				}
+				else
+				{
+					// loop through points
+					g.setColor(barColour);
+					for (int p = 0; p < numPoints; p++)
+					{
+						x = (int) (_xScaleFactor * p) + 1;
+						if (p == selectionStart)
+							g.setColor(rangeColour);
+						else if (p == (selectionEnd+1))
+							g.setColor(barColour);
+						if (_data.hasData(p))
+						{
+							value = _data.getData(p);
+							paintBar(g, x, barWidth, value, value, minValue, yScaleFactor, zeroY);
 						}
 					}
 				}
@@ -233,6 +250,42 @@ public class ProfileChart extends GenericDisplay implements MouseListener
 	}
 
 
+	/**
+	 * Paint a single bar, which covers a range of values if several points are in the same column
+	 * @param inG graphics object
+	 * @param inX x coordinate of bar, inside the border
+	 * @param inBarWidth width of bar
+	 * @param inLowValue lowest value to show
+	 * @param inHighValue highest value to show
+	 * @param inMinValue minimum value of chart
+	 * @param inYScaleFactor scale factor in y direction
+	 * @param inZeroY y coordinate of zero line
+	 */
+	private void paintBar(Graphics inG, int inX, int inBarWidth, double inLowValue, double inHighValue,
+		double inMinValue, double inYScaleFactor, int inZeroY)
+	{
+		final int height = getHeight();
+		// Normal case is the minimum value greater than zero
+		if (inMinValue >= 0)
+		{
+			int y = (int) (inYScaleFactor * (inHighValue - inMinValue));
+			inG.fillRect(BORDER_WIDTH+inX, height-BORDER_WIDTH - y, inBarWidth, y);
+			return;
+		}
+		if (inHighValue >= 0.0)
+		{
+			// Bar upwards from the zero line
+			int y = height-BORDER_WIDTH - (int) (inYScaleFactor * (inHighValue - inMinValue));
+			inG.fillRect(BORDER_WIDTH+inX, y, inBarWidth, inZeroY - y);
+		}
+		if (inLowValue < 0.0)
+		{
+			// Bar downwards from the zero line
+			int barHeight = (int) (inYScaleFactor * inLowValue);
+			inG.fillRect(BORDER_WIDTH+inX, inZeroY, inBarWidth, -barHeight);
+		}
+	}
+
 	/**
 	 * Paint the background for the chart
 	 * @param inG graphics object
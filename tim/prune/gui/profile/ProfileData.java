@@ -23,6 +23,8 @@ public abstract class ProfileData
 	protected double _minValue = 0.0;
 	/** Maximum value for track */
 	protected double _maxValue = 0.0;
+	/** Envelope of values for drawing, made when first needed */
+	private ProfileEnvelope _envelope = null;
 
 	/**
 	 * Constructor giving track object
@@ -74,6 +76,17 @@ public abstract class ProfileData
 		return _maxValue;
 	}
 
+	/**
+	 * @return envelope of minimum and maximum values, built from the current values
+	 */
+	public ProfileEnvelope getEnvelope()
+	{
+		if (_envelope == null) {
+			_envelope = new ProfileEnvelope(this, _pointValues == null ? 0 : _pointValues.length);
+		}
+		return _envelope;
+	}
+
 	/**
 	 * Get the data from the track and populate the value arrays
 	 */
@@ -102,6 +115,8 @@ public abstract class ProfileData
 	 */
 	protected void initArrays()
 	{
+		// Values are about to change, so the envelope will need to be made again
+		_envelope = null;
 		int numTrackPoints = _track.getNumPoints();
 		if (_pointHasData == null || _pointHasData.length != numTrackPoints)
 		{
@@ -0,0 +1,143 @@
+package tim.prune.gui.profile;
+
+/**
+ * Class to hold the minimum and maximum values of a profile series
+ * over blocks of 2, 4, 8 ... points, so that the range of any span of
+ * points can be found by looking at just a few blocks
+ */
+public class ProfileEnvelope
+{
+	/** Data being summarised, used directly for single points */
+	private final ProfileData _data;
+	/** Number of points */
+	private final int _numPoints;
+	/** Minimum and maximum values for each level, starting with pairs of points; NaN if no data */
+	private final float[][] _mins, _maxs;
+
+
+	/**
+	 * Constructor, building all the levels from the data
+	 * @param inData profile data
+	 * @param inNumPoints number of points in the data
+	 */
+	ProfileEnvelope(ProfileData inData, int inNumPoints)
+	{
+		_data = inData;
+		_numPoints = inNumPoints;
+		int numLevels = 0;
+		for (int size = inNumPoints; size > 1; size = (size + 1) / 2) {
+			numLevels++;
+		}
+		_mins = new float[numLevels][];
+		_maxs = new float[numLevels][];
+		int size = inNumPoints;
+		for (int level=0; level<numLevels; level++)
+		{
+			final int prevSize = size;
+			size = (size + 1) / 2;
+			float[] mins = new float[size], maxs = new float[size];
+			for (int i=0; i<size; i++)
+			{
+				final int first = 2 * i, second = first + 1;
+				float min, max;
+				if (level == 0)
+				{
+					min = max = (inData.hasData(first) ? (float) inData.getData(first) : Float.NaN);
+					if (second < prevSize && inData.hasData(second))
+					{
+						final float value = (float) inData.getData(second);
+						min = minValue(min, value);
+						max = maxValue(max, value);
+					}
+				}
+				else
+				{
+					min = _mins[level-1][first];
+					max = _maxs[level-1][first];
+					if (second < prevSize)
+					{
+						min = minValue(min, _mins[level-1][second]);
+						max = maxValue(max, _maxs[level-1][second]);
+					}
+				}
+				mins[i] = min;
+				maxs[i] = max;
+			}
+			_mins[level] = mins;
+			_maxs[level] = maxs;
+		}
+	}
+
+	/**
+	 * Find the range of the values for a span of points
+	 * @param inFrom index of first point
+	 * @param inTo index after last point
+	 * @param inRange array of two to hold minimum and maximum values
+	 * @return true if any of the points have data
+	 */
+	public boolean getRange(int inFrom, int inTo, double[] inRange)
+	{
+		int from = Math.max(inFrom, 0), to = Math.min(inTo, _numPoints);
+		float min = Float.NaN, max = Float.NaN;
+		// Single points at either end first
+		if ((from & 1) == 1 && from < to)
+		{
+			if (_data.hasData(from)) {min = max = (float) _data.getData(from);}
+			from++;
+		}
+		if ((to & 1) == 1 && from < to)
+		{
+			to--;
+			if (_data.hasData(to))
+			{
+				final float value = (float) _data.getData(to);
+				min = minValue(min, value);
+				max = maxValue(max, value);
+			}
+		}
+		// Then the biggest blocks which fit, working up the levels
+		from /= 2; to /= 2;
+		for (int level=0; level<_mins.length && from < to; level++)
+		{
+			if ((from & 1) == 1)
+			{
+				min = minValue(min, _mins[level][from]);
+				max = maxValue(max, _maxs[level][from]);
+				from++;
+			}
+			if ((to & 1) == 1)
+			{
+				to--;
+				min = minValue(min, _mins[level][to]);
+				max = maxValue(max, _maxs[level][to]);
+			}
+			from /= 2; to /= 2;
+		}
+		if (Float.isNaN(min)) {
+			return false;
+		}
+		inRange[0] = min;
+		inRange[1] = max;
+		return true;
+	}
+
+	/**
+	 * @return minimum of the two values, ignoring NaNs
+	 */
+	private static float minValue(float inA, float inB)
+	{
+		if (Float.isNaN(inA)) {return inB;}
+		if (Float.isNaN(inB)) {return inA;}
+		return Math.min(inA, inB);
+	}
+
+	/**
+	 * @return maximum of the two values, ignoring NaNs
+	 */
+	private static float maxValue(float inA, float inB)
+	{
+		if (Float.isNaN(inA)) {return inB;}
+		if (Float.isNaN(inB)) {return inA;}
+		return Math.max(inA, inB);
+	}
+}
@@ -1,8 +1,7 @@
 package tim.prune.gui.profile;
 
 import tim.prune.I18nManager;
-import tim.prune.data.SpeedCalculator;
-import tim.prune.data.SpeedValue;
+import tim.prune.data.DerivedSeries;
 import tim.prune.data.Track;
 import tim.prune.data.UnitSet;
 
@@ -28,22 +27,22 @@ public class SpeedData extends ProfileData
 		initArrays();
 		_hasData = false;
 		_minValue = _maxValue = 0.0;
-		SpeedValue speed = new SpeedValue();
 		if (_track != null)
 		{
+			// Speeds come either from the speed values or from the distances and timestamps
+			DerivedSeries series = _track.getDerivedSeries();
 			for (int i=0; i<_track.getNumPoints(); i++)
 			{
-				// Get the speed either from the speed value or from the distances and timestamps
-				SpeedCalculator.calculateSpeed(_track, i, speed);
-				if (speed.isValid())
+				final boolean hasSpeed = series.hasSpeed(i);
+				if (hasSpeed)
 				{
-					double speedValue = speed.getValue();
+					double speedValue = series.getSpeed(i, _unitSet.getSpeedUnit());
 					_pointValues[i] = speedValue;
 					if (speedValue < _minValue || !_hasData) {_minValue = speedValue;}
 					if (speedValue > _maxValue || !_hasData) {_maxValue = speedValue;}
 					_hasData = true;
 				}
-				_pointHasData[i] = speed.isValid();
+				_pointHasData[i] = hasSpeed;
 			}
 		}
 	}
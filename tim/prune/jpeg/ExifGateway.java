@@ -1,7 +1,11 @@
 package tim.prune.jpeg;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
 import tim.prune.I18nManager;
 
 /**
@@ -18,7 +22,7 @@ public abstract class ExifGateway
 	/** Library object to call */
 	private static ExifLibrary _exifLibrary = null;
 	/** Flag to set whether failure warning has already been shown */
-	private static boolean _exifFailWarned = false;
+	private static final AtomicBoolean _exifFailWarned = new AtomicBoolean(false);
 
 	/** Static block to initialise library */
 	static
@@ -39,11 +43,17 @@ public abstract class ExifGateway
 	 */
 	public static JpegData getJpegData(File inFile)
 	{
+		// Use the index if this file has been read before and hasn't changed
+		JpegData indexedData = ExifIndex.getJpegData(inFile);
+		if (indexedData != null) {
+			return indexedData;
+		}
 		try
 		{
 			// Call library (if found)
 			if (_exifLibrary != null) {
 				JpegData data = _exifLibrary.getJpegData(inFile);
+				ExifIndex.addJpegData(inFile, data);
 				return data;
 			}
 		}
@@ -51,12 +61,15 @@ public abstract class ExifGateway
 			System.err.println("Link: " + nolib.getMessage());
 			nolib.printStackTrace();
 		}
-		// Not successful - warn if necessary
-		if (!_exifFailWarned)
+		// Not successful - warn if necessary, only once even if several threads fail
+		if (_exifFailWarned.compareAndSet(false, true))
 		{
-			JOptionPane.showMessageDialog(null, I18nManager.getText("error.jpegload.exifreadfailed"),
-				I18nManager.getText("error.jpegload.dialogtitle"), JOptionPane.WARNING_MESSAGE);
-			_exifFailWarned = true;
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					JOptionPane.showMessageDialog(null, I18nManager.getText("error.jpegload.exifreadfailed"),
+						I18nManager.getText("error.jpegload.dialogtitle"), JOptionPane.WARNING_MESSAGE);
+				}
+			});
 		}
 		return null;
 	}
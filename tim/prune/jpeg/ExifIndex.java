@@ -0,0 +1,461 @@
+package tim.prune.jpeg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import tim.prune.config.Config;
+
+/**
+ * Index of the exif information of jpeg files which have already been read,
+ * so that loading the same photos again doesn't need to parse them again.
+ * Entries are keyed by the absolute path and checked against the file size and
+ * modification time, so changed files are read again and their entries replaced.
+ * The index is kept in a binary file next to the config file, and only
+ * held in memory if there isn't a config file.
+ * Thumbnails are not stored, just their position in the jpeg file.
+ */
+public abstract class ExifIndex
+{
+	/** Entries keyed by absolute path, null until loaded */
+	private static HashMap<String, IndexEntry> _entries = null;
+	/** File from which the entries were loaded */
+	private static File _indexFile = null;
+	/** True if entries have been added or removed since loading */
+	private static boolean _changed = false;
+
+	/** Name of index file */
+	private static final String INDEX_FILENAME = ".pruneexifindex";
+	/** Identifier at start of file, including version number */
+	private static final int FILE_MAGIC = 0x47504531; // "GPE1"
+	/** Maximum number of entries to save, beyond which unused ones are dropped */
+	private static final int MAX_SAVED_ENTRIES = 200000;
+
+	// Flags for which values are present in an entry
+	private static final int FLAG_EXIF_PRESENT = 1;
+	private static final int FLAG_LATITUDE     = 2;
+	private static final int FLAG_LONGITUDE    = 4;
+	private static final int FLAG_ALTITUDE     = 8;
+	private static final int FLAG_GPS_TIME     = 16;
+	private static final int FLAG_GPS_DATE     = 32;
+	private static final int FLAG_ORIGINAL     = 64;
+	private static final int FLAG_DIGITIZED    = 128;
+	private static final int FLAG_THUMBNAIL    = 256;
+	private static final int FLAG_SIZE         = 512;
+
+	/**
+	 * Entry in the index for a single file
+	 */
+	private static class IndexEntry
+	{
+		long _fileSize, _modTime;
+		JpegData _data;
+		boolean _used;
+
+		/** Constructor */
+		IndexEntry(long inFileSize, long inModTime, JpegData inData, boolean inUsed)
+		{
+			_fileSize = inFileSize;
+			_modTime = inModTime;
+			_data = inData;
+			_used = inUsed;
+		}
+	}
+
+
+	/**
+	 * Look up the jpeg data for the given file
+	 * @param inFile jpeg file
+	 * @return copy of the indexed data without thumbnail bytes, or null if not indexed or file has changed
+	 */
+	public static JpegData getJpegData(File inFile)
+	{
+		final String path = inFile.getAbsolutePath();
+		final long fileSize = inFile.length(), modTime = inFile.lastModified();
+		synchronized (ExifIndex.class)
+		{
+			IndexEntry entry = getEntries().get(path);
+			if (entry == null) {return null;}
+			if (entry._fileSize != fileSize || entry._modTime != modTime)
+			{
+				// File has changed so its entry is no longer valid
+				getEntries().remove(path);
+				_changed = true;
+				return null;
+			}
+			entry._used = true;
+			// The caller may modify the data, so don't give out the stored object
+			return copyData(entry._data);
+		}
+	}
+
+	/**
+	 * Add the newly-read jpeg data of the given file to the index.
+	 * The image size and the position of the thumbnail are also found and set in the data.
+	 * @param inFile jpeg file
+	 * @param inData data read from exif
+	 */
+	public static void addJpegData(File inFile, JpegData inData)
+	{
+		if (inData == null || inData.hasErrors()) {return;}
+		final long fileSize = inFile.length(), modTime = inFile.lastModified();
+		long exifSegmentStart = readJpegStructure(inFile, inData);
+		byte[] thumbnail = inData.getThumbnailImage();
+		if (thumbnail != null)
+		{
+			// Thumbnails can only be indexed if we know where they are in the file
+			if (exifSegmentStart < 0L || inData.getThumbnailSegmentOffset() < 0) {return;}
+			inData.setThumbnailFileLocation(exifSegmentStart + inData.getThumbnailSegmentOffset(), thumbnail.length);
+		}
+		// Store a copy without the thumbnail bytes
+		JpegData copy = copyData(inData);
+		synchronized (ExifIndex.class)
+		{
+			getEntries().put(inFile.getAbsolutePath(), new IndexEntry(fileSize, modTime, copy, true));
+			_changed = true;
+		}
+	}
+
+	/**
+	 * Remove the entry for the given file, for example because it has been changed
+	 * @param inFile jpeg file
+	 */
+	public static synchronized void removeEntry(File inFile)
+	{
+		if (getEntries().remove(inFile.getAbsolutePath()) != null) {
+			_changed = true;
+		}
+	}
+
+	/**
+	 * Read the segment headers of the jpeg to find the image size and the exif segment
+	 * @param inFile jpeg file
+	 * @param inData data object in which to set the image size
+	 * @return position in the file of the contents of the exif segment, or -1 if not found
+	 */
+	private static long readJpegStructure(File inFile, JpegData inData)
+	{
+		long exifStart = -1L;
+		RandomAccessFile raFile = null;
+		try
+		{
+			raFile = new RandomAccessFile(inFile, "r");
+			if (raFile.readUnsignedShort() != 0xFFD8) {return -1L;}
+			while (true)
+			{
+				if (raFile.read() != 0xFF) {break;}
+				final int marker = raFile.read();
+				if (marker == 0xDA || marker == 0xD9 || marker < 0) {break;} // start of scan or end of image
+				final int segmentLength = raFile.readUnsignedShort();
+				final long contentStart = raFile.getFilePointer();
+				if (marker == 0xE1 && exifStart < 0L) {
+					exifStart = contentStart;
+				}
+				// Start of frame markers (except for huffman and arithmetic tables) give the size
+				else if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC)
+				{
+					raFile.readUnsignedByte(); // precision
+					final int height = raFile.readUnsignedShort();
+					final int width = raFile.readUnsignedShort();
+					inData.setImageSize(width, height);
+					break;
+				}
+				raFile.seek(contentStart + segmentLength - 2);
+			}
+		}
+		catch (IOException e) {} // just use what has been found so far
+		finally
+		{
+			try {
+				if (raFile != null) {raFile.close();}
+			}
+			catch (IOException e) {}
+		}
+		return exifStart;
+	}
+
+	/**
+	 * @param inData jpeg data
+	 * @return copy of the data with its own arrays, without thumbnail bytes or errors
+	 */
+	private static JpegData copyData(JpegData inData)
+	{
+		JpegData copy = new JpegData();
+		if (inData.getExifDataPresent()) {copy.setExifDataPresent();}
+		copy.setLatitudeRef("" + inData.getLatitudeRef());
+		copy.setLatitude(copyArray(inData.getLatitude()));
+		copy.setLongitudeRef("" + inData.getLongitudeRef());
+		copy.setLongitude(copyArray(inData.getLongitude()));
+		copy.setAltitudeRef(inData.getAltitudeRef());
+		if (inData.hasAltitude()) {copy.setAltitude(inData.getAltitude());}
+		copy.setGpsTimestamp(copyArray(inData.getGpsTimestamp()));
+		copy.setGpsDatestamp(copyArray(inData.getGpsDatestamp()));
+		copy.setOriginalTimestamp(inData.getOriginalTimestamp());
+		copy.setDigitizedTimestamp(inData.getDigitizedTimestamp());
+		copy.setOrientationCode(inData.getOrientationCode());
+		copy.setBearing(inData.getBearing());
+		copy.setThumbnailFileLocation(inData.getThumbnailFileOffset(), inData.getThumbnailLength());
+		copy.setImageSize(inData.getImageWidth(), inData.getImageHeight());
+		return copy;
+	}
+
+	/** @return copy of the given array, or null */
+	private static double[] copyArray(double[] inValues) {
+		return inValues == null ? null : inValues.clone();
+	}
+
+	/** @return copy of the given array, or null */
+	private static int[] copyArray(int[] inValues) {
+		return inValues == null ? null : inValues.clone();
+	}
+
+	/**
+	 * @return map of entries, loading them from file if necessary
+	 */
+	private static HashMap<String, IndexEntry> getEntries()
+	{
+		if (_entries == null)
+		{
+			_entries = new HashMap<String, IndexEntry>();
+			File configFile = Config.getConfigFile();
+			if (configFile != null)
+			{
+				_indexFile = new File(configFile.getAbsoluteFile().getParentFile(), INDEX_FILENAME);
+				if (_indexFile.exists() && !loadFile(_indexFile)) {
+					_entries.clear();
+				}
+			}
+		}
+		return _entries;
+	}
+
+	/**
+	 * Load the index from the given file
+	 * @param inFile index file
+	 * @return true if successful
+	 */
+	private static boolean loadFile(File inFile)
+	{
+		DataInputStream inStream = null;
+		try
+		{
+			inStream = new DataInputStream(new BufferedInputStream(new FileInputStream(inFile)));
+			if (inStream.readInt() != FILE_MAGIC) {return false;}
+			final int numEntries = inStream.readInt();
+			for (int i=0; i<numEntries; i++)
+			{
+				final String path = inStream.readUTF();
+				final long fileSize = inStream.readLong();
+				final long modTime = inStream.readLong();
+				_entries.put(path, new IndexEntry(fileSize, modTime, readData(inStream), false));
+			}
+			return true;
+		}
+		catch (IOException e) {
+			return false;
+		}
+		finally
+		{
+			try {
+				if (inStream != null) {inStream.close();}
+			}
+			catch (IOException e) {}
+		}
+	}
+
+	/**
+	 * Read the data of a single entry
+	 * @param inStream stream to read from
+	 * @return jpeg data
+	 */
+	private static JpegData readData(DataInputStream inStream) throws IOException
+	{
+		JpegData data = new JpegData();
+		final int flags = inStream.readUnsignedShort();
+		if ((flags & FLAG_EXIF_PRESENT) != 0) {data.setExifDataPresent();}
+		if ((flags & FLAG_LATITUDE) != 0)
+		{
+			data.setLatitudeRef("" + inStream.readChar());
+			data.setLatitude(readDoubles(inStream));
+		}
+		if ((flags & FLAG_LONGITUDE) != 0)
+		{
+			data.setLongitudeRef("" + inStream.readChar());
+			data.setLongitude(readDoubles(inStream));
+		}
+		if ((flags & FLAG_ALTITUDE) != 0)
+		{
+			data.setAltitudeRef(inStream.readByte());
+			data.setAltitude(inStream.readInt());
+		}
+		if ((flags & FLAG_GPS_TIME) != 0) {data.setGpsTimestamp(readInts(inStream));}
+		if ((flags & FLAG_GPS_DATE) != 0) {data.setGpsDatestamp(readInts(inStream));}
+		if ((flags & FLAG_ORIGINAL) != 0) {data.setOriginalTimestamp(inStream.readUTF());}
+		if ((flags & FLAG_DIGITIZED) != 0) {data.setDigitizedTimestamp(inStream.readUTF());}
+		data.setOrientationCode(inStream.readByte());
+		data.setBearing(inStream.readDouble());
+		if ((flags & FLAG_THUMBNAIL) != 0) {
+			data.setThumbnailFileLocation(inStream.readLong(), inStream.readInt());
+		}
+		if ((flags & FLAG_SIZE) != 0) {
+			data.setImageSize(inStream.readInt(), inStream.readInt());
+		}
+		return data;
+	}
+
+	/**
+	 * Save the index to file if it has changed
+	 */
+	public static synchronized void saveIfChanged()
+	{
+		if (!_changed || _indexFile == null) {return;}
+		// If there are too many entries, drop the ones which weren't used in this session
+		if (_entries.size() > MAX_SAVED_ENTRIES)
+		{
+			Iterator<IndexEntry> iterator = _entries.values().iterator();
+			while (iterator.hasNext())
+			{
+				if (!iterator.next()._used) {
+					iterator.remove();
+				}
+			}
+		}
+		// Write to a temporary file first so that a failure doesn't lose the old index
+		File tempFile = new File(_indexFile.getAbsolutePath() + ".tmp");
+		DataOutputStream outStream = null;
+		boolean saved = false;
+		try
+		{
+			outStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			outStream.writeInt(FILE_MAGIC);
+			outStream.writeInt(_entries.size());
+			for (Map.Entry<String, IndexEntry> mapEntry : _entries.entrySet())
+			{
+				IndexEntry entry = mapEntry.getValue();
+				outStream.writeUTF(mapEntry.getKey());
+				outStream.writeLong(entry._fileSize);
+				outStream.writeLong(entry._modTime);
+				writeData(outStream, entry._data);
+			}
+			outStream.close();
+			outStream = null;
+			saved = (!_indexFile.exists() || _indexFile.delete()) && tempFile.renameTo(_indexFile);
+		}
+		catch (IOException e) {} // not saved
+		finally
+		{
+			try {
+				if (outStream != null) {outStream.close();}
+			}
+			catch (IOException e) {}
+		}
+		if (saved) {
+			_changed = false;
+		}
+		else {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Write the data of a single entry
+	 * @param inStream stream to write to
+	 * @param inData jpeg data
+	 */
+	private static void writeData(DataOutputStream inStream, JpegData inData) throws IOException
+	{
+		final boolean hasLatitude = inData.getLatitude() != null;
+		final boolean hasLongitude = inData.getLongitude() != null;
+		final boolean hasThumbnail = inData.getThumbnailFileOffset() >= 0L;
+		final boolean hasSize = inData.getImageWidth() > 0;
+		int flags = (inData.getExifDataPresent() ? FLAG_EXIF_PRESENT : 0)
+			| (hasLatitude ? FLAG_LATITUDE : 0)
+			| (hasLongitude ? FLAG_LONGITUDE : 0)
+			| (inData.hasAltitude() ? FLAG_ALTITUDE : 0)
+			| (inData.getGpsTimestamp() != null ? FLAG_GPS_TIME : 0)
+			| (inData.getGpsDatestamp() != null ? FLAG_GPS_DATE : 0)
+			| (inData.getOriginalTimestamp() != null ? FLAG_ORIGINAL : 0)
+			| (inData.getDigitizedTimestamp() != null ? FLAG_DIGITIZED : 0)
+			| (hasThumbnail ? FLAG_THUMBNAIL : 0)
+			| (hasSize ? FLAG_SIZE : 0);
+		inStream.writeShort(flags);
+		if (hasLatitude)
+		{
+			inStream.writeChar(inData.getLatitudeRef());
+			writeDoubles(inStream, inData.getLatitude());
+		}
+		if (hasLongitude)
+		{
+			inStream.writeChar(inData.getLongitudeRef());
+			writeDoubles(inStream, inData.getLongitude());
+		}
+		if (inData.hasAltitude())
+		{
+			inStream.writeByte(inData.getAltitudeRef());
+			inStream.writeInt(inData.getAltitude());
+		}
+		if (inData.getGpsTimestamp() != null) {writeInts(inStream, inData.getGpsTimestamp());}
+		if (inData.getGpsDatestamp() != null) {writeInts(inStream, inData.getGpsDatestamp());}
+		if (inData.getOriginalTimestamp() != null) {inStream.writeUTF(inData.getOriginalTimestamp());}
+		if (inData.getDigitizedTimestamp() != null) {inStream.writeUTF(inData.getDigitizedTimestamp());}
+		inStream.writeByte(inData.getOrientationCode());
+		inStream.writeDouble(inData.getBearing());
+		if (hasThumbnail)
+		{
+			inStream.writeLong(inData.getThumbnailFileOffset());
+			inStream.writeInt(inData.getThumbnailLength());
+		}
+		if (hasSize)
+		{
+			inStream.writeInt(inData.getImageWidth());
+			inStream.writeInt(inData.getImageHeight());
+		}
+	}
+
+	/** Write an array of doubles with its length */
+	private static void writeDoubles(DataOutputStream inStream, double[] inValues) throws IOException
+	{
+		inStream.writeByte(inValues.length);
+		for (double value : inValues) {
+			inStream.writeDouble(value);
+		}
+	}
+
+	/** Read an array of doubles with its length */
+	private static double[] readDoubles(DataInputStream inStream) throws IOException
+	{
+		double[] values = new double[inStream.readUnsignedByte()];
+		for (int i=0; i<values.length; i++) {
+			values[i] = inStream.readDouble();
+		}
+		return values;
+	}
+
+	/** Write an array of ints with its length */
+	private static void writeInts(DataOutputStream inStream, int[] inValues) throws IOException
+	{
+		inStream.writeByte(inValues.length);
+		for (int value : inValues) {
+			inStream.writeInt(value);
+		}
+	}
+
+	/** Read an array of ints with its length */
+	private static int[] readInts(DataInputStream inStream) throws IOException
+	{
+		int[] values = new int[inStream.readUnsignedByte()];
+		for (int i=0; i<values.length; i++) {
+			values[i] = inStream.readInt();
+		}
+		return values;
+	}
+}
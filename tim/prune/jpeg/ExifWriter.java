@@ -0,0 +1,701 @@
+package tim.prune.jpeg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class to write or delete the gps tags of a jpeg file without calling exiftool.
+ * Only the exif segment is changed, all the other segments and the image data
+ * are copied unchanged using the file channels. The existing exif structure is
+ * left where it is, with a new gps directory (and if necessary a new copy of
+ * the first directory) added to the end, and the old gps values blanked out.
+ * The new file is written to a temporary file and then moved over the original.
+ */
+public abstract class ExifWriter
+{
+	/** Tag in first directory pointing to gps directory */
+	private static final int TAG_GPS_INFO_OFFSET = 0x8825;
+	/** Highest gps tag written here, others are kept */
+	private static final int LAST_WRITTEN_GPS_TAG = 6;
+	/** Gps tags for the altitude, which are kept if no new altitude is given */
+	private static final int TAG_GPS_ALTITUDE_REF = 5, TAG_GPS_ALTITUDE = 6;
+	/** Start of tiff data in the exif segment, after "Exif\0\0" */
+	private static final int TIFF_HEADER_START_OFFSET = 6;
+	/** Maximum length of a jpeg segment */
+	private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+	/** Bytes per component for the tiff format codes */
+	private static final int[] BYTES_PER_FORMAT = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8};
+	// Format codes used for writing
+	private static final int FMT_BYTE = 1;
+	private static final int FMT_STRING = 2;
+	private static final int FMT_LONG = 4;
+	private static final int FMT_URATIONAL = 5;
+
+
+	/**
+	 * Positions of the segments in a jpeg file
+	 */
+	private static class JpegStructure
+	{
+		/** Position at which to insert a new exif segment */
+		long _insertPosition = 2L;
+		/** Position of the exif segment marker, or -1 if none */
+		long _exifPosition = -1L;
+		/** Length of the exif segment contents */
+		int _exifLength = 0;
+	}
+
+
+	/**
+	 * Write the given position into the gps tags of the given file
+	 * @param inFile jpeg file
+	 * @param inLatitude latitude in degrees
+	 * @param inLongitude longitude in degrees
+	 * @param inHasAltitude true if the altitude should be written
+	 * @param inAltitude altitude in metres
+	 * @param inKeepOriginal true to keep the original file renamed with "_original"
+	 * @throws IOException if the file couldn't be read or written
+	 */
+	public static void writeGpsPosition(File inFile, double inLatitude, double inLongitude,
+		boolean inHasAltitude, double inAltitude, boolean inKeepOriginal)
+	throws IOException
+	{
+		rewriteFile(inFile, new GpsTags(inLatitude, inLongitude, inHasAltitude, inAltitude), inKeepOriginal);
+	}
+
+	/**
+	 * Delete all the gps tags from the given file
+	 * @param inFile jpeg file
+	 * @param inKeepOriginal true to keep the original file renamed with "_original"
+	 * @throws IOException if the file couldn't be read or written
+	 */
+	public static void deleteGpsPosition(File inFile, boolean inKeepOriginal)
+	throws IOException
+	{
+		rewriteFile(inFile, null, inKeepOriginal);
+	}
+
+	/**
+	 * Rewrite the file with the changed exif segment
+	 * @param inFile jpeg file
+	 * @param inTags gps tags to write, or null to delete them
+	 * @param inKeepOriginal true to keep the original file
+	 */
+	private static void rewriteFile(File inFile, GpsTags inTags, boolean inKeepOriginal)
+	throws IOException
+	{
+		final Path path = inFile.toPath();
+		Path tempPath = null;
+		FileChannel inChannel = null, outChannel = null;
+		try
+		{
+			inChannel = FileChannel.open(path, StandardOpenOption.READ);
+			JpegStructure structure = readStructure(inChannel);
+			byte[] tiff = null;
+			if (structure._exifPosition >= 0L)
+			{
+				byte[] segment = readBytes(inChannel, structure._exifPosition + 4, structure._exifLength);
+				tiff = new byte[segment.length - TIFF_HEADER_START_OFFSET];
+				System.arraycopy(segment, TIFF_HEADER_START_OFFSET, tiff, 0, tiff.length);
+			}
+			else if (inTags == null) {
+				return; // no exif so no gps to delete
+			}
+			else {
+				tiff = makeEmptyTiff();
+			}
+			byte[] newTiff = changeTiff(tiff, inTags);
+			if (newTiff == null) {return;} // nothing to change
+			final int segmentLength = 2 + TIFF_HEADER_START_OFFSET + newTiff.length;
+			if (segmentLength > MAX_SEGMENT_LENGTH) {
+				throw new IOException("exif segment too large");
+			}
+
+			// Copy the file before the segment, then the new segment, then the rest
+			tempPath = Files.createTempFile(path.toAbsolutePath().getParent(), ".prune", ".tmp");
+			outChannel = FileChannel.open(tempPath, StandardOpenOption.WRITE);
+			final long headLength = (structure._exifPosition >= 0L ? structure._exifPosition : structure._insertPosition);
+			final long restPosition = (structure._exifPosition >= 0L ?
+				structure._exifPosition + 4 + structure._exifLength : structure._insertPosition);
+			transferAll(inChannel, 0L, headLength, outChannel);
+			ByteBuffer header = ByteBuffer.allocate(4 + TIFF_HEADER_START_OFFSET);
+			header.put((byte) 0xFF).put((byte) 0xE1).putShort((short) segmentLength);
+			header.put(new byte[] {'E', 'x', 'i', 'f', 0, 0});
+			header.flip();
+			writeAll(outChannel, header);
+			writeAll(outChannel, ByteBuffer.wrap(newTiff));
+			transferAll(inChannel, restPosition, inChannel.size() - restPosition, outChannel);
+			outChannel.close();
+			outChannel = null;
+			inChannel.close();
+			inChannel = null;
+
+			// Keep the modification time and permissions of the original
+			tempPath.toFile().setLastModified(inFile.lastModified());
+			try {
+				Files.setPosixFilePermissions(tempPath, Files.getPosixFilePermissions(path));
+			}
+			catch (UnsupportedOperationException | IOException e) {} // not possible on this file system
+			// Like exiftool, keep the original file by renaming it, but don't overwrite an existing one
+			Path backupPath = path.resolveSibling(path.getFileName() + "_original");
+			if (inKeepOriginal && !Files.exists(backupPath))
+			{
+				Files.move(path, backupPath);
+				try {
+					Files.move(tempPath, path);
+				}
+				catch (IOException e)
+				{
+					Files.move(backupPath, path);
+					throw e;
+				}
+			}
+			else
+			{
+				try {
+					Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				catch (AtomicMoveNotSupportedException e) {
+					Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			tempPath = null;
+		}
+		finally
+		{
+			if (inChannel != null) {inChannel.close();}
+			if (outChannel != null) {outChannel.close();}
+			if (tempPath != null) {Files.deleteIfExists(tempPath);}
+		}
+		ExifIndex.removeEntry(inFile);
+	}
+
+	/**
+	 * Read the segment headers of the jpeg to find the exif segment
+	 * @param inChannel channel to read from
+	 * @return structure of the jpeg
+	 */
+	private static JpegStructure readStructure(FileChannel inChannel) throws IOException
+	{
+		JpegStructure structure = new JpegStructure();
+		final long fileSize = inChannel.size();
+		byte[] start = readBytes(inChannel, 0L, 2);
+		if ((start[0] & 0xFF) != 0xFF || (start[1] & 0xFF) != 0xD8) {
+			throw new IOException("not a jpeg file");
+		}
+		long position = 2L;
+		while (position + 4 <= fileSize)
+		{
+			byte[] segmentHeader = readBytes(inChannel, position, 4);
+			if ((segmentHeader[0] & 0xFF) != 0xFF) {
+				throw new IOException("expected jpeg segment start");
+			}
+			final int marker = segmentHeader[1] & 0xFF;
+			if (marker == 0xDA || marker == 0xD9) {break;} // start of scan or end of image
+			final int segmentLength = ((segmentHeader[2] & 0xFF) << 8) | (segmentHeader[3] & 0xFF);
+			if (segmentLength < 2 || position + 2 + segmentLength > fileSize) {
+				throw new IOException("invalid jpeg segment length");
+			}
+			if (marker == 0xE0 && position == 2L)
+			{
+				// New exif segment should go after the jfif segment
+				structure._insertPosition = position + 2 + segmentLength;
+			}
+			else if (marker == 0xE1 && structure._exifPosition < 0L && segmentLength > 2 + TIFF_HEADER_START_OFFSET + 8
+				&& "Exif".equals(new String(readBytes(inChannel, position + 4, 4), "US-ASCII")))
+			{
+				structure._exifPosition = position;
+				structure._exifLength = segmentLength - 2;
+			}
+			position += 2 + segmentLength;
+		}
+		return structure;
+	}
+
+	/**
+	 * @return tiff data with an empty first directory
+	 */
+	private static byte[] makeEmptyTiff()
+	{
+		// big-endian header pointing to a directory with no entries and no next directory
+		return new byte[] {'M', 'M', 0, 42, 0, 0, 0, 8, 0, 0, 0, 0, 0, 0};
+	}
+
+	/**
+	 * Make the changed tiff data
+	 * @param inTiff original tiff data from exif segment
+	 * @param inTags gps tags to write, or null to delete them
+	 * @return new tiff data, or null if nothing needs changing
+	 */
+	private static byte[] changeTiff(byte[] inTiff, GpsTags inTags) throws IOException
+	{
+		TiffData tiff = new TiffData(inTiff);
+		final int ifd0Offset = tiff.get32(4);
+		final int ifd0Count = tiff.checkDirectory(ifd0Offset);
+		// Look for existing gps directory
+		int gpsEntryPosition = -1;
+		for (int i=0; i<ifd0Count; i++)
+		{
+			final int entryPosition = ifd0Offset + 2 + 12 * i;
+			if (tiff.get16(entryPosition) == TAG_GPS_INFO_OFFSET) {
+				gpsEntryPosition = entryPosition;
+			}
+		}
+		if (gpsEntryPosition < 0 && inTags == null) {
+			return null; // nothing to delete
+		}
+		int tiffLength = inTiff.length;
+		ByteArrayOutputStream keptEntries = new ByteArrayOutputStream();
+		ByteArrayOutputStream keptValues = new ByteArrayOutputStream();
+		if (gpsEntryPosition >= 0)
+		{
+			// Blank out the old gps tags, but keep the ones which aren't written here
+			final int oldGpsOffset = tiff.get32(gpsEntryPosition + 8);
+			tiff.blankGpsDirectory(oldGpsOffset, inTags == null ? null : keptEntries, keptValues,
+				inTags != null && !inTags.hasAltitude());
+			// If the old directory was at the end, for example from a previous save, then reuse the space
+			if (tiff.isBlankFrom(oldGpsOffset)) {
+				tiffLength = oldGpsOffset;
+			}
+			if (inTags == null) {
+				tiff.removeEntry(ifd0Offset, gpsEntryPosition);
+			}
+		}
+		// New data is added at the end
+		ByteArrayOutputStream extra = new ByteArrayOutputStream();
+		final int extraStart = tiffLength + (tiffLength % 2);
+		if (tiffLength % 2 != 0) {extra.write(0);}
+		if (inTags != null)
+		{
+			if (gpsEntryPosition >= 0) {
+				// Just point the existing entry to the new gps directory
+				tiff.set32(gpsEntryPosition + 8, extraStart);
+			}
+			else {
+				// First directory needs another entry, so it has to be copied to the end
+				copyFirstDirectory(tiff, ifd0Offset, ifd0Count, extraStart, extra);
+			}
+			inTags.writeDirectory(tiff, tiffLength + extra.size(), keptEntries.toByteArray(),
+				keptValues.toByteArray(), extra);
+		}
+		// Some readers check that there's space after the last directory
+		extra.write(new byte[8], 0, 8);
+		byte[] result = new byte[tiffLength + extra.size()];
+		System.arraycopy(tiff.getData(), 0, result, 0, tiffLength);
+		byte[] extraBytes = extra.toByteArray();
+		System.arraycopy(extraBytes, 0, result, tiffLength, extraBytes.length);
+		return result;
+	}
+
+	/**
+	 * Copy the first directory to the end with a new gps entry.
+	 * The following directory (with the thumbnail) is also copied after it,
+	 * because some readers expect the directories to be in order.
+	 * The values of the entries stay where they are.
+	 * @param inTiff tiff data
+	 * @param inOffset offset of first directory
+	 * @param inCount number of entries in first directory
+	 * @param inNewOffset offset where the copy will start
+	 * @param inStream stream to write the copies to
+	 */
+	private static void copyFirstDirectory(TiffData inTiff, int inOffset, int inCount, int inNewOffset,
+		ByteArrayOutputStream inStream) throws IOException
+	{
+		final byte[] data = inTiff.getData();
+		final int newIfd0Size = 2 + 12 * (inCount + 1) + 4;
+		int nextOffset = inTiff.get32(inOffset + 2 + 12 * inCount);
+		int nextCount = -1;
+		if (nextOffset > inOffset && nextOffset + 2 <= data.length) {
+			nextCount = inTiff.checkDirectory(nextOffset);
+		}
+		final int newNextOffset = (nextCount >= 0 ? inNewOffset + newIfd0Size : nextOffset);
+		final int gpsOffset = inNewOffset + newIfd0Size + (nextCount >= 0 ? 2 + 12 * nextCount + 4 : 0);
+		// Copy of first directory with the gps entry in order
+		inStream.write(inTiff.makeShort(inCount + 1), 0, 2);
+		byte[] gpsEntry = inTiff.makeEntry(TAG_GPS_INFO_OFFSET, FMT_LONG, 1, inTiff.makeInt(gpsOffset));
+		boolean gpsWritten = false;
+		for (int i=0; i<inCount; i++)
+		{
+			final int entryPosition = inOffset + 2 + 12 * i;
+			if (!gpsWritten && inTiff.get16(entryPosition) > TAG_GPS_INFO_OFFSET)
+			{
+				inStream.write(gpsEntry, 0, 12);
+				gpsWritten = true;
+			}
+			inStream.write(data, entryPosition, 12);
+		}
+		if (!gpsWritten) {
+			inStream.write(gpsEntry, 0, 12);
+		}
+		inStream.write(inTiff.makeInt(newNextOffset), 0, 4);
+		// Copy of the next directory, including its link to any further directory
+		if (nextCount >= 0) {
+			inStream.write(data, nextOffset, 2 + 12 * nextCount + 4);
+		}
+		inTiff.set32(4, inNewOffset);
+	}
+
+	/**
+	 * Read bytes from the channel
+	 * @param inChannel channel to read from
+	 * @param inPosition position in channel
+	 * @param inLength number of bytes
+	 * @return bytes read
+	 */
+	private static byte[] readBytes(FileChannel inChannel, long inPosition, int inLength) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(inLength);
+		long position = inPosition;
+		while (buffer.hasRemaining())
+		{
+			final int numRead = inChannel.read(buffer, position);
+			if (numRead < 0) {throw new IOException("unexpected end of file");}
+			position += numRead;
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Transfer part of one channel to the other without copying it through the java heap
+	 * @param inChannel channel to read from
+	 * @param inPosition start position
+	 * @param inLength number of bytes to transfer
+	 * @param inOutChannel channel to write to
+	 */
+	private static void transferAll(FileChannel inChannel, long inPosition, long inLength, FileChannel inOutChannel)
+	throws IOException
+	{
+		long position = inPosition, remaining = inLength;
+		while (remaining > 0L)
+		{
+			final long numTransferred = inChannel.transferTo(position, remaining, inOutChannel);
+			if (numTransferred <= 0L) {throw new IOException("transfer failed");}
+			position += numTransferred;
+			remaining -= numTransferred;
+		}
+	}
+
+	/**
+	 * Write the whole buffer to the channel
+	 * @param inChannel channel to write to
+	 * @param inBuffer buffer to write
+	 */
+	private static void writeAll(FileChannel inChannel, ByteBuffer inBuffer) throws IOException
+	{
+		while (inBuffer.hasRemaining()) {
+			inChannel.write(inBuffer);
+		}
+	}
+
+
+	/**
+	 * Tiff data from the exif segment, with its byte order
+	 */
+	private static class TiffData
+	{
+		private final byte[] _data;
+		private final boolean _isMotorolaByteOrder;
+
+		/**
+		 * Constructor
+		 * @param inData tiff data, which will be changed
+		 */
+		TiffData(byte[] inData) throws IOException
+		{
+			_data = inData;
+			if (inData.length < 8) {throw new IOException("exif data too short");}
+			if (inData[0] == 'M' && inData[1] == 'M') {_isMotorolaByteOrder = true;}
+			else if (inData[0] == 'I' && inData[1] == 'I') {_isMotorolaByteOrder = false;}
+			else {throw new IOException("unknown exif byte order");}
+			if (get16(2) != 42) {throw new IOException("invalid exif header");}
+		}
+
+		/** @return data array */
+		byte[] getData() {
+			return _data;
+		}
+
+		/** @return 16-bit value at the given offset */
+		int get16(int inOffset) {
+			return get16(_data, inOffset);
+		}
+
+		/** @return 16-bit value at the given offset of the given bytes, using this byte order */
+		int get16(byte[] inBytes, int inOffset)
+		{
+			if (_isMotorolaByteOrder) {
+				return ((inBytes[inOffset] & 0xFF) << 8) | (inBytes[inOffset + 1] & 0xFF);
+			}
+			return ((inBytes[inOffset + 1] & 0xFF) << 8) | (inBytes[inOffset] & 0xFF);
+		}
+
+		/** @return 32-bit value at the given offset */
+		int get32(int inOffset) {
+			return get32(_data, inOffset);
+		}
+
+		/** @return 32-bit value at the given offset of the given bytes, using this byte order */
+		int get32(byte[] inBytes, int inOffset)
+		{
+			if (_isMotorolaByteOrder) {
+				return (get16(inBytes, inOffset) << 16) | get16(inBytes, inOffset + 2);
+			}
+			return (get16(inBytes, inOffset + 2) << 16) | get16(inBytes, inOffset);
+		}
+
+		/**
+		 * @param inBytes bytes containing a directory entry
+		 * @param inEntryPosition position of the entry
+		 * @return number of bytes in the value of the entry, or 0 if the format is unknown
+		 */
+		long getValueByteCount(byte[] inBytes, int inEntryPosition)
+		{
+			final int format = get16(inBytes, inEntryPosition + 2);
+			if (format < 1 || format >= BYTES_PER_FORMAT.length) {return 0L;}
+			return (get32(inBytes, inEntryPosition + 4) & 0xFFFFFFFFL) * BYTES_PER_FORMAT[format];
+		}
+
+		/** Set the 32-bit value at the given offset */
+		void set32(int inOffset, int inValue)
+		{
+			System.arraycopy(makeInt(inValue), 0, _data, inOffset, 4);
+		}
+
+		/** @return 2 bytes for the given value */
+		byte[] makeShort(int inValue)
+		{
+			if (_isMotorolaByteOrder) {
+				return new byte[] {(byte) (inValue >> 8), (byte) inValue};
+			}
+			return new byte[] {(byte) inValue, (byte) (inValue >> 8)};
+		}
+
+		/** @return 4 bytes for the given value */
+		byte[] makeInt(int inValue)
+		{
+			if (_isMotorolaByteOrder) {
+				return new byte[] {(byte) (inValue >> 24), (byte) (inValue >> 16), (byte) (inValue >> 8), (byte) inValue};
+			}
+			return new byte[] {(byte) inValue, (byte) (inValue >> 8), (byte) (inValue >> 16), (byte) (inValue >> 24)};
+		}
+
+		/**
+		 * Make a directory entry
+		 * @param inTag tag number
+		 * @param inFormat format code
+		 * @param inCount number of components
+		 * @param inValue 4 bytes of value or offset
+		 * @return 12 bytes of entry
+		 */
+		byte[] makeEntry(int inTag, int inFormat, int inCount, byte[] inValue)
+		{
+			byte[] entry = new byte[12];
+			System.arraycopy(makeShort(inTag), 0, entry, 0, 2);
+			System.arraycopy(makeShort(inFormat), 0, entry, 2, 2);
+			System.arraycopy(makeInt(inCount), 0, entry, 4, 4);
+			System.arraycopy(inValue, 0, entry, 8, Math.min(4, inValue.length));
+			return entry;
+		}
+
+		/**
+		 * Check that the directory at the given offset is within the data
+		 * @param inOffset offset of directory
+		 * @return number of entries
+		 */
+		int checkDirectory(int inOffset) throws IOException
+		{
+			if (inOffset < 8 || inOffset + 2 > _data.length) {throw new IOException("invalid exif directory offset");}
+			final int count = get16(inOffset);
+			if (inOffset + 2 + 12 * count + 4 > _data.length) {throw new IOException("invalid exif directory length");}
+			return count;
+		}
+
+		/**
+		 * Blank out the gps directory and the values of its tags.
+		 * The values of kept entries are moved out too, so that they can be written after the
+		 * new directory and the space of a directory from a previous save can be reused.
+		 * @param inOffset offset of gps directory
+		 * @param inKeptEntries stream to receive entries to keep, or null to blank them all
+		 * @param inKeptValues stream to receive values of kept entries which don't fit in the entry,
+		 *        the entries then hold the offset of the value in this stream
+		 * @param inKeepAltitude true to keep the altitude tags too, if no new altitude is written
+		 */
+		void blankGpsDirectory(int inOffset, ByteArrayOutputStream inKeptEntries, ByteArrayOutputStream inKeptValues,
+			boolean inKeepAltitude) throws IOException
+		{
+			final int count = checkDirectory(inOffset);
+			for (int i=0; i<count; i++)
+			{
+				final int entryPosition = inOffset + 2 + 12 * i;
+				final int tag = get16(entryPosition);
+				final long byteCount = getValueByteCount(_data, entryPosition);
+				final int valueOffset = get32(entryPosition + 8);
+				final boolean valueOutside = byteCount > 4L && valueOffset >= 8 && valueOffset + byteCount <= _data.length;
+				final boolean isAltitudeTag = (tag == TAG_GPS_ALTITUDE_REF || tag == TAG_GPS_ALTITUDE);
+				if (inKeptEntries != null && (tag > LAST_WRITTEN_GPS_TAG || (inKeepAltitude && isAltitudeTag)))
+				{
+					if (byteCount <= 4L) {
+						inKeptEntries.write(_data, entryPosition, 12);
+					}
+					else if (valueOutside)
+					{
+						byte[] entry = new byte[12];
+						System.arraycopy(_data, entryPosition, entry, 0, 8);
+						System.arraycopy(makeInt(inKeptValues.size()), 0, entry, 8, 4);
+						inKeptEntries.write(entry, 0, 12);
+						inKeptValues.write(_data, valueOffset, (int) byteCount);
+						// values must start on a word boundary
+						if (inKeptValues.size() % 2 != 0) {inKeptValues.write(0);}
+					}
+					// else the value is outside the data, so the entry is dropped
+				}
+				if (valueOutside) {
+					Arrays.fill(_data, valueOffset, (int) (valueOffset + byteCount), (byte) 0);
+				}
+			}
+			Arrays.fill(_data, inOffset, inOffset + 2 + 12 * count + 4, (byte) 0);
+		}
+
+		/**
+		 * @param inOffset offset in data
+		 * @return true if all the data from the given offset to the end is blank
+		 */
+		boolean isBlankFrom(int inOffset)
+		{
+			for (int i=inOffset; i<_data.length; i++)
+			{
+				if (_data[i] != 0) {return false;}
+			}
+			return true;
+		}
+
+		/**
+		 * Remove an entry from a directory in place, leaving blank space at the end
+		 * @param inDirOffset offset of directory
+		 * @param inEntryPosition position of entry to remove
+		 */
+		void removeEntry(int inDirOffset, int inEntryPosition)
+		{
+			final int count = get16(inDirOffset);
+			final int dirEnd = inDirOffset + 2 + 12 * count + 4;
+			// Move the following entries and the link to the next directory
+			System.arraycopy(_data, inEntryPosition + 12, _data, inEntryPosition, dirEnd - inEntryPosition - 12);
+			Arrays.fill(_data, dirEnd - 12, dirEnd, (byte) 0);
+			System.arraycopy(makeShort(count - 1), 0, _data, inDirOffset, 2);
+		}
+	}
+
+
+	/**
+	 * Values of the gps tags to write
+	 */
+	private static class GpsTags
+	{
+		private final double _latitude, _longitude, _altitude;
+		private final boolean _hasAltitude;
+
+		/** Constructor */
+		GpsTags(double inLatitude, double inLongitude, boolean inHasAltitude, double inAltitude)
+		{
+			_latitude = inLatitude;
+			_longitude = inLongitude;
+			_hasAltitude = inHasAltitude;
+			_altitude = inAltitude;
+		}
+
+		/** @return true if the altitude tags will be written */
+		boolean hasAltitude() {
+			return _hasAltitude;
+		}
+
+		/**
+		 * Write the gps directory and its values
+		 * @param inTiff tiff data for byte order
+		 * @param inOffset offset at which the directory will be
+		 * @param inKeptEntries other gps entries to keep, sorted by tag
+		 * @param inKeptValues values of the kept entries which don't fit in the entries
+		 * @param inStream stream to write to
+		 */
+		void writeDirectory(TiffData inTiff, int inOffset, byte[] inKeptEntries, byte[] inKeptValues,
+			ByteArrayOutputStream inStream)
+		{
+			final int numKept = inKeptEntries.length / 12;
+			final int numEntries = (_hasAltitude ? 7 : 5) + numKept;
+			int valueOffset = inOffset + 2 + 12 * numEntries + 4;
+			ByteArrayOutputStream values = new ByteArrayOutputStream();
+			inStream.write(inTiff.makeShort(numEntries), 0, 2);
+			// version 2.3.0.0
+			writeEntry(inStream, inTiff.makeEntry(0, FMT_BYTE, 4, new byte[] {2, 3, 0, 0}));
+			writeEntry(inStream, inTiff.makeEntry(1, FMT_STRING, 2, new byte[] {(byte) (_latitude < 0.0 ? 'S' : 'N'), 0}));
+			writeEntry(inStream, inTiff.makeEntry(2, FMT_URATIONAL, 3, inTiff.makeInt(valueOffset)));
+			writeDegMinSec(inTiff, _latitude, values);
+			writeEntry(inStream, inTiff.makeEntry(3, FMT_STRING, 2, new byte[] {(byte) (_longitude < 0.0 ? 'W' : 'E'), 0}));
+			writeEntry(inStream, inTiff.makeEntry(4, FMT_URATIONAL, 3, inTiff.makeInt(valueOffset + values.size())));
+			writeDegMinSec(inTiff, _longitude, values);
+			if (_hasAltitude)
+			{
+				writeEntry(inStream, inTiff.makeEntry(TAG_GPS_ALTITUDE_REF, FMT_BYTE, 1, new byte[] {(byte) (_altitude < 0.0 ? 1 : 0)}));
+				writeEntry(inStream, inTiff.makeEntry(TAG_GPS_ALTITUDE, FMT_URATIONAL, 1, inTiff.makeInt(valueOffset + values.size())));
+				writeRational(inTiff, Math.round(Math.abs(_altitude) * 1000.0), 1000, values);
+			}
+			// Kept values go after the new ones, so their offsets in the entries need moving
+			final int keptValuesOffset = valueOffset + values.size();
+			for (int i=0; i<numKept; i++)
+			{
+				final int entryPosition = 12 * i;
+				if (inTiff.getValueByteCount(inKeptEntries, entryPosition) > 4L)
+				{
+					final int keptOffset = inTiff.get32(inKeptEntries, entryPosition + 8);
+					System.arraycopy(inTiff.makeInt(keptValuesOffset + keptOffset), 0, inKeptEntries, entryPosition + 8, 4);
+				}
+			}
+			inStream.write(inKeptEntries, 0, inKeptEntries.length);
+			// no next directory
+			inStream.write(new byte[4], 0, 4);
+			byte[] valueBytes = values.toByteArray();
+			inStream.write(valueBytes, 0, valueBytes.length);
+			inStream.write(inKeptValues, 0, inKeptValues.length);
+		}
+
+		/** Write a directory entry */
+		private static void writeEntry(ByteArrayOutputStream inStream, byte[] inEntry)
+		{
+			inStream.write(inEntry, 0, inEntry.length);
+		}
+
+		/**
+		 * Write a coordinate as three rationals for degrees, minutes and seconds
+		 * @param inTiff tiff data for byte order
+		 * @param inValue coordinate value in degrees
+		 * @param inStream stream to write to
+		 */
+		private static void writeDegMinSec(TiffData inTiff, double inValue, ByteArrayOutputStream inStream)
+		{
+			// Work in thousandths of a second to avoid rounding up to 60 seconds
+			final long totalMillisecs = Math.round(Math.abs(inValue) * 3600000.0);
+			final long degrees = totalMillisecs / 3600000L;
+			final long minutes = (totalMillisecs / 60000L) % 60L;
+			final long millisecs = totalMillisecs % 60000L;
+			writeRational(inTiff, degrees, 1, inStream);
+			writeRational(inTiff, minutes, 1, inStream);
+			writeRational(inTiff, millisecs, 1000, inStream);
+		}
+
+		/** Write an unsigned rational value */
+		private static void writeRational(TiffData inTiff, long inNumerator, int inDenominator,
+			ByteArrayOutputStream inStream)
+		{
+			inStream.write(inTiff.makeInt((int) inNumerator), 0, 4);
+			inStream.write(inTiff.makeInt(inDenominator), 0, 4);
+		}
+	}
+}
@@ -22,6 +22,9 @@ import com.drew.metadata.exif.GpsDirectory;
  */
 public class ExternalExifLibrary implements ExifLibrary
 {
+	/** Length of the "Exif" identifier at the start of the exif segment, before the tiff header */
+	private static final int EXIF_IDENTIFIER_LENGTH = 6;
+
 	/**
 	 * Use the _external_ exif library to get the data from the given file
 	 * @param inFile file to access
@@ -122,6 +125,11 @@ public class ExternalExifLibrary implements ExifLibrary
 					byte[] thumb = new byte[tdata.length];
 					System.arraycopy(tdata, 0, thumb, 0, tdata.length);
 					data.setThumbnailImage(thumb);
+					// Offset is given from the tiff header, which follows the exif identifier
+					if (exifdir.containsTag(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET)) {
+						data.setThumbnailSegmentOffset(EXIF_IDENTIFIER_LENGTH
+							+ exifdir.getInt(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET));
+					}
 				}
 			}
 
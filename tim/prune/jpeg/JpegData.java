@@ -21,6 +21,10 @@ public class JpegData
 	private String _digitizedTimestamp = null;
 	private int _orientationCode = -1;
 	private byte[] _thumbnail = null;
+	private int _thumbnailSegmentOffset = -1;
+	private long _thumbnailFileOffset = -1L;
+	private int _thumbnailLength = -1;
+	private int _imageWidth = -1, _imageHeight = -1;
 	private double _bearing = -1.0;
 	private ArrayList<String> _errors = null;
 
@@ -194,6 +198,55 @@ public class JpegData
 		return _thumbnail;
 	}
 
+	/**
+	 * @param inOffset offset of thumbnail from the start of the exif segment
+	 */
+	public void setThumbnailSegmentOffset(int inOffset) {
+		_thumbnailSegmentOffset = inOffset;
+	}
+	/** @return offset of thumbnail in exif segment, or -1 if not known */
+	public int getThumbnailSegmentOffset() {
+		return _thumbnailSegmentOffset;
+	}
+
+	/**
+	 * Set the position of the thumbnail in the file, so it can be read later
+	 * @param inOffset offset of thumbnail from start of file
+	 * @param inLength length of thumbnail in bytes
+	 */
+	public void setThumbnailFileLocation(long inOffset, int inLength)
+	{
+		_thumbnailFileOffset = inOffset;
+		_thumbnailLength = inLength;
+	}
+	/** @return offset of thumbnail in file, or -1 if not known */
+	public long getThumbnailFileOffset() {
+		return _thumbnailFileOffset;
+	}
+	/** @return length of thumbnail in file, or -1 if not known */
+	public int getThumbnailLength() {
+		return _thumbnailLength;
+	}
+
+	/**
+	 * Set the size of the image
+	 * @param inWidth width in pixels
+	 * @param inHeight height in pixels
+	 */
+	public void setImageSize(int inWidth, int inHeight)
+	{
+		_imageWidth = inWidth;
+		_imageHeight = inHeight;
+	}
+	/** @return width of image, or -1 if not known */
+	public int getImageWidth() {
+		return _imageWidth;
+	}
+	/** @return height of image, or -1 if not known */
+	public int getImageHeight() {
+		return _imageHeight;
+	}
+
 	/**
 	 * @return rotation required to display photo properly (0 to 3)
 	 */
@@ -437,6 +437,7 @@ public class ExifReader
 			byte[] thumbnailBytes = new byte[_thumbnailLength];
 			System.arraycopy(_data, _thumbnailOffset, thumbnailBytes, 0, _thumbnailLength);
 			inMetadata.setThumbnailImage(thumbnailBytes);
+			inMetadata.setThumbnailSegmentOffset(_thumbnailOffset);
 		}
 	}
 
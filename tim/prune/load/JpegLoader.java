@@ -1,7 +1,23 @@
 package tim.prune.load;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.BoxLayout;
 import javax.swing.JCheckBox;
@@ -23,6 +39,7 @@ import tim.prune.data.Timestamp;
 import tim.prune.data.UnitSetLibrary;
 import tim.prune.function.Cancellable;
 import tim.prune.jpeg.ExifGateway;
+import tim.prune.jpeg.ExifIndex;
 import tim.prune.jpeg.JpegData;
 
 /**
@@ -42,6 +59,38 @@ public class JpegLoader implements Runnable, Cancellable
 	private boolean _cancelled = false;
 	private LatLonRectangle _trackRectangle = null;
 	private TreeSet<Photo> _photos = null;
+	private CompletionService<ExifTask> _completionService = null;
+	private int _numSubmitted = 0, _numCompleted = 0;
+	private int _numBatchesDelivered = 0;
+
+	/** Maximum number of threads reading exif, more than the processors because it's mostly waiting for the disk */
+	private static final int MAX_EXIF_THREADS = 8;
+	/** Maximum number of files waiting to be read before the directory walk waits */
+	private static final int MAX_QUEUED_FILES = 500;
+	/** Number of photos to pass to the app at once */
+	private static final int BATCH_SIZE = 1000;
+
+
+	/**
+	 * Task to read the exif information of a single file
+	 */
+	private static class ExifTask implements Callable<ExifTask>
+	{
+		private final File _file;
+		private JpegData _jpegData = null;
+
+		/** Constructor */
+		ExifTask(File inFile) {
+			_file = inFile;
+		}
+
+		/** Read the exif */
+		public ExifTask call()
+		{
+			_jpegData = ExifGateway.getJpegData(_file);
+			return this;
+		}
+	}
 
 
 	/**
@@ -116,15 +165,33 @@ public class JpegLoader implements Runnable, Cancellable
 		// Initialise arrays, errors, summaries
 		_fileCounts = new int[3]; // files, jpegs, gps
 		_photos = new TreeSet<Photo>(new MediaSorter());
-		File[] files = _fileChooser.getSelectedFiles();
-		// Loop recursively over selected files/directories to count files
-		int numFiles = countFileList(files, true, _subdirCheckbox.isSelected());
-		// Set up the progress bar for this number of files
-		_progressDialog.showProgress(0, numFiles);
+		_numBatchesDelivered = 0;
+		_numSubmitted = _numCompleted = 0;
 		_cancelled = false;
-
-		// Process the files recursively and build lists of photos
-		processFileList(files, true, _subdirCheckbox.isSelected());
+		File[] files = _fileChooser.getSelectedFiles();
+		// Store first directory in config for later
+		if (files != null && files.length > 0 && files[0].exists())
+		{
+			File workingDir = files[0].isDirectory() ? files[0] : files[0].getParentFile();
+			Config.setConfigString(Config.KEY_PHOTO_DIR, workingDir.getAbsolutePath());
+		}
+		// Exif is read on a pool of threads, the photos are made here as they come back
+		final int numThreads = Math.min(MAX_EXIF_THREADS, 2 * Runtime.getRuntime().availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		_completionService = new ExecutorCompletionService<ExifTask>(pool);
+		try
+		{
+			// Walk over the selected files and directories just once
+			processFileList(files, _subdirCheckbox.isSelected());
+			// Collect the remaining results
+			while (_numCompleted < _numSubmitted && !_cancelled) {
+				collectResults(true);
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		ExifIndex.saveIfChanged();
 		_progressDialog.close();
 		if (_cancelled) {return;}
 
@@ -145,86 +212,153 @@ public class JpegLoader implements Runnable, Cancellable
 		}
 		else
 		{
-			// Found some photos to load - pass information back to app
-			_app.informPhotosLoaded(_photos);
+			// Found some photos to load - pass the last batch back to app
+			deliverPhotos();
 		}
 	}
 
 
 	/**
-	 * Process a list of files and/or directories
+	 * Walk over a list of files and/or directories, submitting the jpegs for reading
 	 * @param inFiles array of file/directories
-	 * @param inFirstDir true if first directory
 	 * @param inDescend true to descend to subdirectories
 	 */
-	private void processFileList(File[] inFiles, boolean inFirstDir, boolean inDescend)
+	private void processFileList(File[] inFiles, boolean inDescend)
 	{
 		if (inFiles == null) return;
+		// Always process selected directories, only process subdirectories if checkbox selected
+		final int maxDepth = (inDescend ? Integer.MAX_VALUE : 1);
+		FileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
+			public FileVisitResult preVisitDirectory(Path inDir, BasicFileAttributes inAttributes)
+			{
+				return _cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+			}
+			public FileVisitResult visitFile(Path inFile, BasicFileAttributes inAttributes)
+			{
+				if (inAttributes.isRegularFile()) {
+					processFile(inFile.toFile());
+				}
+				return _cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+			}
+			public FileVisitResult visitFileFailed(Path inFile, IOException inException)
+			{
+				// if file isn't readable - ignore
+				return _cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+			}
+		};
 		// Loop over elements in array
 		for (int i=0; i<inFiles.length && !_cancelled; i++)
 		{
-			File file = inFiles[i];
-			if (file.exists() && file.canRead())
-			{
-				// Check whether it's a file or a directory
-				if (file.isFile())
-				{
-					processFile(file);
-				}
-				else if (file.isDirectory() && (inFirstDir || inDescend))
-				{
-					// Always process first directory,
-					// only process subdirectories if checkbox selected
-					File[] files = file.listFiles();
-					processFileList(files, false, inDescend);
-				}
+			try {
+				Files.walkFileTree(inFiles[i].toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, visitor);
 			}
-			// if file doesn't exist or isn't readable - ignore
+			catch (IOException ioe) {} // if file doesn't exist or isn't readable - ignore
 		}
 	}
 
 
 	/**
-	 * Process the given file, by attempting to extract its tags
+	 * Process the given file, by submitting it to the pool to read its exif tags
 	 * @param inFile file object to read
 	 */
 	private void processFile(File inFile)
 	{
-		// Update progress bar
 		_fileCounts[0]++; // file found
-		_progressDialog.showProgress(_fileCounts[0], -1);
-
 		// Check whether filename corresponds with accepted filenames
-		if (!_fileFilter.acceptFilename(inFile.getName())) {return;}
-		// If it's a Jpeg, we can use ExifReader to get coords, otherwise we could try exiftool (if it's installed)
-
-		if (inFile.exists() && inFile.canRead()) {
+		if (_fileFilter.acceptFilename(inFile.getName()) && inFile.canRead())
+		{
 			_fileCounts[1]++; // jpeg found
+			_completionService.submit(new ExifTask(inFile));
+			_numSubmitted++;
 		}
-		Photo photo = createPhoto(inFile);
-		if (photo.getDataPoint() != null) {
+		// Pick up whatever has finished, waiting if too many are queued
+		collectResults(_numSubmitted - _numCompleted > MAX_QUEUED_FILES);
+		// Update progress bar, the total grows as more files are found
+		_progressDialog.showProgress(_numCompleted, _numSubmitted);
+	}
+
+
+	/**
+	 * Collect the results of finished exif tasks and make photos from them
+	 * @param inWait true to wait for at least one result
+	 */
+	private void collectResults(boolean inWait)
+	{
+		try
+		{
+			Future<ExifTask> result = inWait ? _completionService.take() : _completionService.poll();
+			while (result != null)
+			{
+				_numCompleted++;
+				ExifTask task = result.get();
+				addPhoto(createPhoto(task._file, task._jpegData));
+				result = _completionService.poll();
+			}
+		}
+		catch (InterruptedException | ExecutionException e) {
+			_cancelled = true;
+		}
+		if (inWait) {
+			_progressDialog.showProgress(_numCompleted, _numSubmitted);
+		}
+	}
+
+
+	/**
+	 * Add the given photo to the current batch if it matches the criteria
+	 * @param inPhoto photo object with exif information
+	 */
+	private void addPhoto(Photo inPhoto)
+	{
+		if (inPhoto.getDataPoint() != null) {
 			_fileCounts[2]++; // photo has coordinates
 		}
 		// Check the criteria for adding the photo - check whether the photo has coordinates and if so if they're within the rectangle
-		if ( (photo.getDataPoint() != null || _noExifCheckbox.isSelected())
-			&& (photo.getDataPoint() == null || !_outsideAreaCheckbox.isEnabled()
-				|| _outsideAreaCheckbox.isSelected() || _trackRectangle.containsPoint(photo.getDataPoint())))
+		if ( (inPhoto.getDataPoint() != null || _noExifCheckbox.isSelected())
+			&& (inPhoto.getDataPoint() == null || !_outsideAreaCheckbox.isEnabled()
+				|| _outsideAreaCheckbox.isSelected() || _trackRectangle.containsPoint(inPhoto.getDataPoint())))
 		{
-			_photos.add(photo);
+			_photos.add(inPhoto);
+			if (_photos.size() >= BATCH_SIZE) {
+				deliverPhotos();
+			}
 		}
 	}
 
+
+	/**
+	 * Pass the current batch of photos to the app so that they're visible before the whole load is finished
+	 */
+	private void deliverPhotos()
+	{
+		if (_photos.isEmpty()) {return;}
+		_app.informPhotosLoaded(_photos, _numBatchesDelivered > 0);
+		_numBatchesDelivered++;
+		_photos = new TreeSet<Photo>(new MediaSorter());
+	}
+
 	/**
 	 * Create a Photo object for the given file, including reading exif information
 	 * @param inFile file object
 	 * @return Photo object
 	 */
 	public static Photo createPhoto(File inFile)
+	{
+		// Try to get information out of exif
+		return createPhoto(inFile, ExifGateway.getJpegData(inFile));
+	}
+
+	/**
+	 * Create a Photo object for the given file using exif information which has already been read
+	 * @param inFile file object
+	 * @param inJpegData jpeg data from exif, or null
+	 * @return Photo object
+	 */
+	private static Photo createPhoto(File inFile, JpegData inJpegData)
 	{
 		// Create Photo object
 		Photo photo = new Photo(inFile);
-		// Try to get information out of exif
-		JpegData jpegData = ExifGateway.getJpegData(inFile);
+		JpegData jpegData = inJpegData;
 		Timestamp timestamp = null;
 		if (jpegData != null)
 		{
@@ -246,6 +380,9 @@ public class JpegLoader implements Runnable, Cancellable
 				timestamp = createTimestamp(jpegData.getDigitizedTimestamp());
 			}
 			photo.setExifThumbnail(jpegData.getThumbnailImage());
+			// Indexed data just says where the thumbnail is, so it can be read later if needed
+			photo.setExifThumbnailLocation(jpegData.getThumbnailFileOffset(), jpegData.getThumbnailLength());
+			photo.setSize(jpegData.getImageWidth(), jpegData.getImageHeight());
 			// Also extract orientation tag for setting rotation state of photo
 			photo.setRotation(jpegData.getRequiredRotation());
 			// Set bearing, if any
@@ -264,45 +401,6 @@ public class JpegLoader implements Runnable, Cancellable
 	}
 
 
-	/**
-	 * Recursively count the selected Files so we can draw a progress bar
-	 * @param inFiles file list
-	 * @param inFirstDir true if first directory
-	 * @param inDescend true to descend to subdirectories
-	 * @return count of the files selected
-	 */
-	private int countFileList(File[] inFiles, boolean inFirstDir, boolean inDescend)
-	{
-		int fileCount = 0;
-		if (inFiles != null)
-		{
-			// Loop over elements in array
-			for (int i=0; i<inFiles.length; i++)
-			{
-				File file = inFiles[i];
-				if (file.exists() && file.canRead())
-				{
-					// Store first directory in config for later
-					if (i == 0 && inFirstDir) {
-						File workingDir = file.isDirectory()?file:file.getParentFile();
-						Config.setConfigString(Config.KEY_PHOTO_DIR, workingDir.getAbsolutePath());
-					}
-					// Check whether it's a file or a directory
-					if (file.isFile())
-					{
-						fileCount++;
-					}
-					else if (file.isDirectory() && (inFirstDir || inDescend))
-					{
-						fileCount += countFileList(file.listFiles(), false, inDescend);
-					}
-				}
-			}
-		}
-		return fileCount;
-	}
-
-
 	/**
 	 * Create a DataPoint object from the given jpeg data
 	 * @param inData Jpeg data including coordinates
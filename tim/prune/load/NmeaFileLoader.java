@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import tim.prune.App;
 import tim.prune.data.Field;
 import tim.prune.data.SourceInfo;
+import tim.prune.diagnostics.Diagnostics;
 
 /**
  * Class to handle the loading of Nmea files
@@ -36,6 +37,7 @@ public class NmeaFileLoader
 		BufferedReader reader = null;
 		ArrayList<NmeaMessage> messages = new ArrayList<NmeaMessage>();
 		String lastDate = null;
+		final long startTime = Diagnostics.startTimer();
 		try
 		{
 			reader = new BufferedReader(new FileReader(inFile));
@@ -88,6 +90,7 @@ public class NmeaFileLoader
 			}
 			catch (Exception e) {}
 		}
+		Diagnostics.stopTimer(Diagnostics.TIMER_LOAD_PREFIX + "nmea", startTime);
 		if (messages.size() > 0)
 		{
 			_app.informDataLoaded(getFieldArray(), makeDataArray(messages),
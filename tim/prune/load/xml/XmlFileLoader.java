@@ -19,6 +19,7 @@ import org.xml.sax.helpers.XMLReaderFactory;
 import tim.prune.App;
 import tim.prune.I18nManager;
 import tim.prune.data.SourceInfo;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.load.MediaLinkInfo;
 
 /**
@@ -111,6 +112,7 @@ public class XmlFileLoader extends DefaultHandler implements Runnable
 	 */
 	public boolean parseXmlStream(InputStream inStream)
 	{
+		final long startTime = Diagnostics.startTimer();
 		boolean success = false;
 		// Firstly, try to use xerces to parse the xml (will throw an exception if not available)
 		try
@@ -139,6 +141,7 @@ public class XmlFileLoader extends DefaultHandler implements Runnable
 					I18nManager.getText("error.load.othererror") + " " + e.getMessage());
 			}
 		}
+		Diagnostics.stopTimer(Diagnostics.TIMER_LOAD_PREFIX + "xml", startTime);
 		return success;
 	}
 
@@ -18,6 +18,7 @@ import javax.swing.JDialog;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
 
 import tim.prune.I18nManager;
 import tim.prune.config.Config;
@@ -66,6 +67,8 @@ public class BaseImageConfigDialog implements Runnable
 	private boolean _rebuilding = false;
 	/** Cached values to allow cancellation of dialog */
 	private ImageDefinition _imageDef = new ImageDefinition();
+	/** Largest image size which the parent can use */
+	private int _maxImageSize = MapGrouter.MAX_IMAGE_SIZE;
 
 
 	/**
@@ -96,6 +99,13 @@ public class BaseImageConfigDialog implements Runnable
 		}
 	}
 
+	/**
+	 * @param inSize largest image size which the parent can use, if bigger than a single image
+	 */
+	public void setMaxImageSize(int inSize) {
+		_maxImageSize = inSize;
+	}
+
 	/**
 	 * Begin the function
 	 */
@@ -189,7 +199,7 @@ public class BaseImageConfigDialog implements Runnable
 				final int zoomFactor = 1 << i;
 				final int pixCount = (int) (xyExtent * zoomFactor * 256);
 				if (pixCount > 100      // less than this isn't worth it
-					&& pixCount < 4000  // don't want to run out of memory
+					&& pixCount < _maxImageSize  // don't want to run out of memory
 					&& isZoomAvailable(i, MapSourceLibrary.getSource(currentSource)))
 				{
 					_zoomDropdown.addItem("" + i);
@@ -461,7 +471,27 @@ public class BaseImageConfigDialog implements Runnable
 		MapSource mapSource = MapSourceLibrary.getSource(mapIndex);
 
 		// Use the Grouter to create an image (slow, blocks thread)
-		GroutedImage groutedImage = _grouter.createMapImage(_track, mapSource, getSelectedZoomLevel());
+		final int zoom = getSelectedZoomLevel();
+		final int imageSize = MapGrouter.getImageSize(_track, zoom);
+		GroutedImage groutedImage = null;
+		if (imageSize < MapGrouter.MAX_IMAGE_SIZE) {
+			groutedImage = _grouter.createMapImage(_track, mapSource, zoom);
+		}
+		else
+		{
+			// Too big for a single image, so preview at a lower zoom but count the tiles at the selected zoom
+			int previewZoom = zoom;
+			while (previewZoom > 1 && MapGrouter.getImageSize(_track, previewZoom) >= MapGrouter.MAX_IMAGE_SIZE) {
+				previewZoom--;
+			}
+			GroutedImage previewImage = new MapGrouter().createMapImage(_track, mapSource, previewZoom);
+			GroutedImage tileCounts = MapGrouter.countCachedTiles(_track, mapSource, zoom);
+			if (previewImage != null)
+			{
+				groutedImage = new GroutedImage(previewImage.getImage(),
+					tileCounts.getNumTilesUsed(), tileCounts.getNumTilesMissing());
+			}
+		}
 
 		// If the dialog hasn't changed, pass the generated image to the preview panel
 		if (_useImageCheckbox.isSelected()
@@ -477,7 +507,7 @@ public class BaseImageConfigDialog implements Runnable
 			_downloadTilesButton.setEnabled(offerDownload);
 			_tilesFoundLabel.setText(groutedImage.getNumTilesUsed() + " / " + groutedImage.getNumTilesTotal());
 			if (groutedImage.getImageSize() > 0) {
-				_imageSizeLabel.setText("" + groutedImage.getImageSize());
+				_imageSizeLabel.setText("" + imageSize);
 			}
 			else {
 				_imageSizeLabel.setText("");
@@ -528,7 +558,7 @@ public class BaseImageConfigDialog implements Runnable
 		final int zoomFactor = 1 << _imageDef.getZoom();
 		final int pixCount = (int) (xyExtent * zoomFactor * 256);
 		return (pixCount > 100     // less than this isn't worth it
-			&& pixCount < 4000);   // don't want to run out of memory
+			&& pixCount < _maxImageSize);   // don't want to run out of memory
 	}
 
 	/**
@@ -548,16 +578,28 @@ public class BaseImageConfigDialog implements Runnable
 		new Thread(new Runnable() {
 			public void run()
 			{
+				_progressBar.setIndeterminate(true);
 				_progressBar.setVisible(true);
-				// Use a grouter to get all tiles from the TileManager, including downloading
+				// Use a grouter to get all tiles, including downloading
 				MapGrouter grouter = new MapGrouter();
 				final int mapIndex = _mapSourceDropdown.getSelectedIndex();
 				if (!_useImageCheckbox.isSelected() || mapIndex < 0) {return;}
 				MapSource mapSource = MapSourceLibrary.getSource(mapIndex);
-				grouter.createMapImage(_track, mapSource, getSelectedZoomLevel(), true);
+				grouter.downloadTiles(_track, mapSource, getSelectedZoomLevel(), new GroutingListener() {
+					public void groutingProgress(final int inNumDone, final int inNumTotal)
+					{
+						SwingUtilities.invokeLater(new Runnable() {
+							public void run()
+							{
+								_progressBar.setIndeterminate(false);
+								_progressBar.setMaximum(inNumTotal);
+								_progressBar.setValue(inNumDone);
+							}
+						});
+					}
+				});
 				_progressBar.setVisible(false);
 				// And then refresh the dialog
-				_grouter.clearMapImage();
 				updateImagePreview();
 			}
 		}).start();
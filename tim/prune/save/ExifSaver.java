@@ -7,6 +7,12 @@ import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -28,9 +34,11 @@ import tim.prune.data.Coordinate;
 import tim.prune.data.DataPoint;
 import tim.prune.data.Photo;
 import tim.prune.data.PhotoList;
+import tim.prune.jpeg.ExifWriter;
 
 /**
- * Class to call Exiftool to save coordinate information in jpg files
+ * Class to save coordinate information in jpg files,
+ * writing the exif tags directly and using Exiftool only if that fails
  */
 public class ExifSaver implements Runnable
 {
@@ -41,7 +49,10 @@ public class ExifSaver implements Runnable
 	private JCheckBox _forceCheckbox = null;
 	private JProgressBar _progressBar = null;
 	private PhotoTableModel _photoTableModel = null;
-	private boolean _saveCancelled = false;
+	private volatile boolean _saveCancelled = false;
+
+	/** Maximum number of photos to write at once */
+	private static final int MAX_THREADS = 4;
 
 
 	// To preserve timestamps of file use parameter -P
@@ -80,19 +91,6 @@ public class ExifSaver implements Runnable
 	 */
 	public boolean saveExifInformation(PhotoList inPhotoList)
 	{
-		// Check if external exif tool can be called
-		boolean exifToolInstalled = ExternalTools.isToolInstalled(ExternalTools.TOOL_EXIFTOOL);
-		if (!exifToolInstalled)
-		{
-			// show warning
-			int answer = JOptionPane.showConfirmDialog(_dialog, I18nManager.getText("dialog.saveexif.noexiftool"),
-				I18nManager.getText("dialog.saveexif.title"),
-				JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
-			if (answer == JOptionPane.NO_OPTION || answer == JOptionPane.CLOSED_OPTION)
-			{
-				return false;
-			}
-		}
 		// Make model and add all photos to it
 		_photoTableModel = new PhotoTableModel(inPhotoList.getNumPhotos());
 		for (int i=0; i<inPhotoList.getNumPhotos(); i++)
@@ -227,39 +225,76 @@ public class ExifSaver implements Runnable
 	public void run()
 	{
 		_saveCancelled = false;
-		PhotoTableEntry entry = null;
-		Photo photo = null;
 		int numPhotos = _photoTableModel.getRowCount();
-		_progressBar.setMaximum(numPhotos);
 		_progressBar.setValue(0);
 		_progressBar.setVisible(true);
-		boolean overwriteFlag = _overwriteCheckbox.isSelected();
+		final boolean overwriteFlag = _overwriteCheckbox.isSelected();
 		int numSaved = 0, numFailed = 0, numForced = 0;
-		// Loop over all photos in list
-		for (int i=0; i<numPhotos; i++)
+		// Check the files first, because this may need to ask questions
+		ArrayList<Photo> photos = new ArrayList<Photo>();
+		ArrayList<Boolean> overwriteFlags = new ArrayList<Boolean>();
+		for (int i=0; i<numPhotos && !_saveCancelled; i++)
 		{
-			entry = _photoTableModel.getPhotoTableEntry(i);
-			if (entry != null && entry.getSaveFlag() && !_saveCancelled)
+			PhotoTableEntry entry = _photoTableModel.getPhotoTableEntry(i);
+			// Only look at photos which are selected and whose status has changed since load
+			Photo photo = (entry != null && entry.getSaveFlag()) ? entry.getPhoto() : null;
+			if (photo != null && photo.isModified())
 			{
-				// Only look at photos which are selected and whose status has changed since load
-				photo = entry.getPhoto();
-				if (photo != null && photo.isModified())
+				Boolean overwrite = checkPhotoFile(photo, overwriteFlag);
+				if (overwrite == null) {
+					numFailed++;
+				}
+				else
 				{
-					// Increment counter if save successful
-					if (savePhoto(photo, overwriteFlag, false)) {
-						numSaved++;
-					}
-					else {
-						if (_forceCheckbox.isSelected() && savePhoto(photo, overwriteFlag, true))
-						{
-							numForced++;
-						}
-						else {
-							numFailed++;
-						}
-					}
+					photos.add(photo);
+					overwriteFlags.add(overwrite);
 				}
 			}
+		}
+		_progressBar.setMaximum(Math.max(1, photos.size()));
+		// Write the files in parallel
+		final int numThreads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (int i=0; i<photos.size(); i++)
+		{
+			final Photo photo = photos.get(i);
+			final boolean overwrite = overwriteFlags.get(i);
+			results.add(pool.submit(new Callable<Boolean>() {
+				public Boolean call()
+				{
+					return !_saveCancelled && savePhoto(photo, overwrite);
+				}
+			}));
+		}
+		pool.shutdown();
+		final boolean exifToolInstalled = ExternalTools.isToolInstalled(ExternalTools.TOOL_EXIFTOOL);
+		for (int i=0; i<photos.size(); i++)
+		{
+			boolean saved = false;
+			try {
+				saved = results.get(i).get();
+			}
+			catch (InterruptedException ie) {}
+			catch (ExecutionException ee) {}
+			if (saved) {
+				numSaved++;
+			}
+			else if (_saveCancelled) {
+				numFailed++;
+			}
+			// Fall back to exiftool if it's available
+			else if (exifToolInstalled && savePhotoWithExiftool(photos.get(i), overwriteFlags.get(i), false)) {
+				numSaved++;
+			}
+			else if (exifToolInstalled && _forceCheckbox.isSelected()
+				&& savePhotoWithExiftool(photos.get(i), overwriteFlags.get(i), true))
+			{
+				numForced++;
+			}
+			else {
+				numFailed++;
+			}
 			// update progress bar
 			_progressBar.setValue(i + 1);
 		}
@@ -284,17 +319,16 @@ public class ExifSaver implements Runnable
 
 
 	/**
-	 * Save the details for the given photo
+	 * Check that the file for the given photo can be saved
 	 * @param inPhoto Photo object
 	 * @param inOverwriteFlag true to overwrite file, false otherwise
-	 * @param inForceFlag true to force write, ignoring minor errors
-	 * @return true if details saved ok
+	 * @return flag whether to overwrite file, or null if it can't be saved
 	 */
-	private boolean savePhoto(Photo inPhoto, boolean inOverwriteFlag, boolean inForceFlag)
+	private Boolean checkPhotoFile(Photo inPhoto, boolean inOverwriteFlag)
 	{
 		// If photos don't have a file, then can't save them
 		if (inPhoto.getFile() == null) {
-			return false;
+			return null;
 		}
 		// Check whether photo file still exists
 		if (!inPhoto.getFile().exists())
@@ -303,7 +337,7 @@ public class ExifSaver implements Runnable
 			JOptionPane.showMessageDialog(_parentFrame,
 				I18nManager.getText("error.saveexif.filenotfound") + " : " + inPhoto.getFile().getAbsolutePath(),
 				I18nManager.getText("dialog.saveexif.title"), JOptionPane.ERROR_MESSAGE);
-			return false;
+			return null;
 		}
 		// Warn if file read-only and selected to overwrite
 		if (inOverwriteFlag && !inPhoto.getFile().canWrite())
@@ -314,17 +348,60 @@ public class ExifSaver implements Runnable
 					+ " " + I18nManager.getText("error.saveexif.cannotoverwrite2"),
 				I18nManager.getText("dialog.saveexif.title"),
 				JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
-			if (answer == JOptionPane.YES_OPTION)
+			if (answer != JOptionPane.YES_OPTION)
 			{
-				// don't overwrite this image but write to copy
-				inOverwriteFlag = false;
+				// don't do anything with this file
+				return null;
+			}
+			// don't overwrite this image but write to copy
+			return Boolean.FALSE;
+		}
+		return Boolean.valueOf(inOverwriteFlag);
+	}
+
+
+	/**
+	 * Save the details for the given photo by rewriting its exif segment directly
+	 * @param inPhoto Photo object
+	 * @param inOverwriteFlag true to overwrite file, false to keep a copy of the original
+	 * @return true if details saved ok
+	 */
+	private static boolean savePhoto(Photo inPhoto, boolean inOverwriteFlag)
+	{
+		// Make sure the thumbnail is read before its position in the file changes
+		inPhoto.getExifThumbnail();
+		try
+		{
+			if (inPhoto.getCurrentStatus() == Photo.Status.NOT_CONNECTED)
+			{
+				// Photo is no longer connected, so delete gps tags
+				ExifWriter.deleteGpsPosition(inPhoto.getFile(), !inOverwriteFlag);
 			}
 			else
 			{
-				// don't do anything with this file
-				return false;
+				// Photo is now connected, so write new gps tags
+				DataPoint point = inPhoto.getDataPoint();
+				ExifWriter.writeGpsPosition(inPhoto.getFile(), point.getLatitude().getDouble(),
+					point.getLongitude().getDouble(), point.hasAltitude(),
+					point.hasAltitude() ? point.getAltitude().getMetricValue() : 0.0, !inOverwriteFlag);
 			}
+			return true;
+		}
+		catch (Exception e) {
+			return false;
 		}
+	}
+
+
+	/**
+	 * Save the details for the given photo using exiftool
+	 * @param inPhoto Photo object
+	 * @param inOverwriteFlag true to overwrite file, false otherwise
+	 * @param inForceFlag true to force write, ignoring minor errors
+	 * @return true if details saved ok
+	 */
+	private boolean savePhotoWithExiftool(Photo inPhoto, boolean inOverwriteFlag, boolean inForceFlag)
+	{
 		String[] command = null;
 		if (inPhoto.getCurrentStatus() == Photo.Status.NOT_CONNECTED)
 		{
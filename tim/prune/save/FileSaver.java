@@ -44,6 +44,7 @@ import tim.prune.data.Timestamp;
 import tim.prune.data.Track;
 import tim.prune.data.Unit;
 import tim.prune.data.UnitSetLibrary;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.load.GenericFileFilter;
 import tim.prune.load.OneCharDocument;
 
@@ -415,7 +416,10 @@ public class FileSaver
 		}
 		if (_fileChooser.showSaveDialog(_parentFrame) == JFileChooser.APPROVE_OPTION)
 		{
-			return saveToFile(_fileChooser.getSelectedFile());
+			final long startTime = Diagnostics.startTimer();
+			final boolean saved = saveToFile(_fileChooser.getSelectedFile());
+			Diagnostics.stopTimer(Diagnostics.TIMER_EXPORT_PREFIX + "text", startTime);
+			return saved;
 		}
 		return true; // cancelled
 	}
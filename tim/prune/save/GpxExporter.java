@@ -44,6 +44,7 @@ import tim.prune.data.RecentFile;
 import tim.prune.data.Timestamp;
 import tim.prune.data.TrackInfo;
 import tim.prune.data.UnitSetLibrary;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.gui.DialogCloser;
 import tim.prune.load.GenericFileFilter;
 import tim.prune.save.xml.GpxCacherList;
@@ -294,8 +295,10 @@ public class GpxExporter extends GenericFunction implements Runnable
 				_pointTypeSelector.getPhotopointsSelected(), _pointTypeSelector.getAudiopointsSelected(),
 				_pointTypeSelector.getJustSelection(), _timestampsCheckbox.isSelected()};
 			// write file
+			final long startTime = Diagnostics.startTimer();
 			final int numPoints = exportData(writer, _trackInfo, _nameField.getText(),
 				_descriptionField.getText(), saveFlags, gpxCachers);
+			Diagnostics.stopTimer(Diagnostics.TIMER_EXPORT_PREFIX + "gpx", startTime);
 
 			// close file
 			writer.close();
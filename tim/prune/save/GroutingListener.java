@@ -0,0 +1,14 @@
+package tim.prune.save;
+
+/**
+ * Interface used by the MapGrouter to report its progress
+ */
+public interface GroutingListener
+{
+	/**
+	 * Inform the listener how many tiles have been processed so far
+	 * @param inNumDone number of tile positions finished, whether the tiles were found or not
+	 * @param inNumTotal total number of tile positions
+	 */
+	public void groutingProgress(int inNumDone, int inNumTotal);
+}
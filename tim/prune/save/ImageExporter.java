@@ -7,12 +7,15 @@ import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 
 import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
@@ -31,15 +34,16 @@ import tim.prune.I18nManager;
 import tim.prune.config.ColourScheme;
 import tim.prune.config.Config;
 import tim.prune.data.DataPoint;
-import tim.prune.data.DoubleRange;
 import tim.prune.data.Track;
+import tim.prune.data.TrackExtents;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.gui.BaseImageDefinitionPanel;
 import tim.prune.gui.GuiGridLayout;
 import tim.prune.gui.WholeNumberField;
 import tim.prune.gui.colour.PointColourer;
+import tim.prune.gui.map.LabelPlacer;
 import tim.prune.gui.map.MapSource;
 import tim.prune.gui.map.MapSourceLibrary;
-import tim.prune.gui.map.MapUtils;
 import tim.prune.load.GenericFileFilter;
 import tim.prune.threedee.ImageDefinition;
 
@@ -52,11 +56,22 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 	private JDialog   _dialog = null;
 	private JCheckBox _drawDataCheckbox = null;
 	private JCheckBox _drawTrackPointsCheckbox = null;
+	private JCheckBox _mapTilesCheckbox = null;
 	private WholeNumberField _textScaleField = null;
 	private BaseImageDefinitionPanel _baseImagePanel = null;
 	private JFileChooser _fileChooser = null;
+	private JFileChooser _dirChooser = null;
 	private JButton   _okButton = null;
 
+	/** Largest image size which can be exported, in strips */
+	private static final int MAX_IMAGE_SIZE = 65536;
+	/** Number of pixels to grout and draw at once for large images */
+	private static final int STRIP_PIXEL_LIMIT = 16 * 1024 * 1024;
+	/** Size of map tiles in pixels */
+	private static final int TILE_SIZE = 256;
+	/** Number of steps to try moving the waypoint names away from their points */
+	private static final int NUM_NAME_STEPS = 4;
+
 	/**
 	 * Constructor
 	 * @param inApp App object
@@ -113,6 +128,8 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 		// Also whether to draw track points or not
 		_drawTrackPointsCheckbox = new JCheckBox(I18nManager.getText("dialog.exportimage.drawtrackpoints"));
 		_drawTrackPointsCheckbox.setSelected(true);
+		// Checkbox for exporting a set of map tiles instead of a single image
+		_mapTilesCheckbox = new JCheckBox(I18nManager.getText("dialog.exportimage.maptiles"));
 		// Add listener to en/disable trackpoints checkbox
 		_drawDataCheckbox.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent arg0) {
@@ -136,7 +153,6 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 			public void actionPerformed(ActionEvent e)
 			{
 				doExport();
-				_baseImagePanel.getGrouter().clearMapImage();
 				_dialog.dispose();
 			}
 		});
@@ -145,7 +161,6 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 		cancelButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e)
 			{
-				_baseImagePanel.getGrouter().clearMapImage();
 				_dialog.dispose();
 			}
 		});
@@ -158,7 +173,6 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 			{
 				if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
 					_dialog.dispose();
-					_baseImagePanel.getGrouter().clearMapImage();
 				}
 			}
 		};
@@ -166,12 +180,14 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 
 		// Panel for the base image
 		_baseImagePanel = new BaseImageDefinitionPanel(this, _dialog, _app.getTrackInfo().getTrack());
+		_baseImagePanel.setMaxImageSize(MAX_IMAGE_SIZE);
 
 		// Panel for the checkboxes at the top
 		JPanel checkPanel = new JPanel();
 		checkPanel.setLayout(new BoxLayout(checkPanel, BoxLayout.Y_AXIS));
 		checkPanel.add(_drawDataCheckbox);
 		checkPanel.add(_drawTrackPointsCheckbox);
+		checkPanel.add(_mapTilesCheckbox);
 
 		// add these panels to the holder panel
 		JPanel holderPanel = new JPanel();
@@ -192,6 +208,11 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 	private void doExport()
 	{
 		_okButton.setEnabled(false);
+		if (_mapTilesCheckbox.isSelected())
+		{
+			exportMapTiles();
+			return;
+		}
 		// OK pressed, so choose output file
 		if (_fileChooser == null)
 		{
@@ -226,7 +247,10 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 					== JOptionPane.YES_OPTION)
 				{
 					// Export the file
-					if (!exportFile(pngFile))
+					final long startTime = Diagnostics.startTimer();
+					final boolean exported = exportFile(pngFile);
+					Diagnostics.stopTimer(Diagnostics.TIMER_EXPORT_PREFIX + "image", startTime);
+					if (!exported)
 					{
 						// export failed so need to choose again
 						chooseAgain = true;
@@ -241,6 +265,39 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 		} while (chooseAgain);
 	}
 
+	/**
+	 * Select a directory and export a set of map tiles to it
+	 */
+	private void exportMapTiles()
+	{
+		if (_dirChooser == null)
+		{
+			_dirChooser = new JFileChooser();
+			_dirChooser.setDialogType(JFileChooser.SAVE_DIALOG);
+			_dirChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+			final String configDir = Config.getConfigString(Config.KEY_TRACK_DIR);
+			if (configDir != null) {_dirChooser.setCurrentDirectory(new File(configDir));}
+		}
+		boolean chooseAgain = false;
+		do
+		{
+			chooseAgain = false;
+			if (_dirChooser.showSaveDialog(_parentFrame) == JFileChooser.APPROVE_OPTION)
+			{
+				File dir = _dirChooser.getSelectedFile();
+				if ((dir.exists() || dir.mkdirs()) && dir.isDirectory() && dir.canWrite())
+				{
+					final long startTime = Diagnostics.startTimer();
+					chooseAgain = !exportInStrips(dir, true);
+					Diagnostics.stopTimer(Diagnostics.TIMER_EXPORT_PREFIX + "tiles", startTime);
+				}
+				else {
+					chooseAgain = true;
+				}
+			}
+		} while (chooseAgain);
+	}
+
 	/**
 	 * Export the track data to the specified file
 	 * @param inPngFile File object to save to
@@ -248,12 +305,15 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 	 */
 	private boolean exportFile(File inPngFile)
 	{
-		// Get the image file from the grouter
 		ImageDefinition imageDef = _baseImagePanel.getImageDefinition();
+		final Track track = _app.getTrackInfo().getTrack();
+		if (MapGrouter.getImageSize(track, imageDef.getZoom()) >= MapGrouter.MAX_IMAGE_SIZE) {
+			return exportInStrips(inPngFile, false);
+		}
+		// Get the image file from the grouter
 		MapSource source = MapSourceLibrary.getSource(imageDef.getSourceIndex());
 		MapGrouter grouter = _baseImagePanel.getGrouter();
-		GroutedImage baseImage = grouter.getMapImage(_app.getTrackInfo().getTrack(), source,
-			imageDef.getZoom());
+		GroutedImage baseImage = grouter.getMapImage(track, source, imageDef.getZoom());
 		if (baseImage == null || !baseImage.isValid())
 		{
 			_app.showErrorMessage(getNameKey(), "dialog.exportpov.cannotmakebaseimage");
@@ -263,8 +323,14 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 		{
 			if (_drawDataCheckbox.isSelected())
 			{
-				// Draw the track on top of this image
-				drawData(baseImage);
+				// Draw the track on top of a copy of this image, as the grouted one is shared
+				baseImage = copyImage(baseImage);
+				final int zoomFactor = 1 << imageDef.getZoom();
+				final int imageSize = baseImage.getImageSize();
+				TrackPixels pixels = new TrackPixels(track, zoomFactor * 256.0,
+					baseImage.getXRange().getMinimum() * zoomFactor * 256,
+					baseImage.getYRange().getMinimum() * zoomFactor * 256);
+				drawData(baseImage.getImage(), 0, pixels, placeLabels(pixels, imageSize, imageSize));
 			}
 			// Write composite image to file
 			if (!ImageIO.write(baseImage.getImage(), "png", inPngFile)) {
@@ -279,16 +345,254 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 	}
 
 	/**
-	 * Draw the track and waypoint data from the current Track onto the given image
-	 * @param inImage GroutedImage from map tiles
+	 * Export a large image, or a set of map tiles, by grouting and drawing one strip at a time
+	 * so that the memory needed only depends on the image width
+	 * @param inFile png file, or directory for tiles
+	 * @param inTiles true to export a pyramid of map tiles, false for a single png
+	 * @return true if successful
+	 */
+	private boolean exportInStrips(File inFile, boolean inTiles)
+	{
+		ImageDefinition imageDef = _baseImagePanel.getImageDefinition();
+		MapSource source = MapSourceLibrary.getSource(imageDef.getSourceIndex());
+		final Track track = _app.getTrackInfo().getTrack();
+		final int zoom = imageDef.getZoom();
+		final double scale = (1 << zoom) * 256.0;
+		// Get the extents of the track including the border, as in the MapGrouter
+		TrackExtents extents = new TrackExtents(track);
+		extents.applySquareBorder();
+		int left = (int) Math.floor(extents.getXRange().getMinimum() * scale);
+		int top = (int) Math.floor(extents.getYRange().getMinimum() * scale);
+		int width = MapGrouter.getImageSize(track, zoom), height = width;
+		if (inTiles)
+		{
+			// Expand the area to whole tiles
+			final int right = left + width, bottom = top + height;
+			left = Math.floorDiv(left, TILE_SIZE) * TILE_SIZE;
+			top = Math.floorDiv(top, TILE_SIZE) * TILE_SIZE;
+			width = (Math.floorDiv(right - 1, TILE_SIZE) + 1) * TILE_SIZE - left;
+			height = (Math.floorDiv(bottom - 1, TILE_SIZE) + 1) * TILE_SIZE - top;
+		}
+		// Choose the strip height to limit the number of pixels in memory at once, in whole tile rows
+		final int stripHeight = Math.min(height,
+			Math.max(1, STRIP_PIXEL_LIMIT / width / TILE_SIZE) * TILE_SIZE);
+
+		StripWriter writer = null;
+		try
+		{
+			if (inTiles) {
+				writer = new TilePyramidWriter(inFile, zoom, left / TILE_SIZE, top / TILE_SIZE,
+					width / TILE_SIZE, height / TILE_SIZE);
+			}
+			else {
+				writer = new PngStreamWriter(inFile, width, height);
+			}
+			final boolean drawData = _drawDataCheckbox.isSelected();
+			TrackPixels pixels = new TrackPixels(track, scale, left, top);
+			// Names are placed on the whole image first, so they can cross between strips
+			ArrayList<PlacedLabel> labels = drawData ? placeLabels(pixels, width, height) : null;
+			int numTilesUsed = 0;
+			for (int stripTop = 0; stripTop < height; stripTop += stripHeight)
+			{
+				final int thisHeight = Math.min(stripHeight, height - stripTop);
+				GroutedImage stripImage = MapGrouter.createMapArea(source, zoom, left, top + stripTop,
+					width, thisHeight);
+				numTilesUsed += stripImage.getNumTilesUsed();
+				BufferedImage image = stripImage.getImage();
+				if (image == null) {
+					image = makeBlankImage(width, thisHeight);
+				}
+				if (drawData) {
+					drawData(image, stripTop, pixels, labels);
+				}
+				writer.writeStrip(image);
+			}
+			writer.finish();
+			if (numTilesUsed == 0) {
+				_app.showErrorMessage(getNameKey(), "dialog.exportpov.cannotmakebaseimage");
+			}
+		}
+		catch (IOException ioe)
+		{
+			if (writer instanceof PngStreamWriter) {
+				((PngStreamWriter) writer).abort();
+			}
+			System.err.println("Can't write image: " + ioe.getClass().getName() + " - " + ioe.getMessage());
+			_app.showErrorMessage(getNameKey(), "dialog.exportpov.cannotmakebaseimage");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param inWidth width in pixels
+	 * @param inHeight height in pixels
+	 * @return white image for areas without any map tiles
+	 */
+	private static BufferedImage makeBlankImage(int inWidth, int inHeight)
+	{
+		BufferedImage image = new BufferedImage(inWidth, inHeight, BufferedImage.TYPE_INT_RGB);
+		Graphics g = image.getGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, inWidth, inHeight);
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * @param inImage grouted image from the grouter's cache
+	 * @return copy of the grouted image which can be drawn on
+	 */
+	private static GroutedImage copyImage(GroutedImage inImage)
+	{
+		BufferedImage source = inImage.getImage();
+		BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics g = image.getGraphics();
+		g.drawImage(source, 0, 0, null);
+		g.dispose();
+		GroutedImage copy = new GroutedImage(image, inImage.getNumTilesUsed(), inImage.getNumTilesMissing());
+		copy.setXRange(inImage.getXRange());
+		copy.setYRange(inImage.getYRange());
+		return copy;
+	}
+
+	/**
+	 * Class to hold the pixel coordinates of all the track points on the whole image,
+	 * calculated once so that they're the same for every strip
+	 */
+	private static class TrackPixels
+	{
+		private final int[] _xs;
+		private final int[] _ys;
+
+		/**
+		 * Constructor
+		 * @param inTrack track object
+		 * @param inScale number of pixels across the whole world
+		 * @param inLeft x coordinate of the image's left edge, in pixels
+		 * @param inTop y coordinate of the image's top edge, in pixels
+		 */
+		TrackPixels(Track inTrack, double inScale, double inLeft, double inTop)
+		{
+			final int numPoints = inTrack.getNumPoints();
+			_xs = new int[numPoints];
+			_ys = new int[numPoints];
+			for (int i=0; i<numPoints; i++)
+			{
+				_xs[i] = (int) Math.floor(inTrack.getX(i) * inScale - inLeft);
+				_ys[i] = (int) Math.floor(inTrack.getY(i) * inScale - inTop);
+			}
+		}
+	}
+
+	/**
+	 * Class to hold a waypoint name which has been placed on the image
+	 */
+	private static class PlacedLabel
+	{
+		private final String _name;
+		private final int _x, _y;
+
+		/** Constructor */
+		PlacedLabel(String inName, int inX, int inY)
+		{
+			_name = inName;
+			_x = inX; _y = inY;
+		}
+	}
+
+	/**
+	 * Set the text size according to the input
+	 * @param inG graphics object
+	 */
+	private void setFont(Graphics inG)
+	{
+		int fontScalePercent = _textScaleField.getValue();
+		if (fontScalePercent > 10 && fontScalePercent <= 999)
+		{
+			Font gFont = inG.getFont();
+			inG.setFont(gFont.deriveFont((float) (gFont.getSize() * 0.01 * fontScalePercent)));
+		}
+	}
+
+	/**
+	 * Decide where to put the waypoint names on the whole image so that they don't cover the track
+	 * @param inPixels pixel coordinates of the points on the whole image
+	 * @param inFullWidth width of the whole image
+	 * @param inFullHeight height of the whole image
+	 * @return list of placed names
 	 */
-	private void drawData(GroutedImage inImage)
+	private ArrayList<PlacedLabel> placeLabels(TrackPixels inPixels, int inFullWidth, int inFullHeight)
 	{
-		// Work out x, y limits for drawing
-		DoubleRange xRange = inImage.getXRange();
-		DoubleRange yRange = inImage.getYRange();
-		final int zoomFactor = 1 << _baseImagePanel.getImageDefinition().getZoom();
-		Graphics g = inImage.getImage().getGraphics();
+		ArrayList<PlacedLabel> labels = new ArrayList<PlacedLabel>();
+		final Track track = _app.getTrackInfo().getTrack();
+		final int numPoints = track.getNumPoints();
+		Graphics g = makeBlankImage(1, 1).getGraphics();
+		setFont(g);
+		FontMetrics fm = g.getFontMetrics();
+		g.dispose();
+		final int nameHeight = fm.getHeight();
+		LabelPlacer placer = new LabelPlacer(new Rectangle(0, 0, inFullWidth, inFullHeight), NUM_NAME_STEPS);
+		// Reserve space around the waypoints, then mark everything which is drawn there
+		for (int i=0; i<numPoints; i++)
+		{
+			DataPoint point = track.getPoint(i);
+			if (point.isWaypoint()) {
+				placer.reserveLabel(inPixels._xs[i], inPixels._ys[i], fm.stringWidth(point.getWaypointName()), nameHeight);
+			}
+		}
+		if (placer.isEmpty()) {
+			return labels;
+		}
+		final boolean drawPoints = _drawTrackPointsCheckbox.isSelected();
+		int prevIndex = -1;
+		for (int i=0; i<numPoints; i++)
+		{
+			DataPoint point = track.getPoint(i);
+			final int px = inPixels._xs[i], py = inPixels._ys[i];
+			if (point.isWaypoint() || point.hasMedia()) {
+				placer.markRect(px-3, py-3, 6, 6);
+			}
+			if (!point.isWaypoint())
+			{
+				if (drawPoints) {
+					placer.markRect(px-2, py-2, 4, 4);
+				}
+				if (prevIndex >= 0 && !point.getSegmentStart()) {
+					placer.markLine(inPixels._xs[prevIndex], inPixels._ys[prevIndex], px, py, 1);
+				}
+				prevIndex = i;
+			}
+		}
+		// Place the names in track order
+		for (int i=0; i<numPoints; i++)
+		{
+			DataPoint point = track.getPoint(i);
+			if (point.isWaypoint())
+			{
+				final String waypointName = point.getWaypointName();
+				Rectangle nameRect = placer.placeLabel(inPixels._xs[i], inPixels._ys[i],
+					fm.stringWidth(waypointName), nameHeight);
+				if (nameRect != null) {
+					labels.add(new PlacedLabel(waypointName, nameRect.x, nameRect.y + nameRect.height - 1));
+				}
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * Draw the track and waypoint data from the current Track onto the given image,
+	 * which may be just a strip of the whole image
+	 * @param inImage image from map tiles
+	 * @param inTop y coordinate of the image's top edge on the whole image
+	 * @param inPixels pixel coordinates of the points on the whole image
+	 * @param inLabels waypoint names placed on the whole image
+	 */
+	private void drawData(BufferedImage inImage, int inTop, TrackPixels inPixels, ArrayList<PlacedLabel> inLabels)
+	{
+		Graphics g = inImage.getGraphics();
+		final int imageHeight = inImage.getHeight();
 		// TODO: Set line width, style etc
 		final PointColourer pointColourer = _app.getPointColourer();
 		final Color defaultPointColour = Config.getColourScheme().getColour(ColourScheme.IDX_POINT);
@@ -298,29 +602,31 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 		final Track track = _app.getTrackInfo().getTrack();
 		final int numPoints = track.getNumPoints();
 		int prevX = 0, prevY = 0;
+		int colourIndex = Integer.MIN_VALUE;
 		for (int i=0; i<numPoints; i++)
 		{
 			DataPoint point = track.getPoint(i);
 			if (!point.isWaypoint())
 			{
-				// Determine what colour to use to draw the track point
-				if (pointColourer != null)
+				int px = inPixels._xs[i], py = inPixels._ys[i] - inTop;
+				// Skip lines and points which are completely outside this image
+				final boolean drawLine = !point.getSegmentStart()
+					&& Math.max(prevY, py) >= 0 && Math.min(prevY, py) < imageHeight;
+				// Only draw points if requested
+				final boolean drawPoint = _drawTrackPointsCheckbox.isSelected() && py >= -2 && py < imageHeight + 2;
+				// Determine what colour to use to draw the track point, only changing it when necessary
+				if (pointColourer != null && (drawLine || drawPoint)
+					&& pointColourer.getColourIndex(i) != colourIndex)
 				{
-					Color c = pointColourer.getColour(i);
+					colourIndex = pointColourer.getColourIndex(i);
+					Color c = pointColourer.getPaletteColour(colourIndex);
 					g.setColor(c == null ? defaultPointColour : c);
 				}
-				double x = track.getX(i) - xRange.getMinimum();
-				double y = track.getY(i) - yRange.getMinimum();
-				// use zoom level to calculate pixel coords on image
-				int px = (int) (x * zoomFactor * 256), py = (int) (y * zoomFactor * 256);
-				// System.out.println("Point: x=" + x + ", px=" + px + ", y=" + y + ", py=" + py);
-				if (!point.getSegmentStart()) {
+				if (drawLine) {
 					// draw from previous point to this one
 					g.drawLine(prevX, prevY, px, py);
 				}
-				// Only draw points if requested
-				if (_drawTrackPointsCheckbox.isSelected())
-				{
+				if (drawPoint) {
 					g.drawRect(px-2, py-2, 3, 3);
 				}
 				// save coordinates
@@ -338,23 +644,12 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 			if (point.isWaypoint())
 			{
 				// draw blob for each waypoint
-				double x = track.getX(i) - xRange.getMinimum();
-				double y = track.getY(i) - yRange.getMinimum();
-				// use zoom level to calculate pixel coords on image
-				int px = (int) (x * zoomFactor * 256), py = (int) (y * zoomFactor * 256);
-				g.fillRect(px-3, py-3, 6, 6);
+				g.fillRect(inPixels._xs[i]-3, inPixels._ys[i]-inTop-3, 6, 6);
 			}
 		}
 		// Set text size according to input
-		int fontScalePercent = _textScaleField.getValue();
-		if (fontScalePercent > 10 && fontScalePercent <= 999)
-		{
-			Font gFont = g.getFont();
-			g.setFont(gFont.deriveFont((float) (gFont.getSize() * 0.01 * fontScalePercent)));
-		}
-		FontMetrics fm = g.getFontMetrics();
-		final int nameHeight = fm.getHeight();
-		final int imageSize = inImage.getImageSize();
+		setFont(g);
+		final int nameHeight = g.getFontMetrics().getHeight();
 
 		// Loop over points again, draw photo points
 		final Color photoColour = Config.getColourScheme().getColour(ColourScheme.IDX_SECONDARY);
@@ -365,54 +660,19 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 			if (point.hasMedia())
 			{
 				// draw blob for each photo
-				double x = track.getX(i) - xRange.getMinimum();
-				double y = track.getY(i) - yRange.getMinimum();
-				// use zoom level to calculate pixel coords on image
-				int px = (int) (x * zoomFactor * 256), py = (int) (y * zoomFactor * 256);
-				g.fillRect(px-3, py-3, 6, 6);
+				g.fillRect(inPixels._xs[i]-3, inPixels._ys[i]-inTop-3, 6, 6);
 			}
 		}
 
-		// Loop over points again, now draw names for waypoints
+		// Draw the names which reach into this image
 		g.setColor(textColour);
-		for (int i=0; i<numPoints; i++)
+		for (PlacedLabel label : inLabels)
 		{
-			DataPoint point = track.getPoint(i);
-			if (point.isWaypoint())
-			{
-				double x = track.getX(i) - xRange.getMinimum();
-				double y = track.getY(i) - yRange.getMinimum();
-				int px = (int) (x * zoomFactor * 256), py = (int) (y * zoomFactor * 256);
-
-				// Figure out where to draw waypoint name so it doesn't obscure track
-				String waypointName = point.getWaypointName();
-				int nameWidth = fm.stringWidth(waypointName);
-				boolean drawnName = false;
-				// Make arrays for coordinates right left up down
-				int[] nameXs = {px + 2, px - nameWidth - 2, px - nameWidth/2, px - nameWidth/2};
-				int[] nameYs = {py + (nameHeight/2), py + (nameHeight/2), py - 2, py + nameHeight + 2};
-				for (int extraSpace = 4; extraSpace < 13 && !drawnName; extraSpace+=2)
-				{
-					// Shift arrays for coordinates right left up down
-					nameXs[0] += 2; nameXs[1] -= 2;
-					nameYs[2] -= 2; nameYs[3] += 2;
-					// Check each direction in turn right left up down
-					for (int a=0; a<4; a++)
-					{
-						if (nameXs[a] > 0 && (nameXs[a] + nameWidth) < imageSize
-							&& nameYs[a] < imageSize && (nameYs[a] - nameHeight) > 0
-							&& !MapUtils.overlapsPoints(inImage.getImage(), nameXs[a], nameYs[a],
-								nameWidth, nameHeight, textColour))
-						{
-							// Found a rectangle to fit - draw name here and quit
-							g.drawString(waypointName, nameXs[a], nameYs[a]);
-							drawnName = true;
-							break;
-						}
-					}
-				}
+			if (label._y + nameHeight > inTop && label._y - nameHeight < inTop + imageHeight) {
+				g.drawString(label._name, label._x, label._y - inTop);
 			}
 		}
+		g.dispose();
 
 		// Maybe draw note at the bottom, export from GpsPrune?  Filename?
 		// Note: Differences from main map: No mapPosition (modifying position and visible points),
@@ -426,8 +686,9 @@ public class ImageExporter extends GenericFunction implements BaseImageConsumer
 	{
 		final boolean useImage = _baseImagePanel.getImageDefinition().getUseImage();
 		final int zoomLevel = _baseImagePanel.getImageDefinition().getZoom();
+		final int imageSize = MapGrouter.getImageSize(_app.getTrackInfo().getTrack(), zoomLevel);
 		final boolean okEnabled = useImage && _baseImagePanel.getFoundData()
-			&& MapGrouter.isZoomLevelOk(_app.getTrackInfo().getTrack(), zoomLevel);
+			&& imageSize > 2 && imageSize < MAX_IMAGE_SIZE;
 		_okButton.setEnabled(okEnabled);
 	}
 }
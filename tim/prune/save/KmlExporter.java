@@ -5,6 +5,7 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
+import java.awt.Image;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
@@ -24,7 +25,6 @@ import javax.imageio.ImageWriter;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JDialog;
@@ -51,8 +51,10 @@ import tim.prune.data.Timestamp;
 import tim.prune.data.Track;
 import tim.prune.data.TrackInfo;
 import tim.prune.data.UnitSetLibrary;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.gui.DialogCloser;
 import tim.prune.gui.ImageUtils;
+import tim.prune.gui.ThumbnailManager;
 import tim.prune.gui.WholeNumberField;
 import tim.prune.gui.colour.ColourChooser;
 import tim.prune.gui.colour.ColourPatch;
@@ -413,7 +415,9 @@ public class KmlExporter extends GenericFunction implements Runnable
 				zipOutputStream.putNextEntry(kmlEntry);
 			}
 			// write file
+			final long startTime = Diagnostics.startTimer();
 			final int numPoints = exportData(writer, exportImages);
+			Diagnostics.stopTimer(Diagnostics.TIMER_EXPORT_PREFIX + "kml", startTime);
 			// update config with selected track colour
 			Config.setConfigString(Config.KEY_KML_TRACK_COLOUR, ColourUtils.makeHexCode(_colourPatch.getBackground()));
 			// update progress bar
@@ -896,11 +900,14 @@ public class KmlExporter extends GenericFunction implements Runnable
 				// Make a new entry in zip file
 				ZipEntry entry = new ZipEntry("images/image" + photoNum + ".jpg");
 				inZipStream.putNextEntry(entry);
-				// Load image and write to outstream
-				ImageIcon icon = point.getPhoto().createImageIcon();
+				// Load subsampled image from the thumbnail cache, or the full image if that fails
+				Image image = ThumbnailManager.getThumbnail(point.getPhoto(), inThumbSize, false);
+				if (image == null) {
+					image = point.getPhoto().createImageIcon().getImage();
+				}
 
-				// Scale image to required size (not smoothed)
-				BufferedImage bufferedImage = ImageUtils.rotateImage(icon.getImage(),
+				// Scale image to required size and rotate
+				BufferedImage bufferedImage = ImageUtils.rotateImage(image,
 					inThumbSize, inThumbSize, point.getPhoto().getRotationDegrees());
 				// Store image dimensions so that it doesn't have to be calculated again for the points
 				_imageDimensions[i] = new Dimension(bufferedImage.getWidth(), bufferedImage.getHeight());
@@ -4,31 +4,149 @@ import tim.prune.data.DoubleRange;
 import tim.prune.data.Track;
 import tim.prune.data.TrackExtents;
 import tim.prune.gui.map.MapSource;
-import tim.prune.gui.map.MapTileManager;
-import tim.prune.gui.map.TileConsumer;
+import tim.prune.gui.map.TileFetcher;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 
 /**
  * Class to handle the sticking together (grouting) of map tiles
- * to create a single map image for the current track
+ * to create a single map image for the current track.
+ * All the tiles are requested at once from a pool of fetching threads,
+ * and each tile position is drawn as soon as all its layers have arrived.
+ * The images are kept in a cache shared by all the exports, limited by the number of pixels
  */
-public class MapGrouter implements TileConsumer
+public class MapGrouter
 {
-	/** The most recently produced image */
-	private GroutedImage _lastGroutedImage = null;
+	/** Recently produced images shared by all the exports, in order of access */
+	private static final LinkedHashMap<String, GroutedImage> IMAGE_CACHE
+		= new LinkedHashMap<String, GroutedImage>(8, 0.75f, true);
+	/** Total number of pixels in image cache */
+	private static long _cachedPixels = 0L;
+
+	/** Maximum number of threads for downloading tiles, to be fair to the tile servers */
+	private static final int MAX_DOWNLOAD_THREADS = 4;
+	/** Maximum number of threads for reading tiles from disk */
+	private static final int MAX_DISK_THREADS = 4;
+	/** Time limit for all the tiles to be read from disk */
+	private static final long DISK_DEADLINE_MS = 60 * 1000L;
+	/** Time limit for all the tiles to be downloaded */
+	private static final long DOWNLOAD_DEADLINE_MS = 180 * 1000L;
+	/** Largest image size which can be made in one piece */
+	public static final int MAX_IMAGE_SIZE = 4000;
+	/** Maximum number of pixels to keep in the image cache, about 96MB */
+	private static final long MAX_CACHED_PIXELS = 24000000L;
+
 
 	/**
-	 * Clear the last image, it's not needed any more
+	 * Class to hold the image being grouted, which the tiles are drawn onto
+	 * by whichever thread fetched them
 	 */
-	public void clearMapImage() {
-		_lastGroutedImage = null;
+	private static class Grouting
+	{
+		/** Image to draw on, or null if the tiles are just being fetched */
+		private final BufferedImage _image;
+		private final Graphics _graphics;
+		private final int _numPositions;
+		private final GroutingListener _listener;
+		private int _numTilesUsed = 0, _numTilesMissing = 0;
+		private int _numPositionsDone = 0;
+		/** Flag set when the grouting is finished (or has run out of time) */
+		private boolean _finished = false;
+
+		/**
+		 * Constructor
+		 * @param inWidth image width in pixels, or 0 for no image
+		 * @param inHeight image height in pixels
+		 * @param inNumPositions number of tile positions
+		 * @param inListener listener to inform of progress, or null
+		 */
+		Grouting(int inWidth, int inHeight, int inNumPositions, GroutingListener inListener)
+		{
+			if (inWidth > 0 && inHeight > 0)
+			{
+				_image = new BufferedImage(inWidth, inHeight, BufferedImage.TYPE_INT_RGB);
+				_graphics = _image.getGraphics();
+				_graphics.setColor(Color.WHITE);
+				_graphics.fillRect(0, 0, inWidth, inHeight);
+			}
+			else
+			{
+				_image = null;
+				_graphics = null;
+			}
+			_numPositions = inNumPositions;
+			_listener = inListener;
+		}
+
+		/**
+		 * Draw the tiles of all the layers for one position
+		 * @param inTiles futures for each layer, all completed
+		 * @param inX x offset in pixels
+		 * @param inY y offset in pixels
+		 */
+		void drawTiles(ArrayList<CompletableFuture<BufferedImage>> inTiles, int inX, int inY)
+		{
+			final int numDone;
+			synchronized (this)
+			{
+				if (_finished) {return;}
+				// Layers have to be drawn in order so that the overlays go on top
+				for (CompletableFuture<BufferedImage> future : inTiles)
+				{
+					BufferedImage tile = future.isCompletedExceptionally() ? null : future.getNow(null);
+					if (tile != null)
+					{
+						if (_graphics != null) {
+							_graphics.drawImage(tile, inX, inY, null);
+						}
+						_numTilesUsed++;
+					}
+					else {
+						_numTilesMissing++;
+					}
+				}
+				_numPositionsDone++;
+				numDone = _numPositionsDone;
+			}
+			if (_listener != null) {
+				_listener.groutingProgress(numDone, _numPositions);
+			}
+		}
+
+		/**
+		 * Stop any more tiles being drawn, and make the result
+		 * @param inNumLayers number of layers per tile position
+		 * @return grouted image
+		 */
+		synchronized GroutedImage finish(int inNumLayers)
+		{
+			_finished = true;
+			if (_graphics != null) {
+				_graphics.dispose();
+			}
+			// Tiles which didn't arrive in time are missing too
+			final int numTilesMissing = _numTilesMissing + (_numPositions - _numPositionsDone) * inNumLayers;
+			// Get rid of the image if it's empty
+			return new GroutedImage(_numTilesUsed == 0 ? null : _image, _numTilesUsed, numTilesMissing);
+		}
 	}
 
+
 	/**
 	 * Grout the required map tiles together according to the track's extent
 	 * @param inTrack track object
@@ -38,7 +156,7 @@ public class MapGrouter implements TileConsumer
 	 */
 	public GroutedImage createMapImage(Track inTrack, MapSource inMapSource, int inZoom)
 	{
-		return createMapImage(inTrack, inMapSource, inZoom, false);
+		return createMapImage(inTrack, inMapSource, inZoom, false, null);
 	}
 
 	/**
@@ -50,6 +168,21 @@ public class MapGrouter implements TileConsumer
 	 * @return grouted image, or null if no image could be created
 	 */
 	public GroutedImage createMapImage(Track inTrack, MapSource inMapSource, int inZoom, boolean inDownload)
+	{
+		return createMapImage(inTrack, inMapSource, inZoom, inDownload, null);
+	}
+
+	/**
+	 * Grout the required map tiles together according to the track's extent
+	 * @param inTrack track object
+	 * @param inMapSource map source to use (may have one or two layers)
+	 * @param inZoom selected zoom level
+	 * @param inDownload true to download tiles, false to just pull from disk
+	 * @param inListener listener to inform of progress, or null
+	 * @return grouted image, or null if no image could be created
+	 */
+	public GroutedImage createMapImage(Track inTrack, MapSource inMapSource, int inZoom, boolean inDownload,
+		GroutingListener inListener)
 	{
 		// Get the extents of the track including a standard (10%) border around the data
 		TrackExtents extents = new TrackExtents(inTrack);
@@ -57,124 +190,277 @@ public class MapGrouter implements TileConsumer
 		DoubleRange xRange = extents.getXRange();
 		DoubleRange yRange = extents.getYRange();
 
-		// Work out which tiles are required
+		// Work out how big the final image will be
 		final int zoomFactor = 1 << inZoom;
-		final int minTileX = (int) (xRange.getMinimum() * zoomFactor);
-		final int maxTileX = (int) (xRange.getMaximum() * zoomFactor);
-		final int minTileY = (int) (yRange.getMinimum() * zoomFactor);
-		final int maxTileY = (int) (yRange.getMaximum() * zoomFactor);
+		final int pixCount = (int) (xRange.getRange() * zoomFactor * 256);
+		if (pixCount < 2 || inZoom == 0) {return null;}
+		GroutedImage result = groutArea(inMapSource, inZoom, inDownload, inListener,
+			xRange.getMinimum() * zoomFactor * 256, yRange.getMinimum() * zoomFactor * 256,
+			pixCount, pixCount, true);
+		// Store the xy limits in the GroutedImage to make it easier to draw on top
+		result.setXRange(xRange);
+		result.setYRange(yRange);
+		// Keep it for the other exports, replacing any older version,
+		// but only if it's complete so that missing tiles can be fetched next time
+		if (result.isValid() && result.getNumTilesMissing() == 0) {
+			addToCache(makeKey(xRange, yRange, inMapSource, inZoom), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Grout the map tiles for a part of the map, for example one strip of a large image
+	 * @param inMapSource map source to use (may have one or two layers)
+	 * @param inZoom selected zoom level
+	 * @param inLeft x coordinate of left edge, in pixels at this zoom level
+	 * @param inTop y coordinate of top edge, in pixels at this zoom level
+	 * @param inWidth width of area in pixels
+	 * @param inHeight height of area in pixels
+	 * @return grouted image, without an image if no tiles were found
+	 */
+	public static GroutedImage createMapArea(MapSource inMapSource, int inZoom,
+		double inLeft, double inTop, int inWidth, int inHeight)
+	{
+		return groutArea(inMapSource, inZoom, false, null, inLeft, inTop, inWidth, inHeight, true);
+	}
 
-		// Work out how big the final image will be, create a BufferedImage
-		final int pixCount = (int) (extents.getXRange().getRange() * zoomFactor * 256);
+	/**
+	 * Download the map tiles needed for the track's extent into the disk cache,
+	 * without making an image (which may be too big to hold)
+	 * @param inTrack track object
+	 * @param inMapSource map source to use
+	 * @param inZoom selected zoom level
+	 * @param inListener listener to inform of progress, or null
+	 * @return grouted image without an image, giving the numbers of tiles
+	 */
+	public GroutedImage downloadTiles(Track inTrack, MapSource inMapSource, int inZoom, GroutingListener inListener)
+	{
+		TrackExtents extents = new TrackExtents(inTrack);
+		extents.applySquareBorder();
+		final int zoomFactor = 1 << inZoom;
+		final int pixCount = getImageSize(inTrack, inZoom);
 		if (pixCount < 2 || inZoom == 0) {return null;}
-		BufferedImage resultImage = new BufferedImage(pixCount, pixCount, BufferedImage.TYPE_INT_RGB);
-		Graphics g = resultImage.getGraphics();
-		g.setColor(Color.WHITE);
-		g.fillRect(0, 0, pixCount, pixCount);
-		// Work out where to start drawing the tiles on the image
-		int xOffset = (int) ((minTileX - xRange.getMinimum() * zoomFactor) * 256);
+		return groutArea(inMapSource, inZoom, true, inListener,
+			extents.getXRange().getMinimum() * zoomFactor * 256, extents.getYRange().getMinimum() * zoomFactor * 256,
+			pixCount, pixCount, false);
+	}
 
-		// Make a map tile manager to load (or download) the tiles
-		MapTileManager tileManager = new MapTileManager(this);
-		tileManager.setMapSource(inMapSource);
-		tileManager.enableTileDownloading(inDownload);
-		tileManager.setReturnIncompleteImages();
-		tileManager.setZoom(inZoom);
+	/**
+	 * Count how many of the map tiles needed for the track's extent are in the disk cache,
+	 * without reading them
+	 * @param inTrack track object
+	 * @param inMapSource map source to use
+	 * @param inZoom selected zoom level
+	 * @return grouted image without an image, giving the numbers of tiles
+	 */
+	public static GroutedImage countCachedTiles(Track inTrack, MapSource inMapSource, int inZoom)
+	{
+		TrackExtents extents = new TrackExtents(inTrack);
+		extents.applySquareBorder();
+		final int zoomFactor = 1 << inZoom;
+		final double left = extents.getXRange().getMinimum() * zoomFactor * 256;
+		final double top = extents.getYRange().getMinimum() * zoomFactor * 256;
+		final int pixCount = getImageSize(inTrack, inZoom);
+		final TileFetcher fetcher = new TileFetcher(inMapSource, inZoom, false);
+		int numFound = 0, numMissing = 0;
+		for (int x = (int) Math.floor(left / 256); x <= (int) Math.floor((left + pixCount - 1) / 256); x++)
+		{
+			for (int y = (int) Math.floor(top / 256); y <= (int) Math.floor((top + pixCount - 1) / 256); y++)
+			{
+				for (int layer=0; layer < inMapSource.getNumLayers(); layer++)
+				{
+					if (fetcher.isTileCached(layer, x, y)) {
+						numFound++;
+					}
+					else {
+						numMissing++;
+					}
+				}
+			}
+		}
+		return new GroutedImage(null, numFound, numMissing);
+	}
 
-		int numTilesUsed = 0;
-		int numTilesMissing = 0;
+	/**
+	 * Grout the map tiles covering the given area
+	 * @param inMapSource map source to use (may have one or two layers)
+	 * @param inZoom selected zoom level
+	 * @param inDownload true to download tiles, false to just pull from disk
+	 * @param inListener listener to inform of progress, or null
+	 * @param inLeft x coordinate of left edge, in pixels at this zoom level
+	 * @param inTop y coordinate of top edge, in pixels at this zoom level
+	 * @param inWidth width of area in pixels
+	 * @param inHeight height of area in pixels
+	 * @param inMakeImage true to draw the tiles onto an image, false to just fetch them
+	 * @return grouted image
+	 */
+	private static GroutedImage groutArea(MapSource inMapSource, int inZoom, boolean inDownload,
+		GroutingListener inListener, double inLeft, double inTop, int inWidth, int inHeight, boolean inMakeImage)
+	{
+		// Work out which tiles are required
+		final int minTileX = (int) Math.floor(inLeft / 256);
+		final int maxTileX = (int) Math.floor((inLeft + inWidth - 1) / 256);
+		final int minTileY = (int) Math.floor(inTop / 256);
+		final int maxTileY = (int) Math.floor((inTop + inHeight - 1) / 256);
+		final int numLayers = inMapSource.getNumLayers();
+		final Grouting grouting = new Grouting(inMakeImage ? inWidth : 0, inHeight,
+			(maxTileX - minTileX + 1) * (maxTileY - minTileY + 1), inListener);
+		// Work out where to start drawing the tiles on the image
+		final int firstXOffset = (int) (minTileX * 256 - inLeft);
+		final int firstYOffset = (int) (minTileY * 256 - inTop);
 
-		// Loop over the tiles
+		// Request all the tiles at once from a limited number of threads
+		final TileFetcher fetcher = new TileFetcher(inMapSource, inZoom, inDownload);
+		ExecutorService pool = makeFetchPool(inDownload ? MAX_DOWNLOAD_THREADS : MAX_DISK_THREADS);
+		ArrayList<CompletableFuture<Void>> positions = new ArrayList<CompletableFuture<Void>>();
 		for (int x = minTileX; x <= maxTileX; x++)
 		{
-			int yOffset = (int) ((minTileY - yRange.getMinimum() * zoomFactor) * 256);
 			for (int y = minTileY; y <= maxTileY; y++)
 			{
-				for (int layer=0; layer < inMapSource.getNumLayers(); layer++)
+				final ArrayList<CompletableFuture<BufferedImage>> tiles = new ArrayList<CompletableFuture<BufferedImage>>();
+				for (int layer=0; layer < numLayers; layer++)
 				{
-					Image tile = tileManager.getTile(layer, x, y, true);
-					// If we're downloading tiles, wait until the tile isn't null
-					int waitCount = 0;
-					while (tile == null && inDownload && waitCount < 3)
-					{
-						// System.out.println("wait " + waitCount + " for tile to be not null");
-						try {Thread.sleep(250);} catch (InterruptedException e) {}
-						tile = tileManager.getTile(layer, x, y, false); // don't request another download
-						waitCount++;
-					}
-					// See if there's a tile or not
-					if (tile != null)
-					{
-						// Wait until tile is available (loaded asynchronously)
-						while (tile.getWidth(null) < 0 && !inDownload)
-						{
-							// System.out.println("Wait for tile width");
-							try {
-								Thread.sleep(inDownload ? 500 : 100);
-							}
-							catch (InterruptedException ie) {}
+					final int tileLayer = layer, tileX = x, tileY = y;
+					tiles.add(CompletableFuture.supplyAsync(new Supplier<BufferedImage>() {
+						public BufferedImage get() {
+							return fetcher.getTile(tileLayer, tileX, tileY);
 						}
-						// work out where to copy it to, paint it
-						// System.out.println("Painting tile " + x + "," + y + " at " + xOffset + "," + yOffset);
-						numTilesUsed++;
-						g.drawImage(tile, xOffset, yOffset, null);
-					}
-					else
-					{
-						// null tile, that means it's either not available or really slow to start downloading
-						numTilesMissing++;
-					}
+					}, pool));
 				}
-				yOffset += 256;
+				// When all the layers are there, draw them in the right place
+				final int xOffset = firstXOffset + (x - minTileX) * 256;
+				final int yOffset = firstYOffset + (y - minTileY) * 256;
+				positions.add(CompletableFuture.allOf(tiles.toArray(new CompletableFuture<?>[0])).whenComplete(
+					new BiConsumer<Void, Throwable>() {
+						public void accept(Void inResult, Throwable inError) {
+							grouting.drawTiles(tiles, xOffset, yOffset);
+						}
+					}));
 			}
-			xOffset += 256;
 		}
-		// Get rid of the image if it's empty
-		if (numTilesUsed == 0) {
-			resultImage = null;
+
+		// Wait for all the positions to be drawn, or for the time limit
+		try {
+			CompletableFuture.allOf(positions.toArray(new CompletableFuture<?>[0])).get(
+				inDownload ? DOWNLOAD_DEADLINE_MS : DISK_DEADLINE_MS, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException te) {
+			System.err.println("Grouting timed out, some tiles are missing");
 		}
-		// Store the xy limits in the GroutedImage to make it easier to draw on top
-		GroutedImage result = new GroutedImage(resultImage, numTilesUsed, numTilesMissing);
-		result.setXRange(xRange);
-		result.setYRange(yRange);
-		return result;
+		catch (InterruptedException ie) {} // give up with the tiles found so far
+		catch (ExecutionException ee) {} // can't happen as errors are handled by each position
+		pool.shutdownNow();
+		return grouting.finish(numLayers);
+	}
+
+	/**
+	 * @param inMaxThreads maximum number of threads
+	 * @return thread pool for fetching tiles, with daemon threads so that they don't prevent exit
+	 */
+	private static ExecutorService makeFetchPool(int inMaxThreads)
+	{
+		final int numThreads = Math.max(1, Math.min(inMaxThreads, Runtime.getRuntime().availableProcessors() * 2));
+		return Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			public Thread newThread(Runnable inRunnable)
+			{
+				Thread thread = new Thread(inRunnable, "TileFetcher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 	}
 
 	/**
-	 * Get the grouted map image, using the previously-created one if available
+	 * Get the grouted map image, using a previously-created one if available.
+	 * The image is shared, so it shouldn't be drawn on.
 	 * @param inTrack track object
 	 * @param inMapSource map source to use (may have one or two layers)
 	 * @param inZoom selected zoom level
 	 * @return grouted image, or null if no image could be created
 	 */
-	public synchronized GroutedImage getMapImage(Track inTrack, MapSource inMapSource, int inZoom)
+	public GroutedImage getMapImage(Track inTrack, MapSource inMapSource, int inZoom)
+	{
+		TrackExtents extents = new TrackExtents(inTrack);
+		extents.applySquareBorder();
+		final String key = makeKey(extents.getXRange(), extents.getYRange(), inMapSource, inZoom);
+		GroutedImage image = null;
+		synchronized (IMAGE_CACHE) {
+			image = IMAGE_CACHE.get(key);
+		}
+		if (image == null) {
+			image = createMapImage(inTrack, inMapSource, inZoom);
+		}
+		return image;
+	}
+
+	/**
+	 * @param inXRange x range of image
+	 * @param inYRange y range of image
+	 * @param inMapSource map source
+	 * @param inZoom zoom level
+	 * @return key for the image cache
+	 */
+	private static String makeKey(DoubleRange inXRange, DoubleRange inYRange, MapSource inMapSource, int inZoom)
 	{
-		if (_lastGroutedImage == null) {
-			_lastGroutedImage = createMapImage(inTrack, inMapSource, inZoom);
+		return inXRange.getMinimum() + "," + inXRange.getMaximum() + "," + inYRange.getMinimum() + ","
+			+ inYRange.getMaximum() + ":" + inZoom + ":" + inMapSource.getSiteStrings();
+	}
+
+	/**
+	 * Add the given image to the cache, removing the least recently used ones if necessary
+	 * @param inKey cache key
+	 * @param inImage grouted image
+	 */
+	private static void addToCache(String inKey, GroutedImage inImage)
+	{
+		synchronized (IMAGE_CACHE)
+		{
+			GroutedImage previous = IMAGE_CACHE.put(inKey, inImage);
+			if (previous != null) {
+				_cachedPixels -= getNumPixels(previous);
+			}
+			_cachedPixels += getNumPixels(inImage);
+			Iterator<GroutedImage> iterator = IMAGE_CACHE.values().iterator();
+			while (_cachedPixels > MAX_CACHED_PIXELS && IMAGE_CACHE.size() > 1 && iterator.hasNext())
+			{
+				_cachedPixels -= getNumPixels(iterator.next());
+				iterator.remove();
+			}
 		}
-		return _lastGroutedImage;
+	}
+
+	/**
+	 * @param inImage grouted image
+	 * @return number of pixels in image
+	 */
+	private static long getNumPixels(GroutedImage inImage)
+	{
+		BufferedImage image = inImage.getImage();
+		return image == null ? 0L : image.getWidth() * (long) image.getHeight();
 	}
 
 	/**
 	 * @param inTrack track object
 	 * @param inZoom selected zoom level
-	 * @return true if the image size is acceptable
+	 * @return size in pixels of the (square) image covering the track at this zoom level
 	 */
-	public static boolean isZoomLevelOk(Track inTrack, int inZoom)
+	public static int getImageSize(Track inTrack, int inZoom)
 	{
 		// Get the extents of the track including a standard (10%) border around the data
 		TrackExtents extents = new TrackExtents(inTrack);
 		extents.applySquareBorder();
-
-		// Work out how big the final image will be
 		final int zoomFactor = 1 << inZoom;
-		final int pixCount = (int) (extents.getXRange().getRange() * zoomFactor * 256);
-		return pixCount > 2 && pixCount < 4000;
+		return (int) (extents.getXRange().getRange() * zoomFactor * 256);
 	}
 
-	/** React to tiles being updated by the tile manager */
-	public void tilesUpdated(boolean inIsOk)
+	/**
+	 * @param inTrack track object
+	 * @param inZoom selected zoom level
+	 * @return true if the image size is acceptable
+	 */
+	public static boolean isZoomLevelOk(Track inTrack, int inZoom)
 	{
-		// Doesn't need any action
+		final int pixCount = getImageSize(inTrack, inZoom);
+		return pixCount > 2 && pixCount < MAX_IMAGE_SIZE;
 	}
 }
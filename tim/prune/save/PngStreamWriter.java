@@ -0,0 +1,220 @@
+package tim.prune.save;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Class to write a png file strip by strip, compressing the rows as they arrive.
+ * Unlike ImageIO, this doesn't need the whole image in memory, so the image
+ * can be much bigger than the available memory.
+ */
+public class PngStreamWriter implements StripWriter
+{
+	/** Stream to the file */
+	private OutputStream _fileStream = null;
+	/** Compressing stream for the image data */
+	private DeflaterOutputStream _dataStream = null;
+	/** Deflater, needs to be released at the end */
+	private Deflater _deflater = null;
+	/** Image width in pixels */
+	private final int _width;
+	/** Image height in pixels */
+	private final int _height;
+	/** Number of rows written so far */
+	private int _numRowsWritten = 0;
+	/** Buffers for the row being written */
+	private byte[] _rowBytes = null;
+	private int[] _rowPixels = null;
+
+	/** Png file signature */
+	private static final byte[] PNG_SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+	/** Size of each compressed data chunk */
+	private static final int CHUNK_SIZE = 64 * 1024;
+	/** Row filter type, each byte given as the difference from the one to its left */
+	private static final byte FILTER_SUB = 1;
+
+
+	/**
+	 * Class to collect the compressed data into IDAT chunks
+	 */
+	private class ChunkOutputStream extends OutputStream
+	{
+		private byte[] _buffer = new byte[CHUNK_SIZE];
+		private int _numBytes = 0;
+
+		/** Write a single byte */
+		public void write(int inByte) throws IOException
+		{
+			if (_numBytes == _buffer.length) {flush();}
+			_buffer[_numBytes++] = (byte) inByte;
+		}
+
+		/** Write an array of bytes */
+		public void write(byte[] inBytes, int inOffset, int inLength) throws IOException
+		{
+			while (inLength > 0)
+			{
+				if (_numBytes == _buffer.length) {flush();}
+				final int numToCopy = Math.min(inLength, _buffer.length - _numBytes);
+				System.arraycopy(inBytes, inOffset, _buffer, _numBytes, numToCopy);
+				_numBytes += numToCopy;
+				inOffset += numToCopy;
+				inLength -= numToCopy;
+			}
+		}
+
+		/** Write the buffered bytes as a chunk */
+		public void flush() throws IOException
+		{
+			if (_numBytes > 0)
+			{
+				writeChunk("IDAT", _buffer, _numBytes);
+				_numBytes = 0;
+			}
+		}
+
+		/** Closing just flushes, the file stream is closed separately */
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+
+	/**
+	 * Constructor
+	 * @param inFile file to write to
+	 * @param inWidth width of image in pixels
+	 * @param inHeight height of image in pixels
+	 * @throws IOException if the file couldn't be opened
+	 */
+	public PngStreamWriter(File inFile, int inWidth, int inHeight) throws IOException
+	{
+		_width = inWidth;
+		_height = inHeight;
+		_fileStream = new BufferedOutputStream(new FileOutputStream(inFile));
+		_fileStream.write(PNG_SIGNATURE);
+		// Header with size, 8 bits per channel, rgb colour, no interlacing
+		byte[] header = new byte[13];
+		putInt(header, 0, inWidth);
+		putInt(header, 4, inHeight);
+		header[8] = 8;
+		header[9] = 2;
+		writeChunk("IHDR", header, header.length);
+		_deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		_dataStream = new DeflaterOutputStream(new ChunkOutputStream(), _deflater, CHUNK_SIZE);
+		_rowBytes = new byte[1 + 3 * inWidth];
+		_rowPixels = new int[inWidth];
+	}
+
+	/**
+	 * Write the next strip of the image
+	 * @param inStrip image holding the strip
+	 * @throws IOException on failure to write
+	 */
+	public void writeStrip(BufferedImage inStrip) throws IOException
+	{
+		final int numRows = Math.min(inStrip.getHeight(), _height - _numRowsWritten);
+		for (int y=0; y<numRows; y++)
+		{
+			inStrip.getRGB(0, y, _width, 1, _rowPixels, 0, _width);
+			_rowBytes[0] = FILTER_SUB;
+			int prevR = 0, prevG = 0, prevB = 0;
+			for (int x=0, b=1; x<_width; x++)
+			{
+				final int rgb = _rowPixels[x];
+				final int r = (rgb >> 16) & 255, g = (rgb >> 8) & 255, bl = rgb & 255;
+				_rowBytes[b++] = (byte) (r - prevR);
+				_rowBytes[b++] = (byte) (g - prevG);
+				_rowBytes[b++] = (byte) (bl - prevB);
+				prevR = r; prevG = g; prevB = bl;
+			}
+			_dataStream.write(_rowBytes);
+		}
+		_numRowsWritten += numRows;
+	}
+
+	/**
+	 * Finish the file, filling any missing rows with white
+	 * @throws IOException on failure to write
+	 */
+	public void finish() throws IOException
+	{
+		try
+		{
+			if (_numRowsWritten < _height)
+			{
+				// Sub filter with a white first pixel and no differences after that
+				Arrays.fill(_rowBytes, (byte) 0);
+				_rowBytes[0] = FILTER_SUB;
+				_rowBytes[1] = _rowBytes[2] = _rowBytes[3] = (byte) 255;
+				for (; _numRowsWritten < _height; _numRowsWritten++) {
+					_dataStream.write(_rowBytes);
+				}
+			}
+			_dataStream.finish();
+			_dataStream.flush();
+			writeChunk("IEND", new byte[0], 0);
+		}
+		finally
+		{
+			_deflater.end();
+			_fileStream.close();
+		}
+	}
+
+	/**
+	 * Close the file without finishing it, for example if the export failed
+	 */
+	public void abort()
+	{
+		_deflater.end();
+		try {_fileStream.close();} catch (IOException e) {} // ignore
+	}
+
+	/**
+	 * Write a chunk to the file
+	 * @param inType chunk type, four characters
+	 * @param inData data bytes
+	 * @param inLength number of data bytes to use
+	 * @throws IOException on failure to write
+	 */
+	private void writeChunk(String inType, byte[] inData, int inLength) throws IOException
+	{
+		byte[] lengthAndType = new byte[8];
+		putInt(lengthAndType, 0, inLength);
+		for (int i=0; i<4; i++) {
+			lengthAndType[4 + i] = (byte) inType.charAt(i);
+		}
+		_fileStream.write(lengthAndType);
+		_fileStream.write(inData, 0, inLength);
+		// Checksum covers the type and the data
+		CRC32 crc = new CRC32();
+		crc.update(lengthAndType, 4, 4);
+		crc.update(inData, 0, inLength);
+		byte[] crcBytes = new byte[4];
+		putInt(crcBytes, 0, (int) crc.getValue());
+		_fileStream.write(crcBytes);
+	}
+
+	/**
+	 * Put a big-endian int into a byte array
+	 * @param inBytes byte array
+	 * @param inOffset offset to start at
+	 * @param inValue value to put
+	 */
+	private static void putInt(byte[] inBytes, int inOffset, int inValue)
+	{
+		inBytes[inOffset]     = (byte) (inValue >> 24);
+		inBytes[inOffset + 1] = (byte) (inValue >> 16);
+		inBytes[inOffset + 2] = (byte) (inValue >> 8);
+		inBytes[inOffset + 3] = (byte) inValue;
+	}
+}
@@ -28,14 +28,13 @@ import javax.swing.JTextField;
 import javax.swing.SwingConstants;
 
 import tim.prune.App;
-import tim.prune.FunctionLibrary;
 import tim.prune.I18nManager;
 import tim.prune.UpdateMessageBroker;
 import tim.prune.config.Config;
 import tim.prune.data.NumberUtils;
 import tim.prune.data.Track;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.function.Export3dFunction;
-import tim.prune.function.srtm.LookupSrtmFunction;
 import tim.prune.gui.BaseImageDefinitionPanel;
 import tim.prune.gui.DialogCloser;
 import tim.prune.gui.TerrainDefinitionPanel;
@@ -43,8 +42,6 @@ import tim.prune.gui.map.MapSource;
 import tim.prune.gui.map.MapSourceLibrary;
 import tim.prune.load.GenericFileFilter;
 import tim.prune.threedee.ImageDefinition;
-import tim.prune.threedee.TerrainCache;
-import tim.prune.threedee.TerrainDefinition;
 import tim.prune.threedee.TerrainHelper;
 import tim.prune.threedee.ThreeDModel;
 
@@ -168,7 +165,6 @@ public class PovExporter extends Export3dFunction
 					public void run()
 					{
 						doExport();
-						_baseImagePanel.getGrouter().clearMapImage();
 					}
 				}).start();
 				_dialog.dispose();
@@ -179,7 +175,6 @@ public class PovExporter extends Export3dFunction
 		cancelButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e)
 			{
-				_baseImagePanel.getGrouter().clearMapImage();
 				_dialog.dispose();
 			}
 		});
@@ -317,7 +312,10 @@ public class PovExporter extends Export3dFunction
 					== JOptionPane.YES_OPTION)
 				{
 					// Export the file(s)
-					if (exportFiles(povFile, imageFile, terrainFile))
+					final long startTime = Diagnostics.startTimer();
+					final boolean exported = exportFiles(povFile, imageFile, terrainFile);
+					Diagnostics.stopTimer(Diagnostics.TIMER_EXPORT_PREFIX + "pov", startTime);
+					if (exported)
 					{
 						// file saved - store directory in config for later
 						Config.setConfigString(Config.KEY_TRACK_DIR, povFile.getParentFile().getAbsolutePath());
@@ -397,31 +395,8 @@ public class PovExporter extends Export3dFunction
 			if (useTerrain)
 			{
 				TerrainHelper terrainHelper = new TerrainHelper(_terrainPanel.getGridSize());
-				// See if there's a previously saved terrain track we can reuse
-				TerrainDefinition terrainDef = new TerrainDefinition(_terrainPanel.getUseTerrain(), _terrainPanel.getGridSize());
-				Track terrainTrack = TerrainCache.getTerrainTrack(_app.getCurrentDataStatus(), terrainDef);
-				if (terrainTrack == null)
-				{
-					// Construct the terrain track according to these extents and the grid size
-					terrainTrack = terrainHelper.createGridTrack(_track);
-					// Get the altitudes from SRTM for all the points in the track
-					LookupSrtmFunction srtmLookup = (LookupSrtmFunction) FunctionLibrary.FUNCTION_LOOKUP_SRTM;
-					srtmLookup.begin(terrainTrack);
-					while (srtmLookup.isRunning())
-					{
-						try {
-							Thread.sleep(750);  // just polling in a wait loop isn't ideal but simple
-						}
-						catch (InterruptedException e) {}
-					}
-					// Fix the voids
-					terrainHelper.fixVoids(terrainTrack);
-
-					// Store this back in the cache, maybe we'll need it again
-					TerrainCache.storeTerrainTrack(terrainTrack, _app.getCurrentDataStatus(), terrainDef);
-				}
-
-				model.setTerrain(terrainTrack);
+				// Get the terrain grid from the cache or from the Srtm tiles
+				model.setTerrain(terrainHelper.createGrid(_track));
 				model.scale();
 
 				// Call TerrainHelper to write out the data from the model
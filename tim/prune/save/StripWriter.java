@@ -0,0 +1,24 @@
+package tim.prune.save;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Interface for writing a large image one horizontal strip at a time,
+ * so that the whole image never has to be held in memory
+ */
+public interface StripWriter
+{
+	/**
+	 * Write the next strip of the image
+	 * @param inStrip image holding the strip, with the full width of the image
+	 * @throws IOException on failure to write
+	 */
+	public void writeStrip(BufferedImage inStrip) throws IOException;
+
+	/**
+	 * Finish writing after the last strip
+	 * @throws IOException on failure to write
+	 */
+	public void finish() throws IOException;
+}
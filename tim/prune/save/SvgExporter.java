@@ -30,6 +30,7 @@ import tim.prune.I18nManager;
 import tim.prune.UpdateMessageBroker;
 import tim.prune.config.Config;
 import tim.prune.data.Track;
+import tim.prune.diagnostics.Diagnostics;
 import tim.prune.function.Export3dFunction;
 import tim.prune.gui.DialogCloser;
 import tim.prune.load.GenericFileFilter;
@@ -229,7 +230,10 @@ public class SvgExporter extends Export3dFunction
 					== JOptionPane.YES_OPTION)
 				{
 					// Export the file
-					if (exportFile(file))
+					final long startTime = Diagnostics.startTimer();
+					final boolean exported = exportFile(file);
+					Diagnostics.stopTimer(Diagnostics.TIMER_EXPORT_PREFIX + "svg", startTime);
+					if (exported)
 					{
 						// file saved - store directory in config for later
 						Config.setConfigString(Config.KEY_TRACK_DIR, file.getParentFile().getAbsolutePath());
@@ -0,0 +1,187 @@
+package tim.prune.save;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Class to write a large image as a pyramid of map tiles, in the same
+ * zoom/x/y.png layout as the tile servers use.  The image arrives strip by strip,
+ * each strip being one or more whole rows of tiles, and each pair of tile rows
+ * is shrunk to make a row of tiles at the next zoom level out.
+ * So only one row of tiles per zoom level is held at once.
+ */
+public class TilePyramidWriter implements StripWriter
+{
+	/** Base directory */
+	private final File _baseDir;
+	/** Levels, starting with the zoom level of the image */
+	private ArrayList<Level> _levels = new ArrayList<Level>();
+	/** Index of the next tile row to be written at the first level */
+	private int _nextTileY = 0;
+
+	/** Size of each tile in pixels */
+	private static final int TILE_SIZE = 256;
+
+
+	/**
+	 * Class to hold the tile range of a zoom level, and the row of tiles being built
+	 * from the level below
+	 */
+	private static class Level
+	{
+		private final int _zoom;
+		private final int _firstTileX;
+		private final int _numTilesX;
+		/** Row of tiles being assembled, and its tile index */
+		private BufferedImage _row = null;
+		private int _rowTileY = -1;
+
+		/** Constructor */
+		Level(int inZoom, int inFirstTileX, int inNumTilesX)
+		{
+			_zoom = inZoom;
+			_firstTileX = inFirstTileX;
+			_numTilesX = inNumTilesX;
+		}
+	}
+
+
+	/**
+	 * Constructor
+	 * @param inDir directory to write the tiles to
+	 * @param inZoom zoom level of the image
+	 * @param inFirstTileX x index of the first tile of the image
+	 * @param inFirstTileY y index of the first tile of the image
+	 * @param inNumTilesX number of tiles across the image
+	 * @param inNumTilesY number of tiles down the image
+	 */
+	public TilePyramidWriter(File inDir, int inZoom, int inFirstTileX, int inFirstTileY,
+		int inNumTilesX, int inNumTilesY)
+	{
+		_baseDir = inDir;
+		_nextTileY = inFirstTileY;
+		// Go out until the whole image fits in one tile
+		int zoom = inZoom, firstX = inFirstTileX, lastX = inFirstTileX + inNumTilesX - 1;
+		int firstY = inFirstTileY, lastY = inFirstTileY + inNumTilesY - 1;
+		_levels.add(new Level(zoom, firstX, lastX - firstX + 1));
+		while (zoom > 0 && (firstX < lastX || firstY < lastY))
+		{
+			zoom--;
+			firstX >>= 1; lastX >>= 1;
+			firstY >>= 1; lastY >>= 1;
+			_levels.add(new Level(zoom, firstX, lastX - firstX + 1));
+		}
+	}
+
+	/**
+	 * Write the next strip of the image
+	 * @param inStrip image holding one or more whole rows of tiles
+	 * @throws IOException on failure to write
+	 */
+	public void writeStrip(BufferedImage inStrip) throws IOException
+	{
+		final int width = _levels.get(0)._numTilesX * TILE_SIZE;
+		for (int y=0; y + TILE_SIZE <= inStrip.getHeight(); y += TILE_SIZE)
+		{
+			addTileRow(0, inStrip.getSubimage(0, y, width, TILE_SIZE), _nextTileY);
+			_nextTileY++;
+		}
+	}
+
+	/**
+	 * Write the rows of tiles still being assembled at the outer zoom levels
+	 * @throws IOException on failure to write
+	 */
+	public void finish() throws IOException
+	{
+		for (int i=1; i<_levels.size(); i++)
+		{
+			Level level = _levels.get(i);
+			if (level._row != null)
+			{
+				addTileRow(i, level._row, level._rowTileY);
+				level._row = null;
+			}
+		}
+	}
+
+	/**
+	 * Write a row of tiles, and shrink it into the next level out
+	 * @param inLevelIndex index of level
+	 * @param inRow image of tile row
+	 * @param inTileY y index of tile row
+	 * @throws IOException on failure to write
+	 */
+	private void addTileRow(int inLevelIndex, BufferedImage inRow, int inTileY) throws IOException
+	{
+		Level level = _levels.get(inLevelIndex);
+		for (int i=0; i<level._numTilesX; i++)
+		{
+			File tileFile = new File(_baseDir, level._zoom + File.separator + (level._firstTileX + i)
+				+ File.separator + inTileY + ".png");
+			File dir = tileFile.getParentFile();
+			if (!(dir.exists() || dir.mkdirs())
+				|| !ImageIO.write(inRow.getSubimage(i * TILE_SIZE, 0, TILE_SIZE, TILE_SIZE), "png", tileFile))
+			{
+				throw new IOException("Can't write tile " + tileFile.getAbsolutePath());
+			}
+		}
+		if (inLevelIndex + 1 >= _levels.size()) {
+			return;
+		}
+		// Shrink this row into the row being assembled at the next level out
+		Level parent = _levels.get(inLevelIndex + 1);
+		final int parentTileY = inTileY >> 1;
+		if (parent._row != null && parent._rowTileY != parentTileY)
+		{
+			addTileRow(inLevelIndex + 1, parent._row, parent._rowTileY);
+			parent._row = null;
+		}
+		if (parent._row == null)
+		{
+			parent._row = new BufferedImage(parent._numTilesX * TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+			Graphics g = parent._row.getGraphics();
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, parent._row.getWidth(), TILE_SIZE);
+			g.dispose();
+			parent._rowTileY = parentTileY;
+		}
+		shrinkInto(inRow, parent._row, (level._firstTileX - 2 * parent._firstTileX) * TILE_SIZE / 2,
+			(inTileY & 1) * TILE_SIZE / 2);
+	}
+
+	/**
+	 * Shrink an image to half size by averaging each block of four pixels
+	 * @param inSource source image
+	 * @param inDest destination image
+	 * @param inX x offset in destination
+	 * @param inY y offset in destination
+	 */
+	private static void shrinkInto(BufferedImage inSource, BufferedImage inDest, int inX, int inY)
+	{
+		final int sourceWidth = inSource.getWidth();
+		final int destWidth = sourceWidth / 2;
+		int[] upperRow = new int[sourceWidth], lowerRow = new int[sourceWidth];
+		int[] destRow = new int[destWidth];
+		for (int y=0; y<inSource.getHeight() / 2; y++)
+		{
+			inSource.getRGB(0, 2*y, sourceWidth, 1, upperRow, 0, sourceWidth);
+			inSource.getRGB(0, 2*y+1, sourceWidth, 1, lowerRow, 0, sourceWidth);
+			for (int x=0; x<destWidth; x++)
+			{
+				final int p1 = upperRow[2*x], p2 = upperRow[2*x+1], p3 = lowerRow[2*x], p4 = lowerRow[2*x+1];
+				final int r = (((p1 >> 16) & 255) + ((p2 >> 16) & 255) + ((p3 >> 16) & 255) + ((p4 >> 16) & 255) + 2) / 4;
+				final int g = (((p1 >> 8) & 255) + ((p2 >> 8) & 255) + ((p3 >> 8) & 255) + ((p4 >> 8) & 255) + 2) / 4;
+				final int b = ((p1 & 255) + (p2 & 255) + (p3 & 255) + (p4 & 255) + 2) / 4;
+				destRow[x] = (r << 16) | (g << 8) | b;
+			}
+			inDest.setRGB(inX, inY + y, destWidth, 1, destRow, 0, destWidth);
+		}
+	}
+}
@@ -1,10 +1,12 @@
 package tim.prune.threedee;
 
 import java.awt.BorderLayout;
+import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
@@ -44,9 +46,9 @@ import javax.vecmath.Vector3d;
 import tim.prune.DataStatus;
 import tim.prune.FunctionLibrary;
 import tim.prune.I18nManager;
+import tim.prune.data.TerrainGrid;
 import tim.prune.data.Track;
 import tim.prune.function.Export3dFunction;
-import tim.prune.function.srtm.LookupSrtmFunction;
 import tim.prune.gui.map.MapSourceLibrary;
 import tim.prune.save.GroutedImage;
 import tim.prune.save.MapGrouter;
@@ -86,6 +88,7 @@ public class Java3DWindow implements ThreeDWindow
 	private static final String CARDINALS_FONT = "Arial";
 	private static final int MAX_TRACK_SIZE = 2500; // threshold for warning
 	private static final double MODEL_SCALE_FACTOR = 20.0;
+	private static final int MIN_PIXELS_PER_NODE = 2; // for terrain level of detail
 
 
 	/**
@@ -124,7 +127,7 @@ public class Java3DWindow implements ThreeDWindow
 		_imageDefinition = inDefinition;
 		if (inDefinition != null && inDefinition.getUseImage())
 		{
-			_baseImage = new MapGrouter().createMapImage(_track, MapSourceLibrary.getSource(inDefinition.getSourceIndex()),
+			_baseImage = new MapGrouter().getMapImage(_track, MapSourceLibrary.getSource(inDefinition.getSourceIndex()),
 				inDefinition.getZoom());
 		}
 		else _baseImage = null;
@@ -343,34 +346,15 @@ public class Java3DWindow implements ThreeDWindow
 
 		if (showTerrain)
 		{
-			TerrainHelper terrainHelper = new TerrainHelper(_terrainDefinition.getGridSize());
-			// See if there's a previously saved terrain track we can reuse
-			Track terrainTrack = TerrainCache.getTerrainTrack(_dataStatus, _terrainDefinition);
-			if (terrainTrack == null)
-			{
-				// Construct the terrain track according to these extents and the grid size
-				terrainTrack = terrainHelper.createGridTrack(_track);
-				// Get the altitudes from SRTM for all the points in the track
-				LookupSrtmFunction srtmLookup = (LookupSrtmFunction) FunctionLibrary.FUNCTION_LOOKUP_SRTM;
-				srtmLookup.begin(terrainTrack);
-				while (srtmLookup.isRunning())
-				{
-					try {
-						Thread.sleep(750);  // just polling in a wait loop isn't ideal but simple
-					}
-					catch (InterruptedException e) {}
-				}
-
-				// Fix the voids
-				terrainHelper.fixVoids(terrainTrack);
-
-				// Store this back in the cache, maybe we'll need it again
-				TerrainCache.storeTerrainTrack(terrainTrack, _dataStatus, _terrainDefinition);
-			}
-			// else System.out.println("Yay - reusing the cached track!");
-
-			// Give the terrain definition to the _model as well
-			_model.setTerrain(terrainTrack);
+			// Get the terrain grid from the cache or from the Srtm tiles
+			TerrainGrid terrainGrid = new TerrainHelper(_terrainDefinition.getGridSize()).createGrid(_track);
+			// Use a level of detail matching the screen, more nodes than pixels can't be seen
+			Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+			terrainGrid = terrainGrid.getLevel(Math.max(screenSize.width, screenSize.height) / MIN_PIXELS_PER_NODE);
+			TerrainHelper terrainHelper = new TerrainHelper(terrainGrid.getGridSize());
+
+			// Give the terrain grid to the _model as well
+			_model.setTerrain(terrainGrid);
 			_model.scale();
 
 			objTrans.addChild(createTerrain(_model, terrainHelper, _baseImage));
@@ -1,57 +1,74 @@
 package tim.prune.threedee;
 
-import tim.prune.DataStatus;
-import tim.prune.data.Track;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import tim.prune.data.DoubleRange;
+import tim.prune.data.TerrainGrid;
 
 /**
- * This abstract class acts as a singleton to store a single
- * terrain model (as a Track) for a given data status and terrain definition.
- * When the data or the definition changes, this track becomes invalid.
+ * This abstract class acts as a singleton to store the most recently used
+ * terrain grids, keyed by their extents and resolution, and shared by the 3d view
+ * and the exports. The cache is limited by the total number of grid nodes,
+ * including the coarser levels of detail which each grid may create.
+ * Changes to the data only make a terrain invalid if they change the extents.
  */
 public abstract class TerrainCache
 {
-	/** The data status at the time this terrain was generated */
-	private static DataStatus _dataStatus = null;
-	/** The definition (grid size) for this terrain */
-	private static TerrainDefinition _terrainDef = null;
-	/** The generated grid of points with altitudes */
-	private static Track _terrainTrack = null;
+	/** Maximum number of grid nodes to keep, about 16MB */
+	private static final long MAX_CACHED_NODES = 4000000L;
+
+	/** Stored grids, in order of use */
+	private static final LinkedHashMap<String, TerrainGrid> _grids = new LinkedHashMap<String, TerrainGrid>(8, 0.75f, true);
+	/** Total number of nodes in stored grids and their levels */
+	private static long _cachedNodes = 0L;
 
 
 	/**
-	 * Get the stored terrain track if it's still valid
-	 * @param inCurrStatus current data status
-	 * @param inTerrainDef currently selected terrain definition
-	 * @return stored terrain track if it's valid, null otherwise
+	 * Get a stored terrain grid if there is one
+	 * @param inXRange range of x coordinates
+	 * @param inYRange range of y coordinates
+	 * @param inGridSize number of nodes on each side
+	 * @return stored terrain grid if there is one, null otherwise
 	 */
-	public static Track getTerrainTrack(DataStatus inCurrStatus, TerrainDefinition inTerrainDef)
+	public static TerrainGrid getTerrainGrid(DoubleRange inXRange, DoubleRange inYRange, int inGridSize)
 	{
-		if (_dataStatus == null || _terrainDef == null || _terrainTrack == null)
-		{
-			return null; // nothing stored
-		}
-		if (inCurrStatus == null || inTerrainDef == null || !inTerrainDef.getUseTerrain())
-		{
-			return null; // nonsense requested
+		synchronized (_grids) {
+			return _grids.get(makeKey(inXRange, inYRange, inGridSize));
 		}
-		if (inCurrStatus.hasDataChanged(_dataStatus) || !inTerrainDef.equals(_terrainDef))
+	}
+
+	/**
+	 * Now that a terrain grid has been generated, store it for possible reuse
+	 * @param inGrid terrain grid to store
+	 * @param inXRange range of x coordinates
+	 * @param inYRange range of y coordinates
+	 */
+	public static void storeTerrainGrid(TerrainGrid inGrid, DoubleRange inXRange, DoubleRange inYRange)
+	{
+		synchronized (_grids)
 		{
-			return null; // stored track is out of date
+			TerrainGrid previous = _grids.put(makeKey(inXRange, inYRange, inGrid.getGridSize()), inGrid);
+			if (previous != null) {
+				_cachedNodes -= previous.getNumPointsWithLevels();
+			}
+			_cachedNodes += inGrid.getNumPointsWithLevels();
+			// Remove the least recently used grids if necessary
+			Iterator<TerrainGrid> iterator = _grids.values().iterator();
+			while (_cachedNodes > MAX_CACHED_NODES && _grids.size() > 1 && iterator.hasNext())
+			{
+				_cachedNodes -= iterator.next().getNumPointsWithLevels();
+				iterator.remove();
+			}
 		}
-		// we have a match
-		return _terrainTrack;
 	}
 
 	/**
-	 * Now that a terrain track has been generated, store it for possible reuse
-	 * @param inTrack terrain track to store
-	 * @param inCurrStatus current data status
-	 * @param inTerrainDef terrain definition
+	 * @return key describing the extents and resolution
 	 */
-	public static void storeTerrainTrack(Track inTrack, DataStatus inCurrStatus, TerrainDefinition inTerrainDef)
+	private static String makeKey(DoubleRange inXRange, DoubleRange inYRange, int inGridSize)
 	{
-		_terrainTrack = inTrack;
-		_dataStatus = inCurrStatus;
-		_terrainDef = inTerrainDef;
+		return inXRange.getMinimum() + "," + inXRange.getMaximum() + ","
+			+ inYRange.getMinimum() + "," + inYRange.getMaximum() + ":" + inGridSize;
 	}
 }
@@ -2,6 +2,7 @@ package tim.prune.threedee;
 
 import tim.prune.data.DataPoint;
 import tim.prune.data.PointScaler;
+import tim.prune.data.TerrainGrid;
 import tim.prune.data.Track;
 
 /**
@@ -12,7 +13,7 @@ import tim.prune.data.Track;
 public class ThreeDModel
 {
 	private Track _track = null;
-	private Track _terrainTrack = null;
+	private TerrainGrid _terrainGrid = null;
 	private PointScaler _scaler = null;
 	private double _scaleFactor = 1.0;
 	private double _altFactor = 1.0;
@@ -38,11 +39,11 @@ public class ThreeDModel
 
 
 	/**
-	 * @param inTrack terrain track to set
+	 * @param inGrid terrain grid to set
 	 */
-	public void setTerrain(Track inTrack)
+	public void setTerrain(TerrainGrid inGrid)
 	{
-		_terrainTrack = inTrack;
+		_terrainGrid = inGrid;
 	}
 
 	/**
@@ -77,7 +78,7 @@ public class ThreeDModel
 	{
 		// Use PointScaler to sort out x and y values
 		_scaler = new PointScaler(_track);
-		_scaler.addTerrain(_terrainTrack);
+		_scaler.addTerrain(_terrainGrid);
 		_scaler.scale(); // Add 10% border
 
 		// cap altitude scale factor if it's too big
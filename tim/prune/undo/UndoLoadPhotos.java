@@ -26,6 +26,18 @@ public class UndoLoadPhotos implements UndoOperation
 	}
 
 
+	/**
+	 * Extend this operation when photos are loaded in several batches
+	 * @param inNumPhotos number of extra photos loaded
+	 * @param inNumPoints number of extra points loaded
+	 */
+	public void addPhotos(int inNumPhotos, int inNumPoints)
+	{
+		_numPhotos += inNumPhotos;
+		_numPoints += inNumPoints;
+	}
+
+
 	/**
 	 * @return description of operation including number of photos loaded
 	 */
@@ -70,4 +82,4 @@ public class UndoLoadPhotos implements UndoOperation
 		// clear selection
 		inTrackInfo.getSelection().clearAll();
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
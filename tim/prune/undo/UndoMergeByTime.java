@@ -0,0 +1,45 @@
+package tim.prune.undo;
+
+import tim.prune.data.DataPoint;
+import tim.prune.data.Track;
+import tim.prune.data.TrackInfo;
+
+/**
+ * Operation to undo the merging of sources by time
+ */
+public class UndoMergeByTime extends UndoReorder
+{
+	/** Segment start flags are also changed by the merge */
+	private boolean[] _segmentStartFlags = null;
+
+	/**
+	 * Constructor
+	 * @param inTrack track contents to copy
+	 */
+	public UndoMergeByTime(Track inTrack)
+	{
+		super(inTrack, "undo.mergebytime");
+		final int numPoints = inTrack.getNumPoints();
+		_segmentStartFlags = new boolean[numPoints];
+		for (int i=0; i<numPoints; i++) {
+			_segmentStartFlags[i] = inTrack.getPoint(i).getSegmentStart();
+		}
+	}
+
+	/** Perform the undo */
+	public void performUndo(TrackInfo inTrackInfo) throws UndoException
+	{
+		// Put all the points back in the right order
+		super.performUndo(inTrackInfo);
+		// And then restore the segment flags and clear the deletion marks
+		for (int i=0; i<_segmentStartFlags.length; i++)
+		{
+			DataPoint point = inTrackInfo.getTrack().getPoint(i);
+			if (point != null && !point.isWaypoint())
+			{
+				point.setSegmentStart(_segmentStartFlags[i]);
+				point.setMarkedForDeletion(false);
+			}
+		}
+	}
+}